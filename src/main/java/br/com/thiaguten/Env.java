@@ -15,12 +15,35 @@ import static org.hibernate.cfg.AvailableSettings.USE_QUERY_CACHE;
 import static org.hibernate.cfg.AvailableSettings.USE_SECOND_LEVEL_CACHE;
 import static org.hibernate.cfg.AvailableSettings.USE_STRUCTURED_CACHE;
 
+import br.com.thiaguten.core.AdaptivePoolController;
+import br.com.thiaguten.core.GridDAO;
+import br.com.thiaguten.core.GridRegionTopology;
+import br.com.thiaguten.core.MeteredConnectionProvider;
+import br.com.thiaguten.core.PoolTelemetry;
+import br.com.thiaguten.core.ReplicaRoutingDataSource;
+import br.com.thiaguten.core.ReplicaRoutingDataSource.ReplicaSelection;
+import br.com.thiaguten.dao.GridPostDAOImpl;
+import br.com.thiaguten.dao.PostDAO;
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.model.Post;
 import com.zaxxer.hikari.HikariDataSource;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
 import java.util.concurrent.atomic.AtomicInteger;
 import net.ttddyy.dsproxy.listener.logging.DefaultQueryLogEntryCreator;
 import net.ttddyy.dsproxy.listener.logging.SLF4JLogLevel;
@@ -29,19 +52,32 @@ import net.ttddyy.dsproxy.support.ProxyDataSource;
 import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.Ignition;
+import org.apache.ignite.configuration.IgniteConfiguration;
 import org.hibernate.engine.jdbc.internal.FormatStyle;
 import org.hibernate.engine.jdbc.internal.Formatter;
 import org.hsqldb.jdbc.JDBCDataSource;
 
 public class Env {
 
-  public static final String url = "jdbc:hsqldb:mem:test;shutdown=true";
+  // MVCC, like most production databases: the default table locks deadlock with the L2 cache locks under concurrent writes
+  public static final String url = "jdbc:hsqldb:mem:test;shutdown=true;hsqldb.tx=mvcc";
+  // no shutdown on the last connection close, the replica pool may not have connected yet
+  public static final String replicaUrl = "jdbc:hsqldb:mem:replica";
   public static final String user = "sa";
   public static final String password = "";
+  // the Ignite instance name configured in the hibernate-l2-grid.xml file
+  public static final String igniteInstanceName = "hibernate-l2-grid";
   public static final int batchSize = 50; //Integer.parseInt(Dialect.DEFAULT_BATCH_SIZE);
+  public static final String poolName = "primary-pool";
+  public static final String replicaPoolName = "replica-pool";
+  // the maximum size the pools start with, resized within the bounds below by the pool controllers
+  public static final int poolSize = 10;
+  // bounds of the adaptive pool sizing, see startPoolControllers
+  public static final int minPoolSize = 2;
+  public static final int maxPoolSize = 20;
 
   public enum ConnectionStrategy {
-    DATA_SOURCE, CONNECTION_PROVIDER
+    DATA_SOURCE, CONNECTION_PROVIDER, READ_REPLICA
   }
 
   public static String crudInfo(AtomicInteger counter) {
@@ -55,17 +91,92 @@ public class Env {
   }
 
   public static Ignite startIgnite() {
+    return startIgnite(Collections.emptyMap());
+  }
+
+  /**
+   * Start the Ignite node of the hibernate-l2-grid.xml file.
+   *
+   * @see #createIgniteConfig(Map)
+   */
+  public static Ignite startIgnite(Map<String, Object> props) {
+    Ignite ignite = Ignition.start(createIgniteConfig(props));
+    Runtime.getRuntime().addShutdownHook(new Thread(ignite::close));
+    return ignite;
+  }
+
+  /**
+   * Create the Ignite config of the hibernate-l2-grid.xml file, with the caches of the
+   * L2 cache regions generated from the entity model and the topology profiles of the
+   * persistence config.
+   */
+  public static IgniteConfiguration createIgniteConfig(Map<String, Object> props) {
 	String targetDir = Paths.get("", "target").toAbsolutePath().toString();
 	System.setProperty(org.apache.ignite.IgniteSystemProperties.IGNITE_HOME, targetDir);
     System.setProperty(org.apache.ignite.IgniteSystemProperties.IGNITE_QUIET, "true");
     System.setProperty(org.apache.ignite.IgniteSystemProperties.IGNITE_PERFORMANCE_SUGGESTIONS_DISABLED, "true");
     System.setProperty("java.net.preferIPv4Stack", "true");
-    Ignite ignite = Ignition.start("hibernate-l2-grid.xml");
-    Runtime.getRuntime().addShutdownHook(new Thread(ignite::close));
-    return ignite;
+    IgniteConfiguration cfg = Ignition.loadSpringBean("hibernate-l2-grid.xml", "ignite.cfg");
+    return GridRegionTopology.fromEntityIndex(props, Env.class.getClassLoader()).applyTo(cfg);
   }
 
   public static Map<String, Object> createPersistenceConfig(Ignite ignite, ConnectionStrategy connectionStrategy) {
+    return createPersistenceConfig(ignite.name(), connectionStrategy);
+  }
+
+  /**
+   * Create the persistence config by the Ignite instance name, so it can be
+   * created before the Ignite node is started.
+   */
+  public static Map<String, Object> createPersistenceConfig(String igniteInstanceName, ConnectionStrategy connectionStrategy) {
+    Map<String, Object> props = createBasePersistenceConfig(igniteInstanceName);
+
+    if (ConnectionStrategy.CONNECTION_PROVIDER.equals(connectionStrategy)) {
+      // measures the connections of the HikariCP connection provider, so its pool can be resized too
+      props.put(CONNECTION_PROVIDER, MeteredConnectionProvider.class.getName());
+      props.put(MeteredConnectionProvider.DELEGATE, "org.hibernate.hikaricp.internal.HikariCPConnectionProvider");
+      props.put("hibernate.hikari.dataSourceClassName", "org.hsqldb.jdbc.JDBCDataSource");
+      props.put("hibernate.hikari.dataSource.url", url);
+      props.put("hibernate.hikari.dataSource.user", user);
+      props.put("hibernate.hikari.dataSource.password", password);
+//      props.put("hibernate.hikari.idleTimeout", Long.toString(TimeUnit.MINUTES.toMillis(10)));
+      props.put("hibernate.hikari.poolName", poolName);
+      props.put("hibernate.hikari.registerMbeans", "true");
+      // see hikariDataSource
+      props.put("hibernate.hikari.autoCommit", "false");
+      props.put("hibernate.hikari.maximumPoolSize", Integer.toString(poolSize));
+    } else if (ConnectionStrategy.DATA_SOURCE.equals(connectionStrategy)) {
+      /*
+        Although Hibernate can log SQL statements by setting the proper log appender or config,
+        it’s much better to delegate this responsibility to a more powerful JDBC DataSource or
+        Driver proxy solution with logging capabilities.
+      */
+//      props.put(DATASOURCE, hikariDataSource());
+      props.put(DATASOURCE, PoolTelemetry.forPool(poolName).instrument(proxyDataSource()));
+    } else if (ConnectionStrategy.READ_REPLICA.equals(connectionStrategy)) {
+      /*
+        Read-only operations outside of a transaction go to the replica, a second in-memory
+        database kept up to date by the replicate method, simulating an asynchronous replication.
+       */
+      DataSource replica = PoolTelemetry.forPool(replicaPoolName).instrument(hikariDataSource(replicaPoolName, replicaUrl));
+      props.put(DATASOURCE, new ReplicaRoutingDataSource(PoolTelemetry.forPool(poolName).instrument(proxyDataSource()),
+          Collections.singletonList(replica), ReplicaSelection.ROUND_ROBIN, 1, TimeUnit.SECONDS));
+    }
+
+    return props;
+  }
+
+  /**
+   * Create the persistence config of a data source managed by the caller, e.g. the
+   * pool of a node of an in-JVM cluster.
+   */
+  public static Map<String, Object> createPersistenceConfig(String igniteInstanceName, DataSource dataSource) {
+    Map<String, Object> props = createBasePersistenceConfig(igniteInstanceName);
+    props.put(DATASOURCE, dataSource);
+    return props;
+  }
+
+  private static Map<String, Object> createBasePersistenceConfig(String igniteInstanceName) {
     Map<String, Object> props = new HashMap<>();
     /*
       Enabling logging with this config the logs go to console, which makes it very difficult
@@ -85,31 +196,78 @@ public class Env {
     props.put(USE_QUERY_CACHE, "true");
     props.put(USE_STRUCTURED_CACHE, "false");
     props.put(USE_SECOND_LEVEL_CACHE, "true");
+    // a comment changed without its post (e.g. deleted by ID) evicts the cached comments of the post too (default)
+//    props.put("br.com.thiaguten.evict_inverse_collections", "true");
     props.put("org.apache.ignite.hibernate.default_access_type", "READ_WRITE");
-    props.put("org.apache.ignite.hibernate.ignite_instance_name", ignite.name());
+    props.put("org.apache.ignite.hibernate.ignite_instance_name", igniteInstanceName);
+    // topology profiles of the L2 cache regions, read by startIgnite (see GridRegionTopology)
+//    props.put(GridRegionTopology.PROFILE_PREFIX + "transactional.backups", "1");
+//    props.put(GridRegionTopology.REGION_PREFIX + GridRegionTopology.QUERY_RESULTS_REGION, TopologyProfile.ATOMIC);
+//    props.put(GridRegionTopology.COMPACT_ENTRIES, "false");
+//    props.put(GridRegionTopology.PROFILE_PREFIX + "compressed.compressionThreshold", "256");
+//    props.put(GridRegionTopology.REGION_PREFIX + "br.com.thiaguten.model.PostComment", "compressed");
+    // expiry of the entries of a region, in seconds, overriding its RegionExpiry annotation and profile
+//    props.put(GridRegionTopology.EXPIRY_PREFIX + "br.com.thiaguten.model.PostComment.accessed", "3600");
+//    props.put(GridRegionTopology.EXPIRY_PREFIX + "br.com.thiaguten.model.Post.postComments.created", "600");
+    // named query cache regions, each with its own cache, by default of the query profile
+    props.put(GridRegionTopology.QUERY_REGIONS, PostDAOImpl.TITLE_QUERY_REGION.getName());
+//    props.put(GridRegionTopology.PROFILE_PREFIX + "titleQuery.base", TopologyProfile.QUERY);
+//    props.put(GridRegionTopology.PROFILE_PREFIX + "titleQuery.timeToLive", "300");
+//    props.put(GridRegionTopology.PROFILE_PREFIX + "titleQuery.maxSizeMb", "64");
+//    props.put(GridRegionTopology.REGION_PREFIX + PostDAOImpl.TITLE_QUERY_REGION.getName(), "titleQuery");
+    // system of record of the hot entities, read by createPostDAO (see GridDAO)
+//    props.put(GridDAO.BACKEND_PREFIX + Post.class.getName(), "write-behind");
+    return props;
+  }
 
-    if (ConnectionStrategy.CONNECTION_PROVIDER.equals(connectionStrategy)) {
-      props.put(CONNECTION_PROVIDER, "org.hibernate.hikaricp.internal.HikariCPConnectionProvider");
-      props.put("hibernate.hikari.dataSourceClassName", "org.hsqldb.jdbc.JDBCDataSource");
-      props.put("hibernate.hikari.dataSource.url", url);
-      props.put("hibernate.hikari.dataSource.user", user);
-      props.put("hibernate.hikari.dataSource.password", password);
-//      props.put("hibernate.hikari.idleTimeout", Long.toString(TimeUnit.MINUTES.toMillis(10)));
-//      props.put("hibernate.hikari.maximumPoolSize", "20");
-    } else if (ConnectionStrategy.DATA_SOURCE.equals(connectionStrategy)) {
-      /*
-        Although Hibernate can log SQL statements by setting the proper log appender or config,
-        it’s much better to delegate this responsibility to a more powerful JDBC DataSource or
-        Driver proxy solution with logging capabilities.
-      */
-//      props.put(DATASOURCE, hikariDataSource());
-      props.put(DATASOURCE, proxyDataSource());
-    }
+  /**
+   * Create the post DAO of the backend selected by the persistence config,
+   * the database by default.
+   *
+   * @return the post DAO
+   */
+  public static PostDAO createPostDAO(Ignite ignite, Map<String, Object> props) {
+    PostDAOImpl databaseDAO = new PostDAOImpl();
+    GridDAO.Backend backend = GridDAO.Backend.of(props, Post.class);
+    return GridDAO.Backend.DATABASE == backend ? databaseDAO : new GridPostDAOImpl(ignite, databaseDAO, backend);
+  }
 
-    return props;
+  /**
+   * Open the minimum connections of the pool of the persistence config data
+   * source, if any, so the first requests do not wait for them.
+   *
+   * @return the number of connections opened
+   */
+  public static int warmUpPool(Map<String, Object> props) {
+    Object dataSource = props.get(DATASOURCE);
+    if (!(dataSource instanceof DataSource)) {
+      // the pool of a connection provider is filled when the entity manager factory is built
+      return 0;
+    }
+    List<Connection> connections = new ArrayList<>(minPoolSize);
+    try {
+      for (int i = 0; i < minPoolSize; i++) {
+        connections.add(((DataSource) dataSource).getConnection());
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Could not warm up the connection pool", e);
+    } finally {
+      for (Connection connection : connections) {
+        try {
+          connection.close();
+        } catch (SQLException ignored) {
+          // returned to the pool, nothing to do
+        }
+      }
+    }
+    return connections.size();
   }
 
   private static JDBCDataSource dataSource() {
+    return dataSource(url);
+  }
+
+  private static JDBCDataSource dataSource(String url) {
     JDBCDataSource ds = new JDBCDataSource();
     ds.setUrl(url);
     ds.setUser(user);
@@ -118,12 +276,108 @@ public class Env {
   }
 
   public static HikariDataSource hikariDataSource() {
+    return hikariDataSource(poolName, url);
+  }
+
+  public static HikariDataSource hikariDataSource(String poolName, String url) {
     HikariDataSource ds = new HikariDataSource();
-    ds.setMaximumPoolSize(10);
-    ds.setDataSource(dataSource());
+    ds.setPoolName(poolName);
+    // the pool counters are read through JMX by the pool controller
+    ds.setRegisterMbeans(true);
+    /*
+      Hibernate 5.1 releases the connection on commit and borrows it again just to restore the
+      auto-commit mode, while the L2 cache locks of the transaction are still held, which
+      deadlocks with the writers holding the other connections and waiting for those locks.
+     */
+    ds.setAutoCommit(false);
+    ds.setMaximumPoolSize(poolSize);
+    ds.setDataSource(dataSource(url));
     return ds;
   }
 
+  /**
+   * Start the controllers of the pools of the persistence config of a connection
+   * strategy, resizing them within minPoolSize and maxPoolSize. The caller stops
+   * them, e.g. with stopPoolControllers.
+   *
+   * @return the started pool controllers
+   */
+  public static List<AdaptivePoolController> startPoolControllers(ConnectionStrategy connectionStrategy) {
+    List<AdaptivePoolController> poolControllers = new ArrayList<>();
+    poolControllers.add(startPoolController(poolName));
+    if (ConnectionStrategy.READ_REPLICA.equals(connectionStrategy)) {
+      poolControllers.add(startPoolController(replicaPoolName));
+    }
+    return poolControllers;
+  }
+
+  public static AdaptivePoolController startPoolController(String poolName) {
+    return new AdaptivePoolController(poolName, minPoolSize, maxPoolSize,
+        1, TimeUnit.MILLISECONDS).start(1, TimeUnit.SECONDS);
+  }
+
+  public static void stopPoolControllers(List<AdaptivePoolController> poolControllers) {
+    for (AdaptivePoolController poolController : poolControllers) {
+      poolController.close();
+    }
+  }
+
+  /**
+   * Copy the schema and the rows of the primary in-memory database to the replica
+   * in-memory database, replacing its content.
+   */
+  public static void replicate() {
+    try (Connection primary = DriverManager.getConnection(url, user, password);
+        Connection replica = DriverManager.getConnection(replicaUrl, user, password);
+        Statement primaryStatement = primary.createStatement();
+        Statement replicaStatement = replica.createStatement()) {
+      replicaStatement.execute("DROP SCHEMA PUBLIC CASCADE");
+      // the rows are copied table by table, regardless of the foreign keys
+      replicaStatement.execute("SET DATABASE REFERENTIAL INTEGRITY FALSE");
+
+      List<String> tables = new ArrayList<>();
+      try (ResultSet script = primaryStatement.executeQuery("SCRIPT")) {
+        while (script.next()) {
+          String ddl = script.getString(1);
+          if (ddl.startsWith("CREATE MEMORY TABLE PUBLIC.")) {
+            replicaStatement.execute(ddl);
+            tables.add(ddl.substring("CREATE MEMORY TABLE ".length(), ddl.indexOf('(')));
+          } else if (ddl.startsWith("CREATE SEQUENCE PUBLIC.") || ddl.startsWith("ALTER SEQUENCE PUBLIC.")
+              || ddl.startsWith("ALTER TABLE PUBLIC.") || ddl.startsWith("CREATE INDEX ")) {
+            replicaStatement.execute(ddl);
+          }
+        }
+      }
+
+      for (String table : tables) {
+        try (ResultSet rows = primaryStatement.executeQuery("SELECT * FROM " + table)) {
+          int columnCount = rows.getMetaData().getColumnCount();
+          StringJoiner markers = new StringJoiner(",", "(", ")");
+          for (int i = 0; i < columnCount; i++) {
+            markers.add("?");
+          }
+          try (PreparedStatement insert = replica.prepareStatement("INSERT INTO " + table + " VALUES " + markers)) {
+            boolean batched = false;
+            while (rows.next()) {
+              for (int i = 1; i <= columnCount; i++) {
+                insert.setObject(i, rows.getObject(i));
+              }
+              insert.addBatch();
+              batched = true;
+            }
+            if (batched) {
+              insert.executeBatch();
+            }
+          }
+        }
+      }
+
+      replicaStatement.execute("SET DATABASE REFERENTIAL INTEGRITY TRUE");
+    } catch (SQLException e) {
+      throw new IllegalStateException("Could not replicate the primary database", e);
+    }
+  }
+
   public static ProxyDataSource proxyDataSource() {
     DefaultQueryLogEntryCreator prettyQueryLogEntryCreator = new DefaultQueryLogEntryCreator() {
       // use hibernate internal formatter to format queries
@@ -1,6 +1,8 @@
 package br.com.thiaguten;
 
 import br.com.thiaguten.Env.ConnectionStrategy;
+import br.com.thiaguten.core.BootstrapOrchestrator;
+import br.com.thiaguten.core.BootstrapOrchestrator.Stage;
 import br.com.thiaguten.core.PersistenceHelper;
 import br.com.thiaguten.core.PersistenceUnitInfoImpl;
 import br.com.thiaguten.dao.PostDAO;
@@ -8,12 +10,14 @@ import br.com.thiaguten.dao.PostDAOImpl;
 import br.com.thiaguten.model.Post;
 import br.com.thiaguten.model.PostComment;
 import br.com.thiaguten.model.PostDetails;
+import br.com.thiaguten.search.PostTitleIndex;
 import br.com.thiaguten.sequence.PostIDSupplier;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.ignite.Ignite;
+import org.hibernate.jpa.boot.spi.EntityManagerFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,11 +26,30 @@ public class Test {
   private static final Logger logger = LoggerFactory.getLogger(Test.class);
 
   public static void main(String[] args) {
-    Ignite ignite = Env.startIgnite();
-    Map<String, Object> props = Env.createPersistenceConfig(ignite, ConnectionStrategy.CONNECTION_PROVIDER);
-    PersistenceHelper.bootstrap(new PersistenceUnitInfoImpl("testUnit"), props);
-    PostDAO postDAO = new PostDAOImpl();
-    PostIDSupplier postIdSupplier = new PostIDSupplier(ignite, postDAO);
+    PostDAO postDAO;
+    PostIDSupplier postIdSupplier;
+    try (BootstrapOrchestrator orchestrator = new BootstrapOrchestrator()) {
+      // the Ignite node join, the pool warm up and the metadata building run concurrently
+      Map<String, Object> props = Env.createPersistenceConfig(Env.igniteInstanceName, ConnectionStrategy.CONNECTION_PROVIDER);
+      Stage<Ignite> ignite = orchestrator.stage("ignite", () -> Env.startIgnite(props), Ignite::close);
+      Stage<Integer> pool = orchestrator.stage("pool", () -> Env.warmUpPool(props));
+      orchestrator.stage("pool-controllers", () -> Env.startPoolControllers(ConnectionStrategy.CONNECTION_PROVIDER),
+          Env::stopPoolControllers);
+      Stage<EntityManagerFactoryBuilder> metadata = orchestrator.stage("metadata",
+          () -> PersistenceHelper.prepareBootstrap(new PersistenceUnitInfoImpl("testUnit"), props));
+      Stage<Boolean> entityManagerFactory = orchestrator.stage("entity-manager-factory", () -> {
+        PersistenceHelper.bootstrap(metadata.join(), props);
+        return Boolean.TRUE;
+      }, ignored -> PersistenceHelper.getInstance().close(), ignite, pool, metadata);
+      Stage<PostTitleIndex> titleIndex = orchestrator.stage("title-index",
+          () -> new PostTitleIndex(ignite.join()), ignite);
+      Stage<PostDAO> dao = orchestrator.stage("dao", () -> new PostDAOImpl(titleIndex.join()),
+          titleIndex, entityManagerFactory);
+      orchestrator.await();
+      postDAO = dao.join();
+      // queries the database through the DAO, so it runs on this thread, which keeps its entity manager
+      postIdSupplier = new PostIDSupplier(ignite.join(), postDAO);
+    }
     AtomicInteger counter = new AtomicInteger();
 
     simpleCRUD(counter, postDAO, postIdSupplier);
@@ -3,9 +3,7 @@ package br.com.thiaguten.converter;
 import br.com.thiaguten.util.DateUtil;
 
 import java.time.LocalDate;
-import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 
 import javax.persistence.AttributeConverter;
 import javax.persistence.Converter;
@@ -26,16 +24,18 @@ public class LocalDateConverter implements AttributeConverter<LocalDate, String>
 
 	@Override
 	public String convertToDatabaseColumn(LocalDate attribute) {
-		return WRITE_FORMATTER.format(attribute);
+		if (null == attribute) {
+			return null;
+		}
+		String dbData = TemporalFormat.formatLocalDate(attribute);
+		// years out of the four digits range are left to the formatter
+		return null == dbData ? WRITE_FORMATTER.format(attribute) : dbData;
 	}
 
 	@Override
 	public LocalDate convertToEntityAttribute(String dbData) {
-		try {
-			return LocalDate.parse(dbData, READ_FORMATTER);
-		} catch (DateTimeParseException e) {
-			return LocalDate.parse(dbData, WRITE_FORMATTER);
-		}
+		// accepts both the READ_FORMATTER and the WRITE_FORMATTER layouts
+		return null == dbData ? null : TemporalFormat.parseLocalDate(dbData);
 	}
 
 }
@@ -0,0 +1,30 @@
+package br.com.thiaguten.converter;
+
+import br.com.thiaguten.util.DateUtil;
+
+import java.time.LocalDate;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Converts LocalDate type to Long type (epoch milliseconds of the start of the
+ * day in the {@link DateUtil#DEFAULT_ZONE_ID} zone, mapped to a BIGINT column)
+ * and vice-versa.
+ * 
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+@Converter
+public class LocalDateEpochMilliConverter implements AttributeConverter<LocalDate, Long> {
+
+	@Override
+	public Long convertToDatabaseColumn(LocalDate attribute) {
+		return null == attribute ? null : DateUtil.localDateToEpochMilli(attribute);
+	}
+
+	@Override
+	public LocalDate convertToEntityAttribute(Long dbData) {
+		return null == dbData ? null : DateUtil.epochMilliToLocalDate(dbData);
+	}
+
+}
@@ -3,9 +3,7 @@ package br.com.thiaguten.converter;
 import br.com.thiaguten.util.DateUtil;
 
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 
 import javax.persistence.AttributeConverter;
 import javax.persistence.Converter;
@@ -26,18 +24,18 @@ public class LocalDateTimeConverter implements AttributeConverter<LocalDateTime,
 
 	@Override
 	public String convertToDatabaseColumn(LocalDateTime attribute) {
-		return WRITE_FORMATTER.format(attribute);
+		if (null == attribute) {
+			return null;
+		}
+		String dbData = TemporalFormat.formatLocalDateTime(attribute);
+		// years out of the four digits range are left to the formatter
+		return null == dbData ? WRITE_FORMATTER.format(attribute) : dbData;
 	}
 
 	@Override
 	public LocalDateTime convertToEntityAttribute(String dbData) {
-		try {
-			String timestampFormatado = String.format("%-26s", dbData.replace(' ', '@')).replace(' ', '0')
-					.replace('@', ' ').replace("0000000", ".000000");
-			return LocalDateTime.parse(timestampFormatado, READ_FORMATTER);
-		} catch (DateTimeParseException e) {
-			return LocalDateTime.parse(dbData, WRITE_FORMATTER);
-		}
+		// accepts both the READ_FORMATTER and the WRITE_FORMATTER layouts
+		return null == dbData ? null : TemporalFormat.parseLocalDateTime(dbData);
 	}
 
 }
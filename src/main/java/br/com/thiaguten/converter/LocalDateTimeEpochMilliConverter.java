@@ -0,0 +1,34 @@
+package br.com.thiaguten.converter;
+
+import br.com.thiaguten.util.DateUtil;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Converts LocalDateTime type to Long type (epoch milliseconds in the
+ * {@link DateUtil#DEFAULT_ZONE_ID} zone, mapped to a BIGINT column) and
+ * vice-versa.
+ * <p>
+ * Unlike the {@link LocalDateTimeConverter} string layout, the column is sorted
+ * and compared numerically, so range queries and sorts can use an index. The
+ * precision is truncated to milliseconds.
+ * 
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+@Converter
+public class LocalDateTimeEpochMilliConverter implements AttributeConverter<LocalDateTime, Long> {
+
+	@Override
+	public Long convertToDatabaseColumn(LocalDateTime attribute) {
+		return null == attribute ? null : DateUtil.localDateTimeToEpochMilli(attribute);
+	}
+
+	@Override
+	public LocalDateTime convertToEntityAttribute(Long dbData) {
+		return null == dbData ? null : DateUtil.epochMilliToLocalDateTime(dbData);
+	}
+
+}
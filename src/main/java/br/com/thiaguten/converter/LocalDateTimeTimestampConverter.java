@@ -0,0 +1,28 @@
+package br.com.thiaguten.converter;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Converts LocalDateTime type to Timestamp type (mapped to a TIMESTAMP column)
+ * and vice-versa, keeping the nanoseconds precision.
+ * 
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+@Converter
+public class LocalDateTimeTimestampConverter implements AttributeConverter<LocalDateTime, Timestamp> {
+
+	@Override
+	public Timestamp convertToDatabaseColumn(LocalDateTime attribute) {
+		return null == attribute ? null : Timestamp.valueOf(attribute);
+	}
+
+	@Override
+	public LocalDateTime convertToEntityAttribute(Timestamp dbData) {
+		return null == dbData ? null : dbData.toLocalDateTime();
+	}
+
+}
@@ -3,9 +3,7 @@ package br.com.thiaguten.converter;
 import br.com.thiaguten.util.DateUtil;
 
 import java.time.LocalTime;
-import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 
 import javax.persistence.AttributeConverter;
 import javax.persistence.Converter;
@@ -28,16 +26,13 @@ public class LocalTimeConverter implements AttributeConverter<LocalTime, String>
 
 	@Override
 	public String convertToDatabaseColumn(LocalTime attribute) {
-		return WRITE_FORMATTER.format(attribute);
+		return null == attribute ? null : TemporalFormat.formatLocalTime(attribute);
 	}
 
 	@Override
 	public LocalTime convertToEntityAttribute(String dbData) {
-		try {
-			return LocalTime.parse(dbData, READ_FORMATTER);
-		} catch (DateTimeParseException e) {
-			return LocalTime.parse(dbData, WRITE_FORMATTER);
-		}
+		// accepts both the READ_FORMATTER and the WRITE_FORMATTER layouts
+		return null == dbData ? null : TemporalFormat.parseLocalTime(dbData);
 	}
 
 }
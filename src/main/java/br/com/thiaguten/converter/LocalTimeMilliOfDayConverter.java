@@ -0,0 +1,32 @@
+package br.com.thiaguten.converter;
+
+import br.com.thiaguten.util.DateUtil;
+
+import java.time.LocalTime;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Converts LocalTime type to Long type (milliseconds of the day, mapped to a
+ * BIGINT column) and vice-versa.
+ * <p>
+ * The milliseconds of the day are used instead of epoch milliseconds, so the
+ * stored value does not depend on the date the attribute was written.
+ * 
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+@Converter
+public class LocalTimeMilliOfDayConverter implements AttributeConverter<LocalTime, Long> {
+
+	@Override
+	public Long convertToDatabaseColumn(LocalTime attribute) {
+		return null == attribute ? null : DateUtil.localTimeToMilliOfDay(attribute);
+	}
+
+	@Override
+	public LocalTime convertToEntityAttribute(Long dbData) {
+		return null == dbData ? null : DateUtil.milliOfDayToLocalTime(dbData);
+	}
+
+}
@@ -0,0 +1,203 @@
+package br.com.thiaguten.converter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Hand-written parsers and formatters of the temporal column layouts used by
+ * the converters of this package.
+ * <p>
+ * Each parser recognizes the read layout and the write layout in a single pass
+ * over the characters, without creating intermediate strings and without using
+ * exceptions for control flow. An exception is only thrown when the text
+ * matches neither layout. Each formatter fills a single char array.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+final class TemporalFormat {
+
+	private static final int MAX_FRACTION_DIGITS = 6;
+
+	private TemporalFormat() {
+		// not instantiable
+	}
+
+	/**
+	 * Parses "yyyy-MM-dd HH:mm:ss[.S{0,6}]" (read layout) or
+	 * "yyyy-MM-dd-HH.mm.ss[.S{0,6}]" (write layout).
+	 */
+	static LocalDateTime parseLocalDateTime(CharSequence text) {
+		int length = text.length();
+		if (length < 19 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+			throw parseException("LocalDateTime", text, 0);
+		}
+		char dateTimeSeparator = text.charAt(10);
+		char timeSeparator;
+		if (dateTimeSeparator == ' ') {
+			timeSeparator = ':';
+		} else if (dateTimeSeparator == '-') {
+			timeSeparator = '.';
+		} else {
+			throw parseException("LocalDateTime", text, 10);
+		}
+		if (text.charAt(13) != timeSeparator || text.charAt(16) != timeSeparator) {
+			throw parseException("LocalDateTime", text, 13);
+		}
+		int year = digits(text, 0, 4);
+		int month = digits(text, 5, 2);
+		int day = digits(text, 8, 2);
+		int hour = digits(text, 11, 2);
+		int minute = digits(text, 14, 2);
+		int second = digits(text, 17, 2);
+		int nano = 0;
+		if (length > 19) {
+			int fractionDigits = length - 20;
+			if (text.charAt(19) != '.' || fractionDigits > MAX_FRACTION_DIGITS) {
+				throw parseException("LocalDateTime", text, 19);
+			}
+			nano = fractionDigits == 0 ? 0 : digits(text, 20, fractionDigits);
+			for (int i = fractionDigits; i < 9; i++) {
+				nano *= 10;
+			}
+		}
+		if (year < 1 || (year | month | day | hour | minute | second | nano) < 0) {
+			throw parseException("LocalDateTime", text, 0);
+		}
+		return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+	}
+
+	/**
+	 * Parses "yyyy-MM-dd" (read layout) or "dd.MM.yyyy" (write layout).
+	 */
+	static LocalDate parseLocalDate(CharSequence text) {
+		if (text.length() != 10) {
+			throw parseException("LocalDate", text, 0);
+		}
+		int year;
+		int month;
+		int day;
+		if (text.charAt(4) == '-' && text.charAt(7) == '-') {
+			year = digits(text, 0, 4);
+			month = digits(text, 5, 2);
+			day = digits(text, 8, 2);
+		} else if (text.charAt(2) == '.' && text.charAt(5) == '.') {
+			day = digits(text, 0, 2);
+			month = digits(text, 3, 2);
+			year = digits(text, 6, 4);
+		} else {
+			throw parseException("LocalDate", text, 0);
+		}
+		if (year < 1 || (month | day) < 0) {
+			throw parseException("LocalDate", text, 0);
+		}
+		return LocalDate.of(year, month, day);
+	}
+
+	/**
+	 * Parses "HH:mm:ss" (read layout) or "HH.mm.ss" (write layout).
+	 */
+	static LocalTime parseLocalTime(CharSequence text) {
+		if (text.length() != 8) {
+			throw parseException("LocalTime", text, 0);
+		}
+		char separator = text.charAt(2);
+		if ((separator != ':' && separator != '.') || text.charAt(5) != separator) {
+			throw parseException("LocalTime", text, 2);
+		}
+		int hour = digits(text, 0, 2);
+		int minute = digits(text, 3, 2);
+		int second = digits(text, 6, 2);
+		if ((hour | minute | second) < 0) {
+			throw parseException("LocalTime", text, 0);
+		}
+		return LocalTime.of(hour, minute, second);
+	}
+
+	/**
+	 * Formats "yyyy-MM-dd-HH.mm.ss.SSSSSS", or returns null if the year is out of
+	 * the four digits range.
+	 */
+	static String formatLocalDateTime(LocalDateTime dateTime) {
+		int year = dateTime.getYear();
+		if (year < 1 || year > 9999) {
+			return null;
+		}
+		char[] chars = new char[26];
+		putDigits(chars, 0, year, 4);
+		chars[4] = '-';
+		putDigits(chars, 5, dateTime.getMonthValue(), 2);
+		chars[7] = '-';
+		putDigits(chars, 8, dateTime.getDayOfMonth(), 2);
+		chars[10] = '-';
+		putDigits(chars, 11, dateTime.getHour(), 2);
+		chars[13] = '.';
+		putDigits(chars, 14, dateTime.getMinute(), 2);
+		chars[16] = '.';
+		putDigits(chars, 17, dateTime.getSecond(), 2);
+		chars[19] = '.';
+		putDigits(chars, 20, dateTime.getNano() / 1000, 6);
+		return new String(chars);
+	}
+
+	/**
+	 * Formats "dd.MM.yyyy", or returns null if the year is out of the four digits
+	 * range.
+	 */
+	static String formatLocalDate(LocalDate date) {
+		int year = date.getYear();
+		if (year < 1 || year > 9999) {
+			return null;
+		}
+		char[] chars = new char[10];
+		putDigits(chars, 0, date.getDayOfMonth(), 2);
+		chars[2] = '.';
+		putDigits(chars, 3, date.getMonthValue(), 2);
+		chars[5] = '.';
+		putDigits(chars, 6, year, 4);
+		return new String(chars);
+	}
+
+	/**
+	 * Formats "HH.mm.ss".
+	 */
+	static String formatLocalTime(LocalTime time) {
+		char[] chars = new char[8];
+		putDigits(chars, 0, time.getHour(), 2);
+		chars[2] = '.';
+		putDigits(chars, 3, time.getMinute(), 2);
+		chars[5] = '.';
+		putDigits(chars, 6, time.getSecond(), 2);
+		return new String(chars);
+	}
+
+	/**
+	 * Reads a fixed number of ASCII digits.
+	 *
+	 * @return the value, or -1 if a character is not a digit
+	 */
+	private static int digits(CharSequence text, int offset, int count) {
+		int value = 0;
+		for (int i = offset, end = offset + count; i < end; i++) {
+			int digit = text.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	private static void putDigits(char[] chars, int offset, int value, int count) {
+		for (int i = offset + count - 1; i >= offset; i--) {
+			chars[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+
+	private static DateTimeParseException parseException(String type, CharSequence text, int errorIndex) {
+		return new DateTimeParseException("Text '" + text + "' could not be parsed to " + type, text, errorIndex);
+	}
+
+}
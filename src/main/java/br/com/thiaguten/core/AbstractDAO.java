@@ -2,25 +2,49 @@ package br.com.thiaguten.core;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import javax.persistence.Cache;
+import javax.persistence.CacheStoreMode;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
+import javax.persistence.OptimisticLockException;
 import javax.persistence.PersistenceException;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
 import javax.persistence.criteria.Selection;
 
 import org.hibernate.Criteria;
+import org.hibernate.FlushMode;
+import org.hibernate.Hibernate;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
+import org.hibernate.StatelessSession;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Projections;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.jpa.AvailableSettings;
 import org.hibernate.jpa.QueryHints;
+import org.hibernate.persister.entity.EntityPersister;
 import org.hibernate.transform.ResultTransformer;
 
 /**
@@ -35,6 +59,13 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
 
     private final Class<T> persistenceClass;
     private final Class<ID> identifierClass;
+    private volatile GridQueryMirror<ID, T> gridQueryMirror;
+    private volatile AffinityExecution<ID, T> affinityExecution;
+    private volatile SingleFlight<ID> singleFlight;
+    private volatile boolean readOnly;
+    private volatile OptimisticRetryPolicy optimisticRetryPolicy = OptimisticRetryPolicy.DEFAULT;
+    private final AtomicLong optimisticConflictCount = new AtomicLong();
+    private volatile PersistenceHelper persistenceHelper;
 
     /**
      * Construct a AbstractDAO.
@@ -57,26 +88,43 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
         return getTransaction().isActive();
     }
 
+    // the transactions of the caller begun by PersistenceHelper.beginTransaction are joined, not ended
+
     protected void beginTransaction() {
-        if (!isTransactionActive()) {
-            getTransaction().begin();
-        }
+        getPersistenceHelper().beginTransaction();
     }
 
     protected void commitTransaction() {
-        if (isTransactionActive()) {
-            getTransaction().commit();
-        }
+        getPersistenceHelper().commitTransaction();
     }
 
     protected void rollbackTransaction() {
-        if (isTransactionActive()) {
-            getTransaction().rollback();
-        }
+        getPersistenceHelper().rollbackTransaction();
     }
 
     protected void closeEntityManager() {
-        PersistenceHelper.closeEntityManagerInstance();
+        getPersistenceHelper().closeEntityManager();
+    }
+
+    /**
+     * Get the persistence helper of the entity managers of this DAO.
+     *
+     * @return the persistence helper, the singleton instance unless another one is set
+     */
+    public PersistenceHelper getPersistenceHelper() {
+        PersistenceHelper helper = persistenceHelper;
+        return null == helper ? PersistenceHelper.getInstance() : helper;
+    }
+
+    /**
+     * Set the persistence helper of the entity managers of this DAO, e.g. the
+     * one of a node of an in-JVM cluster.
+     *
+     * @param persistenceHelper the persistence helper, or null to use the singleton instance
+     * @see PersistenceHelper#newInstance()
+     */
+    public void setPersistenceHelper(PersistenceHelper persistenceHelper) {
+        this.persistenceHelper = persistenceHelper;
     }
 
     /**
@@ -97,12 +145,180 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
         return getEntityManager().unwrap(Session.class);
     }
 
+    /**
+     * Get the grid query mirror.
+     *
+     * @return the grid query mirror, or null if queries always run in the database
+     */
+    public GridQueryMirror<ID, T> getGridQueryMirror() {
+        return gridQueryMirror;
+    }
+
+    /**
+     * Enable the grid-side read path: eligible {@code findByQuery...} and
+     * {@code countByQuery...} calls run as distributed Ignite SQL over the mirror,
+     * which is kept in sync by the writes of this DAO. The cacheable calls keep
+     * running in the database, their results cached in their query region.
+     *
+     * @param gridQueryMirror the grid query mirror, or null to always query the database
+     * @see GridQueryMirror
+     */
+    public void setGridQueryMirror(GridQueryMirror<ID, T> gridQueryMirror) {
+        this.gridQueryMirror = gridQueryMirror;
+    }
+
+    /**
+     * Get the affinity execution.
+     *
+     * @return the affinity execution, or null if the operations run on the calling node
+     */
+    public AffinityExecution<ID, T> getAffinityExecution() {
+        return affinityExecution;
+    }
+
+    /**
+     * Enable the affinity execution: {@link #findById(Serializable)},
+     * {@link #saveOrUpdate(Persistable)}, {@link #delete(Persistable)} and
+     * {@link #deleteById(Serializable)} run on the node owning the identifier,
+     * the find returning the whole aggregate. The operations within a
+     * transaction run on the calling node, so they take part in it.
+     *
+     * @param affinityExecution the affinity execution, or null to run the operations on the calling node
+     * @see AffinityExecution
+     */
+    public void setAffinityExecution(AffinityExecution<ID, T> affinityExecution) {
+        this.affinityExecution = affinityExecution;
+    }
+
+    // the owner node would run the operation in its own transaction, out of reach of the caller's rollback
+    private boolean isRouted(AffinityExecution<ID, T> affinity) {
+        return affinity.isRouted() && !getPersistenceHelper().isTransactionActive();
+    }
+
+    /**
+     * Get the single flight of the finds by identifier.
+     *
+     * @return the single flight, or null if every find loads its entities
+     */
+    public SingleFlight<ID> getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * Enable the single flight of {@link #findById(Serializable)} and
+     * {@link #findByIds(List)}: the concurrent finds of an identifier wait for
+     * the first one, and then find it in the L2 cache, instead of all of them
+     * querying the database when the entity is not cached. The finds within a
+     * transaction bypass it, so they see the writes of their transaction. The
+     * finds of the single flight are never routed to a replica, whose reads
+     * are not put in the L2 cache the waiting finds read.
+     *
+     * @param singleFlight the single flight, or null to let every find load its entities
+     * @see SingleFlight
+     */
+    public void setSingleFlight(SingleFlight<ID> singleFlight) {
+        this.singleFlight = singleFlight;
+    }
+
+    /**
+     * Checks if the read operations run in read-only mode.
+     *
+     * @return true if the read operations run in read-only mode, otherwise false
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Enable or disable the read-only mode of the {@code find*}, {@code count*}
+     * and {@code max*} operations. In read-only mode the loaded entities are
+     * read-only, so Hibernate keeps no snapshot of their state for dirty
+     * checking, and the session is never flushed before a query.
+     * <p>
+     * Reads that run inside an active transaction are never switched to
+     * read-only mode, so they still see (and flush) the pending changes.
+     *
+     * @param readOnly true to enable the read-only mode
+     */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Get the retry policy of the updates rejected by optimistic locking.
+     *
+     * @return the optimistic retry policy
+     */
+    public OptimisticRetryPolicy getOptimisticRetryPolicy() {
+        return optimisticRetryPolicy;
+    }
+
+    /**
+     * Set the retry policy of the updates rejected by optimistic locking.
+     *
+     * @param optimisticRetryPolicy the optimistic retry policy
+     * @see #saveOrUpdate(Persistable, ConflictResolver)
+     */
+    public void setOptimisticRetryPolicy(OptimisticRetryPolicy optimisticRetryPolicy) {
+        this.optimisticRetryPolicy = Objects.requireNonNull(optimisticRetryPolicy,
+                "optimisticRetryPolicy parameter must not be null");
+    }
+
+    /**
+     * Get the number of updates of {@link #saveOrUpdate(Persistable, ConflictResolver)}
+     * rejected by optimistic locking so far, including the ones resolved by a
+     * retry.
+     *
+     * @return the optimistic locking conflict count
+     */
+    public long getOptimisticConflictCount() {
+        return optimisticConflictCount.get();
+    }
+
+    /**
+     * Get the entity manager of a read operation, switched to read-only mode
+     * when it is enabled and no transaction is active. Reads that run outside of
+     * a transaction are routed to a read-only replica when replicas are
+     * configured, and only read the L2 cache: a replica may lag behind the
+     * primary, so what it returns is never put in the cache shared by all the
+     * nodes.
+     *
+     * @return entity manager instance
+     * @see PersistenceHelper#routeToReplica()
+     */
+    protected EntityManager getReadEntityManager() {
+        return getReadEntityManager(true);
+    }
+
+    /**
+     * Get the entity manager of a read operation, switched to read-only mode
+     * when it is enabled and no transaction is active.
+     *
+     * @param replica true if the read may run in a read-only replica when no transaction is active
+     * @return entity manager instance
+     */
+    protected EntityManager getReadEntityManager(boolean replica) {
+        EntityManager entityManager = getEntityManager();
+        if (!entityManager.getTransaction().isActive()) {
+            if (readOnly) {
+                Session session = entityManager.unwrap(Session.class);
+                session.setDefaultReadOnly(true);
+                session.setFlushMode(FlushMode.MANUAL);
+            }
+            if (replica && getPersistenceHelper().getReplicaRoutingDataSource() != null) {
+                entityManager.setProperty(AvailableSettings.SHARED_CACHE_STORE_MODE, CacheStoreMode.BYPASS);
+                getPersistenceHelper().routeToReplica();
+            }
+        }
+        return entityManager;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public EntityManager getEntityManager() {
-        return PersistenceHelper.getEntityManagerInstance();
+        return getPersistenceHelper().getEntityManager();
     }
 
     /**
@@ -110,7 +326,7 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
      */
     @Override
     public EntityManagerFactory getEntityManagerFactory() {
-        return PersistenceHelper.getEntityManagerFactoryInstance();
+        return getPersistenceHelper().getEntityManagerFactory();
     }
 
     /**
@@ -129,6 +345,36 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
         return identifierClass;
     }
 
+    /**
+     * Reject the versioned entities with an identifier but without a version
+     * whose row exists, e.g. a detached copy built by hand: merge takes an
+     * entity without a version for a new one, and would insert it again. The
+     * new entities, whose identifier is assigned before they are saved, have no
+     * row yet.
+     */
+    private void requireVersions(EntityManager entityManager, List<T> entities) {
+        List<ID> ids = new ArrayList<>();
+        for (T entity : entities) {
+            if (entity instanceof AbstractVersionedEntity && entity.hasID() && null == entity.getVersion()) {
+                ids.add(entity.getId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ID> criteriaQuery = criteriaBuilder.createQuery(identifierClass);
+        Root<T> root = criteriaQuery.from(persistenceClass);
+        Path<ID> id = root.get(entityManager.getMetamodel().entity(persistenceClass).getId(identifierClass));
+        List<ID> existingIds = entityManager.createQuery(criteriaQuery.select(id).where(id.in(ids)))
+                .setMaxResults(1)
+                .getResultList();
+        if (!existingIds.isEmpty()) {
+            throw new PersistenceException("Entity " + persistenceClass.getName() + " #" + existingIds.get(0)
+                    + " has no version: read it before updating it");
+        }
+    }
+
     private T saveOrUpdateBehavior(EntityManager entityManager, T entity) {
         if (entity.hasID()) {
             // creates a new managed instance by coping the state from the passed entity
@@ -145,11 +391,19 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
      */
     @Override
     public T saveOrUpdate(T entity) {
+        AffinityExecution<ID, T> affinity = affinityExecution;
+        if (affinity != null && entity.getId() != null && isRouted(affinity)) {
+            return affinity.saveOrUpdate(entity);
+        }
         EntityManager entityManager = getEntityManager();
         try {
             beginTransaction();
+            requireVersions(entityManager, Collections.singletonList(entity));
             entity = saveOrUpdateBehavior(entityManager, entity);
             commitTransaction();
+            if (gridQueryMirror != null) {
+                gridQueryMirror.put(entity);
+            }
             return entity;
         } catch (Exception e) {
             rollbackTransaction();
@@ -159,6 +413,59 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T saveOrUpdate(T entity, ConflictResolver<T> conflictResolver) {
+        OptimisticRetryPolicy retryPolicy = optimisticRetryPolicy;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return saveOrUpdate(entity);
+            } catch (PersistenceException e) {
+                if (!isOptimisticLockFailure(e)) {
+                    throw e;
+                }
+                optimisticConflictCount.incrementAndGet();
+                if (null == conflictResolver || attempt >= retryPolicy.getMaxAttempts()) {
+                    throw e;
+                }
+                retryPolicy.backoff(attempt);
+                // the current state is read in a transaction, so it is never served by a stale replica
+                T current = findCurrent(entity.getId());
+                T resolved = null == current ? null : conflictResolver.resolve(current, entity);
+                if (null == resolved) {
+                    throw e;
+                }
+                entity = resolved;
+            }
+        }
+    }
+
+    private T findCurrent(ID id) {
+        EntityManager entityManager = getEntityManager();
+        try {
+            beginTransaction();
+            T current = entityManager.find(persistenceClass, id);
+            commitTransaction();
+            return current;
+        } catch (Exception e) {
+            rollbackTransaction();
+            throw e;
+        } finally {
+            closeEntityManager();
+        }
+    }
+
+    private static boolean isOptimisticLockFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException || cause instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -177,12 +484,18 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
                     entityManager.flush();
                     entityManager.clear();
                 }
+                if (i % batchSize == 0) {
+                    requireVersions(entityManager, entities.subList(i, Math.min(i + batchSize, entityCount)));
+                }
 
                 T entity = saveOrUpdateBehavior(entityManager, entities.get(i));
                 entityList.add(entity);
             }
 
             commitTransaction();
+            if (gridQueryMirror != null) {
+                gridQueryMirror.putAll(entityList);
+            }
             return entityList;
         } catch (Exception e) {
             rollbackTransaction();
@@ -197,7 +510,20 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
      */
     @Override
     public T findById(ID id) {
-        EntityManager entityManager = getEntityManager();
+        AffinityExecution<ID, T> affinity = affinityExecution;
+        if (affinity != null && id != null && isRouted(affinity)) {
+            return affinity.findById(id);
+        }
+        SingleFlight<ID> flight = singleFlight;
+        if (flight != null && id != null && !getPersistenceHelper().isTransactionActive()) {
+            // the waiting finds read what the first one put in the L2 cache, which a replica read never puts
+            return flight.load(id, sharedId -> findByIdBehavior(sharedId, false));
+        }
+        return findByIdBehavior(id, true);
+    }
+
+    private T findByIdBehavior(ID id, boolean replica) {
+        EntityManager entityManager = getReadEntityManager(replica);
         try {
             return entityManager.find(persistenceClass, id);
         } finally {
@@ -205,6 +531,106 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The entities are read from the L2 cache one by one, and the ones not
+     * cached are loaded by a single query. The finds always run on the calling
+     * node, even with an {@link AffinityExecution}.
+     */
+    @Override
+    public List<T> findByIds(List<ID> ids) {
+        Objects.requireNonNull(ids, "ids parameter must not be null");
+        SingleFlight<ID> flight = singleFlight;
+        if (flight != null && !getPersistenceHelper().isTransactionActive()) {
+            // the waiting finds read what the first one put in the L2 cache, which a replica read never puts
+            return new ArrayList<>(flight.loadAll(ids, sharedIds -> findByIdsBehavior(sharedIds, false),
+                    Persistable::getId).values());
+        }
+        Map<ID, T> entities = new HashMap<>();
+        for (T entity : findByIdsBehavior(ids, true)) {
+            entities.put(entity.getId(), entity);
+        }
+        List<T> found = new ArrayList<>(entities.size());
+        for (ID id : new LinkedHashSet<>(ids)) {
+            T entity = entities.get(id);
+            if (null != entity) {
+                found.add(entity);
+            }
+        }
+        return found;
+    }
+
+    private List<T> findByIdsBehavior(List<ID> ids, boolean replica) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        EntityManager entityManager = getReadEntityManager(replica);
+        try {
+            // the multiple load of Hibernate 5.1 always queries the database, so the cached entities are found first
+            Cache cache = entityManager.getEntityManagerFactory().getCache();
+            List<T> entities = new ArrayList<>(ids.size());
+            List<ID> uncachedIds = new ArrayList<>(ids.size());
+            for (ID id : ids) {
+                T entity = cache.contains(persistenceClass, id) ? entityManager.find(persistenceClass, id) : null;
+                if (entity != null) {
+                    entities.add(entity);
+                } else {
+                    uncachedIds.add(id);
+                }
+            }
+            if (!uncachedIds.isEmpty()) {
+                // the entities not found are left out of the result
+                for (T entity : entityManager.unwrap(Session.class).byMultipleIds(persistenceClass).multiLoad(uncachedIds)) {
+                    if (entity != null) {
+                        entities.add(entity);
+                    }
+                }
+            }
+            return entities;
+        } finally {
+            closeEntityManager();
+        }
+    }
+
+    /**
+     * Find an entity with its associations initialized, so it can be navigated
+     * once detached, on another node too.
+     *
+     * @param id the identifier
+     * @return the entity found, or null if not found
+     */
+    T findAggregateById(ID id) {
+        EntityManager entityManager = getReadEntityManager();
+        try {
+            T entity = entityManager.find(persistenceClass, id);
+            if (entity != null) {
+                initializeAssociations(entityManager, persistenceClass, entity);
+            }
+            return entity;
+        } finally {
+            closeEntityManager();
+        }
+    }
+
+    /**
+     * Initialize the associations of a managed entity.
+     *
+     * @param entityManager    the entity manager of the entity
+     * @param persistenceClass the persistent class
+     * @param entity           the entity
+     */
+    static void initializeAssociations(EntityManager entityManager, Class<?> persistenceClass, Object entity) {
+        SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class);
+        EntityPersister persister = sessionFactory.getEntityPersister(persistenceClass.getName());
+        for (int i = 0; i < persister.getPropertyTypes().length; i++) {
+            if (persister.getPropertyTypes()[i].isAssociationType()) {
+                Hibernate.initialize(persister.getPropertyValue(entity, i));
+            }
+        }
+    }
+
 //		public T findById(ID id, String graphName) {
 //			return findById(id, false, graphName);
 //		}
@@ -235,6 +661,11 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
         if (null == id) {
             throw new PersistenceException("Could not delete. ID is null.");
         }
+        AffinityExecution<ID, T> affinity = affinityExecution;
+        if (affinity != null && isRouted(affinity)) {
+            affinity.deleteById(id);
+            return;
+        }
 
         EntityManager entityManager = getEntityManager();
         try {
@@ -242,6 +673,9 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
             T entity = entityManager.getReference(persistenceClass, id);
             entityManager.remove(entity);
             commitTransaction();
+            if (gridQueryMirror != null) {
+                gridQueryMirror.remove(id);
+            }
         } catch (Exception e) {
             rollbackTransaction();
             throw e;
@@ -263,14 +697,20 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
      */
     @Override
     public Long countAll(boolean cacheable) {
-        EntityManager entityManager = getEntityManager();
+        return countAll(queryRegion(cacheable));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long countAll(QueryRegion queryRegion) {
+        EntityManager entityManager = getReadEntityManager();
         try {
             CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
             CriteriaQuery<Long> criteriaQuery = criteriaBuilder.createQuery(Long.class);
             criteriaQuery.select(criteriaBuilder.count(criteriaQuery.from(persistenceClass)));
-            Long countResult = entityManager.createQuery(criteriaQuery)
-                    .setHint(QueryHints.HINT_CACHEABLE, cacheable)
-                    .getSingleResult();
+            Long countResult = cacheIn(entityManager.createQuery(criteriaQuery), queryRegion).getSingleResult();
             return null == countResult ? 0L : countResult;
         } finally {
             closeEntityManager();
@@ -290,7 +730,23 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
      */
     @Override
     public <R extends Number> R countByQuery(Class<R> resultClass, boolean cacheable, String query, Object... params) {
-        EntityManager entityManager = getEntityManager();
+        return countByQuery(resultClass, queryRegion(cacheable), query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R extends Number> R countByQuery(Class<R> resultClass, QueryRegion queryRegion, String query,
+                                             Object... params) {
+        // the cacheable queries are answered by their query cache region instead
+        if (gridQueryMirror != null && queryRegion == null) {
+            R countResult = gridQueryMirror.count(resultClass, query, positionalParams(params));
+            if (countResult != null) {
+                return countResult;
+            }
+        }
+        EntityManager entityManager = getReadEntityManager();
         try {
             TypedQuery<R> typedQuery = entityManager.createQuery(query, resultClass);
             if (params != null) {
@@ -298,7 +754,7 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
                     typedQuery.setParameter(i + 1, params[i]); // JPQL Positional Parameters starts from 1
                 }
             }
-            return typedQuery.setHint(QueryHints.HINT_CACHEABLE, cacheable).getSingleResult();
+            return cacheIn(typedQuery, queryRegion).getSingleResult();
         } finally {
             closeEntityManager();
         }
@@ -317,13 +773,29 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
      */
     @Override
     public <R extends Number> R countByQueryAndNamedParams(Class<R> resultClass, boolean cacheable, String query, Map<String, ?> params) {
-        EntityManager entityManager = getEntityManager();
+        return countByQueryAndNamedParams(resultClass, queryRegion(cacheable), query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R extends Number> R countByQueryAndNamedParams(Class<R> resultClass, QueryRegion queryRegion, String query,
+                                                           Map<String, ?> params) {
+        // the cacheable queries are answered by their query cache region instead
+        if (gridQueryMirror != null && queryRegion == null) {
+            R countResult = gridQueryMirror.count(resultClass, query, params);
+            if (countResult != null) {
+                return countResult;
+            }
+        }
+        EntityManager entityManager = getReadEntityManager();
         try {
             TypedQuery<R> typedQuery = entityManager.createQuery(query, resultClass);
             if (params != null) {
                 params.forEach(typedQuery::setParameter);
             }
-            return typedQuery.setHint(QueryHints.HINT_CACHEABLE, cacheable).getSingleResult();
+            return cacheIn(typedQuery, queryRegion).getSingleResult();
         } finally {
             closeEntityManager();
         }
@@ -350,13 +822,19 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
      */
     @Override
     public List<T> findAll(boolean cacheable, int firstResult, int maxResults) {
-        EntityManager entityManager = getEntityManager();
+        return findAll(queryRegion(cacheable), firstResult, maxResults);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findAll(QueryRegion queryRegion, int firstResult, int maxResults) {
+        EntityManager entityManager = getReadEntityManager();
         try {
             CriteriaQuery<T> cq = entityManager.getCriteriaBuilder().createQuery(persistenceClass);
             TypedQuery<T> createQuery = entityManager.createQuery(cq.select(cq.from(persistenceClass)));
-            return queryRange(createQuery, firstResult, maxResults)
-                    .setHint(QueryHints.HINT_CACHEABLE, cacheable)
-                    .getResultList();
+            return cacheIn(queryRange(createQuery, firstResult, maxResults), queryRegion).getResultList();
         } finally {
             closeEntityManager();
         }
@@ -387,7 +865,8 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
         if ((null == attributeName || attributeName.trim().isEmpty()) || null == attributeClass) {
             throw new PersistenceException("attributeName/attributeClass must not be null or empty");
         }
-        EntityManager entityManager = getEntityManager();
+        // never routed to a replica, identifiers are seeded from the max values
+        EntityManager entityManager = getReadEntityManager(false);
         try {
             CriteriaBuilder cb = entityManager.getCriteriaBuilder();
             CriteriaQuery<R> cq = cb.createQuery(attributeClass);
@@ -432,12 +911,36 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
         return findByQuery(cacheable, -1, -1, query, params);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByQuery(QueryRegion queryRegion, String query, Object... params) {
+        return findByQuery(queryRegion, -1, -1, query, params);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public List<T> findByQuery(boolean cacheable, int firstResult, int maxResults, String query, Object... params) {
-        EntityManager entityManager = getEntityManager();
+        return findByQuery(queryRegion(cacheable), firstResult, maxResults, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByQuery(QueryRegion queryRegion, int firstResult, int maxResults, String query,
+                               Object... params) {
+        // the cacheable queries are answered by their query cache region instead
+        if (gridQueryMirror != null && queryRegion == null) {
+            List<T> entities = findByGridQuery(query, positionalParams(params), firstResult, maxResults);
+            if (entities != null) {
+                return entities;
+            }
+        }
+        EntityManager entityManager = getReadEntityManager();
         try {
             TypedQuery<T> typedQuery = entityManager.createQuery(query, persistenceClass);
             if (params != null) {
@@ -445,9 +948,7 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
                     typedQuery.setParameter(i + 1, params[i]); // JPQL Positional Parameters starts from 1
                 }
             }
-            return queryRange(typedQuery, firstResult, maxResults)
-                    .setHint(QueryHints.HINT_CACHEABLE, cacheable)
-                    .getResultList();
+            return cacheIn(queryRange(typedQuery, firstResult, maxResults), queryRegion).getResultList();
         } finally {
             closeEntityManager();
         }
@@ -469,26 +970,252 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
         return findByQueryAndNamedParams(cacheable, -1, -1, query, params);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByQueryAndNamedParams(QueryRegion queryRegion, String query, Map<String, ?> params) {
+        return findByQueryAndNamedParams(queryRegion, -1, -1, query, params);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public List<T> findByQueryAndNamedParams(boolean cacheable, int firstResult, int maxResults, String query,
                                              Map<String, ?> params) {
-        EntityManager entityManager = getEntityManager();
+        return findByQueryAndNamedParams(queryRegion(cacheable), firstResult, maxResults, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByQueryAndNamedParams(QueryRegion queryRegion, int firstResult, int maxResults, String query,
+                                             Map<String, ?> params) {
+        // the cacheable queries are answered by their query cache region instead
+        if (gridQueryMirror != null && queryRegion == null) {
+            List<T> entities = findByGridQuery(query, params, firstResult, maxResults);
+            if (entities != null) {
+                return entities;
+            }
+        }
+        EntityManager entityManager = getReadEntityManager();
         try {
             TypedQuery<T> typedQuery = entityManager.createQuery(query, persistenceClass);
             if (params != null) {
                 params.forEach(typedQuery::setParameter);
             }
-            return queryRange(typedQuery, firstResult, maxResults)
-                    .setHint(QueryHints.HINT_CACHEABLE, cacheable)
-                    .getResultList();
+            return cacheIn(queryRange(typedQuery, firstResult, maxResults), queryRegion).getResultList();
+        } finally {
+            closeEntityManager();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> List<R> findByQuery(Class<R> resultClass, String query, Object... params) {
+        return findByQuery(resultClass, false, -1, -1, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> List<R> findByQuery(Class<R> resultClass, boolean cacheable, int firstResult, int maxResults,
+                                   String query, Object... params) {
+        return findByQuery(resultClass, queryRegion(cacheable), firstResult, maxResults, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> List<R> findByQuery(Class<R> resultClass, QueryRegion queryRegion, int firstResult, int maxResults,
+                                   String query, Object... params) {
+        EntityManager entityManager = getReadEntityManager();
+        try {
+            Query projectionQuery = entityManager.createQuery(query);
+            if (params != null) {
+                for (int i = 0; i < params.length; i++) {
+                    projectionQuery.setParameter(i + 1, params[i]); // JPQL Positional Parameters starts from 1
+                }
+            }
+            return findByProjectionQuery(resultClass, queryRegion, firstResult, maxResults, projectionQuery);
         } finally {
             closeEntityManager();
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> List<R> findByQueryAndNamedParams(Class<R> resultClass, String query, Map<String, ?> params) {
+        return findByQueryAndNamedParams(resultClass, false, -1, -1, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> List<R> findByQueryAndNamedParams(Class<R> resultClass, boolean cacheable, int firstResult,
+                                                 int maxResults, String query, Map<String, ?> params) {
+        return findByQueryAndNamedParams(resultClass, queryRegion(cacheable), firstResult, maxResults, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> List<R> findByQueryAndNamedParams(Class<R> resultClass, QueryRegion queryRegion, int firstResult,
+                                                 int maxResults, String query, Map<String, ?> params) {
+        EntityManager entityManager = getReadEntityManager();
+        try {
+            Query projectionQuery = entityManager.createQuery(query);
+            if (params != null) {
+                params.forEach(projectionQuery::setParameter);
+            }
+            return findByProjectionQuery(resultClass, queryRegion, firstResult, maxResults, projectionQuery);
+        } finally {
+            closeEntityManager();
+        }
+    }
+
+    private <R> List<R> findByProjectionQuery(Class<R> resultClass, QueryRegion queryRegion, int firstResult,
+                                              int maxResults, Query query) {
+        if (maxResults >= 0) {
+            query.setMaxResults(maxResults);
+        }
+        if (firstResult >= 0) {
+            query.setFirstResult(firstResult);
+        }
+        List<?> results = cacheIn(query, queryRegion)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultList();
+        ProjectionMapper<R> mapper = new ProjectionMapper<>(resultClass);
+        List<R> resultList = new ArrayList<>(results.size());
+        for (Object result : results) {
+            resultList.add(mapper.apply(result));
+        }
+        return resultList;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> Stream<R> streamByQuery(Class<R> resultClass, String query, Object... params) {
+        return streamByProjectionQuery(resultClass, query, hibernateQuery -> {
+            if (params != null) {
+                for (int i = 0; i < params.length; i++) {
+                    // JPQL Positional Parameters starts from 1 and are named by its position
+                    hibernateQuery.setParameter(Integer.toString(i + 1), params[i]);
+                }
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> Stream<R> streamByQueryAndNamedParams(Class<R> resultClass, String query, Map<String, ?> params) {
+        return streamByProjectionQuery(resultClass, query, hibernateQuery -> {
+            if (params != null) {
+                params.forEach(hibernateQuery::setParameter);
+            }
+        });
+    }
+
+    private <R> Stream<R> streamByProjectionQuery(Class<R> resultClass, String query,
+                                                  Consumer<org.hibernate.Query> parameterBinder) {
+        // a stateless session has no persistence context at all
+        StatelessSession statelessSession = getSessionFactory().openStatelessSession();
+        try {
+            org.hibernate.Query hibernateQuery = statelessSession.createQuery(query).setReadOnly(true);
+            parameterBinder.accept(hibernateQuery);
+            ScrollableResults results;
+            // the stateless session uses its own connection, which never sees uncommitted changes, so within a
+            // transaction it reads the primary, which at least sees the ones committed before by the same thread
+            boolean replica = !getPersistenceHelper().isTransactionActive();
+            if (replica) {
+                getPersistenceHelper().routeToReplica();
+            }
+            try {
+                results = hibernateQuery.scroll(ScrollMode.FORWARD_ONLY);
+            } finally {
+                if (replica) {
+                    getPersistenceHelper().routeToPrimary();
+                }
+            }
+            ProjectionMapper<R> mapper = new ProjectionMapper<>(resultClass);
+            Spliterator<R> spliterator = new Spliterators.AbstractSpliterator<R>(Long.MAX_VALUE, Spliterator.ORDERED) {
+                @Override
+                public boolean tryAdvance(Consumer<? super R> action) {
+                    if (!results.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.apply(results.get()));
+                    return true;
+                }
+            };
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                try {
+                    results.close();
+                } finally {
+                    statelessSession.close();
+                }
+            });
+        } catch (RuntimeException e) {
+            statelessSession.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Find by query in the grid, loading the selected entities through the
+     * persistence context, from the L2 cache, and the ones not cached by a
+     * single query, in the order of the grid.
+     *
+     * @return the list of entities, or null if the query is not eligible to run in the grid
+     */
+    private List<T> findByGridQuery(String query, Map<String, ?> params, int firstResult, int maxResults) {
+        List<ID> ids = gridQueryMirror.findIds(query, params, firstResult, maxResults);
+        if (null == ids) {
+            return null;
+        }
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // the cached entities first, then the others in one query, instead of one query per entity
+        Map<ID, T> found = new HashMap<>();
+        for (T entity : findByIdsBehavior(ids, true)) {
+            found.put(entity.getId(), entity);
+        }
+        List<T> entities = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            T entity = found.get(id);
+            if (entity != null) {
+                entities.add(entity);
+            }
+        }
+        return entities;
+    }
+
+    private static Map<String, Object> positionalParams(Object... params) {
+        if (null == params) {
+            return Collections.emptyMap();
+        }
+        Map<String, Object> namedParams = new HashMap<>();
+        for (int i = 0; i < params.length; i++) {
+            namedParams.put(Integer.toString(i + 1), params[i]); // JPQL Positional Parameters starts from 1
+        }
+        return namedParams;
+    }
+
     protected TypedQuery<T> queryRange(TypedQuery<T> query, int firstResult, int maxResults) {
         if (query != null) {
             if (maxResults >= 0) {
@@ -501,6 +1228,27 @@ public abstract class AbstractDAO<ID extends Serializable, T extends Persistable
         return query;
     }
 
+    /**
+     * Cache the results of a query in a query cache region, the default one
+     * unless named.
+     *
+     * @param <Q>         the type of the query
+     * @param query       the query
+     * @param queryRegion the query cache region, or null to not cache the results
+     * @return the query
+     */
+    protected static <Q extends Query> Q cacheIn(Q query, QueryRegion queryRegion) {
+        query.setHint(QueryHints.HINT_CACHEABLE, null != queryRegion);
+        if (null != queryRegion && !queryRegion.isDefault()) {
+            query.setHint(QueryHints.HINT_CACHE_REGION, queryRegion.getName());
+        }
+        return query;
+    }
+
+    private static QueryRegion queryRegion(boolean cacheable) {
+        return cacheable ? QueryRegion.DEFAULT : null;
+    }
+
     // HIBERNATE CRITERION API - TODO Migrate to JPA CRITERIA API!
 
     protected void closeSession(Session session) {
@@ -1,10 +1,16 @@
 package br.com.thiaguten.core;
 
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManagerFactory;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteAtomicLong;
+import org.apache.ignite.IgniteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Thread-safe abstract implementation to get next id as long value.
@@ -23,12 +29,30 @@ import org.apache.ignite.IgniteAtomicLong;
  * (lock-free) menos propensa a erros e SEM synchronized/lock que são custosos e
  * causam lentidão e dead-lock.
  *
+ * <p>
+ * The IDs are never handed out beyond a durable high-water mark ({@link IDHighWaterMark}),
+ * advanced in blocks of IDs (1000 by default) once the IDs of the current block
+ * are exhausted, so only one ID in a block costs a database round trip. When
+ * the atomic long does not exist yet in the cluster (e.g. after a restart of the
+ * whole cluster), one node, holding a cluster-wide lock, creates it from the
+ * high-water mark, reading one row by primary key. The largest ID of the entity
+ * table is only queried when the supplier has no high-water mark yet.
+ *
  * @param <DAO> the persistent class dao
  * @author Thiago Gutenberg Carvalho da Costa
  */
 public abstract class AbstractIDSupplier<DAO extends IDAO<?, ?>> implements IDSupplier {
 
+    private static final Logger logger = LoggerFactory.getLogger(AbstractIDSupplier.class);
+
+    public static final int DEFAULT_BLOCK_SIZE = 1000;
+
     private final DAO dao;
+    private final String atomicLongName;
+    private final IDHighWaterMark highWaterMark;
+    private final int blockSize;
+    // the high-water mark last seen by this node, the IDs up to it can be handed out without a round trip
+    private final AtomicLong reservedLimit = new AtomicLong(Long.MIN_VALUE);
     private final IgniteAtomicLong igniteAtomicLong;
 
     public AbstractIDSupplier(Ignite ignite, DAO dao) {
@@ -36,25 +60,82 @@ public abstract class AbstractIDSupplier<DAO extends IDAO<?, ?>> implements IDSu
     }
 
     public AbstractIDSupplier(Ignite ignite, DAO dao, String name) {
+        this(ignite, dao, name, new IDHighWaterMark(entityManagerFactoryOf(dao)), DEFAULT_BLOCK_SIZE);
+    }
+
+    public AbstractIDSupplier(Ignite ignite, DAO dao, String name, IDHighWaterMark highWaterMark, int blockSize) {
         String cacheName = Objects.requireNonNull(
                 StringUtils.stripToNull(name), "name parameter must not be null/empty/whitespace");
         this.dao = Objects.requireNonNull(dao, "dao parameter must not be null");
-        this.igniteAtomicLong = Objects.requireNonNull(ignite, "ignite parameter must not be null")
-                .atomicLong(dao.getPersistenceClass().getSimpleName() + cacheName, calculateInitialValue(), true);
+        this.highWaterMark = Objects.requireNonNull(highWaterMark, "highWaterMark parameter must not be null");
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize parameter must be greater than zero");
+        }
+        this.blockSize = blockSize;
+        this.atomicLongName = dao.getPersistenceClass().getSimpleName() + cacheName;
+        this.igniteAtomicLong = getOrCreateAtomicLong(Objects.requireNonNull(ignite, "ignite parameter must not be null"));
 
         // Add shutdown hook to close this atomic long cache when the program exits
         // closing any holding resources and to avoid memory leaks
         Runtime.getRuntime().addShutdownHook(new Thread(igniteAtomicLong::close));
     }
 
+    private static EntityManagerFactory entityManagerFactoryOf(IDAO<?, ?> dao) {
+        PersistenceHelper persistenceHelper = dao instanceof AbstractDAO
+                ? ((AbstractDAO<?, ?>) dao).getPersistenceHelper()
+                : PersistenceHelper.getInstance();
+        return persistenceHelper.getEntityManagerFactory();
+    }
+
+    private IgniteAtomicLong getOrCreateAtomicLong(Ignite ignite) {
+        IgniteAtomicLong atomicLong = ignite.atomicLong(atomicLongName, 0L, false);
+        if (atomicLong != null) {
+            return atomicLong;
+        }
+        // only one node calculates the initial value, the others wait for it and find the created atomic long
+        IgniteLock initializationLock = ignite.reentrantLock(atomicLongName + "Initialization", true, false, true);
+        initializationLock.lock();
+        try {
+            atomicLong = ignite.atomicLong(atomicLongName, 0L, false);
+            if (null == atomicLong) {
+                long initialValue = calculateInitialValue();
+                atomicLong = ignite.atomicLong(atomicLongName, initialValue, true);
+                logger.info("Created the ID supplier {} from the initial value {}", atomicLongName, initialValue);
+            }
+            return atomicLong;
+        } finally {
+            initializationLock.unlock();
+        }
+    }
+
+    /**
+     * Calculate the initial value of the atomic long, when it does not exist
+     * yet in the cluster: the high-water mark, or the largest ID of the entity
+     * table if the supplier has no high-water mark yet, which becomes the
+     * high-water mark.
+     *
+     * @return the initial value, the next ID is greater than it
+     */
     protected long calculateInitialValue() {
-        Long initialValue = dao.maxIdAsLong();
-        return null == initialValue ? 0L : initialValue;
+        Long initialValue = highWaterMark.get(atomicLongName);
+        if (null == initialValue) {
+            Long maxId = dao.maxIdAsLong();
+            long migratedValue = null == maxId ? 0L : maxId;
+            initialValue = highWaterMark.advance(atomicLongName, migratedValue, migratedValue);
+        }
+        reservedLimit.accumulateAndGet(initialValue, Math::max);
+        return initialValue;
     }
 
     @Override
     public long getNextIdAsLong() {
-        return igniteAtomicLong.incrementAndGet();
+        long id = igniteAtomicLong.incrementAndGet();
+        if (id > reservedLimit.get()) {
+            // the next block, advanced by the first node (or thread) exhausting the current one
+            long highWater = highWaterMark.advance(atomicLongName, id, id + blockSize - 1);
+            reservedLimit.accumulateAndGet(highWater, Math::max);
+        }
+        return id;
     }
 
     public long getCurrentIdAsLong() {
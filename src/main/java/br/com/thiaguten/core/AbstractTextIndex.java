@@ -0,0 +1,204 @@
+package br.com.thiaguten.core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.cache.Cache;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.CacheAtomicityMode;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.TextQuery;
+import org.apache.ignite.configuration.CacheConfiguration;
+
+/**
+ * Abstract full-text index kept in an Ignite cache whose value type declares
+ * {@link org.apache.ignite.cache.query.annotations.QueryTextField} fields, so
+ * Ignite maintains a Lucene index over them.
+ * <p>
+ * The index only stores searchable documents keyed by the entity identifier.
+ * Searches resolve to identifiers, and the entities themselves are expected to
+ * be loaded afterwards through the persistence context (and therefore through
+ * the L2 cache), which keeps the database out of the search path.
+ * <p>
+ * The index is not transactional with the database: it must be updated after
+ * the write has been committed and it may briefly miss or retain entries,
+ * so callers should re-check the loaded entities.
+ *
+ * @param <ID> the type of the identifier
+ * @param <T>  the type of the persistent class
+ * @param <D>  the type of the indexed document
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public abstract class AbstractTextIndex<ID extends Serializable, T extends Persistable<ID>, D extends Serializable> {
+
+    private final Class<D> documentClass;
+    private final IgniteCache<ID, D> cache;
+
+    public AbstractTextIndex(Ignite ignite, Class<ID> identifierClass, Class<D> documentClass, String name) {
+        String cacheName = Objects.requireNonNull(
+                StringUtils.stripToNull(name), "name parameter must not be null/empty/whitespace");
+        this.documentClass = Objects.requireNonNull(documentClass, "documentClass parameter must not be null");
+
+        CacheConfiguration<ID, D> cacheConfiguration = new CacheConfiguration<>(cacheName);
+        cacheConfiguration.setCacheMode(CacheMode.PARTITIONED);
+        cacheConfiguration.setAtomicityMode(CacheAtomicityMode.ATOMIC);
+        cacheConfiguration.setIndexedTypes(
+                Objects.requireNonNull(identifierClass, "identifierClass parameter must not be null"), documentClass);
+
+        this.cache = Objects.requireNonNull(ignite, "ignite parameter must not be null")
+                .getOrCreateCache(cacheConfiguration);
+    }
+
+    /**
+     * Build the searchable document of an entity.
+     *
+     * @param entity the entity
+     * @return the document to be indexed
+     */
+    protected abstract D toDocument(T entity);
+
+    /**
+     * Build the Lucene query text for a search text.
+     *
+     * @param text the search text
+     * @return the Lucene query text, or null/empty if nothing can be searched
+     */
+    protected abstract String toQueryText(String text);
+
+    /**
+     * Index (or re-index) an entity.
+     *
+     * @param entity the entity to be indexed
+     */
+    public void index(T entity) {
+        if (entity != null && entity.hasID()) {
+            cache.put(entity.getId(), toDocument(entity));
+        }
+    }
+
+    /**
+     * Index (or re-index) entities.
+     *
+     * @param entities the entities to be indexed
+     */
+    public void indexAll(Collection<T> entities) {
+        if (entities != null && !entities.isEmpty()) {
+            Map<ID, D> documents = new LinkedHashMap<>();
+            for (T entity : entities) {
+                if (entity != null && entity.hasID()) {
+                    documents.put(entity.getId(), toDocument(entity));
+                }
+            }
+            putAll(documents);
+        }
+    }
+
+    /**
+     * Index (or re-index) documents built without loading their entities,
+     * e.g. from a projection of the indexed attributes.
+     *
+     * @param documents the documents to be indexed, by entity identifier
+     */
+    protected void putAll(Map<ID, D> documents) {
+        if (!documents.isEmpty()) {
+            cache.putAll(documents);
+        }
+    }
+
+    /**
+     * Remove an entity from the index.
+     *
+     * @param id the entity identifier
+     */
+    public void remove(ID id) {
+        if (id != null) {
+            cache.remove(id);
+        }
+    }
+
+    /**
+     * Search the identifiers of the entities whose documents match the text.
+     *
+     * @param text the search text
+     * @return the matching identifiers, ordered by relevance
+     */
+    public List<ID> search(String text) {
+        return search(text, 0);
+    }
+
+    /**
+     * Search the identifiers of the entities whose documents match the text,
+     * up to a limit, so a text matching most of the documents does not fetch
+     * all of their identifiers.
+     *
+     * @param text  the search text
+     * @param limit the maximum number of identifiers, or 0 for no limit
+     * @return the matching identifiers, ordered by relevance
+     */
+    public List<ID> search(String text, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit parameter must not be negative");
+        }
+        String queryText = toQueryText(text);
+        if (StringUtils.isBlank(queryText)) {
+            return Collections.emptyList();
+        }
+        List<ID> ids = new ArrayList<>();
+        TextQuery<ID, D> query = new TextQuery<ID, D>(documentClass, queryText).setLimit(limit);
+        try (QueryCursor<Cache.Entry<ID, D>> cursor = cache.query(query)) {
+            for (Cache.Entry<ID, D> entry : cursor) {
+                ids.add(entry.getKey());
+                // the limit applies to each node of a partitioned cache
+                if (ids.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Checks if a search text can be expressed as an index query, e.g. it is
+     * not made only of characters the index does not keep. A text that can
+     * not be searched matches no document, so callers should search it
+     * elsewhere.
+     *
+     * @param text the search text
+     * @return true if the text can be searched, otherwise false
+     */
+    public boolean isSearchable(String text) {
+        return StringUtils.isNotBlank(toQueryText(text));
+    }
+
+    /**
+     * Checks if the index has no entries, in the whole cluster, e.g. because
+     * it was just created and must be filled from the database.
+     *
+     * @return true if the index is empty, otherwise false
+     */
+    public boolean isEmpty() {
+        return cache.size() == 0;
+    }
+
+    /**
+     * Remove all entries from the index.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    public Class<D> getDocumentClass() {
+        return documentClass;
+    }
+
+}
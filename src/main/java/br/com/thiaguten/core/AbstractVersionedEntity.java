@@ -0,0 +1,50 @@
+package br.com.thiaguten.core;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.MappedSuperclass;
+import javax.persistence.Version;
+
+/**
+ * Abstract Base Entity class of the entities whose concurrent updates are
+ * detected by a version column (optimistic locking).
+ * <p>
+ * Every update increments the version and only succeeds when the row still
+ * has the version the entity was read with ({@code UPDATE ... WHERE VERSION = ?}),
+ * otherwise the update fails with an
+ * {@link javax.persistence.OptimisticLockException} instead of silently
+ * overwriting the concurrent update.
+ *
+ * @param <ID> primary key
+ * @author Thiago Gutenberg Carvalho da Costa
+ * @see IDAO#saveOrUpdate(Persistable, ConflictResolver)
+ */
+@MappedSuperclass
+public abstract class AbstractVersionedEntity<ID extends Serializable> extends AbstractEntity<ID> {
+
+    private static final long serialVersionUID = -2713485245153098364L;
+
+    @Version
+    @Column(name = "VERSION")
+    private Long version;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Set the version. Meant for detached copies only, since the version of a
+     * managed instance is maintained by the persistence provider.
+     *
+     * @param version the version
+     */
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+}
@@ -0,0 +1,276 @@
+package br.com.thiaguten.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.pool.HikariPoolMXBean;
+
+/**
+ * Resizes a HikariCP connection pool within configured bounds, from the
+ * observed connection wait times and database latency.
+ * <p>
+ * Every interval the controller takes the {@link PoolTelemetry} of the pool and
+ * the pool counters (published by HikariCP through JMX, so the pool must be
+ * created with {@code registerMbeans} enabled), and then:
+ * <ul>
+ * <li>grows the pool by a quarter when the 95th percentile of the wait time is
+ * above the target or threads are waiting for a connection, unless the time
+ * the connections are held has degraded compared to its baseline, which means
+ * the database is saturated and more connections would only queue there;</li>
+ * <li>shrinks the pool by one connection after a few consecutive intervals in
+ * which the wait time is negligible and less than half the pool is in use.</li>
+ * </ul>
+ * The same controller works for a pool created by the application and for the
+ * pool created by a Hibernate connection provider, since both are found by
+ * pool name.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public final class AdaptivePoolController implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptivePoolController.class);
+
+    private static final int SHRINK_AFTER_INTERVALS = 3;
+    private static final double DATABASE_SATURATION_FACTOR = 2.0;
+
+    private final String poolName;
+    private final int minPoolSize;
+    private final int maxPoolSize;
+    private final long targetWaitNanos;
+    private final PoolTelemetry telemetry;
+    private final ObjectName poolObjectName;
+    private final ObjectName poolConfigObjectName;
+
+    private ScheduledExecutorService scheduler;
+    private int quietIntervals;
+    private long baselineUsageNanos;
+    private volatile PoolStatistics lastStatistics;
+
+    /**
+     * Create a pool controller.
+     *
+     * @param poolName    the name of the controlled pool
+     * @param minPoolSize the minimum maximum-pool-size
+     * @param maxPoolSize the maximum maximum-pool-size
+     * @param targetWait  the target of the 95th percentile of the connection wait time
+     * @param unit        the time unit of the targetWait parameter
+     */
+    public AdaptivePoolController(String poolName, int minPoolSize, int maxPoolSize, long targetWait, TimeUnit unit) {
+        this.poolName = Objects.requireNonNull(poolName, "poolName parameter must not be null");
+        if (minPoolSize < 1 || maxPoolSize < minPoolSize) {
+            throw new IllegalArgumentException("Pool size bounds must satisfy 1 <= minPoolSize <= maxPoolSize");
+        }
+        this.minPoolSize = minPoolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.targetWaitNanos = Objects.requireNonNull(unit, "unit parameter must not be null").toNanos(targetWait);
+        this.telemetry = PoolTelemetry.forPool(poolName);
+        try {
+            this.poolObjectName = new ObjectName("com.zaxxer.hikari:type=Pool (" + poolName + ")");
+            this.poolConfigObjectName = new ObjectName("com.zaxxer.hikari:type=PoolConfig (" + poolName + ")");
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException("Invalid pool name " + poolName, e);
+        }
+    }
+
+    /**
+     * Start adjusting the pool periodically, in a daemon thread.
+     *
+     * @param interval the adjustment interval
+     * @param unit     the time unit of the interval parameter
+     * @return this controller
+     */
+    public synchronized AdaptivePoolController start(long interval, TimeUnit unit) {
+        if (null == scheduler) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "pool-controller-" + poolName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    adjust();
+                } catch (RuntimeException e) {
+                    logger.warn("Could not adjust the pool " + poolName, e);
+                }
+            }, interval, interval, unit);
+        }
+        return this;
+    }
+
+    /**
+     * Stop adjusting the pool.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Take the pool statistics of the current interval and resize the pool if
+     * needed.
+     *
+     * @return the statistics of the interval, or null if the pool has not been started yet
+     */
+    public synchronized PoolStatistics adjust() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (!server.isRegistered(poolObjectName) || !server.isRegistered(poolConfigObjectName)) {
+            // the pool is created on demand, on its first connection request
+            return null;
+        }
+        HikariPoolMXBean pool = JMX.newMXBeanProxy(server, poolObjectName, HikariPoolMXBean.class);
+        HikariConfigMXBean config = JMX.newMXBeanProxy(server, poolConfigObjectName, HikariConfigMXBean.class);
+
+        LatencyHistogram.Snapshot wait = telemetry.getAcquisition().snapshotAndReset();
+        LatencyHistogram.Snapshot usage = telemetry.getUsage().snapshotAndReset();
+        int active = pool.getActiveConnections();
+        int pending = pool.getThreadsAwaitingConnection();
+        int size = config.getMaximumPoolSize();
+        long waitNanos = wait.getPercentileNanos(95);
+        long usageNanos = usage.getMeanNanos();
+
+        boolean saturated = false;
+        if (usage.getCount() > 0) {
+            // the baseline follows improvements at once and degradations slowly
+            baselineUsageNanos = baselineUsageNanos == 0 || usageNanos < baselineUsageNanos
+                    ? usageNanos
+                    : baselineUsageNanos + (usageNanos - baselineUsageNanos) / 16;
+            saturated = usageNanos > baselineUsageNanos * DATABASE_SATURATION_FACTOR;
+        }
+
+        int newSize = size;
+        if (waitNanos > targetWaitNanos || pending > 0) {
+            quietIntervals = 0;
+            if (saturated) {
+                logger.info("Pool {} not grown, the database latency degraded to {}us (baseline {}us)", poolName,
+                        TimeUnit.NANOSECONDS.toMicros(usageNanos), TimeUnit.NANOSECONDS.toMicros(baselineUsageNanos));
+            } else {
+                newSize = Math.min(maxPoolSize, size + Math.max(1, size / 4));
+            }
+        } else if (waitNanos <= targetWaitNanos / 4 && active < size / 2) {
+            if (++quietIntervals >= SHRINK_AFTER_INTERVALS) {
+                quietIntervals = 0;
+                newSize = size - 1;
+            }
+        } else {
+            quietIntervals = 0;
+        }
+        newSize = Math.max(minPoolSize, Math.min(maxPoolSize, newSize));
+
+        if (newSize != size) {
+            logger.info("Resizing pool {} from {} to {} connections", poolName, size, newSize);
+            if (config.getMinimumIdle() > newSize) {
+                config.setMinimumIdle(newSize);
+            }
+            config.setMaximumPoolSize(newSize);
+        }
+
+        PoolStatistics statistics = new PoolStatistics(poolName, newSize, pool.getTotalConnections(), active,
+                pool.getIdleConnections(), pending, wait, usage);
+        logger.debug("{}", statistics);
+        lastStatistics = statistics;
+        return statistics;
+    }
+
+    /**
+     * Get the statistics of the last adjustment interval.
+     *
+     * @return the last statistics, or null if the pool was not adjusted yet
+     */
+    public PoolStatistics getLastStatistics() {
+        return lastStatistics;
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    /**
+     * Immutable pool statistics of an adjustment interval.
+     *
+     * @author Thiago Gutenberg Carvalho da Costa
+     */
+    public static final class PoolStatistics {
+
+        private final String poolName;
+        private final int maximumPoolSize;
+        private final int totalConnections;
+        private final int activeConnections;
+        private final int idleConnections;
+        private final int pendingThreads;
+        private final LatencyHistogram.Snapshot acquisition;
+        private final LatencyHistogram.Snapshot usage;
+
+        private PoolStatistics(String poolName, int maximumPoolSize, int totalConnections, int activeConnections,
+                int idleConnections, int pendingThreads, LatencyHistogram.Snapshot acquisition,
+                LatencyHistogram.Snapshot usage) {
+            this.poolName = poolName;
+            this.maximumPoolSize = maximumPoolSize;
+            this.totalConnections = totalConnections;
+            this.activeConnections = activeConnections;
+            this.idleConnections = idleConnections;
+            this.pendingThreads = pendingThreads;
+            this.acquisition = acquisition;
+            this.usage = usage;
+        }
+
+        public String getPoolName() {
+            return poolName;
+        }
+
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public int getTotalConnections() {
+            return totalConnections;
+        }
+
+        public int getActiveConnections() {
+            return activeConnections;
+        }
+
+        public int getIdleConnections() {
+            return idleConnections;
+        }
+
+        public int getPendingThreads() {
+            return pendingThreads;
+        }
+
+        public LatencyHistogram.Snapshot getAcquisition() {
+            return acquisition;
+        }
+
+        public LatencyHistogram.Snapshot getUsage() {
+            return usage;
+        }
+
+        @Override
+        public String toString() {
+            return "Pool " + poolName + " - size=" + maximumPoolSize
+                    + ", total=" + totalConnections
+                    + ", active=" + activeConnections
+                    + ", idle=" + idleConnections
+                    + ", pending=" + pendingThreads
+                    + ", acquisition={" + acquisition + "}"
+                    + ", usage={" + usage + "}";
+        }
+
+    }
+
+}
@@ -0,0 +1,161 @@
+package br.com.thiaguten.core;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.lang.IgniteCallable;
+import org.apache.ignite.resources.IgniteInstanceResource;
+
+/**
+ * Runs the DAO operations of an aggregate on the node owning its identifier
+ * (the primary node of the partition of the identifier in the L2 cache region
+ * of the entity), as Ignite affinity jobs.
+ * <p>
+ * The L2 cache regions place the entries by entity identifier (see
+ * {@link GridRegionTopology#createCacheConfigurations()}), so the entries of
+ * the root entity, of the entities sharing its primary key and of its cached
+ * collections are on that node too. A find or a save of the whole aggregate
+ * then costs one network hop, to the owner node, instead of one per region
+ * access. A find returns the aggregate with its associations initialized,
+ * since it is marshalled back to the calling node. The operations within a
+ * transaction of the calling thread are not routed: they run on the calling
+ * node, so they see the writes of the transaction and its rollback undoes them.
+ * <p>
+ * Every node must run an affinity execution for the entity, which registers
+ * the DAO of the node executing the jobs:
+ *
+ * <pre>
+ * postDAO.setAffinityExecution(new AffinityExecution&lt;&gt;(ignite, postDAO));
+ * </pre>
+ *
+ * @param <ID> the type of the identifier
+ * @param <T>  the type of the persistent class
+ * @author Thiago Gutenberg Carvalho da Costa
+ * @see AbstractDAO#setAffinityExecution(AffinityExecution)
+ */
+public class AffinityExecution<ID extends Serializable, T extends Persistable<ID>> {
+
+    private static final String DAO_KEY_PREFIX = AffinityExecution.class.getName() + ".";
+
+    // set while a job runs, so the DAO executes the operation instead of sending it again
+    private static final ThreadLocal<Boolean> executingJob = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final Ignite ignite;
+    private final AbstractDAO<ID, T> dao;
+    private final String cacheName;
+    private final String daoKey;
+
+    public AffinityExecution(Ignite ignite, AbstractDAO<ID, T> dao) {
+        this.ignite = Objects.requireNonNull(ignite, "ignite parameter must not be null");
+        this.dao = Objects.requireNonNull(dao, "dao parameter must not be null");
+        this.cacheName = dao.getPersistenceClass().getName();
+        this.daoKey = DAO_KEY_PREFIX + cacheName;
+        if (null == ignite.cache(cacheName)) {
+            throw new IllegalArgumentException("The entity " + cacheName + " has no L2 cache region");
+        }
+        ignite.cluster().nodeLocalMap().put(daoKey, dao);
+    }
+
+    /**
+     * Checks if an operation must be sent to the owner node, that is, if it is
+     * not already running in an affinity job.
+     *
+     * @return true if the operation must be sent
+     */
+    boolean isRouted() {
+        return !executingJob.get();
+    }
+
+    T findById(ID id) {
+        return call(id, Operation.FIND, id);
+    }
+
+    T saveOrUpdate(T entity) {
+        return call(entity.getId(), Operation.SAVE, entity);
+    }
+
+    void deleteById(ID id) {
+        call(id, Operation.DELETE, id);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> R call(ID id, Operation operation, Object argument) {
+        if (ignite.affinity(cacheName).isPrimary(ignite.cluster().localNode(), id)) {
+            // already on the owner node, no job to send
+            return (R) execute(dao, operation, argument);
+        }
+        try {
+            return (R) ignite.compute().affinityCall(cacheName, id, new AffinityJob(daoKey, operation, argument));
+        } catch (IgniteException e) {
+            // the exceptions of the DAO are thrown as they are, as for a local call
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <ID extends Serializable, T extends Persistable<ID>> Object execute(AbstractDAO<ID, T> dao,
+            Operation operation, Object argument) {
+        executingJob.set(Boolean.TRUE);
+        try {
+            switch (operation) {
+                case FIND:
+                    return dao.findAggregateById((ID) argument);
+                case SAVE:
+                    return dao.saveOrUpdate((T) argument);
+                case DELETE:
+                    dao.deleteById((ID) argument);
+                    return null;
+                default:
+                    throw new IllegalArgumentException("Unknown operation " + operation);
+            }
+        } finally {
+            executingJob.set(Boolean.FALSE);
+        }
+    }
+
+    private enum Operation {
+        FIND, SAVE, DELETE
+    }
+
+    /**
+     * The job running a DAO operation on the owner node.
+     *
+     * @author Thiago Gutenberg Carvalho da Costa
+     */
+    private static final class AffinityJob implements IgniteCallable<Object> {
+
+        private static final long serialVersionUID = -1722402913683419212L;
+
+        private final String daoKey;
+        private final Operation operation;
+        private final Object argument;
+
+        @IgniteInstanceResource
+        private transient Ignite ignite;
+
+        private AffinityJob(String daoKey, Operation operation, Object argument) {
+            this.daoKey = daoKey;
+            this.operation = operation;
+            this.argument = argument;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object call() {
+            AbstractDAO<Serializable, Persistable<Serializable>> dao =
+                    (AbstractDAO<Serializable, Persistable<Serializable>>) ignite.cluster().nodeLocalMap().get(daoKey);
+            if (null == dao) {
+                throw new IllegalStateException("No affinity execution registered on node " + ignite.name()
+                        + " for " + daoKey.substring(DAO_KEY_PREFIX.length()));
+            }
+            return execute(dao, operation, argument);
+        }
+
+    }
+
+}
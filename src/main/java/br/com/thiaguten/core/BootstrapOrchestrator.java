@@ -0,0 +1,260 @@
+package br.com.thiaguten.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the stages of the application startup concurrently, each stage as soon
+ * as the stages it depends on are finished, and reports the timing of each
+ * stage.
+ * <p>
+ * Independent stages (e.g. the Ignite node join, the connection pool fill and
+ * the persistence metadata building) overlap, so the startup takes about the
+ * time of the longest chain of dependent stages instead of the sum of all the
+ * stages.
+ * <p>
+ * The stages run on the bootstrap threads, so they should not leave anything
+ * bound to their thread, e.g. the entity manager of a DAO operation: the work
+ * that needs the thread of the application runs after {@link #await()}. When a
+ * stage fails, the stages that depend on it do not run, and the stages that
+ * finished are cleaned up, in the reverse order they were added, before
+ * {@link #await()} throws.
+ *
+ * <pre>
+ * try (BootstrapOrchestrator orchestrator = new BootstrapOrchestrator()) {
+ *     Stage&lt;Ignite&gt; ignite = orchestrator.stage("ignite", Env::startIgnite, Ignite::close);
+ *     Stage&lt;Dao&gt; dao = orchestrator.stage("dao", () -&gt; new Dao(ignite.join()), ignite);
+ *     orchestrator.await();
+ * }
+ * </pre>
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public final class BootstrapOrchestrator implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BootstrapOrchestrator.class);
+
+    private final ExecutorService executor;
+    private final List<Stage<?>> stages = Collections.synchronizedList(new ArrayList<>());
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Create an orchestrator that runs up to one stage per available processor
+     * concurrently, and at least four, since the startup stages spend much of
+     * their time waiting (e.g. for the cluster discovery or the database).
+     */
+    public BootstrapOrchestrator() {
+        this(Math.max(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Create an orchestrator.
+     *
+     * @param parallelism the maximum number of stages running concurrently
+     */
+    public BootstrapOrchestrator(int parallelism) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "bootstrap-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Add a stage, which starts as soon as all its dependencies are finished.
+     * The action can read the result of its dependencies with
+     * {@link Stage#join()}.
+     *
+     * @param name         the stage name
+     * @param action       the stage action
+     * @param dependencies the stages that must finish before this stage starts
+     * @param <T>          the type of the stage result
+     * @return the added stage
+     */
+    public <T> Stage<T> stage(String name, Callable<T> action, Stage<?>... dependencies) {
+        return stage(name, action, null, dependencies);
+    }
+
+    /**
+     * Add a stage, which starts as soon as all its dependencies are finished,
+     * and whose result is cleaned up if another stage fails.
+     *
+     * @param name         the stage name
+     * @param action       the stage action
+     * @param cleanup      the release of the stage result when another stage fails, e.g. a node stop, or null
+     * @param dependencies the stages that must finish before this stage starts
+     * @param <T>          the type of the stage result
+     * @return the added stage
+     */
+    public <T> Stage<T> stage(String name, Callable<T> action, Consumer<? super T> cleanup,
+                              Stage<?>... dependencies) {
+        Objects.requireNonNull(name, "name parameter must not be null");
+        Objects.requireNonNull(action, "action parameter must not be null");
+        CompletableFuture<?>[] dependencyFutures = new CompletableFuture<?>[dependencies.length];
+        for (int i = 0; i < dependencies.length; i++) {
+            dependencyFutures[i] = Objects.requireNonNull(dependencies[i], "dependencies must not be null").future;
+        }
+        Stage<T> stage = new Stage<>(name, cleanup);
+        stage.future = CompletableFuture.allOf(dependencyFutures).thenApplyAsync(ignored -> {
+            stage.startNanos = System.nanoTime();
+            boolean finished = false;
+            try {
+                T result = action.call();
+                finished = true;
+                return result;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                stage.endNanos = System.nanoTime();
+                long millis = TimeUnit.NANOSECONDS.toMillis(stage.endNanos - stage.startNanos);
+                if (finished) {
+                    logger.info("Bootstrap stage '{}' finished in {} ms", name, millis);
+                } else {
+                    logger.error("Bootstrap stage '{}' failed after {} ms", name, millis);
+                }
+            }
+        }, executor);
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Wait for all the stages added so far, and log their timings. If a stage
+     * failed, the stages that finished are cleaned up first.
+     *
+     * @throws IllegalStateException if a stage failed
+     */
+    public void await() {
+        List<Stage<?>> snapshot;
+        synchronized (stages) {
+            snapshot = new ArrayList<>(stages);
+        }
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[snapshot.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = snapshot.get(i).future;
+        }
+        try {
+            // the stages that depend on a failed one fail at once, the others run to their end
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            logger.error("Bootstrap failed in {} ms, cleaning up the finished stages",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            for (int i = snapshot.size() - 1; i >= 0; i--) {
+                snapshot.get(i).cleanUp();
+            }
+            for (Stage<?> stage : snapshot) {
+                stage.join();
+            }
+        }
+        logger.info("Bootstrap finished in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        for (Stage<?> stage : snapshot) {
+            logger.info("Bootstrap stage '{}': started at {} ms, took {} ms", stage.getName(),
+                    stage.getStartMillis(), stage.getDurationMillis());
+        }
+    }
+
+    /**
+     * Get the stages added so far.
+     *
+     * @return the stages, in the order they were added
+     */
+    public List<Stage<?>> getStages() {
+        synchronized (stages) {
+            return new ArrayList<>(stages);
+        }
+    }
+
+    /**
+     * Release the bootstrap threads. The running stages are not interrupted.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * A startup stage and its result.
+     *
+     * @param <T> the type of the stage result
+     * @author Thiago Gutenberg Carvalho da Costa
+     */
+    public final class Stage<T> {
+
+        private final String name;
+        private final Consumer<? super T> cleanup;
+        private CompletableFuture<T> future;
+        private volatile long startNanos;
+        private volatile long endNanos;
+
+        private Stage(String name, Consumer<? super T> cleanup) {
+            this.name = name;
+            this.cleanup = cleanup;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Wait for the stage to finish and get its result.
+         *
+         * @return the stage result
+         * @throws IllegalStateException if the stage, or a stage it depends on, failed
+         */
+        public T join() {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                throw new IllegalStateException("Bootstrap stage '" + name + "' failed", e.getCause());
+            }
+        }
+
+        private void cleanUp() {
+            if (null == cleanup || !future.isDone() || future.isCompletedExceptionally()) {
+                return;
+            }
+            try {
+                cleanup.accept(future.join());
+                logger.info("Bootstrap stage '{}' cleaned up", name);
+            } catch (RuntimeException e) {
+                logger.warn("Could not clean up the bootstrap stage '{}'", name, e);
+            }
+        }
+
+        /**
+         * Get when the stage started, relative to the creation of the orchestrator.
+         *
+         * @return the start time in milliseconds, or -1 if the stage has not started
+         */
+        public long getStartMillis() {
+            return startNanos == 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(startNanos - BootstrapOrchestrator.this.startNanos);
+        }
+
+        /**
+         * Get how long the stage took.
+         *
+         * @return the duration in milliseconds, or -1 if the stage has not finished
+         */
+        public long getDurationMillis() {
+            return endNanos == 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+        }
+
+    }
+
+}
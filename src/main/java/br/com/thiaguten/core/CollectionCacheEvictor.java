@@ -0,0 +1,226 @@
+package br.com.thiaguten.core;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.cache.spi.access.CollectionRegionAccessStrategy;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Hibernate integrator that evicts the cached inverse collections (e.g.
+ * {@code Post.postComments}) whose elements are inserted, deleted or moved to
+ * another owner without the owner collection being changed, e.g. a comment
+ * persisted with its post set or deleted by ID.
+ * <p>
+ * Hibernate has its own invalidator ({@code hibernate.cache.auto_evict_collection_cache}),
+ * but it only locks the collection entries, relying on the lock to replace
+ * them, while the Ignite read-write regions keep the entry unless it is
+ * removed under the lock. So the entries are locked, removed and unlocked
+ * after the transaction completes, like Hibernate does when the owner
+ * collection changes. The collections of the owners inserted by the same
+ * transaction are not cached yet, so the elements inserted along with their
+ * owner (e.g. a post persisted with its comments) evict nothing.
+ * <p>
+ * Registered through the {@code Integrator} service loader, and enabled by
+ * {@value #EVICT_INVERSE_COLLECTIONS} (true by default) when the L2 cache is
+ * used.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class CollectionCacheEvictor implements Integrator, PostInsertEventListener, PostUpdateEventListener,
+        PostDeleteEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String EVICT_INVERSE_COLLECTIONS = "br.com.thiaguten.evict_inverse_collections";
+
+    private transient SessionFactoryImplementor sessionFactory;
+    // the root entity names of the owners of cached inverse collections, once the persisters are built
+    private transient volatile Set<String> ownerEntityNames;
+    // the owners inserted by the transaction of each session, released when it completes
+    private final transient Map<SessionImplementor, Set<EntityKey>> insertedOwners =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        boolean enabled = serviceRegistry.getService(ConfigurationService.class)
+                .getSetting(EVICT_INVERSE_COLLECTIONS, StandardConverters.BOOLEAN, true);
+        if (!enabled || !sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled()) {
+            return;
+        }
+        this.sessionFactory = sessionFactory;
+        EventListenerRegistry listeners = serviceRegistry.getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_INSERT, this);
+        listeners.appendListeners(EventType.POST_UPDATE, this);
+        listeners.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        evict(event.getPersister(), event.getSession(), event.getState(), null);
+        if (getOwnerEntityNames().contains(event.getPersister().getRootEntityName())) {
+            recordInsertedOwner(event.getSession(), event.getSession().generateEntityKey(event.getId(),
+                    event.getPersister()));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        evict(event.getPersister(), event.getSession(), event.getState(), event.getOldState());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        evict(event.getPersister(), event.getSession(), null, event.getDeletedState());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * Evict the cached inverse collections of the owners of an element whose
+     * owner changed: the new owner, when inserted or moved to it, unless the
+     * owner was inserted by the same transaction, and the old owner, when
+     * deleted or moved from it.
+     *
+     * @param persister the element persister
+     * @param session   the session
+     * @param state     the element state, or null when deleted
+     * @param oldState  the previous element state, or null when inserted or unknown
+     */
+    private void evict(EntityPersister persister, EventSource session, Object[] state, Object[] oldState) {
+        Set<String> roles = sessionFactory.getCollectionRolesByEntityParticipant(persister.getEntityName());
+        if (null == roles) {
+            return;
+        }
+        for (String role : roles) {
+            CollectionPersister collectionPersister = sessionFactory.getCollectionPersister(role);
+            if (!isCachedInverse(collectionPersister)) {
+                continue;
+            }
+            Integer index = persister.getEntityMetamodel().getPropertyIndexOrNull(
+                    collectionPersister.getMappedByProperty());
+            if (null == index) {
+                continue;
+            }
+            Serializable owner = null == state ? null : getOwnerId(collectionPersister, session, state[index]);
+            Serializable oldOwner = null == oldState ? null : getOwnerId(collectionPersister, session, oldState[index]);
+            if (Objects.equals(owner, oldOwner)) {
+                continue;
+            }
+            if (null != owner && !isInsertedOwner(session, collectionPersister, owner)) {
+                evict(collectionPersister, session, owner);
+            }
+            if (null != oldOwner) {
+                evict(collectionPersister, session, oldOwner);
+            }
+        }
+    }
+
+    private static boolean isCachedInverse(CollectionPersister persister) {
+        String mappedBy = persister.getMappedByProperty();
+        return persister.hasCache() && !persister.isManyToMany() && null != mappedBy && !mappedBy.isEmpty();
+    }
+
+    private Set<String> getOwnerEntityNames() {
+        Set<String> names = ownerEntityNames;
+        if (null == names) {
+            // the persisters are built after the integrators run, so not in integrate
+            names = new HashSet<>();
+            for (Object role : sessionFactory.getAllCollectionMetadata().keySet()) {
+                CollectionPersister persister = sessionFactory.getCollectionPersister((String) role);
+                if (isCachedInverse(persister)) {
+                    names.add(persister.getOwnerEntityPersister().getRootEntityName());
+                }
+            }
+            ownerEntityNames = names;
+        }
+        return names;
+    }
+
+    private void recordInsertedOwner(EventSource session, EntityKey owner) {
+        Set<EntityKey> owners = insertedOwners.get(session);
+        if (null == owners) {
+            owners = new HashSet<>();
+            insertedOwners.put(session, owners);
+            session.getActionQueue().registerProcess((success, completedSession) -> insertedOwners.remove(session));
+        }
+        owners.add(owner);
+    }
+
+    private boolean isInsertedOwner(EventSource session, CollectionPersister persister, Serializable ownerId) {
+        Set<EntityKey> owners = insertedOwners.get(session);
+        return null != owners
+                && owners.contains(session.generateEntityKey(ownerId, persister.getOwnerEntityPersister()));
+    }
+
+    private static void evict(CollectionPersister persister, EventSource session, Serializable ownerId) {
+        CollectionRegionAccessStrategy access = persister.getCacheAccessStrategy();
+        Object key = access.generateCacheKey(ownerId, persister, session.getFactory(), session.getTenantIdentifier());
+        SoftLock lock = access.lockItem(session, key, null);
+        access.remove(session, key);
+        session.getActionQueue().registerProcess((success, completedSession) ->
+                access.unlockItem(completedSession, key, lock));
+    }
+
+    private static Serializable getOwnerId(CollectionPersister persister, EventSource session, Object owner) {
+        if (null == owner) {
+            return null;
+        }
+        if (owner instanceof HibernateProxy) {
+            return ((HibernateProxy) owner).getHibernateLazyInitializer().getIdentifier();
+        }
+        return persister.getOwnerEntityPersister().getIdentifier(owner, session);
+    }
+
+}
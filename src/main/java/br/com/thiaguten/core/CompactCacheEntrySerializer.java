@@ -0,0 +1,415 @@
+package br.com.thiaguten.core;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+import org.apache.ignite.binary.BinaryObjectException;
+import org.apache.ignite.binary.BinaryRawReader;
+import org.apache.ignite.binary.BinaryRawWriter;
+import org.apache.ignite.binary.BinaryReader;
+import org.apache.ignite.binary.BinarySerializer;
+import org.apache.ignite.binary.BinaryTypeConfiguration;
+import org.apache.ignite.binary.BinaryWriter;
+import org.apache.ignite.cache.hibernate.HibernateKeyWrapper;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+
+/**
+ * Compact binary format of the L2 cache entries: the keys of the entity and
+ * collection regions, the disassembled state of the entities and the state of
+ * the collections.
+ * <p>
+ * By default, every entry carries the entity name or collection role as a
+ * string, and every value of the disassembled state is a boxed binary field
+ * described by the schema of the entry. This format replaces the names of the
+ * regions with a code, the {@link String#hashCode()} of the name, and writes
+ * the state as raw values, each one a type tag
+ * followed by the unboxed value, so the entries take less memory and are
+ * marshalled with less work. Values of other types are written in the
+ * default format.
+ * <p>
+ * The key keeps the identifier as its named {@code key} field, the affinity
+ * key of the regions (see {@link GridRegionTopology#createCacheConfigurations()}).
+ * All the nodes of a cluster must use the same format. The code of a name
+ * does not depend on the other names, so a node may have regions the others
+ * do not have yet, e.g. during a rolling upgrade adding an entity, as long as
+ * a node only reads the entries of its own regions. Two names with the same
+ * code are rejected, and the names unknown to the format are written in full.
+ * <p>
+ * The strings of the entity entries (e.g. long text columns) may be stored
+ * compressed with the {@link LZ4BlockCodec}, from a size threshold given by
+ * region, when they shrink. The compression is measured by the
+ * {@link RegionCompressionStats} of the region on the Ignite instance.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ * @see GridRegionTopology#COMPACT_ENTRIES
+ */
+public class CompactCacheEntrySerializer implements BinarySerializer {
+
+    private static final int UNKNOWN_NAME = -1;
+
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte INT = 2;
+    private static final byte STRING = 3;
+    private static final byte TRUE = 4;
+    private static final byte FALSE = 5;
+    private static final byte SHORT = 6;
+    private static final byte BYTE = 7;
+    private static final byte DOUBLE = 8;
+    private static final byte FLOAT = 9;
+    private static final byte CHAR = 10;
+    private static final byte DATE = 11;
+    private static final byte TIMESTAMP = 12;
+    private static final byte LOCAL_DATE = 13;
+    private static final byte LOCAL_DATE_TIME = 14;
+    private static final byte ARRAY = 15;
+    private static final byte OBJECT = 16;
+    private static final byte COMPRESSED_STRING = 17;
+
+    private static final Field ENTRY_STATE = field(StandardCacheEntryImpl.class, "disassembledState");
+    private static final Field ENTRY_SUBCLASS = field(StandardCacheEntryImpl.class, "subclass");
+    private static final Field ENTRY_VERSION = field(StandardCacheEntryImpl.class, "version");
+    private static final Field COLLECTION_STATE = field(CollectionCacheEntry.class, "state");
+    private static final Field KEY_ID = field(HibernateKeyWrapper.class, "key");
+    private static final Field KEY_ENTRY = field(HibernateKeyWrapper.class, "entry");
+    private static final Field KEY_TENANT = field(HibernateKeyWrapper.class, "tenantId");
+
+    // the names by their index on this node, and their codes, the same on every node
+    private final String[] names;
+    private final Map<String, Integer> indexes;
+    private final int[] codes;
+    private final Map<Integer, Integer> indexesByCode;
+    private final int[] compressionThresholds;
+    private final RegionCompressionStats[] compressionStats;
+
+    /**
+     * Create the format of the given entity names and collection roles.
+     *
+     * @param names the entity names and collection roles of this node, in any order
+     */
+    public CompactCacheEntrySerializer(Collection<String> names) {
+        this(ownRegionNames(names), Collections.emptyMap(), null);
+    }
+
+    /**
+     * Create the format of the given entity names and collection roles, which
+     * compresses the strings of the entities of the regions with a compression
+     * threshold.
+     *
+     * @param regionNames           the region name of each entity name and collection role of this node
+     * @param compressionThresholds the size from which the strings are compressed, in UTF-8 bytes, by region name
+     * @param igniteInstanceName    the name of the Ignite instance whose {@link RegionCompressionStats} measure
+     *                              the compression, or null for the default instance
+     * @throws IllegalArgumentException if two names have the same code
+     */
+    public CompactCacheEntrySerializer(Map<String, String> regionNames, Map<String, Integer> compressionThresholds,
+                                       String igniteInstanceName) {
+        Objects.requireNonNull(regionNames, "regionNames parameter must not be null");
+        Objects.requireNonNull(compressionThresholds, "compressionThresholds parameter must not be null");
+        this.names = new TreeSet<>(regionNames.keySet()).toArray(new String[0]);
+        this.codes = new int[this.names.length];
+        Map<String, Integer> indexes = new HashMap<>(this.names.length * 2);
+        Map<Integer, Integer> indexesByCode = new HashMap<>(this.names.length * 2);
+        for (int i = 0; i < this.names.length; i++) {
+            // the hash of the name only, so every node gives the same code to a name, whatever its other names
+            int code = UNKNOWN_NAME == this.names[i].hashCode() ? 0 : this.names[i].hashCode();
+            Integer other = indexesByCode.put(code, i);
+            if (null != other) {
+                throw new IllegalArgumentException("The names " + this.names[other] + " and " + this.names[i]
+                        + " have the same code " + code + ", rename one of their regions");
+            }
+            codes[i] = code;
+            indexes.put(this.names[i], i);
+        }
+        this.indexes = Collections.unmodifiableMap(indexes);
+        this.indexesByCode = Collections.unmodifiableMap(indexesByCode);
+        this.compressionThresholds = new int[this.names.length];
+        this.compressionStats = new RegionCompressionStats[this.names.length];
+        for (int i = 0; i < this.names.length; i++) {
+            // by region, since the entries carry the entity name, which is not the region name of @Cache(region)
+            String regionName = regionNames.get(this.names[i]);
+            Integer threshold = null == regionName ? null : compressionThresholds.get(regionName);
+            if (null != threshold && threshold > 0) {
+                this.compressionThresholds[i] = threshold;
+                this.compressionStats[i] = RegionCompressionStats.forRegion(igniteInstanceName, regionName);
+            }
+        }
+    }
+
+    private static Map<String, String> ownRegionNames(Collection<String> names) {
+        Objects.requireNonNull(names, "names parameter must not be null");
+        Map<String, String> regionNames = new HashMap<>(names.size() * 2);
+        for (String name : names) {
+            regionNames.put(name, name);
+        }
+        return regionNames;
+    }
+
+    /**
+     * Create the binary type configurations of the entries in this format.
+     *
+     * @return the type configurations
+     */
+    public List<BinaryTypeConfiguration> createTypeConfigurations() {
+        List<BinaryTypeConfiguration> typeConfigurations = new ArrayList<>(3);
+        for (Class<?> type : new Class<?>[]{HibernateKeyWrapper.class, StandardCacheEntryImpl.class,
+                CollectionCacheEntry.class}) {
+            BinaryTypeConfiguration typeConfiguration = new BinaryTypeConfiguration(type.getName());
+            typeConfiguration.setSerializer(this);
+            typeConfigurations.add(typeConfiguration);
+        }
+        return typeConfigurations;
+    }
+
+    private static Field field(Class<?> type, String name) {
+        try {
+            Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Unsupported version of " + type.getName() + ", no " + name + " field", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeBinary(Object obj, BinaryWriter writer) throws BinaryObjectException {
+        try {
+            if (obj instanceof StandardCacheEntryImpl) {
+                BinaryRawWriter rawWriter = writer.rawWriter();
+                int index = writeName(rawWriter, (String) ENTRY_SUBCLASS.get(obj));
+                writeValue(rawWriter, ENTRY_VERSION.get(obj), UNKNOWN_NAME);
+                writeValue(rawWriter, ENTRY_STATE.get(obj), index);
+            } else if (obj instanceof CollectionCacheEntry) {
+                writeValue(writer.rawWriter(), COLLECTION_STATE.get(obj), UNKNOWN_NAME);
+            } else {
+                // named fields, the key field being the affinity key
+                writer.writeObject("key", KEY_ID.get(obj));
+                String entry = (String) KEY_ENTRY.get(obj);
+                Integer index = indexes.get(entry);
+                writer.writeInt("entry", null == index ? UNKNOWN_NAME : codes[index]);
+                if (null == index) {
+                    writer.writeString("entryName", entry);
+                }
+                String tenantId = (String) KEY_TENANT.get(obj);
+                if (null != tenantId) {
+                    writer.writeString("tenantId", tenantId);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new BinaryObjectException("Could not write " + obj.getClass().getName(), e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readBinary(Object obj, BinaryReader reader) throws BinaryObjectException {
+        try {
+            if (obj instanceof StandardCacheEntryImpl) {
+                BinaryRawReader rawReader = reader.rawReader();
+                int index = indexOf(rawReader.readInt());
+                // the interned name, instead of a copy per entry read
+                ENTRY_SUBCLASS.set(obj, UNKNOWN_NAME == index ? rawReader.readString() : names[index]);
+                ENTRY_VERSION.set(obj, readValue(rawReader, UNKNOWN_NAME));
+                ENTRY_STATE.set(obj, readValue(rawReader, index));
+            } else if (obj instanceof CollectionCacheEntry) {
+                COLLECTION_STATE.set(obj, readValue(reader.rawReader(), UNKNOWN_NAME));
+            } else {
+                KEY_ID.set(obj, reader.readObject("key"));
+                int index = indexOf(reader.readInt("entry"));
+                KEY_ENTRY.set(obj, UNKNOWN_NAME == index ? reader.readString("entryName") : names[index]);
+                KEY_TENANT.set(obj, reader.readString("tenantId"));
+            }
+        } catch (IllegalAccessException e) {
+            throw new BinaryObjectException("Could not read " + obj.getClass().getName(), e);
+        }
+    }
+
+    private int writeName(BinaryRawWriter writer, String name) {
+        Integer index = indexes.get(name);
+        writer.writeInt(null == index ? UNKNOWN_NAME : codes[index]);
+        if (null == index) {
+            writer.writeString(name);
+            return UNKNOWN_NAME;
+        }
+        return index;
+    }
+
+    private int indexOf(int code) {
+        if (UNKNOWN_NAME == code) {
+            return UNKNOWN_NAME;
+        }
+        Integer index = indexesByCode.get(code);
+        if (null == index) {
+            throw new BinaryObjectException("Unknown name code " + code + " of a cache entry, written by a node "
+                    + "with a region this node does not have");
+        }
+        return index;
+    }
+
+    private void writeValue(BinaryRawWriter writer, Object value, int index) {
+        if (null == value) {
+            writer.writeByte(NULL);
+        } else if (value instanceof Long) {
+            writer.writeByte(LONG);
+            writer.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            writer.writeByte(INT);
+            writer.writeInt((Integer) value);
+        } else if (value instanceof String) {
+            writeString(writer, (String) value, index);
+        } else if (value instanceof Boolean) {
+            writer.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Short) {
+            writer.writeByte(SHORT);
+            writer.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            writer.writeByte(BYTE);
+            writer.writeByte((Byte) value);
+        } else if (value instanceof Double) {
+            writer.writeByte(DOUBLE);
+            writer.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            writer.writeByte(FLOAT);
+            writer.writeFloat((Float) value);
+        } else if (value instanceof Character) {
+            writer.writeByte(CHAR);
+            writer.writeChar((Character) value);
+        } else if (Date.class == value.getClass()) {
+            writer.writeByte(DATE);
+            writer.writeLong(((Date) value).getTime());
+        } else if (Timestamp.class == value.getClass()) {
+            writer.writeByte(TIMESTAMP);
+            writer.writeLong(((Timestamp) value).getTime());
+            writer.writeInt(((Timestamp) value).getNanos());
+        } else if (value instanceof LocalDate) {
+            writer.writeByte(LOCAL_DATE);
+            writer.writeLong(((LocalDate) value).toEpochDay());
+        } else if (value instanceof LocalDateTime) {
+            writer.writeByte(LOCAL_DATE_TIME);
+            writer.writeLong(((LocalDateTime) value).toLocalDate().toEpochDay());
+            writer.writeLong(((LocalDateTime) value).toLocalTime().toNanoOfDay());
+        } else if (Serializable[].class == value.getClass()) {
+            // the disassembled state, and the state of the collections
+            Serializable[] array = (Serializable[]) value;
+            writer.writeByte(ARRAY);
+            writer.writeInt(array.length);
+            for (Serializable element : array) {
+                writeValue(writer, element, index);
+            }
+        } else {
+            writer.writeByte(OBJECT);
+            writer.writeObject(value);
+        }
+    }
+
+    private void writeString(BinaryRawWriter writer, String value, int index) {
+        int threshold = UNKNOWN_NAME == index ? 0 : compressionThresholds[index];
+        // a string has at least as many UTF-8 bytes as chars
+        if (threshold > 0 && value.length() >= threshold / 3) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length >= threshold) {
+                long start = System.nanoTime();
+                byte[] compressed = LZ4BlockCodec.compress(bytes);
+                compressionStats[index].recordCompression(bytes.length,
+                        null == compressed ? bytes.length : compressed.length, System.nanoTime() - start);
+                if (null != compressed) {
+                    writer.writeByte(COMPRESSED_STRING);
+                    writer.writeInt(bytes.length);
+                    writer.writeByteArray(compressed);
+                    return;
+                }
+            }
+        }
+        writer.writeByte(STRING);
+        writer.writeString(value);
+    }
+
+    private String decompress(BinaryRawReader reader, int index) {
+        int length = reader.readInt();
+        byte[] compressed = reader.readByteArray();
+        long start = System.nanoTime();
+        byte[] bytes;
+        try {
+            bytes = LZ4BlockCodec.decompress(compressed, length);
+        } catch (IllegalArgumentException e) {
+            throw new BinaryObjectException("Corrupted compressed string of a cache entry", e);
+        }
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        if (UNKNOWN_NAME != index && null != compressionStats[index]) {
+            compressionStats[index].recordDecompression(System.nanoTime() - start);
+        }
+        return value;
+    }
+
+    private Object readValue(BinaryRawReader reader, int index) {
+        byte type = reader.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case LONG:
+                return reader.readLong();
+            case INT:
+                return reader.readInt();
+            case STRING:
+                return reader.readString();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case SHORT:
+                return reader.readShort();
+            case BYTE:
+                return reader.readByte();
+            case DOUBLE:
+                return reader.readDouble();
+            case FLOAT:
+                return reader.readFloat();
+            case CHAR:
+                return reader.readChar();
+            case DATE:
+                return new Date(reader.readLong());
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(reader.readLong());
+                timestamp.setNanos(reader.readInt());
+                return timestamp;
+            case LOCAL_DATE:
+                return LocalDate.ofEpochDay(reader.readLong());
+            case LOCAL_DATE_TIME:
+                LocalDate date = LocalDate.ofEpochDay(reader.readLong());
+                return LocalDateTime.of(date, LocalTime.ofNanoOfDay(reader.readLong()));
+            case ARRAY:
+                Serializable[] array = new Serializable[reader.readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = (Serializable) readValue(reader, index);
+                }
+                return array;
+            case OBJECT:
+                return reader.readObject();
+            case COMPRESSED_STRING:
+                return decompress(reader, index);
+            default:
+                throw new BinaryObjectException("Unknown type " + type + " of a cache entry value");
+        }
+    }
+
+}
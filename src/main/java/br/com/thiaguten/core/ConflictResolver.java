@@ -0,0 +1,23 @@
+package br.com.thiaguten.core;
+
+/**
+ * Callback that resolves an optimistic locking conflict, by applying the
+ * changes of an update that was rejected to the current state of the entity.
+ *
+ * @param <T> the type of the persistent class
+ * @author Thiago Gutenberg Carvalho da Costa
+ * @see IDAO#saveOrUpdate(Persistable, ConflictResolver)
+ */
+@FunctionalInterface
+public interface ConflictResolver<T> {
+
+    /**
+     * Resolve a conflict.
+     *
+     * @param current  the current state of the entity, as saved by the concurrent update
+     * @param rejected the entity whose update was rejected
+     * @return the entity to save instead, usually the current entity with the changes applied, or null to give up
+     */
+    T resolve(T current, T rejected);
+
+}
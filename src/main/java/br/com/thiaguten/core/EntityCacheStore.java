@@ -0,0 +1,380 @@
+package br.com.thiaguten.core;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.cache.Cache;
+import javax.cache.CacheException;
+import javax.cache.configuration.Factory;
+import javax.cache.integration.CacheLoaderException;
+import javax.cache.integration.CacheWriterException;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import javax.persistence.PersistenceUnitUtil;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.cache.store.CacheStoreAdapter;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ignite cache store of an entity, reading and writing the database through the
+ * entity mappings of the persistence unit, so the same tables, columns,
+ * cascades and JDBC batching apply as for the {@link AbstractDAO}.
+ * <p>
+ * A cache miss loads the whole aggregate: the entity with its associations
+ * initialized, so the detached copy kept in the grid can be navigated without
+ * a persistence context. The grid is the system of record: a write overwrites
+ * the database row with the grid state, whatever the version of the row, and a
+ * batch of entries is written in one database transaction. The entities of the
+ * aggregate must all have their identifiers: an entity without one would be
+ * inserted again by every write of the aggregate, so the write is rejected.
+ * <p>
+ * The database transaction is not the cache transaction: with write-through,
+ * Ignite writes the entries of a cache transaction while committing it, and the
+ * database transaction commits before the cache entries do. A failed database
+ * write rolls the cache transaction back, but a cache transaction failing after
+ * the write (e.g. a node leaving) leaves the database ahead of the grid, until
+ * the entry is written again or evicted and read through.
+ * <p>
+ * The store uses the entity manager factory registered on its node with
+ * {@link #register(Ignite, EntityManagerFactory)}, so every server node of the
+ * cache must register one.
+ *
+ * @param <ID> the type of the identifier
+ * @param <T>  the type of the persistent class
+ * @author Thiago Gutenberg Carvalho da Costa
+ * @see GridDAO
+ */
+public class EntityCacheStore<ID extends Serializable, T extends Persistable<ID>> extends CacheStoreAdapter<ID, T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntityCacheStore.class);
+
+    private static final String ENTITY_MANAGER_FACTORY_KEY = EntityCacheStore.class.getName() + ".entityManagerFactory";
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "entity-cache-store-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Class<T> persistenceClass;
+
+    @IgniteInstanceResource
+    private Ignite ignite;
+
+    public EntityCacheStore(Class<T> persistenceClass) {
+        this.persistenceClass = Objects.requireNonNull(persistenceClass, "persistenceClass parameter must not be null");
+    }
+
+    /**
+     * Register the entity manager factory of the stores of a node.
+     *
+     * @param ignite               the node
+     * @param entityManagerFactory the entity manager factory of the node
+     */
+    public static void register(Ignite ignite, EntityManagerFactory entityManagerFactory) {
+        Objects.requireNonNull(ignite, "ignite parameter must not be null");
+        Objects.requireNonNull(entityManagerFactory, "entityManagerFactory parameter must not be null");
+        ignite.cluster().nodeLocalMap().put(ENTITY_MANAGER_FACTORY_KEY, entityManagerFactory);
+    }
+
+    /**
+     * Create the factory of the stores of an entity, one store per node.
+     *
+     * @param persistenceClass the persistent class
+     * @param <ID>             the type of the identifier
+     * @param <T>              the type of the persistent class
+     * @return the store factory
+     */
+    public static <ID extends Serializable, T extends Persistable<ID>> Factory<EntityCacheStore<ID, T>> factoryOf(
+            Class<T> persistenceClass) {
+        Objects.requireNonNull(persistenceClass, "persistenceClass parameter must not be null");
+        return () -> new EntityCacheStore<>(persistenceClass);
+    }
+
+    /**
+     * Run database work outside of the cache transaction of the thread, if any.
+     * Read-through and write-through run in the thread of the cache transaction
+     * (while committing it, too), which must not start the Ignite transactions
+     * of the L2 cache regions of the entity manager, so the work is always
+     * handed to another thread and awaited.
+     *
+     * @param work the database work
+     * @param <R>  the type of the result
+     * @return the result of the work
+     */
+    static <R> R outsideTransaction(Callable<R> work) {
+        try {
+            return EXECUTOR.submit(work).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                    : new CacheException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheException(e);
+        }
+    }
+
+    private EntityManagerFactory getEntityManagerFactory() {
+        Object entityManagerFactory = ignite.cluster().nodeLocalMap().get(ENTITY_MANAGER_FACTORY_KEY);
+        if (null == entityManagerFactory) {
+            throw new IllegalStateException("No entity manager factory registered on node " + ignite.name());
+        }
+        return (EntityManagerFactory) entityManagerFactory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T load(ID key) {
+        return outsideTransaction(() -> doLoad(key));
+    }
+
+    private T doLoad(ID key) {
+        EntityManager entityManager = getEntityManagerFactory().createEntityManager();
+        try {
+            T entity = entityManager.find(persistenceClass, key);
+            if (entity != null) {
+                AbstractDAO.initializeAssociations(entityManager, persistenceClass, entity);
+            }
+            return entity;
+        } catch (RuntimeException e) {
+            throw new CacheLoaderException("Could not load " + persistenceClass.getSimpleName() + " " + key, e);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(Cache.Entry<? extends ID, ? extends T> entry) {
+        List<Cache.Entry<? extends ID, ? extends T>> entries = new ArrayList<>(1);
+        entries.add(entry);
+        writeAll(entries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAll(Collection<Cache.Entry<? extends ID, ? extends T>> entries) {
+        outsideTransaction(() -> {
+            doWriteAll(entries);
+            return null;
+        });
+    }
+
+    private void doWriteAll(Collection<Cache.Entry<? extends ID, ? extends T>> entries) {
+        EntityManager entityManager = getEntityManagerFactory().createEntityManager();
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            for (Cache.Entry<? extends ID, ? extends T> entry : entries) {
+                T entity = entry.getValue();
+                requireIdentifiers(entityManager.getEntityManagerFactory(), entity);
+                if (entity instanceof AbstractVersionedEntity) {
+                    // the grid state wins over the row, so it is merged with the current version of the row
+                    ((AbstractVersionedEntity<?>) entity).setVersion(findVersion(entityManager, entry.getKey()));
+                }
+                entityManager.merge(entity);
+            }
+            transaction.commit();
+            logger.debug("Wrote {} {} entries to the database", entries.size(), persistenceClass.getSimpleName());
+            // all written, none left for a retry
+            entries.clear();
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new CacheWriterException("Could not write " + entries.size() + " "
+                    + persistenceClass.getSimpleName() + " entries", e);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Require the identifiers of the entities associated with an entity, all
+     * over its aggregate, e.g. the comments of a post. The grid keeps the
+     * entities it writes, so an associated entity whose identifier is generated
+     * by the database (sequences, shared primary keys) would be inserted by
+     * every merge of the aggregate, instead of once. The associations not
+     * loaded are skipped, their entities are in the database already.
+     *
+     * @param entityManagerFactory the entity manager factory of the entity
+     * @param entity               the entity
+     * @throws PersistenceException if an associated entity has no identifier
+     */
+    static void requireIdentifiers(EntityManagerFactory entityManagerFactory, Object entity) {
+        SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) entityManagerFactory
+                .unwrap(SessionFactory.class);
+        PersistenceUnitUtil persistenceUnitUtil = entityManagerFactory.getPersistenceUnitUtil();
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(entity);
+        while (!pending.isEmpty()) {
+            Object current = pending.pop();
+            if (current instanceof HibernateProxy) {
+                current = ((HibernateProxy) current).getHibernateLazyInitializer().getImplementation();
+            }
+            if (!visited.add(current)) {
+                continue;
+            }
+            EntityPersister persister = sessionFactory.getEntityPersister(Hibernate.getClass(current).getName());
+            for (int i = 0; i < persister.getPropertyTypes().length; i++) {
+                if (!persister.getPropertyTypes()[i].isAssociationType()
+                        || !persistenceUnitUtil.isLoaded(current, persister.getPropertyNames()[i])) {
+                    continue;
+                }
+                Object value = persister.getPropertyValue(current, i);
+                if (null == value || !Hibernate.isInitialized(value)) {
+                    continue;
+                }
+                Collection<?> associated = value instanceof Map ? ((Map<?, ?>) value).values()
+                        : value instanceof Collection ? (Collection<?>) value : Collections.singleton(value);
+                for (Object other : associated) {
+                    if (null == other || !Hibernate.isInitialized(other)
+                            || null == sessionFactory.getClassMetadata(Hibernate.getClass(other))) {
+                        continue;
+                    }
+                    if (null == persistenceUnitUtil.getIdentifier(other)) {
+                        throw new PersistenceException("The " + Hibernate.getClass(other).getSimpleName()
+                                + " associated with " + Hibernate.getClass(entity).getSimpleName() + " "
+                                + persistenceUnitUtil.getIdentifier(entity) + " has no identifier, which the grid "
+                                + "does not generate: assign it first");
+                    }
+                    pending.push(other);
+                }
+            }
+        }
+    }
+
+    private Long findVersion(EntityManager entityManager, ID id) {
+        // not the entity, which would be associated with the persistence context before the merge
+        List<Long> versions = entityManager.createQuery("select e.version from " + persistenceClass.getSimpleName()
+                + " e where e." + getIdAttributeName(entityManager, id) + " = :id", Long.class)
+                .setParameter("id", id)
+                .getResultList();
+        return versions.isEmpty() ? null : versions.get(0);
+    }
+
+    private String getIdAttributeName(EntityManager entityManager, Object id) {
+        return entityManager.getMetamodel().entity(persistenceClass).getId(id.getClass()).getName();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete(Object key) {
+        List<Object> keys = new ArrayList<>(1);
+        keys.add(key);
+        deleteAll(keys);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteAll(Collection<?> keys) {
+        outsideTransaction(() -> {
+            doDeleteAll(keys);
+            return null;
+        });
+    }
+
+    private void doDeleteAll(Collection<?> keys) {
+        EntityManager entityManager = getEntityManagerFactory().createEntityManager();
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            for (Object key : keys) {
+                T entity = entityManager.find(persistenceClass, key);
+                if (entity != null) {
+                    entityManager.remove(entity);
+                }
+            }
+            transaction.commit();
+            keys.clear();
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new CacheWriterException("Could not delete " + keys.size() + " "
+                    + persistenceClass.getSimpleName() + " entries", e);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<ID, T> loadAll(Iterable<? extends ID> keys) {
+        return outsideTransaction(() -> doLoadAll(keys));
+    }
+
+    private Map<ID, T> doLoadAll(Iterable<? extends ID> keys) {
+        List<ID> ids = new ArrayList<>();
+        keys.forEach(ids::add);
+        Map<ID, T> entities = new HashMap<>(ids.size() * 2);
+        if (ids.isEmpty()) {
+            return entities;
+        }
+        EntityManager entityManager = getEntityManagerFactory().createEntityManager();
+        try {
+            // one query instead of one per key
+            String idAttributeName = getIdAttributeName(entityManager, ids.get(0));
+            List<T> found = entityManager.createQuery("select e from " + persistenceClass.getSimpleName()
+                    + " e where e." + idAttributeName + " in :ids", persistenceClass)
+                    .setParameter("ids", ids)
+                    .getResultList();
+            for (T entity : found) {
+                AbstractDAO.initializeAssociations(entityManager, persistenceClass, entity);
+                entities.put(entity.getId(), entity);
+            }
+            return entities;
+        } catch (RuntimeException e) {
+            throw new CacheLoaderException("Could not load " + ids.size() + " "
+                    + persistenceClass.getSimpleName() + " entries", e);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+}
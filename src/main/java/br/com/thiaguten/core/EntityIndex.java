@@ -0,0 +1,98 @@
+package br.com.thiaguten.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Build-time index of the persistence metadata of the classpath, generated by
+ * the {@link EntityIndexProcessor}.
+ * <p>
+ * Each line of an index resource is a {@code key=value} entry:
+ * <ul>
+ * <li>{@value #MANAGED_CLASS_KEY} - a managed class name (entity, embeddable,
+ * mapped superclass or attribute converter);</li>
+ * <li>{@value #MAPPING_FILE_KEY} - a mapping file resource name (e.g. an
+ * orm.xml file), which may be added by hand.</li>
+ * </ul>
+ * Lines starting with {@code #} are comments. The index resources of all the
+ * classpath roots are merged, so each module can ship its own index.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public final class EntityIndex {
+
+    public static final String RESOURCE_NAME = "META-INF/entity-index";
+    public static final String MANAGED_CLASS_KEY = "class";
+    public static final String MAPPING_FILE_KEY = "mapping-file";
+
+    private final List<String> managedClassNames;
+    private final List<String> mappingFileNames;
+
+    private EntityIndex(List<String> managedClassNames, List<String> mappingFileNames) {
+        this.managedClassNames = Collections.unmodifiableList(managedClassNames);
+        this.mappingFileNames = Collections.unmodifiableList(mappingFileNames);
+    }
+
+    /**
+     * Load the entity index resources visible to a class loader.
+     *
+     * @param classLoader the class loader of the persistence unit
+     * @return the merged entity index, or null if there is no index resource
+     */
+    public static EntityIndex load(ClassLoader classLoader) {
+        Set<String> managedClassNames = new LinkedHashSet<>();
+        Set<String> mappingFileNames = new LinkedHashSet<>();
+        boolean found = false;
+        try {
+            Enumeration<URL> resources = classLoader.getResources(RESOURCE_NAME);
+            while (resources.hasMoreElements()) {
+                found = true;
+                read(resources.nextElement(), managedClassNames, mappingFileNames);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return found ? new EntityIndex(new ArrayList<>(managedClassNames), new ArrayList<>(mappingFileNames)) : null;
+    }
+
+    private static void read(URL resource, Set<String> managedClassNames, Set<String> mappingFileNames)
+            throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                int separator = line.indexOf('=');
+                if (line.isEmpty() || line.startsWith("#") || separator < 0) {
+                    continue;
+                }
+                String key = line.substring(0, separator).trim();
+                String value = line.substring(separator + 1).trim();
+                if (MANAGED_CLASS_KEY.equals(key)) {
+                    managedClassNames.add(value);
+                } else if (MAPPING_FILE_KEY.equals(key)) {
+                    mappingFileNames.add(value);
+                }
+            }
+        }
+    }
+
+    public List<String> getManagedClassNames() {
+        return managedClassNames;
+    }
+
+    public List<String> getMappingFileNames() {
+        return mappingFileNames;
+    }
+
+}
@@ -0,0 +1,83 @@
+package br.com.thiaguten.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor that generates the {@link EntityIndex} of the compiled
+ * sources: the entities, embeddables, mapped superclasses and attribute
+ * converters, so the persistence unit can list them without scanning the
+ * classpath on every start.
+ * <p>
+ * The index is written to {@value EntityIndex#RESOURCE_NAME} in the class
+ * output, once all the rounds of the compilation are processed.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+@SupportedAnnotationTypes({
+        "javax.persistence.Entity",
+        "javax.persistence.Embeddable",
+        "javax.persistence.MappedSuperclass",
+        "javax.persistence.Converter"
+})
+public class EntityIndexProcessor extends AbstractProcessor {
+
+    private final Set<String> managedClassNames = new TreeSet<>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element instanceof TypeElement) {
+                    managedClassNames.add(processingEnv.getElementUtils()
+                            .getBinaryName((TypeElement) element).toString());
+                }
+            }
+        }
+        if (roundEnv.processingOver() && !managedClassNames.isEmpty()) {
+            writeIndex();
+        }
+        // the annotations may be processed by other processors too
+        return false;
+    }
+
+    private void writeIndex() {
+        try {
+            FileObject resource = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", EntityIndex.RESOURCE_NAME);
+            try (Writer writer = resource.openWriter()) {
+                writer.write("# Generated by " + getClass().getName() + ", do not edit\n");
+                for (String managedClassName : managedClassNames) {
+                    writer.write(EntityIndex.MANAGED_CLASS_KEY + "=" + managedClassName + "\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not write " + EntityIndex.RESOURCE_NAME + ": " + e.getMessage());
+        }
+    }
+
+}
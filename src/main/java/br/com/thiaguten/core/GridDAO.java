@@ -0,0 +1,688 @@
+package br.com.thiaguten.core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.CacheAtomicityMode;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.transactions.Transaction;
+import org.apache.ignite.transactions.TransactionConcurrency;
+import org.apache.ignite.transactions.TransactionIsolation;
+import org.hibernate.internal.util.SerializationHelper;
+
+/**
+ * DAO whose system of record, in the hot path, is an Ignite cache of the
+ * entities instead of the database.
+ * <p>
+ * Finds by ID read the cache, loading the entity from the database on a miss
+ * (read-through). Saves and deletes update the cache, and the
+ * {@link EntityCacheStore} writes them to the database, either while committing
+ * the cache transaction ({@link Backend#WRITE_THROUGH}) or asynchronously, in
+ * batches coalescing the updates of the same entity ({@link Backend#WRITE_BEHIND}).
+ * The database transaction of the store is not the cache transaction, see
+ * {@link EntityCacheStore} for what that guarantees. The entities are
+ * identified by their assigned IDs, e.g. from an {@link IDSupplier}.
+ * <p>
+ * New entities are inserted through the database DAO, synchronously, since
+ * the database may generate the identifiers of their associations (sequences,
+ * shared primary keys), and then put in the grid. Associated entities added
+ * to an entity already in the grid must have their identifiers assigned too,
+ * otherwise the save is rejected.
+ * <p>
+ * Versioned entities are checked against the version in the cache, holding
+ * the lock of the entry, so a conflict is detected (and resolved by the
+ * {@link ConflictResolver}, if any) without retries. The version in the cache
+ * is the one the grid DAO maintains, the version column of the database is
+ * only maintained for the other readers of the table.
+ * <p>
+ * All the other operations (counts, finds by query, etc.) are delegated to the
+ * database DAO. With write-behind, they do not see the writes not flushed yet.
+ * The backend is selected per entity with the {@value #BACKEND_PREFIX}&lt;entity
+ * class name&gt; property (see {@link Backend#of(Map, Class)}), so the same
+ * DAO interface can run on either backend.
+ *
+ * @param <ID> the type of the identifier
+ * @param <T>  the type of the persistent class
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class GridDAO<ID extends Serializable, T extends Persistable<ID>> implements IDAO<ID, T> {
+
+    public static final String BACKEND_PREFIX = "br.com.thiaguten.dao.backend.";
+    public static final String CACHE_NAME_PREFIX = "grid.";
+    public static final int DEFAULT_WRITE_BEHIND_BATCH_SIZE = 512;
+    public static final long DEFAULT_WRITE_BEHIND_FLUSH_FREQUENCY_MILLIS = 1000;
+
+    /**
+     * The system of record of an entity in the hot path.
+     */
+    public enum Backend {
+
+        /**
+         * The database, through the {@link AbstractDAO}.
+         */
+        DATABASE,
+
+        /**
+         * The grid, written to the database while committing the cache transaction.
+         */
+        WRITE_THROUGH,
+
+        /**
+         * The grid, written to the database asynchronously, in batches.
+         */
+        WRITE_BEHIND;
+
+        /**
+         * Get the backend of an entity from the {@value #BACKEND_PREFIX}&lt;entity class name&gt;
+         * property, whose value is database, write-through or write-behind.
+         *
+         * @param props            the properties
+         * @param persistenceClass the persistent class
+         * @return the backend, {@link #DATABASE} by default
+         */
+        public static Backend of(Map<String, ?> props, Class<?> persistenceClass) {
+            Object value = props.get(BACKEND_PREFIX + persistenceClass.getName());
+            if (null == value) {
+                return DATABASE;
+            }
+            return valueOf(value.toString().trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        }
+
+    }
+
+    private final IDAO<ID, T> databaseDAO;
+    private final Backend backend;
+    private final Ignite ignite;
+    private final IgniteCache<ID, T> cache;
+    private final AtomicLong optimisticConflictCount = new AtomicLong();
+
+    public GridDAO(Ignite ignite, IDAO<ID, T> databaseDAO, Backend backend) {
+        this(ignite, databaseDAO, backend, TopologyProfile.builtIn().get(TopologyProfile.TRANSACTIONAL));
+    }
+
+    /**
+     * Construct a GridDAO, creating the cache of the entities if it does not
+     * exist yet, and registering the entity manager factory of the database
+     * DAO for the cache stores of this node.
+     *
+     * @param ignite      the node
+     * @param databaseDAO the DAO of the entity in the database
+     * @param backend     the grid backend, write-through or write-behind
+     * @param profile     the topology profile of the cache, with the transactional atomicity mode
+     */
+    @SuppressWarnings("unchecked")
+    public GridDAO(Ignite ignite, IDAO<ID, T> databaseDAO, Backend backend, TopologyProfile profile) {
+        this.ignite = Objects.requireNonNull(ignite, "ignite parameter must not be null");
+        this.databaseDAO = Objects.requireNonNull(databaseDAO, "databaseDAO parameter must not be null");
+        this.backend = Objects.requireNonNull(backend, "backend parameter must not be null");
+        Objects.requireNonNull(profile, "profile parameter must not be null");
+        if (Backend.DATABASE == backend) {
+            throw new IllegalArgumentException("backend parameter must be a grid backend");
+        }
+        if (profile.getAtomicityMode() != CacheAtomicityMode.TRANSACTIONAL) {
+            throw new IllegalArgumentException("The topology profile " + profile.getName()
+                    + " of a grid DAO must be transactional");
+        }
+
+        Class<T> persistenceClass = databaseDAO.getPersistenceClass();
+        EntityCacheStore.register(ignite, databaseDAO.getEntityManagerFactory());
+        CacheConfiguration<ID, T> cacheConfiguration = (CacheConfiguration<ID, T>) (CacheConfiguration<?, ?>)
+                profile.toCacheConfiguration(CACHE_NAME_PREFIX + persistenceClass.getName());
+        cacheConfiguration.setCacheStoreFactory(EntityCacheStore.factoryOf(persistenceClass));
+        cacheConfiguration.setReadThrough(true);
+        cacheConfiguration.setWriteThrough(true);
+        if (Backend.WRITE_BEHIND == backend) {
+            cacheConfiguration.setWriteBehindEnabled(true);
+            cacheConfiguration.setWriteBehindBatchSize(DEFAULT_WRITE_BEHIND_BATCH_SIZE);
+            cacheConfiguration.setWriteBehindFlushFrequency(DEFAULT_WRITE_BEHIND_FLUSH_FREQUENCY_MILLIS);
+        }
+        this.cache = ignite.getOrCreateCache(cacheConfiguration);
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public IDAO<ID, T> getDatabaseDAO() {
+        return databaseDAO;
+    }
+
+    public IgniteCache<ID, T> getCache() {
+        return cache;
+    }
+
+    /**
+     * Get the number of writes rejected because the entity was updated
+     * concurrently, resolved or not.
+     *
+     * @return the number of optimistic conflicts
+     */
+    public long getOptimisticConflictCount() {
+        return optimisticConflictCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EntityManager getEntityManager() {
+        return databaseDAO.getEntityManager();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EntityManagerFactory getEntityManagerFactory() {
+        return databaseDAO.getEntityManagerFactory();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<T> getPersistenceClass() {
+        return databaseDAO.getPersistenceClass();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<ID> getIdentifierClass() {
+        return databaseDAO.getIdentifierClass();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T saveOrUpdate(T entity) {
+        return saveOrUpdate(entity, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * An entity not found in the grid, nor in the database, is inserted
+     * through the database DAO, so the generated identifiers of its aggregate
+     * are assigned, and then put in the grid. Both run in a cache transaction
+     * holding the lock of the entry, so concurrent saves of the same entity
+     * are applied one at a time. The given entity is left unchanged: the saved
+     * state, with its new version, is returned.
+     */
+    @Override
+    public T saveOrUpdate(T entity, ConflictResolver<T> conflictResolver) {
+        requireId(entity);
+        try (Transaction transaction = startTransaction()) {
+            T current = cache.get(entity.getId());
+            T saved;
+            if (null == current) {
+                saved = insert(entity);
+                skipStore().put(saved.getId(), saved);
+            } else {
+                saved = checkVersion(current, entity, conflictResolver);
+                cache.put(saved.getId(), saved);
+            }
+            transaction.commit();
+            return saved;
+        }
+    }
+
+    private T insert(T entity) {
+        // through the database DAO, which assigns the generated identifiers of the associations of the aggregate
+        return EntityCacheStore.outsideTransaction(() -> databaseDAO.saveOrUpdate(entity));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Each batch runs in a cache transaction holding the locks of its entries,
+     * see {@link #saveOrUpdate(Persistable, ConflictResolver)}.
+     */
+    @Override
+    public List<T> saveOrUpdateInBatch(List<T> entities, int batchSize) {
+        List<T> savedList = new ArrayList<>(entities.size());
+        for (int from = 0; from < entities.size(); from += batchSize) {
+            List<T> batch = entities.subList(from, Math.min(from + batchSize, entities.size()));
+            Set<ID> ids = new LinkedHashSet<>(batch.size() * 2);
+            for (T entity : batch) {
+                ids.add(requireId(entity).getId());
+            }
+            // one cache transaction per batch, so write-through writes each batch in one database transaction
+            try (Transaction transaction = startTransaction()) {
+                Map<ID, T> currentMap = cache.getAll(ids);
+                List<T> inserts = new ArrayList<>(batch.size());
+                List<T> updates = new ArrayList<>(batch.size());
+                for (T entity : batch) {
+                    (currentMap.containsKey(entity.getId()) ? updates : inserts).add(entity);
+                }
+                if (!inserts.isEmpty()) {
+                    Map<ID, T> insertedMap = new LinkedHashMap<>(inserts.size() * 2);
+                    for (T inserted : EntityCacheStore.outsideTransaction(
+                            () -> databaseDAO.saveOrUpdateInBatch(inserts, batchSize))) {
+                        insertedMap.put(inserted.getId(), inserted);
+                        savedList.add(inserted);
+                    }
+                    skipStore().putAll(insertedMap);
+                }
+                if (!updates.isEmpty()) {
+                    savedList.addAll(update(currentMap, updates));
+                }
+                transaction.commit();
+            }
+        }
+        return savedList;
+    }
+
+    private List<T> update(Map<ID, T> currentMap, List<T> entities) {
+        Map<ID, T> savedMap = new LinkedHashMap<>(entities.size() * 2);
+        List<T> savedList = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            T current = savedMap.containsKey(entity.getId())
+                    ? savedMap.get(entity.getId())
+                    : currentMap.get(entity.getId());
+            T saved = checkVersion(current, entity, null);
+            savedMap.put(saved.getId(), saved);
+            savedList.add(saved);
+        }
+        cache.putAll(savedMap);
+        return savedList;
+    }
+
+    private IgniteCache<ID, T> skipStore() {
+        return cache.withSkipStore();
+    }
+
+    private Transaction startTransaction() {
+        return ignite.transactions().txStart(TransactionConcurrency.PESSIMISTIC, TransactionIsolation.REPEATABLE_READ);
+    }
+
+    private T requireId(T entity) {
+        Objects.requireNonNull(entity, "entity parameter must not be null");
+        if (!entity.hasID()) {
+            throw new PersistenceException("The entities of a grid DAO must have an assigned identifier");
+        }
+        return entity;
+    }
+
+    private T checkVersion(T current, T entity, ConflictResolver<T> conflictResolver) {
+        EntityCacheStore.requireIdentifiers(getEntityManagerFactory(), entity);
+        if (!(entity instanceof AbstractVersionedEntity)) {
+            return entity;
+        }
+        if (!Objects.equals(current.getVersion(), entity.getVersion())) {
+            optimisticConflictCount.incrementAndGet();
+            T resolved = null == conflictResolver ? null : conflictResolver.resolve(current, entity);
+            if (null == resolved) {
+                throw new OptimisticLockException("The " + getPersistenceClass().getSimpleName() + " "
+                        + entity.getId() + " was updated concurrently", null, entity);
+            }
+            EntityCacheStore.requireIdentifiers(getEntityManagerFactory(), resolved);
+            entity = resolved;
+        }
+        // a copy, so the entity of the caller keeps its version if the cache transaction fails
+        @SuppressWarnings("unchecked")
+        T saved = (T) SerializationHelper.clone(entity);
+        ((AbstractVersionedEntity<?>) saved).setVersion(null == current.getVersion() ? 0L : current.getVersion() + 1);
+        return saved;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T findById(ID id) {
+        return cache.get(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByIds(List<ID> ids) {
+        Map<ID, T> entities = cache.getAll(new LinkedHashSet<>(ids));
+        List<T> found = new ArrayList<>(entities.size());
+        for (ID id : new LinkedHashSet<>(ids)) {
+            T entity = entities.get(id);
+            if (null != entity) {
+                found.add(entity);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete(T entity) {
+        deleteById(requireId(entity).getId());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteById(ID id) {
+        cache.remove(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long countAll() {
+        return databaseDAO.countAll();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long countAll(boolean cacheable) {
+        return databaseDAO.countAll(cacheable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long countAll(QueryRegion queryRegion) {
+        return databaseDAO.countAll(queryRegion);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R extends Number> R countByQuery(Class<R> resultClass, String query, Object... params) {
+        return databaseDAO.countByQuery(resultClass, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R extends Number> R countByQuery(Class<R> resultClass, boolean cacheable, String query,
+            Object... params) {
+        return databaseDAO.countByQuery(resultClass, cacheable, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R extends Number> R countByQuery(Class<R> resultClass, QueryRegion queryRegion, String query,
+            Object... params) {
+        return databaseDAO.countByQuery(resultClass, queryRegion, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R extends Number> R countByQueryAndNamedParams(Class<R> resultClass, String query,
+            Map<String, ?> params) {
+        return databaseDAO.countByQueryAndNamedParams(resultClass, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R extends Number> R countByQueryAndNamedParams(Class<R> resultClass, boolean cacheable, String query,
+            Map<String, ?> params) {
+        return databaseDAO.countByQueryAndNamedParams(resultClass, cacheable, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R extends Number> R countByQueryAndNamedParams(Class<R> resultClass, QueryRegion queryRegion,
+            String query, Map<String, ?> params) {
+        return databaseDAO.countByQueryAndNamedParams(resultClass, queryRegion, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findAll() {
+        return databaseDAO.findAll();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findAll(int firstResult, int maxResults) {
+        return databaseDAO.findAll(firstResult, maxResults);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findAll(boolean cacheable, int firstResult, int maxResults) {
+        return databaseDAO.findAll(cacheable, firstResult, maxResults);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findAll(QueryRegion queryRegion, int firstResult, int maxResults) {
+        return databaseDAO.findAll(queryRegion, firstResult, maxResults);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ID maxById() {
+        return databaseDAO.maxById();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ID maxById(String idAttributeName) {
+        return databaseDAO.maxById(idAttributeName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> R max(String attributeName, Class<R> resultClass) {
+        return databaseDAO.max(attributeName, resultClass);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long maxIdAsLong() {
+        return databaseDAO.maxIdAsLong();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long maxIdAsLong(String idAttributeName) {
+        return databaseDAO.maxIdAsLong(idAttributeName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByQuery(String query, Object... params) {
+        return databaseDAO.findByQuery(query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByQuery(boolean cacheable, String query, Object... params) {
+        return databaseDAO.findByQuery(cacheable, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByQuery(QueryRegion queryRegion, String query, Object... params) {
+        return databaseDAO.findByQuery(queryRegion, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByQuery(boolean cacheable, int firstResult, int maxResults, String query, Object... params) {
+        return databaseDAO.findByQuery(cacheable, firstResult, maxResults, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByQuery(QueryRegion queryRegion, int firstResult, int maxResults, String query,
+            Object... params) {
+        return databaseDAO.findByQuery(queryRegion, firstResult, maxResults, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByQueryAndNamedParams(String query, Map<String, ?> params) {
+        return databaseDAO.findByQueryAndNamedParams(query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByQueryAndNamedParams(boolean cacheable, String query, Map<String, ?> params) {
+        return databaseDAO.findByQueryAndNamedParams(cacheable, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByQueryAndNamedParams(QueryRegion queryRegion, String query, Map<String, ?> params) {
+        return databaseDAO.findByQueryAndNamedParams(queryRegion, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByQueryAndNamedParams(boolean cacheable, int firstResult, int maxResults, String query,
+            Map<String, ?> params) {
+        return databaseDAO.findByQueryAndNamedParams(cacheable, firstResult, maxResults, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByQueryAndNamedParams(QueryRegion queryRegion, int firstResult, int maxResults, String query,
+            Map<String, ?> params) {
+        return databaseDAO.findByQueryAndNamedParams(queryRegion, firstResult, maxResults, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> List<R> findByQuery(Class<R> resultClass, String query, Object... params) {
+        return databaseDAO.findByQuery(resultClass, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> List<R> findByQuery(Class<R> resultClass, boolean cacheable, int firstResult, int maxResults,
+            String query, Object... params) {
+        return databaseDAO.findByQuery(resultClass, cacheable, firstResult, maxResults, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> List<R> findByQuery(Class<R> resultClass, QueryRegion queryRegion, int firstResult, int maxResults,
+            String query, Object... params) {
+        return databaseDAO.findByQuery(resultClass, queryRegion, firstResult, maxResults, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> List<R> findByQueryAndNamedParams(Class<R> resultClass, String query, Map<String, ?> params) {
+        return databaseDAO.findByQueryAndNamedParams(resultClass, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> List<R> findByQueryAndNamedParams(Class<R> resultClass, boolean cacheable, int firstResult,
+            int maxResults, String query, Map<String, ?> params) {
+        return databaseDAO.findByQueryAndNamedParams(resultClass, cacheable, firstResult, maxResults, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> List<R> findByQueryAndNamedParams(Class<R> resultClass, QueryRegion queryRegion, int firstResult,
+            int maxResults, String query, Map<String, ?> params) {
+        return databaseDAO.findByQueryAndNamedParams(resultClass, queryRegion, firstResult, maxResults, query,
+                params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> Stream<R> streamByQuery(Class<R> resultClass, String query, Object... params) {
+        return databaseDAO.streamByQuery(resultClass, query, params);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> Stream<R> streamByQueryAndNamedParams(Class<R> resultClass, String query, Map<String, ?> params) {
+        return databaseDAO.streamByQueryAndNamedParams(resultClass, query, params);
+    }
+
+}
@@ -0,0 +1,571 @@
+package br.com.thiaguten.core;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.cache.CacheException;
+import javax.cache.processor.MutableEntry;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteBinary;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.binary.BinaryObjectBuilder;
+import org.apache.ignite.cache.CacheAtomicityMode;
+import org.apache.ignite.cache.CacheEntryProcessor;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.cache.CacheWriteSynchronizationMode;
+import org.apache.ignite.cache.QueryEntity;
+import org.apache.ignite.cache.QueryIndex;
+import org.apache.ignite.cache.query.FieldsQueryCursor;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.internal.processors.cache.query.IgniteQueryErrorCode;
+import org.apache.ignite.internal.processors.query.IgniteSQLException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.query.spi.HQLQueryPlan;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hql.spi.ParameterTranslations;
+import org.hibernate.hql.spi.QueryTranslator;
+import org.hibernate.internal.util.collections.BoundedConcurrentHashMap;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-only mirror of an entity table kept in an Ignite SQL-queryable cache.
+ * <p>
+ * The mirror cache is described by a {@link QueryEntity} that reuses the table
+ * and column names of the entity mapping, in the same SQL schema for every
+ * mirrored entity. Therefore the SQL that Hibernate generates for a JPQL query
+ * can be executed as-is by the Ignite SQL engine, distributed across all
+ * partitions of the grid, instead of by the database.
+ * <p>
+ * Only single-column basic properties of common JDBC types and many-to-one
+ * foreign keys are mirrored. A query is eligible when it selects the mirrored
+ * entity (or a count), has no collection fetches, only uses named or JPA
+ * positional parameters and only touches mirrored tables and columns. Any
+ * other query returns {@code null} and must be executed by the database.
+ * <p>
+ * The mirror is loaded from the database when created, unless another node
+ * already did, and then updated by the DAO right after its own writes have
+ * been committed, so a grid read reflects every committed DAO write that has
+ * returned, on any node. The row of a versioned entity is only replaced by a
+ * newer version, so two updates of the same entity committed concurrently
+ * leave the latest one in the mirror whatever the order of their puts; the row
+ * of an entity without a version is the one put last. The mirror does not see
+ * uncommitted changes, writes that are in the middle of being committed, nor
+ * writes made outside the DAO (bulk JPQL/SQL updates, other applications);
+ * those require a {@link #reload(int)}. A delete committed concurrently with
+ * an update of the same entity may leave its row until then, counted by
+ * {@link #count} but never returned by a find: entities are always loaded
+ * through the persistence context after the grid query, so entities deleted
+ * in the meantime are skipped.
+ *
+ * @param <ID> the type of the identifier
+ * @param <T>  the type of the persistent class
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class GridQueryMirror<ID extends Serializable, T extends Persistable<ID>> {
+
+    private static final Logger logger = LoggerFactory.getLogger(GridQueryMirror.class);
+
+    /**
+     * SQL schema shared by all mirror caches, so that queries can join them.
+     */
+    public static final String SQL_SCHEMA = "PUBLIC";
+
+    /**
+     * Number of entities loaded per page when the mirror is created.
+     */
+    public static final int LOAD_PAGE_SIZE = 500;
+
+    /**
+     * Maximum number of queries whose grid statement, or whether they are not
+     * eligible to run in the grid, is kept, the least recently used evicted.
+     */
+    public static final int MAX_QUERIES = 2048;
+
+    private static final Set<Class<?>> SUPPORTED_TYPES = new HashSet<>(Arrays.asList(
+            String.class, Boolean.class, Byte.class, Short.class, Integer.class, Long.class, Float.class,
+            Double.class, BigDecimal.class, UUID.class, java.util.Date.class, java.sql.Date.class,
+            java.sql.Time.class, java.sql.Timestamp.class, byte[].class));
+
+    private final Class<T> persistenceClass;
+    private final EntityManagerFactory entityManagerFactory;
+    private final SessionFactoryImplementor sessionFactory;
+    private final AbstractEntityPersister persister;
+    private final IgniteBinary binary;
+    private final IgniteCache<ID, BinaryObject> cache;
+    private final String tableName;
+    private final String valueType;
+    private final Map<Integer, String> mirroredProperties;
+    private final String versionColumn;
+    // bounded like the query plan cache of Hibernate, the queries being built by the callers
+    private final ConcurrentMap<String, GridQuery> queries =
+            new BoundedConcurrentHashMap<>(MAX_QUERIES, 20, BoundedConcurrentHashMap.Eviction.LRU);
+
+    /**
+     * Create the mirror of an entity, loading the entities from the database
+     * if the mirror cache of the cluster is empty.
+     *
+     * @param ignite                the Ignite node
+     * @param entityManagerFactory  the entity manager factory
+     * @param persistenceClass      the persistent class
+     * @param indexedAttributeNames the attributes whose columns are indexed in the grid
+     */
+    public GridQueryMirror(Ignite ignite, EntityManagerFactory entityManagerFactory, Class<T> persistenceClass,
+                           String... indexedAttributeNames) {
+        Objects.requireNonNull(ignite, "ignite parameter must not be null");
+        this.entityManagerFactory = Objects.requireNonNull(
+                entityManagerFactory, "entityManagerFactory parameter must not be null");
+        this.persistenceClass = Objects.requireNonNull(persistenceClass, "persistenceClass parameter must not be null");
+
+        this.sessionFactory = (SessionFactoryImplementor) entityManagerFactory.unwrap(SessionFactory.class);
+        this.persister = (AbstractEntityPersister) sessionFactory.getEntityPersister(persistenceClass.getName());
+        this.binary = ignite.binary();
+        this.tableName = persister.getTableName();
+        this.valueType = persister.getEntityName() + "Row";
+
+        String idColumn = singleColumn(persister.getIdentifierColumnNames());
+        if (null == idColumn) {
+            throw new PersistenceException("Composite identifiers are not supported: " + persister.getEntityName());
+        }
+
+        LinkedHashMap<String, String> fields = new LinkedHashMap<>();
+        fields.put(idColumn, persister.getIdentifierType().getReturnedClass().getName());
+
+        Set<String> indexedColumns = new LinkedHashSet<>();
+        Set<String> indexedAttributes = new HashSet<>(Arrays.asList(indexedAttributeNames));
+        Map<Integer, String> properties = new LinkedHashMap<>();
+        String[] propertyNames = persister.getPropertyNames();
+        Type[] propertyTypes = persister.getPropertyTypes();
+        for (int i = 0; i < propertyNames.length; i++) {
+            String column = singleColumn(persister.getPropertyColumnNames(i));
+            Class<?> columnClass = columnClass(propertyTypes[i]);
+            if (null == column || null == columnClass || fields.containsKey(column)) {
+                continue;
+            }
+            fields.put(column, columnClass.getName());
+            properties.put(i, column);
+            // foreign keys are always indexed as they are used by joins
+            if (propertyTypes[i].isEntityType() || indexedAttributes.contains(propertyNames[i])) {
+                indexedColumns.add(column);
+            }
+        }
+        this.mirroredProperties = Collections.unmodifiableMap(properties);
+        this.versionColumn = persister.isVersioned() ? properties.get(persister.getVersionProperty()) : null;
+
+        QueryEntity queryEntity = new QueryEntity(persister.getIdentifierType().getReturnedClass().getName(), valueType);
+        queryEntity.setTableName(tableName);
+        queryEntity.setKeyFieldName(idColumn);
+        queryEntity.setFields(fields);
+        List<QueryIndex> indexes = new ArrayList<>();
+        for (String column : indexedColumns) {
+            indexes.add(new QueryIndex(column));
+        }
+        queryEntity.setIndexes(indexes);
+
+        CacheConfiguration<ID, BinaryObject> cacheConfiguration = new CacheConfiguration<>(valueType);
+        cacheConfiguration.setCacheMode(CacheMode.PARTITIONED);
+        cacheConfiguration.setAtomicityMode(CacheAtomicityMode.ATOMIC);
+        cacheConfiguration.setWriteSynchronizationMode(CacheWriteSynchronizationMode.FULL_SYNC);
+        cacheConfiguration.setSqlSchema(SQL_SCHEMA);
+        cacheConfiguration.setQueryEntities(Collections.singletonList(queryEntity));
+
+        this.cache = ignite.getOrCreateCache(cacheConfiguration).withKeepBinary();
+        logger.debug("Mirroring {} into grid table {}.{} with columns {}", persister.getEntityName(), SQL_SCHEMA,
+                tableName, fields.keySet());
+
+        // loaded once per cluster, the nodes joining later share the rows already mirrored
+        if (0 == cache.size()) {
+            load(LOAD_PAGE_SIZE);
+        }
+    }
+
+    private static String singleColumn(String[] columns) {
+        return null == columns || columns.length != 1 ? null : columns[0];
+    }
+
+    private Class<?> columnClass(Type type) {
+        if (type.isEntityType()) {
+            // foreign key column, mirrored as the associated identifier
+            String associatedEntityName = ((EntityType) type).getAssociatedEntityName(sessionFactory);
+            return sessionFactory.getEntityPersister(associatedEntityName).getIdentifierType().getReturnedClass();
+        }
+        if (type.isAssociationType() || type.isComponentType()) {
+            return null;
+        }
+        Class<?> returnedClass = type.getReturnedClass();
+        return SUPPORTED_TYPES.contains(returnedClass) ? returnedClass : null;
+    }
+
+    private Object columnValue(Type type, Object value) {
+        if (null == value || !type.isEntityType()) {
+            return value;
+        }
+        if (value instanceof HibernateProxy) {
+            return ((HibernateProxy) value).getHibernateLazyInitializer().getIdentifier();
+        }
+        String associatedEntityName = ((EntityType) type).getAssociatedEntityName(sessionFactory);
+        return sessionFactory.getEntityPersister(associatedEntityName).getIdentifier(value, null);
+    }
+
+    private BinaryObject toRow(T entity) {
+        Object[] values = persister.getPropertyValues(entity);
+        Type[] types = persister.getPropertyTypes();
+        BinaryObjectBuilder builder = binary.builder(valueType);
+        mirroredProperties.forEach((i, column) -> builder.setField(column, columnValue(types[i], values[i])));
+        return builder.build();
+    }
+
+    /**
+     * Mirror (or re-mirror) an entity, unless a newer version of it is
+     * already mirrored.
+     *
+     * @param entity the entity
+     */
+    public void put(T entity) {
+        if (entity != null && entity.hasID()) {
+            if (null == versionColumn) {
+                cache.put(entity.getId(), toRow(entity));
+            } else {
+                cache.invoke(entity.getId(), new VersionedPut<>(versionColumn, toRow(entity)));
+            }
+        }
+    }
+
+    /**
+     * Mirror (or re-mirror) entities.
+     *
+     * @param entities the entities
+     */
+    public void putAll(Collection<T> entities) {
+        if (entities != null && !entities.isEmpty()) {
+            Map<ID, BinaryObject> rows = new LinkedHashMap<>();
+            for (T entity : entities) {
+                if (entity != null && entity.hasID()) {
+                    rows.put(entity.getId(), toRow(entity));
+                }
+            }
+            if (null == versionColumn) {
+                cache.putAll(rows);
+            } else {
+                Map<ID, VersionedPut<ID>> puts = new LinkedHashMap<>();
+                rows.forEach((id, row) -> puts.put(id, new VersionedPut<>(versionColumn, row)));
+                cache.invokeAll(puts);
+            }
+        }
+    }
+
+    /**
+     * Remove an entity from the mirror.
+     *
+     * @param id the entity identifier
+     */
+    public void remove(ID id) {
+        if (id != null) {
+            cache.remove(id);
+        }
+    }
+
+    /**
+     * Remove all entities from the mirror.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Replace the mirror content by the current database content, paging
+     * through the entities ordered by identifier.
+     *
+     * @param pageSize the number of entities loaded per page
+     */
+    public void reload(int pageSize) {
+        clear();
+        load(pageSize);
+    }
+
+    private void load(int pageSize) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            // a full scan, which would otherwise fill the L2 cache with entities nobody asked for
+            entityManager.unwrap(Session.class).setCacheMode(org.hibernate.CacheMode.IGNORE);
+            TypedQuery<T> query = entityManager.createQuery(
+                    "select e from " + persister.getEntityName() + " e order by e.id", persistenceClass);
+            List<T> page;
+            int firstResult = 0;
+            do {
+                page = query.setFirstResult(firstResult).setMaxResults(pageSize).getResultList();
+                putAll(page);
+                entityManager.clear();
+                firstResult += pageSize;
+            } while (page.size() == pageSize);
+            logger.debug("Mirrored {} {} entities into grid table {}.{}", firstResult - pageSize + page.size(),
+                    persister.getEntityName(), SQL_SCHEMA, tableName);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Find the identifiers of the entities selected by a query, in the grid.
+     *
+     * @param query       the JPQL query string
+     * @param params      the query parameters, JPA positional parameters named by their position
+     * @param firstResult the value of first result
+     * @param maxResults  the value of max result
+     * @return the identifiers, or null if the query is not eligible to run in the grid
+     */
+    @SuppressWarnings("unchecked")
+    public List<ID> findIds(String query, Map<String, ?> params, int firstResult, int maxResults) {
+        GridQuery gridQuery = gridQuery(query);
+        if (!gridQuery.eligible || gridQuery.count) {
+            return null;
+        }
+        StringBuilder sql = new StringBuilder(gridQuery.sql);
+        if (maxResults >= 0 || firstResult > 0) {
+            sql.append(" limit ").append(maxResults >= 0 ? maxResults : Integer.MAX_VALUE);
+            sql.append(" offset ").append(Math.max(firstResult, 0));
+        }
+        List<List<?>> rows = execute(query, gridQuery, sql.toString(), params);
+        if (null == rows) {
+            return null;
+        }
+        List<ID> ids = new ArrayList<>(rows.size());
+        for (List<?> row : rows) {
+            ids.add((ID) row.get(0));
+        }
+        return ids;
+    }
+
+    /**
+     * Count by query, in the grid.
+     *
+     * @param <R>         the type of the number class
+     * @param resultClass the number class
+     * @param query       the JPQL query string
+     * @param params      the query parameters, JPA positional parameters named by their position
+     * @return the count, or null if the query is not eligible to run in the grid
+     */
+    public <R extends Number> R count(Class<R> resultClass, String query, Map<String, ?> params) {
+        GridQuery gridQuery = gridQuery(query);
+        if (!gridQuery.eligible || !gridQuery.count) {
+            return null;
+        }
+        List<List<?>> rows = execute(query, gridQuery, gridQuery.sql, params);
+        if (null == rows) {
+            return null;
+        }
+        Number result = rows.isEmpty() || rows.get(0).isEmpty() ? null : (Number) rows.get(0).get(0);
+        return toNumber(resultClass, null == result ? 0L : result);
+    }
+
+    private List<List<?>> execute(String query, GridQuery gridQuery, String sql, Map<String, ?> params) {
+        Object[] args = new Object[gridQuery.argumentCount];
+        for (Map.Entry<String, int[]> parameter : gridQuery.parameterLocations.entrySet()) {
+            if (null == params || !params.containsKey(parameter.getKey())) {
+                throw new PersistenceException("No value bound for query parameter: " + parameter.getKey());
+            }
+            Object value = params.get(parameter.getKey());
+            if (value instanceof Persistable) {
+                value = ((Persistable<?>) value).getId();
+            }
+            for (int location : parameter.getValue()) {
+                args[location] = value;
+            }
+        }
+        SqlFieldsQuery sqlFieldsQuery = new SqlFieldsQuery(sql)
+                .setSchema(SQL_SCHEMA)
+                .setArgs(args)
+                .setDistributedJoins(gridQuery.distributedJoins);
+        try (FieldsQueryCursor<List<?>> cursor = cache.query(sqlFieldsQuery)) {
+            return cursor.getAll();
+        } catch (IgniteException | CacheException e) {
+            if (isNotEligible(e)) {
+                // e.g. a column or table that is not mirrored, remember it and let the database run the query
+                logger.debug("Query is not eligible to run in the grid: {} - {}", query, e.getMessage());
+                queries.put(query, GridQuery.NOT_ELIGIBLE);
+            } else {
+                // e.g. a node leaving in the middle of the query, the next one may run in the grid again
+                logger.warn("Query failed in the grid, running it in the database: {} - {}", query, e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Whether the grid rejected the statement itself, which it always will,
+     * rather than failed to run it.
+     */
+    private static boolean isNotEligible(Throwable e) {
+        for (Throwable cause = e; null != cause; cause = cause.getCause()) {
+            if (cause instanceof IgniteSQLException) {
+                switch (((IgniteSQLException) cause).statusCode()) {
+                    case IgniteQueryErrorCode.PARSING:
+                    case IgniteQueryErrorCode.UNSUPPORTED_OPERATION:
+                    case IgniteQueryErrorCode.TABLE_NOT_FOUND:
+                    case IgniteQueryErrorCode.COLUMN_NOT_FOUND:
+                        return true;
+                    default:
+                        return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private GridQuery gridQuery(String query) {
+        GridQuery gridQuery = queries.get(query);
+        if (null == gridQuery) {
+            gridQuery = compile(query);
+            queries.putIfAbsent(query, gridQuery);
+        }
+        return gridQuery;
+    }
+
+    private GridQuery compile(String query) {
+        HQLQueryPlan plan = sessionFactory.getQueryPlanCache()
+                .getHQLQueryPlan(query, false, Collections.emptyMap());
+        QueryTranslator[] translators = plan.getTranslators();
+        if (!plan.isSelect() || translators.length != 1 || translators[0].containsCollectionFetches()) {
+            return GridQuery.NOT_ELIGIBLE;
+        }
+        QueryTranslator translator = translators[0];
+        Type[] returnTypes = translator.getReturnTypes();
+        if (returnTypes.length != 1) {
+            return GridQuery.NOT_ELIGIBLE;
+        }
+        boolean count;
+        if (returnTypes[0].isEntityType()) {
+            // the root entity identifier is the first selected column
+            count = false;
+            String entityName = ((EntityType) returnTypes[0]).getAssociatedEntityName(sessionFactory);
+            if (!persister.getEntityName().equals(entityName)) {
+                return GridQuery.NOT_ELIGIBLE;
+            }
+        } else if (Number.class.isAssignableFrom(returnTypes[0].getReturnedClass())) {
+            count = true;
+        } else {
+            return GridQuery.NOT_ELIGIBLE;
+        }
+
+        ParameterTranslations parameterTranslations = translator.getParameterTranslations();
+        if (parameterTranslations.getOrdinalParameterCount() > 0) {
+            return GridQuery.NOT_ELIGIBLE;
+        }
+        Map<String, int[]> parameterLocations = new HashMap<>();
+        int argumentCount = 0;
+        for (Object name : parameterTranslations.getNamedParameterNames()) {
+            int[] locations = parameterTranslations.getNamedParameterSqlLocations((String) name);
+            parameterLocations.put((String) name, locations);
+            argumentCount += locations.length;
+        }
+
+        return new GridQuery(translator.getSQLString(), count, translator.getQuerySpaces().size() > 1,
+                parameterLocations, argumentCount);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R extends Number> R toNumber(Class<R> resultClass, Number number) {
+        if (resultClass.isInstance(number)) {
+            return (R) number;
+        } else if (Long.class.equals(resultClass)) {
+            return (R) Long.valueOf(number.longValue());
+        } else if (Integer.class.equals(resultClass)) {
+            return (R) Integer.valueOf(number.intValue());
+        } else if (Short.class.equals(resultClass)) {
+            return (R) Short.valueOf(number.shortValue());
+        } else if (Double.class.equals(resultClass)) {
+            return (R) Double.valueOf(number.doubleValue());
+        } else if (Float.class.equals(resultClass)) {
+            return (R) Float.valueOf(number.floatValue());
+        } else if (BigDecimal.class.equals(resultClass)) {
+            return (R) new BigDecimal(number.toString());
+        }
+        throw new PersistenceException("Unsupported result class: " + resultClass.getName());
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Put of the row of a versioned entity, run on the primary node of the
+     * entity, which only replaces a row of an older version.
+     */
+    private static final class VersionedPut<ID> implements CacheEntryProcessor<ID, BinaryObject, Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String versionColumn;
+        private final BinaryObject row;
+
+        private VersionedPut(String versionColumn, BinaryObject row) {
+            this.versionColumn = versionColumn;
+            this.row = row;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Void process(MutableEntry<ID, BinaryObject> entry, Object... arguments) {
+            BinaryObject current = entry.getValue();
+            Comparable<Object> currentVersion = null == current ? null : current.field(versionColumn);
+            Object version = row.field(versionColumn);
+            if (null == currentVersion || null == version || currentVersion.compareTo(version) < 0) {
+                entry.setValue(row);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Compiled grid query.
+     */
+    private static final class GridQuery {
+
+        private static final GridQuery NOT_ELIGIBLE = new GridQuery(null, false, false, Collections.emptyMap(), 0);
+
+        private final String sql;
+        private final boolean count;
+        private final boolean distributedJoins;
+        private final Map<String, int[]> parameterLocations;
+        private final int argumentCount;
+        private final boolean eligible;
+
+        private GridQuery(String sql, boolean count, boolean distributedJoins, Map<String, int[]> parameterLocations,
+                          int argumentCount) {
+            this.sql = sql;
+            this.count = count;
+            this.distributedJoins = distributedJoins;
+            this.parameterLocations = parameterLocations;
+            this.argumentCount = argumentCount;
+            this.eligible = sql != null;
+        }
+    }
+
+}
@@ -0,0 +1,644 @@
+package br.com.thiaguten.core;
+
+import java.beans.Introspector;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.cache.configuration.FactoryBuilder;
+import javax.persistence.Cacheable;
+import javax.persistence.Entity;
+
+import org.apache.ignite.binary.BinaryTypeConfiguration;
+import org.apache.ignite.cache.CacheAtomicityMode;
+import org.apache.ignite.cache.CacheKeyConfiguration;
+import org.apache.ignite.cache.hibernate.HibernateKeyWrapper;
+import org.apache.ignite.configuration.BinaryConfiguration;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.DataRegionConfiguration;
+import org.apache.ignite.configuration.DataStorageConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.events.CacheEvent;
+import org.apache.ignite.events.Event;
+import org.apache.ignite.events.EventType;
+import org.apache.ignite.lang.IgnitePredicate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.boot.archive.scan.internal.StandardScanOptions;
+import org.hibernate.boot.archive.scan.internal.StandardScanParameters;
+import org.hibernate.boot.archive.scan.internal.StandardScanner;
+import org.hibernate.boot.archive.scan.spi.ClassDescriptor;
+import org.hibernate.boot.archive.scan.spi.ScanEnvironment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates the Ignite caches of the L2 cache regions from the entity model,
+ * each one with the {@link TopologyProfile} selected for its region, so they
+ * do not have to be listed by hand in the Ignite configuration.
+ * <p>
+ * The regions are the ones of the cached entities and collections, named
+ * after the {@link Cache#region()} or, by default, the entity class name and
+ * the collection role, plus the query result and update timestamps regions
+ * and the named query result regions of the {@value #QUERY_REGIONS}
+ * persistence property, a comma separated list (see {@link QueryRegion}).
+ * The profile of a region is, by precedence:
+ * <ol>
+ * <li>the {@value #REGION_PREFIX}&lt;region&gt; persistence property;</li>
+ * <li>the {@link RegionTopology} annotation of the entity or collection;</li>
+ * <li>the {@value #DEFAULT_PROFILE} persistence property, or
+ * {@value TopologyProfile#TRANSACTIONAL} for the entity and collection
+ * regions, and {@value TopologyProfile#QUERY} for the query result
+ * regions.</li>
+ * </ol>
+ * Profiles are defined, or the built-in ones tuned, by the
+ * {@value #PROFILE_PREFIX}&lt;profile&gt;.&lt;setting&gt; persistence
+ * properties, where the settings are the ones of
+ * {@link TopologyProfile#derive(String, Map)} plus {@value #BASE_SETTING}, the
+ * profile the others are derived from (the built-in profile of the same name,
+ * or {@value TopologyProfile#TRANSACTIONAL} by default):
+ *
+ * <pre>
+ * br.com.thiaguten.grid.profile.transactional.backups=1
+ * br.com.thiaguten.grid.profile.reference.base=replicated
+ * br.com.thiaguten.grid.profile.reference.rebalanceMode=ASYNC
+ * br.com.thiaguten.grid.region.br.com.thiaguten.model.PostDetails=reference
+ * </pre>
+ * <p>
+ * The entries of a region expire by the {@link RegionExpiryPolicy} of its
+ * {@value #EXPIRY_PREFIX}&lt;region&gt;.&lt;setting&gt; persistence
+ * properties, where the settings are {@code created}, {@code accessed} and
+ * {@code modified}, in seconds, and of the {@link RegionExpiry} annotation of
+ * the entity or collection, whose settings the properties override, otherwise
+ * by the time to live of its profile, if any. The expired entries are counted
+ * per region by {@link RegionExpirationStats}. The update timestamps region
+ * never expires nor evicts its entries, since the cached query results older
+ * than a missing timestamp would be served as fresh.
+ * <p>
+ * The entries of the regions are stored in the {@link CompactCacheEntrySerializer}
+ * format, unless the {@value #COMPACT_ENTRIES} persistence property is false.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public final class GridRegionTopology {
+
+    private static final Logger logger = LoggerFactory.getLogger(GridRegionTopology.class);
+
+    public static final String PROFILE_PREFIX = "br.com.thiaguten.grid.profile.";
+    public static final String REGION_PREFIX = "br.com.thiaguten.grid.region.";
+    public static final String DEFAULT_PROFILE = "br.com.thiaguten.grid.default_profile";
+    public static final String BASE_SETTING = "base";
+    public static final String COMPACT_ENTRIES = "br.com.thiaguten.grid.compact_entries";
+    public static final String QUERY_REGIONS = "br.com.thiaguten.grid.query_regions";
+    public static final String EXPIRY_PREFIX = "br.com.thiaguten.grid.expiry.";
+
+    public static final String QUERY_RESULTS_REGION = "org.hibernate.cache.internal.StandardQueryCache";
+    public static final String UPDATE_TIMESTAMPS_REGION = "org.hibernate.cache.spi.UpdateTimestampsCache";
+
+    private static final String HIBERNATE_KEY_TYPE = HibernateKeyWrapper.class.getName();
+    // the identifier of the entity, or of the collection owner
+    private static final String HIBERNATE_KEY_ID_FIELD = "key";
+
+    private final Map<String, TopologyProfile> profiles;
+    private final Map<String, String> regionProfileNames;
+    private final Map<String, Map<String, String>> regionExpirySettings;
+    private final String defaultProfileName;
+    private final boolean compactEntries;
+    private final Map<String, TopologyProfile> regions = new LinkedHashMap<>();
+    private final Map<String, RegionExpiryPolicy> expiryPolicies = new LinkedHashMap<>();
+    // the region of each entity name and collection role, which the entries carry instead of the region name
+    private final Map<String, String> entryRegionNames = new LinkedHashMap<>();
+
+    /**
+     * Create the topology of the query result and update timestamps regions,
+     * to which the entity regions are added.
+     *
+     * @param properties the persistence properties
+     * @throws IllegalArgumentException if a profile is unknown or its settings are invalid, or so are the
+     *                                  expiry settings of a region
+     */
+    public GridRegionTopology(Map<String, ?> properties) {
+        Objects.requireNonNull(properties, "properties parameter must not be null");
+        Map<String, Map<String, String>> profileSettings = new LinkedHashMap<>();
+        Map<String, String> regionProfileNames = new LinkedHashMap<>();
+        Map<String, Map<String, String>> regionExpirySettings = new LinkedHashMap<>();
+        for (Map.Entry<String, ?> property : properties.entrySet()) {
+            String key = property.getKey();
+            if (key.startsWith(PROFILE_PREFIX)) {
+                int separator = key.lastIndexOf('.');
+                if (separator < PROFILE_PREFIX.length()) {
+                    throw new IllegalArgumentException("Topology profile property '" + key
+                            + "' must be named " + PROFILE_PREFIX + "<profile>.<setting>");
+                }
+                profileSettings.computeIfAbsent(key.substring(PROFILE_PREFIX.length(), separator),
+                        name -> new LinkedHashMap<>()).put(key.substring(separator + 1), String.valueOf(property.getValue()));
+            } else if (key.startsWith(REGION_PREFIX)) {
+                regionProfileNames.put(key.substring(REGION_PREFIX.length()), String.valueOf(property.getValue()).trim());
+            } else if (key.startsWith(EXPIRY_PREFIX)) {
+                int separator = key.lastIndexOf('.');
+                if (separator < EXPIRY_PREFIX.length()) {
+                    throw new IllegalArgumentException("Region expiry property '" + key
+                            + "' must be named " + EXPIRY_PREFIX + "<region>.<setting>");
+                }
+                regionExpirySettings.computeIfAbsent(key.substring(EXPIRY_PREFIX.length(), separator),
+                        name -> new LinkedHashMap<>()).put(key.substring(separator + 1), String.valueOf(property.getValue()));
+            }
+        }
+
+        Map<String, TopologyProfile> profiles = new LinkedHashMap<>(TopologyProfile.builtIn());
+        for (String name : new ArrayList<>(profileSettings.keySet())) {
+            resolveProfile(name, profileSettings, profiles, new HashSet<>());
+        }
+        this.profiles = Collections.unmodifiableMap(profiles);
+        this.regionProfileNames = regionProfileNames;
+        this.regionExpirySettings = regionExpirySettings;
+        Object defaultProfileName = properties.get(DEFAULT_PROFILE);
+        this.defaultProfileName = null == defaultProfileName
+                ? TopologyProfile.TRANSACTIONAL
+                : String.valueOf(defaultProfileName).trim();
+        getProfile(this.defaultProfileName);
+        Object compactEntries = properties.get(COMPACT_ENTRIES);
+        this.compactEntries = null == compactEntries || Boolean.parseBoolean(String.valueOf(compactEntries).trim());
+
+        addRegion(QUERY_RESULTS_REGION, TopologyProfile.QUERY);
+        addRegion(UPDATE_TIMESTAMPS_REGION, TopologyProfile.ATOMIC);
+        for (String queryRegion : getQueryRegionNames(properties)) {
+            addRegion(queryRegion, TopologyProfile.QUERY);
+        }
+    }
+
+    /**
+     * Get the named query result regions declared by the {@value #QUERY_REGIONS}
+     * persistence property.
+     *
+     * @param properties the persistence properties
+     * @return the region names, in the declared order
+     */
+    public static Set<String> getQueryRegionNames(Map<String, ?> properties) {
+        Objects.requireNonNull(properties, "properties parameter must not be null");
+        Set<String> queryRegionNames = new LinkedHashSet<>();
+        Object queryRegions = properties.get(QUERY_REGIONS);
+        if (null != queryRegions) {
+            for (String queryRegion : String.valueOf(queryRegions).split(",")) {
+                if (!queryRegion.trim().isEmpty()) {
+                    queryRegionNames.add(queryRegion.trim());
+                }
+            }
+        }
+        return queryRegionNames;
+    }
+
+    /**
+     * Create the topology of the entities listed by the build-time
+     * {@link EntityIndex} of the classpath or, without an index, found by
+     * scanning the classpath roots like {@link PersistenceUnitInfoImpl} does.
+     *
+     * @param properties  the persistence properties
+     * @param classLoader the class loader of the persistence unit
+     * @return the region topology
+     * @throws IllegalStateException if a listed class cannot be loaded
+     */
+    public static GridRegionTopology fromEntityIndex(Map<String, ?> properties, ClassLoader classLoader) {
+        EntityIndex entityIndex = EntityIndex.load(classLoader);
+        List<String> managedClassNames;
+        if (null == entityIndex) {
+            logger.warn("No {} resource found, scanning the classpath for the entity regions",
+                    EntityIndex.RESOURCE_NAME);
+            managedClassNames = scanManagedClassNames(classLoader);
+        } else {
+            managedClassNames = entityIndex.getManagedClassNames();
+        }
+        GridRegionTopology topology = new GridRegionTopology(properties);
+        for (String managedClassName : managedClassNames) {
+            try {
+                topology.addEntity(Class.forName(managedClassName, false, classLoader));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Could not load the indexed class " + managedClassName, e);
+            }
+        }
+        return topology;
+    }
+
+    private static List<String> scanManagedClassNames(ClassLoader classLoader) {
+        URL rootUrl = classLoader.getResource("");
+        List<URL> jarUrls = new ArrayList<>();
+        try {
+            for (URL url : Collections.list(classLoader.getResources(""))) {
+                if ("jar".equalsIgnoreCase(url.getProtocol())) {
+                    jarUrls.add(url);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ScanEnvironment environment = new ScanEnvironment() {
+            @Override
+            public URL getRootUrl() {
+                return rootUrl;
+            }
+
+            @Override
+            public List<URL> getNonRootUrls() {
+                return jarUrls;
+            }
+
+            @Override
+            public List<String> getExplicitlyListedClassNames() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public List<String> getExplicitlyListedMappingFiles() {
+                return Collections.emptyList();
+            }
+        };
+        List<String> managedClassNames = new ArrayList<>();
+        for (ClassDescriptor located : new StandardScanner()
+                .scan(environment, new StandardScanOptions("class", false), StandardScanParameters.INSTANCE)
+                .getLocatedClasses()) {
+            if (ClassDescriptor.Categorization.MODEL.equals(located.getCategorization())) {
+                managedClassNames.add(located.getName());
+            }
+        }
+        return managedClassNames;
+    }
+
+    private static TopologyProfile resolveProfile(String name, Map<String, Map<String, String>> profileSettings,
+                                                  Map<String, TopologyProfile> profiles, Set<String> resolving) {
+        Map<String, String> settings = profileSettings.get(name);
+        if (null == settings) {
+            TopologyProfile profile = profiles.get(name);
+            if (null == profile) {
+                throw new IllegalArgumentException("Unknown topology profile '" + name + "'");
+            }
+            return profile;
+        }
+        if (!resolving.add(name)) {
+            throw new IllegalArgumentException("Topology profile '" + name
+                    + "' is derived from itself, directly or not");
+        }
+        settings = new LinkedHashMap<>(settings);
+        String baseName = settings.remove(BASE_SETTING);
+        TopologyProfile base;
+        if (null != baseName) {
+            base = resolveProfile(baseName.trim(), profileSettings, profiles, resolving);
+        } else {
+            base = TopologyProfile.builtIn().getOrDefault(name, TopologyProfile.builtIn().get(TopologyProfile.TRANSACTIONAL));
+        }
+        TopologyProfile profile = base.derive(name, settings);
+        profiles.put(name, profile);
+        profileSettings.remove(name);
+        return profile;
+    }
+
+    /**
+     * Add the regions of a cached entity and of its cached collections. Classes
+     * that are not entities are ignored, and so is the entity region of the
+     * subclasses of an entity, which share the region of the root entity, but
+     * not the collections they declare.
+     *
+     * @param entityClass the entity class
+     * @return this topology
+     * @throws IllegalArgumentException if the profile of a region is unknown or does not support the
+     *                                  cache concurrency strategy of the region
+     */
+    public GridRegionTopology addEntity(Class<?> entityClass) {
+        if (!entityClass.isAnnotationPresent(Entity.class)) {
+            return this;
+        }
+        Class<?> rootClass = entityClass;
+        while (isEntity(rootClass.getSuperclass())) {
+            rootClass = rootClass.getSuperclass();
+        }
+        Cache cache = rootClass.getAnnotation(Cache.class);
+        Cacheable cacheable = rootClass.getAnnotation(Cacheable.class);
+        if (null != cache || (null != cacheable && cacheable.value())) {
+            String regionName = null == cache || cache.region().isEmpty() ? rootClass.getName() : cache.region();
+            if (rootClass == entityClass) {
+                addRegion(regionName, entityClass, null == cache ? null : cache.usage());
+            }
+            entryRegionNames.put(entityClass.getName(), regionName);
+        }
+        // up to the entity superclass, if any, whose collections are its own roles
+        for (Class<?> type = entityClass; null != type && !Object.class.equals(type)
+                && (type == entityClass || !type.isAnnotationPresent(Entity.class)); type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                addCollection(entityClass, field.getName(), field);
+            }
+            for (Method method : type.getDeclaredMethods()) {
+                if (method.getName().startsWith("get") && method.getParameterCount() == 0) {
+                    addCollection(entityClass, Introspector.decapitalize(method.getName().substring(3)), method);
+                }
+            }
+        }
+        return this;
+    }
+
+    private static boolean isEntity(Class<?> type) {
+        for (; null != type && !Object.class.equals(type); type = type.getSuperclass()) {
+            if (type.isAnnotationPresent(Entity.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addCollection(Class<?> entityClass, String attributeName, AnnotatedElement attribute) {
+        Cache cache = attribute.getAnnotation(Cache.class);
+        if (null != cache) {
+            String role = entityClass.getName() + "." + attributeName;
+            String regionName = cache.region().isEmpty() ? role : cache.region();
+            addRegion(regionName, attribute, cache.usage());
+            entryRegionNames.put(role, regionName);
+        }
+    }
+
+    private void addRegion(String regionName, AnnotatedElement annotated, CacheConcurrencyStrategy usage) {
+        RegionTopology regionTopology = annotated.getAnnotation(RegionTopology.class);
+        TopologyProfile profile = addRegion(regionName, null == regionTopology ? defaultProfileName : regionTopology.value(),
+                annotated.getAnnotation(RegionExpiry.class));
+        if ((CacheConcurrencyStrategy.READ_WRITE.equals(usage) || CacheConcurrencyStrategy.TRANSACTIONAL.equals(usage))
+                && !CacheAtomicityMode.TRANSACTIONAL.equals(profile.getAtomicityMode())) {
+            // the Ignite access strategy locks the entries in a cache transaction
+            throw new IllegalArgumentException("Region '" + regionName + "' uses the " + usage
+                    + " cache concurrency strategy, which needs a TRANSACTIONAL profile, but profile '"
+                    + profile.getName() + "' is " + profile.getAtomicityMode());
+        }
+    }
+
+    /**
+     * Add a region, with the profile of its {@value #REGION_PREFIX}&lt;region&gt;
+     * persistence property if any, otherwise the given profile, and the expiry
+     * policy of its {@value #EXPIRY_PREFIX}&lt;region&gt;.&lt;setting&gt;
+     * persistence properties if any.
+     *
+     * @param regionName  the region name
+     * @param profileName the profile name
+     * @return the profile of the region
+     * @throws IllegalArgumentException if the profile is unknown or the expiry settings are invalid, or the
+     *                                  update timestamps region would expire or evict its entries
+     */
+    public TopologyProfile addRegion(String regionName, String profileName) {
+        return addRegion(regionName, profileName, null);
+    }
+
+    private TopologyProfile addRegion(String regionName, String profileName, RegionExpiry regionExpiry) {
+        Objects.requireNonNull(regionName, "regionName parameter must not be null");
+        TopologyProfile profile = getProfile(regionProfileNames.getOrDefault(regionName, profileName));
+        RegionExpiryPolicy expiryPolicy = RegionExpiryPolicy.of(regionExpiry, regionExpirySettings.get(regionName),
+                regionName);
+        if (UPDATE_TIMESTAMPS_REGION.equals(regionName)
+                && (profile.getTimeToLive() > 0 || profile.getMaxSizeMb() > 0 || null != expiryPolicy)) {
+            // a missing timestamp makes the query results cached before the last update of their tables look fresh
+            throw new IllegalArgumentException("Region '" + regionName + "' must never expire nor evict its entries,"
+                    + " but profile '" + profile.getName() + "' has timeToLive=" + profile.getTimeToLive()
+                    + " and maxSizeMb=" + profile.getMaxSizeMb() + ", and its expiry policy is " + expiryPolicy);
+        }
+        regions.put(regionName, profile);
+        if (null == expiryPolicy) {
+            expiryPolicies.remove(regionName);
+        } else {
+            expiryPolicies.put(regionName, expiryPolicy);
+        }
+        return profile;
+    }
+
+    /**
+     * Get a profile, built-in or defined by the persistence properties.
+     *
+     * @param name the profile name
+     * @return the profile
+     * @throws IllegalArgumentException if the profile is unknown
+     */
+    public TopologyProfile getProfile(String name) {
+        TopologyProfile profile = profiles.get(Objects.requireNonNull(name, "name parameter must not be null"));
+        if (null == profile) {
+            throw new IllegalArgumentException("Unknown topology profile '" + name + "', the known ones are "
+                    + profiles.keySet());
+        }
+        return profile;
+    }
+
+    /**
+     * Get the regions added so far.
+     *
+     * @return the profile of each region, by region name
+     */
+    public Map<String, TopologyProfile> getRegions() {
+        return Collections.unmodifiableMap(regions);
+    }
+
+    /**
+     * Get the expiry policies of the regions added so far, which override the
+     * time to live of their profile.
+     *
+     * @return the expiry policy of each region with one, by region name
+     */
+    public Map<String, RegionExpiryPolicy> getExpiryPolicies() {
+        return Collections.unmodifiableMap(expiryPolicies);
+    }
+
+    private boolean isExpiring(String regionName) {
+        return expiryPolicies.containsKey(regionName) || regions.get(regionName).getTimeToLive() > 0;
+    }
+
+    /**
+     * Create the configurations of the caches of the regions.
+     * <p>
+     * The entries of the regions are placed by the identifier of their entity,
+     * or of the owner of their collection, instead of the whole Hibernate key,
+     * so the regions of an aggregate keyed by the same identifier (e.g. the
+     * shared primary key of a one-to-one association and the collections of
+     * the root entity) are collocated when their profiles have the same
+     * partitions.
+     *
+     * @return the cache configurations
+     * @throws IllegalArgumentException if a region with expiry settings was never added
+     */
+    public List<CacheConfiguration<Object, Object>> createCacheConfigurations() {
+        Set<String> unknownRegionNames = new LinkedHashSet<>(regionExpirySettings.keySet());
+        unknownRegionNames.removeAll(regions.keySet());
+        if (!unknownRegionNames.isEmpty()) {
+            // most likely a misspelled region name, whose entries would never expire
+            throw new IllegalArgumentException("Regions " + unknownRegionNames + " have expiry settings, but are not"
+                    + " regions of the topology, whose regions are " + regions.keySet());
+        }
+        List<CacheConfiguration<Object, Object>> cacheConfigurations = new ArrayList<>(regions.size());
+        for (Map.Entry<String, TopologyProfile> region : regions.entrySet()) {
+            CacheConfiguration<Object, Object> cacheConfiguration = region.getValue().toCacheConfiguration(region.getKey())
+                    .setKeyConfiguration(new CacheKeyConfiguration(HIBERNATE_KEY_TYPE, HIBERNATE_KEY_ID_FIELD));
+            RegionExpiryPolicy expiryPolicy = expiryPolicies.get(region.getKey());
+            if (null != expiryPolicy) {
+                cacheConfiguration.setExpiryPolicyFactory(FactoryBuilder.factoryOf(expiryPolicy));
+            }
+            cacheConfigurations.add(cacheConfiguration);
+        }
+        return cacheConfigurations;
+    }
+
+    /**
+     * Create the format of the entries of the regions, which interns the entity
+     * names and collection roles of the entities added, and compresses the
+     * entity entries of the regions whose profile has a compression threshold.
+     *
+     * @param igniteInstanceName the name of the Ignite instance of the format, or null for the default instance
+     * @return the entry format
+     */
+    public CompactCacheEntrySerializer createEntrySerializer(String igniteInstanceName) {
+        return new CompactCacheEntrySerializer(entryRegionNames, getCompressionThresholds(), igniteInstanceName);
+    }
+
+    private Map<String, Integer> getCompressionThresholds() {
+        Map<String, Integer> compressionThresholds = new LinkedHashMap<>();
+        for (Map.Entry<String, TopologyProfile> region : regions.entrySet()) {
+            if (region.getValue().getCompressionThreshold() > 0) {
+                compressionThresholds.put(region.getKey(), region.getValue().getCompressionThreshold());
+            }
+        }
+        return compressionThresholds;
+    }
+
+    /**
+     * Add the caches of the regions to an Ignite configuration, before the node
+     * is started, with the data regions of the regions whose memory is bounded,
+     * the binary types of the compact entry format if enabled, and the listener
+     * of the expired entries if a region expires its entries. The caches, data
+     * regions, binary types, recorded events and listeners already configured
+     * by hand are kept as they are.
+     *
+     * @param igniteConfiguration the Ignite configuration
+     * @return the Ignite configuration
+     * @throws IllegalArgumentException if a region with expiry settings was never added
+     */
+    public IgniteConfiguration applyTo(IgniteConfiguration igniteConfiguration) {
+        List<CacheConfiguration<?, ?>> cacheConfigurations = new ArrayList<>();
+        List<DataRegionConfiguration> dataRegionConfigurations = new ArrayList<>();
+        Set<String> configuredNames = new HashSet<>();
+        boolean expiring = false;
+        if (null != igniteConfiguration.getCacheConfiguration()) {
+            for (CacheConfiguration<?, ?> cacheConfiguration : igniteConfiguration.getCacheConfiguration()) {
+                cacheConfigurations.add(cacheConfiguration);
+                configuredNames.add(cacheConfiguration.getName());
+            }
+        }
+        for (CacheConfiguration<Object, Object> cacheConfiguration : createCacheConfigurations()) {
+            if (configuredNames.contains(cacheConfiguration.getName())) {
+                logger.info("Region '{}' is configured by hand, its {} profile is ignored",
+                        cacheConfiguration.getName(), regions.get(cacheConfiguration.getName()).getName());
+            } else {
+                TopologyProfile profile = regions.get(cacheConfiguration.getName());
+                cacheConfigurations.add(cacheConfiguration);
+                DataRegionConfiguration dataRegionConfiguration =
+                        profile.toDataRegionConfiguration(cacheConfiguration.getName());
+                if (null != dataRegionConfiguration) {
+                    dataRegionConfigurations.add(dataRegionConfiguration);
+                }
+                logger.info("Region '{}' uses the {}", cacheConfiguration.getName(), profile);
+                if (expiryPolicies.containsKey(cacheConfiguration.getName())) {
+                    logger.info("Region '{}' expires by the {}", cacheConfiguration.getName(),
+                            expiryPolicies.get(cacheConfiguration.getName()));
+                }
+                expiring |= isExpiring(cacheConfiguration.getName());
+            }
+        }
+        igniteConfiguration.setCacheConfiguration(cacheConfigurations.toArray(new CacheConfiguration<?, ?>[0]));
+        if (!dataRegionConfigurations.isEmpty()) {
+            applyDataRegionsTo(igniteConfiguration, dataRegionConfigurations);
+        }
+        if (expiring) {
+            applyExpirationListenerTo(igniteConfiguration);
+        }
+        if (compactEntries) {
+            applyEntrySerializerTo(igniteConfiguration);
+        } else if (!getCompressionThresholds().isEmpty()) {
+            logger.warn("Regions {} are not compressed, since {} is false", getCompressionThresholds().keySet(),
+                    COMPACT_ENTRIES);
+        }
+        return igniteConfiguration;
+    }
+
+    private static void applyDataRegionsTo(IgniteConfiguration igniteConfiguration,
+                                           List<DataRegionConfiguration> dataRegionConfigurations) {
+        DataStorageConfiguration dataStorageConfiguration = null == igniteConfiguration.getDataStorageConfiguration()
+                ? new DataStorageConfiguration()
+                : igniteConfiguration.getDataStorageConfiguration();
+        List<DataRegionConfiguration> configurations = new ArrayList<>();
+        Set<String> configuredNames = new HashSet<>();
+        if (null != dataStorageConfiguration.getDataRegionConfigurations()) {
+            for (DataRegionConfiguration dataRegionConfiguration : dataStorageConfiguration.getDataRegionConfigurations()) {
+                configurations.add(dataRegionConfiguration);
+                configuredNames.add(dataRegionConfiguration.getName());
+            }
+        }
+        for (DataRegionConfiguration dataRegionConfiguration : dataRegionConfigurations) {
+            if (!configuredNames.contains(dataRegionConfiguration.getName())) {
+                configurations.add(dataRegionConfiguration);
+            }
+        }
+        dataStorageConfiguration.setDataRegionConfigurations(configurations.toArray(new DataRegionConfiguration[0]));
+        igniteConfiguration.setDataStorageConfiguration(dataStorageConfiguration);
+    }
+
+    private static void applyExpirationListenerTo(IgniteConfiguration igniteConfiguration) {
+        String igniteInstanceName = igniteConfiguration.getIgniteInstanceName();
+        // the cache metrics do not count the expired entries, so their events are recorded, and only them
+        int[] includeEventTypes = null == igniteConfiguration.getIncludeEventTypes()
+                ? new int[0]
+                : igniteConfiguration.getIncludeEventTypes();
+        boolean included = false;
+        for (int includeEventType : includeEventTypes) {
+            included |= EventType.EVT_CACHE_OBJECT_EXPIRED == includeEventType;
+        }
+        if (!included) {
+            includeEventTypes = Arrays.copyOf(includeEventTypes, includeEventTypes.length + 1);
+            includeEventTypes[includeEventTypes.length - 1] = EventType.EVT_CACHE_OBJECT_EXPIRED;
+            igniteConfiguration.setIncludeEventTypes(includeEventTypes);
+        }
+        Map<IgnitePredicate<? extends Event>, int[]> localEventListeners =
+                null == igniteConfiguration.getLocalEventListeners()
+                        ? new LinkedHashMap<>()
+                        : new LinkedHashMap<>(igniteConfiguration.getLocalEventListeners());
+        IgnitePredicate<CacheEvent> expirationListener = event -> {
+            RegionExpirationStats.forRegion(igniteInstanceName, event.cacheName()).recordExpiration();
+            return true;
+        };
+        localEventListeners.put(expirationListener, new int[]{EventType.EVT_CACHE_OBJECT_EXPIRED});
+        igniteConfiguration.setLocalEventListeners(localEventListeners);
+    }
+
+    private void applyEntrySerializerTo(IgniteConfiguration igniteConfiguration) {
+        BinaryConfiguration binaryConfiguration = null == igniteConfiguration.getBinaryConfiguration()
+                ? new BinaryConfiguration()
+                : igniteConfiguration.getBinaryConfiguration();
+        List<BinaryTypeConfiguration> typeConfigurations = new ArrayList<>();
+        Set<String> configuredTypeNames = new HashSet<>();
+        if (null != binaryConfiguration.getTypeConfigurations()) {
+            for (BinaryTypeConfiguration typeConfiguration : binaryConfiguration.getTypeConfigurations()) {
+                typeConfigurations.add(typeConfiguration);
+                configuredTypeNames.add(typeConfiguration.getTypeName());
+            }
+        }
+        CompactCacheEntrySerializer entrySerializer = createEntrySerializer(igniteConfiguration.getIgniteInstanceName());
+        for (BinaryTypeConfiguration typeConfiguration : entrySerializer.createTypeConfigurations()) {
+            if (!configuredTypeNames.contains(typeConfiguration.getTypeName())) {
+                typeConfigurations.add(typeConfiguration);
+            }
+        }
+        binaryConfiguration.setTypeConfigurations(typeConfigurations);
+        igniteConfiguration.setBinaryConfiguration(binaryConfiguration);
+    }
+
+}
@@ -3,6 +3,7 @@ package br.com.thiaguten.core;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -52,6 +53,23 @@ public interface IDAO<ID extends Serializable, T extends Persistable<ID>> {
      */
     T saveOrUpdate(final T entity);
 
+    /**
+     * Create or Update an entity based on ID, retrying the update when it is
+     * rejected by optimistic locking because the entity was concurrently
+     * updated.
+     * <p>
+     * On each conflict the current state of the entity is read and passed to
+     * the conflict resolver along with the rejected entity, and the entity it
+     * returns is saved in the next attempt, after a random backoff.
+     *
+     * @param entity           entity to be created/updated
+     * @param conflictResolver the conflict resolver, or null to fail on the first conflict
+     * @return the created entity
+     * @throws javax.persistence.OptimisticLockException if the conflict could not be resolved
+     * @see AbstractVersionedEntity
+     */
+    T saveOrUpdate(final T entity, ConflictResolver<T> conflictResolver);
+
     /**
      * Create or Update entities based on ID.
      *
@@ -69,6 +87,14 @@ public interface IDAO<ID extends Serializable, T extends Persistable<ID>> {
      */
     T findById(final ID id);
 
+    /**
+     * Read entities by their identifiers.
+     *
+     * @param ids entity identifiers to be read
+     * @return the entities found, once each, in the order of their identifiers
+     */
+    List<T> findByIds(final List<ID> ids);
+
     /**
      * Delete an entity.
      *
@@ -98,6 +124,14 @@ public interface IDAO<ID extends Serializable, T extends Persistable<ID>> {
      */
     Long countAll(boolean cacheable);
 
+    /**
+     * Count all entities.
+     *
+     * @param queryRegion the query cache region, or null to not cache the count
+     * @return the number of entities
+     */
+    Long countAll(QueryRegion queryRegion);
+
     /**
      * Count by query and parameters.
      *
@@ -121,6 +155,18 @@ public interface IDAO<ID extends Serializable, T extends Persistable<ID>> {
      */
     <R extends Number> R countByQuery(Class<R> resultClass, boolean cacheable, String query, Object... params);
 
+    /**
+     * Count by query and parameters.
+     *
+     * @param <R>         the type of the number class
+     * @param resultClass the number class
+     * @param queryRegion the query cache region, or null to not cache the count
+     * @param query       the query string
+     * @param params      the query positional parameters
+     * @return the count of entities
+     */
+    <R extends Number> R countByQuery(Class<R> resultClass, QueryRegion queryRegion, String query, Object... params);
+
     /**
      * Count by query and parameters.
      *
@@ -144,6 +190,18 @@ public interface IDAO<ID extends Serializable, T extends Persistable<ID>> {
      */
     <R extends Number> R countByQueryAndNamedParams(Class<R> resultClass, boolean cacheable, String query, Map<String, ?> params);
 
+    /**
+     * Count by query and parameters.
+     *
+     * @param <R>         the type of the number class
+     * @param resultClass the number class
+     * @param queryRegion the query cache region, or null to not cache the count
+     * @param query       the query string
+     * @param params      the query named parameters
+     * @return the count of entities
+     */
+    <R extends Number> R countByQueryAndNamedParams(Class<R> resultClass, QueryRegion queryRegion, String query, Map<String, ?> params);
+
     /**
      * Load all entities.
      *
@@ -170,6 +228,16 @@ public interface IDAO<ID extends Serializable, T extends Persistable<ID>> {
      */
     List<T> findAll(boolean cacheable, int firstResult, int maxResults);
 
+    /**
+     * Load entities.
+     *
+     * @param queryRegion the query cache region, or null to not cache the results
+     * @param firstResult the value of first result
+     * @param maxResults  the value of max result
+     * @return the list of entities
+     */
+    List<T> findAll(QueryRegion queryRegion, int firstResult, int maxResults);
+
     /**
      * Get the largest value by id attribute name.
      *
@@ -225,6 +293,17 @@ public interface IDAO<ID extends Serializable, T extends Persistable<ID>> {
      */
     List<T> findByQuery(boolean cacheable, String query, Object... params);
 
+    /**
+     * Find by query, caching the results in a query cache region, so they do
+     * not compete for memory with the results of the other queries.
+     *
+     * @param queryRegion the query cache region, or null to not cache the results
+     * @param query       the query string
+     * @param params      the query string positional parameters
+     * @return the list of entities
+     */
+    List<T> findByQuery(QueryRegion queryRegion, String query, Object... params);
+
     /**
      * Find by query.
      *
@@ -237,6 +316,19 @@ public interface IDAO<ID extends Serializable, T extends Persistable<ID>> {
      */
     List<T> findByQuery(boolean cacheable, int firstResult, int maxResults, String query, Object... params);
 
+    /**
+     * Find by query.
+     *
+     * @param queryRegion the query cache region, or null to not cache the results
+     * @param firstResult the value of first result
+     * @param maxResults  the value of max result
+     * @param query       the query string
+     * @param params      the query string positional parameters
+     * @return the list of entities
+     * @see #findByQuery(QueryRegion, String, Object...)
+     */
+    List<T> findByQuery(QueryRegion queryRegion, int firstResult, int maxResults, String query, Object... params);
+
     /**
      * Find by query and parameters.
      *
@@ -256,6 +348,17 @@ public interface IDAO<ID extends Serializable, T extends Persistable<ID>> {
      */
     List<T> findByQueryAndNamedParams(boolean cacheable, String query, Map<String, ?> params);
 
+    /**
+     * Find by query and parameters.
+     *
+     * @param queryRegion the query cache region, or null to not cache the results
+     * @param query       the query string
+     * @param params      the query string parameters
+     * @return the list of entities
+     * @see #findByQuery(QueryRegion, String, Object...)
+     */
+    List<T> findByQueryAndNamedParams(QueryRegion queryRegion, String query, Map<String, ?> params);
+
     /**
      * Find by query and parameters.
      *
@@ -268,4 +371,138 @@ public interface IDAO<ID extends Serializable, T extends Persistable<ID>> {
      */
     List<T> findByQueryAndNamedParams(boolean cacheable, int firstResult, int maxResults, String query, Map<String, ?> params);
 
+    /**
+     * Find by query and parameters.
+     *
+     * @param queryRegion the query cache region, or null to not cache the results
+     * @param firstResult the value of first result
+     * @param maxResults  the value of max result
+     * @param query       the query string
+     * @param params      the query string parameters
+     * @return the list of entities
+     * @see #findByQuery(QueryRegion, String, Object...)
+     */
+    List<T> findByQueryAndNamedParams(QueryRegion queryRegion, int firstResult, int maxResults, String query, Map<String, ?> params);
+
+    /**
+     * Find by query, returning plain result objects instead of managed entities.
+     * <p>
+     * The results are scalars, objects created by a {@code select new}
+     * constructor expression, or tuples mapped to the result class constructor
+     * whose parameters match the selected values by position.
+     *
+     * @param <R>         the type of the result class
+     * @param resultClass the result class
+     * @param query       the query string
+     * @param params      the query string positional parameters
+     * @return the list of results
+     */
+    <R> List<R> findByQuery(Class<R> resultClass, String query, Object... params);
+
+    /**
+     * Find by query, returning plain result objects instead of managed entities.
+     *
+     * @param <R>         the type of the result class
+     * @param resultClass the result class
+     * @param cacheable   enable query cache
+     * @param firstResult the value of first result
+     * @param maxResults  the value of max result
+     * @param query       the query string
+     * @param params      the query string positional parameters
+     * @return the list of results
+     * @see #findByQuery(Class, String, Object...)
+     */
+    <R> List<R> findByQuery(Class<R> resultClass, boolean cacheable, int firstResult, int maxResults, String query, Object... params);
+
+    /**
+     * Find by query, returning plain result objects instead of managed entities.
+     *
+     * @param <R>         the type of the result class
+     * @param resultClass the result class
+     * @param queryRegion the query cache region, or null to not cache the results
+     * @param firstResult the value of first result
+     * @param maxResults  the value of max result
+     * @param query       the query string
+     * @param params      the query string positional parameters
+     * @return the list of results
+     * @see #findByQuery(Class, String, Object...)
+     * @see #findByQuery(QueryRegion, String, Object...)
+     */
+    <R> List<R> findByQuery(Class<R> resultClass, QueryRegion queryRegion, int firstResult, int maxResults, String query, Object... params);
+
+    /**
+     * Find by query and parameters, returning plain result objects instead of managed entities.
+     *
+     * @param <R>         the type of the result class
+     * @param resultClass the result class
+     * @param query       the query string
+     * @param params      the query string parameters
+     * @return the list of results
+     * @see #findByQuery(Class, String, Object...)
+     */
+    <R> List<R> findByQueryAndNamedParams(Class<R> resultClass, String query, Map<String, ?> params);
+
+    /**
+     * Find by query and parameters, returning plain result objects instead of managed entities.
+     *
+     * @param <R>         the type of the result class
+     * @param resultClass the result class
+     * @param cacheable   enable query cache
+     * @param firstResult the value of first result
+     * @param maxResults  the value of max result
+     * @param query       the query string
+     * @param params      the query string parameters
+     * @return the list of results
+     * @see #findByQuery(Class, String, Object...)
+     */
+    <R> List<R> findByQueryAndNamedParams(Class<R> resultClass, boolean cacheable, int firstResult, int maxResults, String query, Map<String, ?> params);
+
+    /**
+     * Find by query and parameters, returning plain result objects instead of managed entities.
+     *
+     * @param <R>         the type of the result class
+     * @param resultClass the result class
+     * @param queryRegion the query cache region, or null to not cache the results
+     * @param firstResult the value of first result
+     * @param maxResults  the value of max result
+     * @param query       the query string
+     * @param params      the query string parameters
+     * @return the list of results
+     * @see #findByQuery(Class, String, Object...)
+     * @see #findByQuery(QueryRegion, String, Object...)
+     */
+    <R> List<R> findByQueryAndNamedParams(Class<R> resultClass, QueryRegion queryRegion, int firstResult, int maxResults, String query, Map<String, ?> params);
+
+    /**
+     * Stream by query, returning plain result objects that are read lazily
+     * from the database without any persistence context.
+     * <p>
+     * The stream holds database resources and must be closed, e.g. with a
+     * try-with-resources statement.
+     *
+     * @param <R>         the type of the result class
+     * @param resultClass the result class
+     * @param query       the query string
+     * @param params      the query string positional parameters
+     * @return the stream of results
+     * @see #findByQuery(Class, String, Object...)
+     */
+    <R> Stream<R> streamByQuery(Class<R> resultClass, String query, Object... params);
+
+    /**
+     * Stream by query and parameters, returning plain result objects that are
+     * read lazily from the database without any persistence context.
+     * <p>
+     * The stream holds database resources and must be closed, e.g. with a
+     * try-with-resources statement.
+     *
+     * @param <R>         the type of the result class
+     * @param resultClass the result class
+     * @param query       the query string
+     * @param params      the query string parameters
+     * @return the stream of results
+     * @see #findByQuery(Class, String, Object...)
+     */
+    <R> Stream<R> streamByQueryAndNamedParams(Class<R> resultClass, String query, Map<String, ?> params);
+
 }
@@ -0,0 +1,178 @@
+package br.com.thiaguten.core;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Durable high-water marks of the ID suppliers, kept in a table of one row per
+ * supplier:
+ *
+ * <pre>
+ * CREATE TABLE ID_HIGH_WATER_MARK (NAME VARCHAR(255) PRIMARY KEY, HIGH_WATER BIGINT NOT NULL)
+ * </pre>
+ * <p>
+ * The table is created when missing. A high-water mark never decreases, so a
+ * supplier that only hands out IDs up to its high-water mark can restart from
+ * it, reading one row by primary key, instead of scanning the entity table for
+ * the largest ID.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ * @see AbstractIDSupplier
+ */
+public final class IDHighWaterMark {
+
+    private static final Logger logger = LoggerFactory.getLogger(IDHighWaterMark.class);
+
+    public static final String DEFAULT_TABLE = "ID_HIGH_WATER_MARK";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final String table;
+    private volatile boolean tableChecked;
+
+    public IDHighWaterMark(EntityManagerFactory entityManagerFactory) {
+        this(entityManagerFactory, DEFAULT_TABLE);
+    }
+
+    public IDHighWaterMark(EntityManagerFactory entityManagerFactory, String table) {
+        this.entityManagerFactory = Objects.requireNonNull(entityManagerFactory,
+                "entityManagerFactory parameter must not be null");
+        this.table = Objects.requireNonNull(table, "table parameter must not be null");
+    }
+
+    /**
+     * Get the high-water mark of a supplier.
+     *
+     * @param name the supplier name
+     * @return the high-water mark, or null if the supplier has none yet
+     */
+    public Long get(String name) {
+        Objects.requireNonNull(name, "name parameter must not be null");
+        return execute(name, connection -> {
+            try {
+                return select(connection, name);
+            } catch (SQLException e) {
+                throw new PersistenceException("Could not read the high-water mark of " + name, e);
+            }
+        });
+    }
+
+    /**
+     * Raise the high-water mark of a supplier to a value, unless it is already
+     * greater than or equal to the minimum value. The high-water mark is durable
+     * once this method returns.
+     *
+     * @param name     the supplier name
+     * @param minimum  the minimum high-water mark required
+     * @param advanced the high-water mark set if the current one is below the minimum
+     * @return the high-water mark, greater than or equal to the minimum
+     */
+    public long advance(String name, long minimum, long advanced) {
+        Objects.requireNonNull(name, "name parameter must not be null");
+        if (advanced < minimum) {
+            throw new IllegalArgumentException("advanced parameter must not be less than the minimum");
+        }
+        return execute(name, connection -> {
+            try {
+                // conditional, so concurrent advances of several nodes never lower the mark
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "update " + table + " set HIGH_WATER = ? where NAME = ? and HIGH_WATER < ?")) {
+                    statement.setLong(1, advanced);
+                    statement.setString(2, name);
+                    statement.setLong(3, minimum);
+                    statement.executeUpdate();
+                }
+                Long highWater = select(connection, name);
+                if (null == highWater) {
+                    try (PreparedStatement statement = connection.prepareStatement(
+                            "insert into " + table + " (NAME, HIGH_WATER) values (?, ?)")) {
+                        statement.setString(1, name);
+                        statement.setLong(2, advanced);
+                        statement.executeUpdate();
+                    }
+                    highWater = advanced;
+                }
+                return highWater;
+            } catch (SQLException e) {
+                throw new PersistenceException("Could not advance the high-water mark of " + name, e);
+            }
+        });
+    }
+
+    private Long select(Connection connection, String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "select HIGH_WATER from " + table + " where NAME = ?")) {
+            statement.setString(1, name);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : null;
+            }
+        }
+    }
+
+    private static boolean tableExists(DatabaseMetaData metaData, String tableName) throws SQLException {
+        try (ResultSet tables = metaData.getTables(null, null, tableName, new String[]{"TABLE"})) {
+            return tables.next();
+        }
+    }
+
+    private <R> R execute(String name, Function<Connection, R> work) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            R result = entityManager.unwrap(Session.class).doReturningWork(connection -> {
+                if (!tableChecked) {
+                    createTableIfMissing(connection);
+                }
+                return work.apply(connection);
+            });
+            transaction.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e instanceof PersistenceException ? e
+                    : new PersistenceException("Could not access the high-water mark of " + name, e);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private void createTableIfMissing(Connection connection) {
+        try {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String tableName = metaData.storesLowerCaseIdentifiers() ? table.toLowerCase() : table.toUpperCase();
+            if (!tableExists(metaData, tableName)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("create table " + table
+                            + " (NAME varchar(255) not null primary key, HIGH_WATER bigint not null)");
+                    logger.info("Created the ID high-water mark table {}", table);
+                } catch (SQLException e) {
+                    // created meanwhile by another supplier or node
+                    if (!tableExists(metaData, tableName)) {
+                        throw e;
+                    }
+                }
+            }
+            tableChecked = true;
+        } catch (SQLException e) {
+            throw new PersistenceException("Could not create the ID high-water mark table " + table, e);
+        }
+    }
+
+}
@@ -0,0 +1,183 @@
+package br.com.thiaguten.core;
+
+import java.util.Arrays;
+
+/**
+ * Pure Java codec of the LZ4 block format, for the small values of the L2
+ * cache entries: a greedy compressor with a single hash table, which trades
+ * some ratio for speed, and a decompressor of any LZ4 block.
+ * <p>
+ * The blocks carry no header, so the decompressed length must be stored along
+ * with them.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ * @see CompactCacheEntrySerializer
+ */
+final class LZ4BlockCodec {
+
+    private static final int MIN_MATCH = 4;
+    // the last match starts 12 bytes before the end, the last 5 bytes are literals
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int LAST_LITERALS = 5;
+    private static final int MAX_OFFSET = 65535;
+    private static final int MIN_HASH_LOG = 8;
+    private static final int MAX_HASH_LOG = 12;
+    private static final int RUN_MASK = 15;
+
+    private static final ThreadLocal<int[]> hashTable = ThreadLocal.withInitial(() -> new int[1 << MAX_HASH_LOG]);
+
+    private LZ4BlockCodec() {
+    }
+
+    /**
+     * Compress a value, unless it does not shrink.
+     *
+     * @param src the value
+     * @return the compressed block, or null if it is not smaller than the value
+     */
+    static byte[] compress(byte[] src) {
+        int length = src.length;
+        byte[] dst = new byte[Math.max(0, length - 1)];
+        int op = 0;
+        int anchor = 0;
+        if (length > MATCH_FIND_LIMIT) {
+            // a table of about a slot per byte, so the small values do not pay for clearing a large one
+            int hashLog = Math.max(MIN_HASH_LOG, Math.min(MAX_HASH_LOG, 32 - Integer.numberOfLeadingZeros(length - 1)));
+            int[] table = hashTable.get();
+            Arrays.fill(table, 0, 1 << hashLog, -1);
+            int matchLimit = length - LAST_LITERALS;
+            int ip = 0;
+            while (ip < length - MATCH_FIND_LIMIT) {
+                int sequence = readInt(src, ip);
+                int hash = (sequence * -1640531535) >>> (32 - hashLog);
+                int ref = table[hash];
+                table[hash] = ip;
+                if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                    ip++;
+                    continue;
+                }
+                while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ip + matchLength] == src[ref + matchLength]) {
+                    matchLength++;
+                }
+                op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dst, op);
+                if (op < 0) {
+                    return null;
+                }
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+        op = writeSequence(src, anchor, length - anchor, 0, 0, dst, op);
+        return op < 0 ? null : Arrays.copyOf(dst, op);
+    }
+
+    /**
+     * Write a sequence: the literals, then the match if any.
+     *
+     * @return the position after the sequence, or -1 if it does not fit
+     */
+    private static int writeSequence(byte[] src, int literalStart, int literalLength, int offset, int matchLength,
+                                     byte[] dst, int op) {
+        int required = 1 + literalLength + literalLength / 255 + 1 + (matchLength > 0 ? 2 + matchLength / 255 + 1 : 0);
+        if (op + required > dst.length) {
+            // possibly too pessimistic by a few bytes, but then the value hardly shrinks
+            return -1;
+        }
+        int tokenPosition = op++;
+        int token = Math.min(literalLength, RUN_MASK) << 4;
+        op = writeLength(literalLength, dst, op);
+        System.arraycopy(src, literalStart, dst, op, literalLength);
+        op += literalLength;
+        if (matchLength > 0) {
+            dst[op++] = (byte) offset;
+            dst[op++] = (byte) (offset >>> 8);
+            token |= Math.min(matchLength - MIN_MATCH, RUN_MASK);
+            op = writeLength(matchLength - MIN_MATCH, dst, op);
+        }
+        dst[tokenPosition] = (byte) token;
+        return op;
+    }
+
+    private static int writeLength(int length, byte[] dst, int op) {
+        if (length >= RUN_MASK) {
+            int remaining = length - RUN_MASK;
+            for (; remaining >= 255; remaining -= 255) {
+                dst[op++] = (byte) 255;
+            }
+            dst[op++] = (byte) remaining;
+        }
+        return op;
+    }
+
+    /**
+     * Decompress a block.
+     *
+     * @param src    the block
+     * @param length the decompressed length
+     * @return the decompressed value
+     * @throws IllegalArgumentException if the block is malformed or its decompressed length differs
+     */
+    static byte[] decompress(byte[] src, int length) {
+        byte[] dst = new byte[length];
+        int ip = 0;
+        int op = 0;
+        try {
+            while (true) {
+                int token = src[ip++] & 0xFF;
+                int literalLength = token >>> 4;
+                if (RUN_MASK == literalLength) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literalLength += b;
+                    } while (255 == b);
+                }
+                System.arraycopy(src, ip, dst, op, literalLength);
+                ip += literalLength;
+                op += literalLength;
+                if (ip == src.length) {
+                    break;
+                }
+                int offset = (src[ip++] & 0xFF) | (src[ip++] & 0xFF) << 8;
+                int matchLength = token & RUN_MASK;
+                if (RUN_MASK == matchLength) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (255 == b);
+                }
+                matchLength += MIN_MATCH;
+                int ref = op - offset;
+                if (0 == offset || ref < 0) {
+                    throw new IllegalArgumentException("Malformed LZ4 block, offset " + offset + " at " + op);
+                }
+                if (offset >= matchLength) {
+                    System.arraycopy(dst, ref, dst, op, matchLength);
+                    op += matchLength;
+                } else {
+                    // the match overlaps the bytes it repeats
+                    for (int end = op + matchLength; op < end; ) {
+                        dst[op++] = dst[ref++];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed LZ4 block, or not of " + length + " bytes", e);
+        }
+        if (op != length) {
+            throw new IllegalArgumentException("LZ4 block of " + op + " bytes instead of " + length);
+        }
+        return dst;
+    }
+
+    private static int readInt(byte[] src, int i) {
+        return (src[i] & 0xFF) | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF) << 16 | (src[i + 3] & 0xFF) << 24;
+    }
+
+}
@@ -0,0 +1,127 @@
+package br.com.thiaguten.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power of two buckets of nanoseconds.
+ * <p>
+ * Recording a value is a couple of atomic increments, so it can be done in the
+ * hot path of every connection acquisition. The percentiles are approximated
+ * by the upper bound of the bucket (at most twice the real value).
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        // bucket i holds the values from 2^(i-1) to 2^i - 1, and the bucket 0 holds zero
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+        count.increment();
+        sum.add(value);
+    }
+
+    /**
+     * Take a snapshot of the recorded latencies and reset the histogram, so
+     * each snapshot covers the latencies recorded since the previous one.
+     *
+     * @return the snapshot of the latencies
+     */
+    public Snapshot snapshotAndReset() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.getAndSet(i, 0);
+        }
+        return new Snapshot(counts, count.sumThenReset(), sum.sumThenReset());
+    }
+
+    /**
+     * Immutable view of the latencies recorded in a period.
+     *
+     * @author Thiago Gutenberg Carvalho da Costa
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        private Snapshot(long[] counts, long count, long sum) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Get the mean latency.
+         *
+         * @return the mean latency in nanoseconds, zero if nothing was recorded
+         */
+        public long getMeanNanos() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        /**
+         * Get an approximation of a percentile of the latencies.
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return the upper bound in nanoseconds of the bucket of the percentile, zero if nothing was recorded
+         */
+        public long getPercentileNanos(double percentile) {
+            // the counters are not reset atomically with the buckets, so the buckets are the source of truth
+            long total = 0;
+            for (long bucketCount : counts) {
+                total += bucketCount;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(1, rank)) {
+                    return i == 0 ? 0 : (1L << i) - 1;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        /**
+         * Get the number of latencies per bucket.
+         *
+         * @return the counts, where the bucket i holds the latencies from 2^(i-1) to 2^i - 1 nanoseconds
+         */
+        public long[] getBucketCounts() {
+            return counts.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count
+                    + ", mean=" + TimeUnit.NANOSECONDS.toMicros(getMeanNanos()) + "us"
+                    + ", p50=" + TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(50)) + "us"
+                    + ", p95=" + TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(95)) + "us"
+                    + ", p99=" + TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(99)) + "us";
+        }
+
+    }
+
+}
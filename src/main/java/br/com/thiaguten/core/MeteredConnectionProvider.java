@@ -0,0 +1,137 @@
+package br.com.thiaguten.core;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import javax.persistence.PersistenceException;
+
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.ServiceRegistryAwareService;
+import org.hibernate.service.spi.ServiceRegistryImplementor;
+import org.hibernate.service.spi.Stoppable;
+
+/**
+ * Hibernate connection provider that measures the connections of another
+ * connection provider into the {@link PoolTelemetry} of its pool, so the pool
+ * created by Hibernate itself (e.g. the HikariCP connection provider) can be
+ * observed and resized like a pool created by the application.
+ * <p>
+ * Configured through the following properties:
+ * <ul>
+ * <li>{@value #DELEGATE} - the class name of the measured connection provider,
+ * the HikariCP connection provider by default;</li>
+ * <li>{@value #POOL_NAME} - the pool name of the telemetry, which should match
+ * the name of the pool created by the measured connection provider.</li>
+ * </ul>
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class MeteredConnectionProvider implements ConnectionProvider, Configurable, Stoppable,
+        ServiceRegistryAwareService {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String DELEGATE = "br.com.thiaguten.metered_connection_provider.delegate";
+    public static final String POOL_NAME = "hibernate.hikari.poolName";
+
+    private static final String DEFAULT_DELEGATE = "org.hibernate.hikaricp.internal.HikariCPConnectionProvider";
+
+    private transient ServiceRegistryImplementor serviceRegistry;
+    private transient ConnectionProvider delegate;
+    private transient PoolTelemetry telemetry;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void injectServices(ServiceRegistryImplementor serviceRegistry) {
+        this.serviceRegistry = serviceRegistry;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void configure(Map configurationValues) {
+        Object delegateClassName = configurationValues.get(DELEGATE);
+        String className = null == delegateClassName ? DEFAULT_DELEGATE : delegateClassName.toString();
+        try {
+            delegate = (ConnectionProvider) Class.forName(className, true, getClass().getClassLoader()).newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new PersistenceException("Could not create the connection provider " + className, e);
+        }
+        if (delegate instanceof ServiceRegistryAwareService) {
+            ((ServiceRegistryAwareService) delegate).injectServices(serviceRegistry);
+        }
+        if (delegate instanceof Configurable) {
+            ((Configurable) delegate).configure(configurationValues);
+        }
+        Object poolName = configurationValues.get(POOL_NAME);
+        telemetry = PoolTelemetry.forPool(null == poolName ? className : poolName.toString());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = delegate.getConnection();
+        return telemetry.acquired(connection, System.nanoTime() - start);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void closeConnection(Connection connection) throws SQLException {
+        delegate.closeConnection(connection);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return delegate.supportsAggressiveRelease();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean isUnwrappableAs(Class unwrapType) {
+        return unwrapType.isInstance(this) || delegate.isUnwrappableAs(unwrapType);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> unwrapType) {
+        if (unwrapType.isInstance(this)) {
+            return (T) this;
+        }
+        if (delegate.isUnwrappableAs(unwrapType)) {
+            return delegate.unwrap(unwrapType);
+        }
+        throw new UnknownUnwrapTypeException(unwrapType);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stop() {
+        if (delegate instanceof Stoppable) {
+            ((Stoppable) delegate).stop();
+        }
+    }
+
+}
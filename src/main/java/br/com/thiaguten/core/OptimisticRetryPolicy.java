@@ -0,0 +1,80 @@
+package br.com.thiaguten.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded retry policy of the updates rejected by optimistic locking.
+ * <p>
+ * Between attempts the caller waits a random time between zero and an
+ * exponentially growing limit ("full jitter"), so the writers that collided
+ * on a hot entity do not collide again on the next attempt.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public final class OptimisticRetryPolicy {
+
+    /**
+     * Up to 5 attempts, with a backoff limit from 1 to 50 milliseconds.
+     */
+    public static final OptimisticRetryPolicy DEFAULT = new OptimisticRetryPolicy(5, 1, 50, TimeUnit.MILLISECONDS);
+
+    /**
+     * A single attempt, the conflicts are not retried.
+     */
+    public static final OptimisticRetryPolicy NONE = new OptimisticRetryPolicy(1, 0, 0, TimeUnit.MILLISECONDS);
+
+    private final int maxAttempts;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+
+    /**
+     * Create a retry policy.
+     *
+     * @param maxAttempts the maximum number of attempts, including the first one
+     * @param baseBackoff the backoff limit after the first attempt, doubled on every attempt
+     * @param maxBackoff  the maximum backoff limit
+     * @param unit        the time unit of the backoff parameters
+     */
+    public OptimisticRetryPolicy(int maxAttempts, long baseBackoff, long maxBackoff, TimeUnit unit) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts parameter must be positive");
+        }
+        if (baseBackoff < 0 || maxBackoff < baseBackoff) {
+            throw new IllegalArgumentException("Backoff bounds must satisfy 0 <= baseBackoff <= maxBackoff");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffNanos = unit.toNanos(baseBackoff);
+        this.maxBackoffNanos = unit.toNanos(maxBackoff);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Get the backoff limit after an attempt.
+     *
+     * @param attempt the failed attempt, starting from 1
+     * @return the backoff limit in nanoseconds
+     */
+    public long getBackoffLimitNanos(int attempt) {
+        int shift = Math.min(attempt - 1, 62);
+        // doubled without overflowing
+        return baseBackoffNanos > maxBackoffNanos >> shift ? maxBackoffNanos : baseBackoffNanos << shift;
+    }
+
+    /**
+     * Wait a random time before the next attempt.
+     *
+     * @param attempt the failed attempt, starting from 1
+     */
+    public void backoff(int attempt) {
+        long limit = getBackoffLimitNanos(attempt);
+        if (limit > 0) {
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(limit + 1));
+        }
+    }
+
+}
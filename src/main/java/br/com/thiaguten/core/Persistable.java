@@ -32,4 +32,15 @@ public interface Persistable<ID extends Serializable> extends Serializable {
     default boolean hasID() {
         return this.getId() != null;
     }
+
+    /**
+     * Get the version used to detect concurrent updates of this instance
+     * (optimistic locking).
+     *
+     * @return the version, or null if this instance is not versioned or has not been saved yet
+     * @see AbstractVersionedEntity
+     */
+    default Long getVersion() {
+        return null;
+    }
 }
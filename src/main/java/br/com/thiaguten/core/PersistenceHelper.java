@@ -5,18 +5,26 @@ import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.persistence.CacheStoreMode;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
 import javax.persistence.Persistence;
 import javax.persistence.PersistenceException;
 import javax.persistence.spi.PersistenceProvider;
 import javax.persistence.spi.PersistenceProviderResolverHolder;
 import javax.persistence.spi.PersistenceUnitInfo;
 
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
 import org.hibernate.Session;
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.jdbc.Work;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
 import org.hibernate.jpa.boot.spi.Bootstrap;
+import org.hibernate.jpa.boot.spi.EntityManagerFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,12 +46,14 @@ public final class PersistenceHelper {
     private EntityManagerFactory entityManagerFactory;
     private AtomicBoolean initialized = new AtomicBoolean(false);
     private ThreadLocal<EntityManager> entityManagerHolder = new ThreadLocal<>();
+    // the number of beginTransaction calls of the current thread not ended yet
+    private final ThreadLocal<Integer> transactionDepthHolder = new ThreadLocal<>();
+    private final AtomicLong leakedTransactionCount = new AtomicLong();
+    private volatile boolean recycleEntityManager;
+    private volatile ReplicaRoutingDataSource replicaRoutingDataSource;
 
     private PersistenceHelper() {
-        // singleton
-
-        // Add JVM shutdown hook to close resource and avoid memory leaks.
-        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+        // singleton, unless created by newInstance
     }
 
     /**
@@ -53,6 +63,11 @@ public final class PersistenceHelper {
      */
     private static class LazySingletonHolder {
         private static final PersistenceHelper INSTANCE = new PersistenceHelper();
+
+        static {
+            // Add JVM shutdown hook to close resource and avoid memory leaks.
+            Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::close));
+        }
     }
 
     /**
@@ -64,6 +79,19 @@ public final class PersistenceHelper {
         return LazySingletonHolder.INSTANCE;
     }
 
+    /**
+     * Create a persistence helper apart from the singleton instance, with its
+     * own entity manager factory (e.g. one for each node of an in-JVM cluster).
+     * The DAOs use it through {@link AbstractDAO#setPersistenceHelper(PersistenceHelper)}.
+     * Unlike the singleton instance, it is not closed on the JVM shutdown, so
+     * its owner must {@link #close()} it.
+     *
+     * @return a new persistence helper instance, not initialized
+     */
+    public static PersistenceHelper newInstance() {
+        return new PersistenceHelper();
+    }
+
     public EntityManager createEntityManager() {
         logger.debug("Creating entity manager instance");
         return getEntityManagerFactory().createEntityManager();
@@ -115,25 +143,257 @@ public final class PersistenceHelper {
 //	}
 
     /**
-     * Close an application-managed entity manager.
+     * Checks if the entity manager of the current thread, if any, has an
+     * active transaction, without creating one.
+     *
+     * @return true if the current thread has an active transaction, otherwise false
+     */
+    public boolean isTransactionActive() {
+        EntityManager entityManager = entityManagerHolder.get();
+        return entityManager != null && entityManager.isOpen() && entityManager.getTransaction().isActive();
+    }
+
+    /**
+     * Begin a transaction in the entity manager of the current thread, or join
+     * the one begun by a previous call not ended yet, e.g. the transaction of a
+     * caller spanning several DAO operations. Each call must be ended by
+     * {@link #commitTransaction()} or {@link #rollbackTransaction()}, and only
+     * the end of the first one commits or rolls back the transaction.
+     * <p>
+     * A transaction active in the entity manager without this method is a
+     * leaked transaction: it is rolled back, counted and logged.
+     *
+     * @see #getLeakedTransactionCount()
+     */
+    public void beginTransaction() {
+        EntityManager entityManager = getEntityManager();
+        int depth = getTransactionDepth();
+        if (0 == depth) {
+            EntityTransaction transaction = entityManager.getTransaction();
+            if (transaction.isActive()) {
+                rollbackLeakedTransaction(entityManager);
+            }
+            transaction.begin();
+        }
+        transactionDepthHolder.set(depth + 1);
+    }
+
+    /**
+     * End a {@link #beginTransaction()} call, committing the transaction if it
+     * is the first one.
+     *
+     * @throws IllegalStateException if no transaction was begun by {@link #beginTransaction()}
+     */
+    public void commitTransaction() {
+        int depth = getTransactionDepth();
+        if (0 == depth) {
+            throw new IllegalStateException("No transaction begun by beginTransaction on the current thread");
+        }
+        setTransactionDepth(depth - 1);
+        if (1 == depth) {
+            getEntityManager().getTransaction().commit();
+            markWrite();
+        }
+    }
+
+    /**
+     * End a {@link #beginTransaction()} call, rolling back the transaction if
+     * it is the first one, otherwise marking it for rollback, so the first one
+     * cannot commit it. Without a transaction begun by {@link #beginTransaction()},
+     * e.g. after its commit failed, the active transaction, if any, is rolled back.
+     */
+    public void rollbackTransaction() {
+        int depth = getTransactionDepth();
+        setTransactionDepth(Math.max(0, depth - 1));
+        EntityManager entityManager = entityManagerHolder.get();
+        if (entityManager != null && entityManager.isOpen() && entityManager.getTransaction().isActive()) {
+            if (depth > 1) {
+                entityManager.getTransaction().setRollbackOnly();
+            } else {
+                entityManager.getTransaction().rollback();
+            }
+        }
+    }
+
+    private int getTransactionDepth() {
+        Integer depth = transactionDepthHolder.get();
+        return null == depth ? 0 : depth;
+    }
+
+    private void setTransactionDepth(int depth) {
+        if (0 == depth) {
+            transactionDepthHolder.remove();
+        } else {
+            transactionDepthHolder.set(depth);
+        }
+    }
+
+    /**
+     * Get the number of transactions that were active, but not begun by
+     * {@link #beginTransaction()}, when the entity manager was released or a
+     * transaction was begun, and were rolled back.
+     *
+     * @return the number of leaked transactions
+     */
+    public long getLeakedTransactionCount() {
+        return leakedTransactionCount.get();
+    }
+
+    /**
+     * Checks if the entity managers are recycled.
+     *
+     * @return true if the entity managers are recycled, otherwise false
+     */
+    public boolean isRecycleEntityManager() {
+        return recycleEntityManager;
+    }
+
+    /**
+     * Enable or disable the recycling of the entity managers. When enabled,
+     * {@link #closeEntityManager()} does not close the entity manager of the
+     * current thread: its persistence context is cleared, its JDBC connection is
+     * released to the connection pool and its session settings are restored, so
+     * the same session object is reused by the next operation of the thread.
+     *
+     * @param recycleEntityManager true to enable the recycling
+     */
+    public void setRecycleEntityManager(boolean recycleEntityManager) {
+        this.recycleEntityManager = recycleEntityManager;
+    }
+
+    /**
+     * Close an application-managed entity manager, or recycle it when the
+     * recycling is enabled.
+     * <p>
+     * An entity manager released in a transaction begun by {@link #beginTransaction()}
+     * and not ended yet is left open, for the operation that began it, e.g. a DAO
+     * read run in the transaction of its caller. An entity manager released
+     * with any other active transaction (a leaked transaction) is never reused:
+     * the transaction is rolled back, the entity manager is closed and the leak
+     * is counted and logged.
+     *
+     * @see #setRecycleEntityManager(boolean)
+     * @see #getLeakedTransactionCount()
      */
     public void closeEntityManager() {
         EntityManager entityManager = entityManagerHolder.get();
         if (entityManager != null && entityManager.isOpen()) {
-            logger.debug("Closing entity manager instance");
-            if (logger.isDebugEnabled()) {
-                Session session = entityManager.unwrap(Session.class);
-                session.doWork(new Work() {
-                    @Override
-                    public void execute(Connection connection) throws SQLException {
-                        if (connection != null && connection instanceof ConnectionProxy) {
-                            logger.debug("Closing connection proxy (virtual), releasing the connection to the connection pool - {}", connection);
-                        }
-                    }
-                });
+            if (entityManager.getTransaction().isActive()) {
+                if (getTransactionDepth() > 0) {
+                    logger.debug("Entity manager released in an active transaction of the caller, leaving it open");
+                    return;
+                }
+                rollbackLeakedTransaction(entityManager);
+                discardEntityManager(entityManager);
+            } else if (!recycleEntityManager || !recycleEntityManager(entityManager)) {
+                discardEntityManager(entityManager);
             }
+        }
+        routeToPrimary();
+    }
+
+    /**
+     * Get the replica routing data source configured as the
+     * {@value org.hibernate.cfg.AvailableSettings#DATASOURCE} property.
+     *
+     * @return the replica routing data source, or null if the connections are not routed
+     */
+    public ReplicaRoutingDataSource getReplicaRoutingDataSource() {
+        return replicaRoutingDataSource;
+    }
+
+    /**
+     * Route the connection that the current thread acquires next to a read-only
+     * replica, until {@link #closeEntityManager()} or {@link #routeToPrimary()}.
+     * Has no effect if the connections are not routed.
+     *
+     * @see ReplicaRoutingDataSource
+     */
+    public void routeToReplica() {
+        ReplicaRoutingDataSource dataSource = replicaRoutingDataSource;
+        if (dataSource != null) {
+            dataSource.setReplicaRoute(true);
+        }
+    }
+
+    /**
+     * Route the connections of the current thread to the primary database.
+     */
+    public void routeToPrimary() {
+        ReplicaRoutingDataSource dataSource = replicaRoutingDataSource;
+        if (dataSource != null) {
+            dataSource.setReplicaRoute(false);
+        }
+    }
+
+    /**
+     * Record that the current thread has committed a write to the primary
+     * database, for the read-your-writes stickiness of the routing.
+     */
+    public void markWrite() {
+        ReplicaRoutingDataSource dataSource = replicaRoutingDataSource;
+        if (dataSource != null) {
+            dataSource.markWrite();
+        }
+    }
+
+    private void initializeRouting(Map<String, Object> props) {
+        Object dataSource = null == props ? null : props.get(AvailableSettings.DATASOURCE);
+        if (dataSource instanceof ReplicaRoutingDataSource) {
+            replicaRoutingDataSource = (ReplicaRoutingDataSource) dataSource;
+            logger.info("Routing read-only operations to {} replica(s) - {}",
+                    replicaRoutingDataSource.getReplicas().size(), replicaRoutingDataSource.getReplicaSelection());
+        }
+    }
+
+    private void rollbackLeakedTransaction(EntityManager entityManager) {
+        leakedTransactionCount.incrementAndGet();
+        logger.warn("Entity manager with an active transaction not begun by beginTransaction, rolling it back - {}",
+                entityManager);
+        try {
+            entityManager.getTransaction().rollback();
+        } catch (RuntimeException e) {
+            logger.warn("Could not roll back the leaked transaction", e);
+        }
+    }
+
+    private boolean recycleEntityManager(EntityManager entityManager) {
+        try {
+            logger.debug("Recycling entity manager instance");
+            Session session = entityManager.unwrap(Session.class);
+            session.clear();
+            // restores the settings that the operations may have changed (e.g. read-only mode)
+            session.setDefaultReadOnly(false);
+            session.setFlushMode(FlushMode.AUTO);
+            entityManager.setProperty(org.hibernate.jpa.AvailableSettings.SHARED_CACHE_STORE_MODE, CacheStoreMode.USE);
+            session.setCacheMode(CacheMode.NORMAL);
+            // releases the JDBC connection to the connection pool, it is acquired again on demand
+            session.disconnect();
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Could not recycle the entity manager, discarding it", e);
+            return false;
+        }
+    }
+
+    private void discardEntityManager(EntityManager entityManager) {
+        logger.debug("Closing entity manager instance");
+        if (logger.isDebugEnabled()) {
+            Session session = entityManager.unwrap(Session.class);
+            session.doWork(new Work() {
+                @Override
+                public void execute(Connection connection) throws SQLException {
+                    if (connection != null && connection instanceof ConnectionProxy) {
+                        logger.debug("Closing connection proxy (virtual), releasing the connection to the connection pool - {}", connection);
+                    }
+                }
+            });
+        }
+        try {
             entityManager.close();
+        } finally {
             entityManagerHolder.set(null);
+            transactionDepthHolder.remove();
         }
     }
 
@@ -152,13 +412,17 @@ public final class PersistenceHelper {
      * releasing any resources that it holds.
      */
     public void close() {
-        closeEntityManager();
+        EntityManager entityManager = entityManagerHolder.get();
+        if (entityManager != null && entityManager.isOpen()) {
+            discardEntityManager(entityManager);
+        }
         closeEntityManagerFactory();
     }
 
     /**
-     * Initialize JPA bootstrap process by creating a new EntityManagerFactory and
-     * EntityManager instances.
+     * Initialize JPA bootstrap process by creating a new EntityManagerFactory
+     * instance. The EntityManager instances are created on demand, by the
+     * thread that uses them.
      * <p>
      * Through this initialization method the META-INF/persistence.xml file is
      * mandatory.
@@ -170,15 +434,16 @@ public final class PersistenceHelper {
         logger.info("Init JPA bootstrap process");
         if (initialized.compareAndSet(false, true)) {
             logger.debug("Creating entity manager factory instance");
+            initializeRouting(props);
             entityManagerFactory = Persistence.createEntityManagerFactory(name, props);
-            entityManagerHolder.set(createEntityManager());
 //			entityManagerHolder = ThreadLocal.withInitial(this::createEntityManager);
         }
     }
 
     /**
-     * Initialize JPA bootstrap process by creating a new EntityManagerFactory and
-     * EntityManager instances.
+     * Initialize JPA bootstrap process by creating a new EntityManagerFactory
+     * instance. The EntityManager instances are created on demand, by the
+     * thread that uses them.
      * <p>
      * Through this initialization method the META-INF/persistence.xml file is NOT
      * mandatory.
@@ -197,12 +462,55 @@ public final class PersistenceHelper {
              * a PersistenceUnitInfo and also a Classloader as a parameter, different from
              * the Persistence class of the JPA specification.
              */
+            initializeRouting(props);
             entityManagerFactory = Bootstrap.getEntityManagerFactoryBuilder(info, props, classLoader).build();
-            entityManagerHolder.set(createEntityManager());
 //			entityManagerHolder = ThreadLocal.withInitial(this::createEntityManager);
         }
     }
 
+    /**
+     * Prepare the JPA bootstrap process by reading the persistence unit and
+     * building its mapping metadata, without creating the EntityManagerFactory.
+     * <p>
+     * The metadata building does not need the database nor the L2 cache, so it
+     * can run concurrently with their startup, and the EntityManagerFactory is
+     * created later by {@link #initialize(EntityManagerFactoryBuilder, Map)}.
+     *
+     * @param info  persistence unit info
+     * @param props persistence unit properties
+     * @return the entity manager factory builder, with its metadata built
+     */
+    public EntityManagerFactoryBuilder prepare(PersistenceUnitInfo info, Map<String, Object> props) {
+        logger.debug("Building the metadata of the persistence unit {}", info.getPersistenceUnitName());
+        EntityManagerFactoryBuilder builder = Bootstrap
+                .getEntityManagerFactoryBuilder(info, props, this.getClass().getClassLoader());
+        if (builder instanceof EntityManagerFactoryBuilderImpl) {
+            // the metadata is built on demand, so force it here instead of on build
+            ((EntityManagerFactoryBuilderImpl) builder).getMetadata();
+        }
+        return builder;
+    }
+
+    /**
+     * Initialize JPA bootstrap process by creating a new EntityManagerFactory
+     * instance from a prepared builder. The EntityManager instances are created
+     * on demand, by the thread that uses them, so it can run on any thread.
+     *
+     * @param builder entity manager factory builder, as returned by {@link #prepare(PersistenceUnitInfo, Map)}
+     * @param props   persistence unit properties, the same used to prepare the builder
+     * @see #prepare(PersistenceUnitInfo, Map)
+     */
+    public void initialize(EntityManagerFactoryBuilder builder, Map<String, Object> props) {
+        logger.info("Init JPA bootstrap process");
+        if (initialized.compareAndSet(false, true)) {
+            logger.debug("Creating entity manager factory instance");
+            initializeRouting(props);
+            entityManagerFactory = builder.build();
+        } else {
+            builder.cancel();
+        }
+    }
+
     /**
      * Create EntityManagerFactory of the first loaded
      * <code>PersistenceProvider</code> Service Provider Implementations - SPI
@@ -249,6 +557,14 @@ public final class PersistenceHelper {
         PersistenceHelper.getInstance().initialize(info, props);
     }
 
+    public static void bootstrap(EntityManagerFactoryBuilder builder, Map<String, Object> props) {
+        PersistenceHelper.getInstance().initialize(builder, props);
+    }
+
+    public static EntityManagerFactoryBuilder prepareBootstrap(PersistenceUnitInfo info, Map<String, Object> props) {
+        return PersistenceHelper.getInstance().prepare(info, props);
+    }
+
     public static EntityManagerFactory getEntityManagerFactoryInstance() {
         // singleton instance
         return PersistenceHelper.getInstance().getEntityManagerFactory();
@@ -20,15 +20,26 @@ import javax.sql.DataSource;
 import org.hibernate.jpa.HibernatePersistenceProvider;
 
 /**
+ * Persistence unit info that does not need a META-INF/persistence.xml file.
+ * <p>
+ * The managed classes are the ones passed to the constructor. When none are
+ * passed, they are listed by the build-time {@link EntityIndex} of the
+ * classpath, so Hibernate does not scan the classpath for them. Without an
+ * index (or with the {@value #ENTITY_INDEX} property set to false), the
+ * classpath roots are scanned.
+ *
  * @author Thiago Gutenberg Carvalho da Costa
  */
 public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
 
+    public static final String ENTITY_INDEX = "br.com.thiaguten.entity_index";
+
     private static final String PERSISTENCE_XML_SCHEMA_VERSION = "2.1";
 
     private final String persistenceUnitName;
     private final Class<?>[] managedClasses;
     private final Properties properties;
+    private final EntityIndex entityIndex;
 
     private DataSource jtaDataSource;
     private DataSource nonJtaDataSource;
@@ -55,6 +66,19 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
         this.persistenceUnitName = persistenceUnitName;
         this.properties = properties;
         this.managedClasses = managedClasses;
+        this.entityIndex = (null == managedClasses || managedClasses.length == 0)
+                && !"false".equalsIgnoreCase(properties.getProperty(ENTITY_INDEX))
+                ? EntityIndex.load(PersistenceUnitInfoImpl.getDefaultClassLoader())
+                : null;
+    }
+
+    /**
+     * Get the build-time entity index in use.
+     *
+     * @return the entity index, or null if the managed classes are passed or scanned
+     */
+    public EntityIndex getEntityIndex() {
+        return entityIndex;
     }
 
     @Override
@@ -96,11 +120,15 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
 
     @Override
     public List<String> getMappingFileNames() {
-        return Collections.emptyList();
+        return null == entityIndex ? Collections.emptyList() : entityIndex.getMappingFileNames();
     }
 
     @Override
     public List<URL> getJarFileUrls() {
+        if (entityIndex != null) {
+            // everything is listed by the index, nothing to scan
+            return Collections.emptyList();
+        }
 //		return Collections.emptyList();
         try {
 //			return Collections.list(ApplicationPersistenceProvider.getDefaultClassLoader().getResources(""))
@@ -120,6 +148,9 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
 
     @Override
     public List<String> getManagedClassNames() {
+        if (entityIndex != null) {
+            return entityIndex.getManagedClassNames();
+        }
         return null == managedClasses
                 ? Collections.emptyList()
                 : Stream.of(managedClasses).map(Class::getName).collect(Collectors.toList());
@@ -127,7 +158,7 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
 
     @Override
     public boolean excludeUnlistedClasses() {
-        return managedClasses != null && managedClasses.length > 0;
+        return entityIndex != null || (managedClasses != null && managedClasses.length > 0);
     }
 
     @Override
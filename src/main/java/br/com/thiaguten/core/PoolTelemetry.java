@@ -0,0 +1,171 @@
+package br.com.thiaguten.core;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * Connection pool telemetry: the latency to acquire a connection from the pool
+ * (the wait time) and the time a connection is held before it is returned (the
+ * database time of the unit of work).
+ * <p>
+ * There is one telemetry instance per pool name, shared by the code that
+ * measures the connections ({@link #instrument(DataSource)} or the
+ * {@link MeteredConnectionProvider}) and the code that reads the measures
+ * ({@link AdaptivePoolController}).
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public final class PoolTelemetry {
+
+    private static final ConcurrentMap<String, PoolTelemetry> TELEMETRIES = new ConcurrentHashMap<>();
+
+    private final String poolName;
+    private final LatencyHistogram acquisition = new LatencyHistogram();
+    private final LatencyHistogram usage = new LatencyHistogram();
+
+    private PoolTelemetry(String poolName) {
+        this.poolName = poolName;
+    }
+
+    /**
+     * Get the telemetry of a pool, creating it on first use.
+     *
+     * @param poolName the pool name
+     * @return the telemetry of the pool
+     */
+    public static PoolTelemetry forPool(String poolName) {
+        Objects.requireNonNull(poolName, "poolName parameter must not be null");
+        return TELEMETRIES.computeIfAbsent(poolName, PoolTelemetry::new);
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    /**
+     * Get the histogram of the connection acquisition latencies.
+     *
+     * @return the acquisition histogram
+     */
+    public LatencyHistogram getAcquisition() {
+        return acquisition;
+    }
+
+    /**
+     * Get the histogram of the connection usage (held) times.
+     *
+     * @return the usage histogram
+     */
+    public LatencyHistogram getUsage() {
+        return usage;
+    }
+
+    /**
+     * Record the acquisition of a connection, measuring its usage until it is
+     * closed.
+     *
+     * @param connection       the acquired connection
+     * @param acquisitionNanos the time taken to acquire the connection
+     * @return the connection that must be used and closed instead of the acquired one
+     */
+    public Connection acquired(Connection connection, long acquisitionNanos) {
+        acquisition.record(acquisitionNanos);
+        long acquiredAt = System.nanoTime();
+        AtomicBoolean closed = new AtomicBoolean(false);
+        InvocationHandler handler = (proxy, method, args) -> {
+            if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+                usage.record(System.nanoTime() - acquiredAt);
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(PoolTelemetry.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+
+    /**
+     * Wrap a pooled data source, measuring the connections acquired through it.
+     *
+     * @param dataSource the pooled data source
+     * @return the measured data source
+     */
+    public DataSource instrument(DataSource dataSource) {
+        Objects.requireNonNull(dataSource, "dataSource parameter must not be null");
+        return new MeteredDataSource(dataSource);
+    }
+
+    private final class MeteredDataSource implements DataSource {
+
+        private final DataSource dataSource;
+
+        private MeteredDataSource(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            long start = System.nanoTime();
+            Connection connection = dataSource.getConnection();
+            return acquired(connection, System.nanoTime() - start);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            long start = System.nanoTime();
+            Connection connection = dataSource.getConnection(username, password);
+            return acquired(connection, System.nanoTime() - start);
+        }
+
+        @Override
+        public PrintWriter getLogWriter() throws SQLException {
+            return dataSource.getLogWriter();
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) throws SQLException {
+            dataSource.setLogWriter(out);
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) throws SQLException {
+            dataSource.setLoginTimeout(seconds);
+        }
+
+        @Override
+        public int getLoginTimeout() throws SQLException {
+            return dataSource.getLoginTimeout();
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            return dataSource.getParentLogger();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            return iface.isInstance(this) ? iface.cast(this) : dataSource.unwrap(iface);
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) throws SQLException {
+            return iface.isInstance(this) || dataSource.isWrapperFor(iface);
+        }
+
+    }
+
+}
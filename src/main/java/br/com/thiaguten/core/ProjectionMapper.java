@@ -0,0 +1,87 @@
+package br.com.thiaguten.core;
+
+import java.lang.reflect.Constructor;
+import java.util.Objects;
+import java.util.function.Function;
+
+import javax.persistence.PersistenceException;
+
+import org.apache.commons.lang3.ClassUtils;
+
+/**
+ * Maps a query result row to a plain result object.
+ * <p>
+ * A row with a single value that already is an instance of the result class
+ * (a scalar, or an object created by a {@code select new} constructor
+ * expression) is returned as is. Otherwise the row is a tuple, and it is
+ * mapped to the result class constructor whose parameters match the tuple
+ * values by position.
+ *
+ * @param <R> the type of the result class
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public final class ProjectionMapper<R> implements Function<Object, R> {
+
+    private final Class<R> resultClass;
+    private final Class<?> wrappedResultClass;
+    private volatile Constructor<R> constructor;
+
+    public ProjectionMapper(Class<R> resultClass) {
+        this.resultClass = Objects.requireNonNull(resultClass, "resultClass parameter must not be null");
+        this.wrappedResultClass = ClassUtils.primitiveToWrapper(resultClass);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public R apply(Object result) {
+        Object[] row = result instanceof Object[] ? (Object[]) result : new Object[]{result};
+        if (row.length == 1 && (null == row[0] || wrappedResultClass.isInstance(row[0]))) {
+            return (R) row[0];
+        }
+        Constructor<R> rowConstructor = constructor;
+        if (null == rowConstructor || !matches(rowConstructor, row)) {
+            rowConstructor = findConstructor(row);
+            constructor = rowConstructor;
+        }
+        try {
+            return rowConstructor.newInstance(row);
+        } catch (ReflectiveOperationException e) {
+            throw new PersistenceException("Could not map query result to " + resultClass.getName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Constructor<R> findConstructor(Object[] row) {
+        for (Constructor<?> candidate : resultClass.getDeclaredConstructors()) {
+            if (matches(candidate, row)) {
+                candidate.setAccessible(true);
+                return (Constructor<R>) candidate;
+            }
+        }
+        throw new PersistenceException("No constructor of " + resultClass.getName() + " matches a query result of "
+                + row.length + " values");
+    }
+
+    private static boolean matches(Constructor<?> candidate, Object[] row) {
+        Class<?>[] parameterTypes = candidate.getParameterTypes();
+        if (parameterTypes.length != row.length) {
+            return false;
+        }
+        for (int i = 0; i < row.length; i++) {
+            if (null == row[i]
+                    ? parameterTypes[i].isPrimitive()
+                    : !ClassUtils.primitiveToWrapper(parameterTypes[i]).isInstance(row[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Class<R> getResultClass() {
+        return resultClass;
+    }
+
+}
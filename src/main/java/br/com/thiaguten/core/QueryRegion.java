@@ -0,0 +1,93 @@
+package br.com.thiaguten.core;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Query cache region in which the results of a cacheable query are cached,
+ * so hot and expensive queries can be isolated from cheap and churny ones,
+ * each region with its own expiry, size and statistics.
+ * <p>
+ * A named region must be declared by the {@value GridRegionTopology#QUERY_REGIONS}
+ * persistence property, or configured by hand, so its Ignite cache exists
+ * when the query is first cached; the results of the other cacheable queries
+ * share the {@link #DEFAULT} region.
+ *
+ * <pre>
+ * br.com.thiaguten.grid.query_regions=posts.byTitle
+ * br.com.thiaguten.grid.profile.hotQuery.base=query
+ * br.com.thiaguten.grid.profile.hotQuery.timeToLive=300
+ * br.com.thiaguten.grid.profile.hotQuery.maxSizeMb=64
+ * br.com.thiaguten.grid.region.posts.byTitle=hotQuery
+ * </pre>
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ * @see IDAO#findByQuery(QueryRegion, String, Object...)
+ */
+public final class QueryRegion implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The region shared by the cacheable queries without a named region.
+     */
+    public static final QueryRegion DEFAULT = new QueryRegion(GridRegionTopology.QUERY_RESULTS_REGION);
+
+    private final String name;
+
+    private QueryRegion(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get a query cache region by name.
+     *
+     * @param name the region name
+     * @return the query cache region
+     * @throws IllegalArgumentException if the name is empty
+     */
+    public static QueryRegion named(String name) {
+        Objects.requireNonNull(name, "name parameter must not be null");
+        if (name.trim().isEmpty()) {
+            throw new IllegalArgumentException("name parameter must not be empty");
+        }
+        return DEFAULT.name.equals(name) ? DEFAULT : new QueryRegion(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Whether this is the region shared by the queries without a named region.
+     *
+     * @return true if this is the default region
+     */
+    public boolean isDefault() {
+        return DEFAULT.name.equals(name);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return name.equals(((QueryRegion) o).name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "QueryRegion{" +
+                "name='" + name + '\'' +
+                '}';
+    }
+
+}
@@ -0,0 +1,183 @@
+package br.com.thiaguten.core;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compression statistics of the entries of an L2 cache region on an Ignite node:
+ * how much the values above the compression threshold of the region shrink,
+ * and the time spent compressing them when the entries are written and
+ * decompressing them when they are read.
+ * <p>
+ * There is one statistics instance per Ignite instance and region name,
+ * shared by the {@link CompactCacheEntrySerializer} of the instance, which
+ * measures, and the code that reads the measures, so the nodes of the same
+ * JVM (e.g. a test cluster) are measured apart.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ * @see TopologyProfile#getCompressionThreshold()
+ */
+public final class RegionCompressionStats {
+
+    // by Ignite instance name, the default instance being the empty name
+    private static final ConcurrentMap<String, ConcurrentMap<String, RegionCompressionStats>> STATS =
+            new ConcurrentHashMap<>();
+
+    private final String igniteInstanceName;
+    private final String regionName;
+    private final LongAdder candidates = new LongAdder();
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder compressionNanos = new LongAdder();
+    private final LongAdder decompressed = new LongAdder();
+    private final LongAdder decompressionNanos = new LongAdder();
+
+    private RegionCompressionStats(String igniteInstanceName, String regionName) {
+        this.igniteInstanceName = igniteInstanceName;
+        this.regionName = regionName;
+    }
+
+    /**
+     * Get the statistics of a region on an Ignite instance, creating them on
+     * first use.
+     *
+     * @param igniteInstanceName the Ignite instance name, or null for the default instance
+     * @param regionName         the region name
+     * @return the statistics of the region
+     */
+    public static RegionCompressionStats forRegion(String igniteInstanceName, String regionName) {
+        Objects.requireNonNull(regionName, "regionName parameter must not be null");
+        return STATS.computeIfAbsent(Objects.toString(igniteInstanceName, ""), name -> new ConcurrentHashMap<>())
+                .computeIfAbsent(regionName, name -> new RegionCompressionStats(igniteInstanceName, name));
+    }
+
+    /**
+     * Get the statistics of all the regions of an Ignite instance measured so far.
+     *
+     * @param igniteInstanceName the Ignite instance name, or null for the default instance
+     * @return the statistics by region name
+     */
+    public static Map<String, RegionCompressionStats> all(String igniteInstanceName) {
+        Map<String, RegionCompressionStats> stats = STATS.get(Objects.toString(igniteInstanceName, ""));
+        return null == stats ? Collections.emptyMap() : Collections.unmodifiableMap(new TreeMap<>(stats));
+    }
+
+    /**
+     * Record the compression of a value above the threshold, whether it was
+     * stored compressed or not, because it did not shrink.
+     *
+     * @param inputBytes  the size of the value
+     * @param outputBytes the stored size of the value
+     * @param nanos       the time taken to compress the value
+     */
+    void recordCompression(int inputBytes, int outputBytes, long nanos) {
+        candidates.increment();
+        if (outputBytes < inputBytes) {
+            compressed.increment();
+        }
+        uncompressedBytes.add(inputBytes);
+        compressedBytes.add(outputBytes);
+        compressionNanos.add(nanos);
+    }
+
+    void recordDecompression(long nanos) {
+        decompressed.increment();
+        decompressionNanos.add(nanos);
+    }
+
+    public String getIgniteInstanceName() {
+        return igniteInstanceName;
+    }
+
+    public String getRegionName() {
+        return regionName;
+    }
+
+    /**
+     * Get the number of values written above the compression threshold.
+     *
+     * @return the number of values above the threshold
+     */
+    public long getCandidates() {
+        return candidates.sum();
+    }
+
+    /**
+     * Get the number of values written compressed, the ones above the
+     * threshold that shrank.
+     *
+     * @return the number of values written compressed
+     */
+    public long getCompressed() {
+        return compressed.sum();
+    }
+
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * Get the compression ratio of the values above the threshold: their size
+     * divided by their stored size.
+     *
+     * @return the compression ratio, or 1 if no value was above the threshold
+     */
+    public double getRatio() {
+        long stored = compressedBytes.sum();
+        return 0 == stored ? 1 : (double) uncompressedBytes.sum() / stored;
+    }
+
+    /**
+     * Get the mean time to compress a value above the threshold.
+     *
+     * @return the mean compression time, in nanoseconds
+     */
+    public long getMeanCompressionNanos() {
+        long count = candidates.sum();
+        return 0 == count ? 0 : compressionNanos.sum() / count;
+    }
+
+    /**
+     * Get the number of values read compressed, which were decompressed.
+     *
+     * @return the number of values decompressed
+     */
+    public long getDecompressed() {
+        return decompressed.sum();
+    }
+
+    /**
+     * Get the mean time to decompress a value.
+     *
+     * @return the mean decompression time, in nanoseconds
+     */
+    public long getMeanDecompressionNanos() {
+        long count = decompressed.sum();
+        return 0 == count ? 0 : decompressionNanos.sum() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "RegionCompressionStats{" +
+                "igniteInstanceName='" + igniteInstanceName + '\'' +
+                ", regionName='" + regionName + '\'' +
+                ", candidates=" + getCandidates() +
+                ", compressed=" + getCompressed() +
+                ", ratio=" + String.format("%.2f", getRatio()) +
+                ", meanCompressionNanos=" + getMeanCompressionNanos() +
+                ", decompressed=" + getDecompressed() +
+                ", meanDecompressionNanos=" + getMeanDecompressionNanos() +
+                '}';
+    }
+
+}
@@ -0,0 +1,108 @@
+package br.com.thiaguten.core;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Expiration statistics of the entries of an L2 cache region on an Ignite
+ * node, primary or backup copies, which the Ignite cache metrics do not count.
+ * <p>
+ * There is one statistics instance per Ignite instance and region name,
+ * shared by the Ignite event listener added by {@link GridRegionTopology#applyTo}
+ * when a region expires its entries, which counts, and the code that reads
+ * the counts, so the nodes of the same JVM (e.g. a test cluster) are counted
+ * apart.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ * @see RegionExpiryPolicy
+ * @see TopologyProfile#getTimeToLive()
+ */
+public final class RegionExpirationStats {
+
+    // by Ignite instance name, the default instance being the empty name
+    private static final ConcurrentMap<String, ConcurrentMap<String, RegionExpirationStats>> STATS =
+            new ConcurrentHashMap<>();
+
+    private final String igniteInstanceName;
+    private final String regionName;
+    private final LongAdder expired = new LongAdder();
+    private volatile long lastExpiredMillis;
+
+    private RegionExpirationStats(String igniteInstanceName, String regionName) {
+        this.igniteInstanceName = igniteInstanceName;
+        this.regionName = regionName;
+    }
+
+    /**
+     * Get the statistics of a region on an Ignite instance, creating them on
+     * first use.
+     *
+     * @param igniteInstanceName the Ignite instance name, or null for the default instance
+     * @param regionName         the region name
+     * @return the statistics of the region
+     */
+    public static RegionExpirationStats forRegion(String igniteInstanceName, String regionName) {
+        Objects.requireNonNull(regionName, "regionName parameter must not be null");
+        return STATS.computeIfAbsent(Objects.toString(igniteInstanceName, ""), name -> new ConcurrentHashMap<>())
+                .computeIfAbsent(regionName, name -> new RegionExpirationStats(igniteInstanceName, name));
+    }
+
+    /**
+     * Get the statistics of all the regions of an Ignite instance with expired
+     * entries so far.
+     *
+     * @param igniteInstanceName the Ignite instance name, or null for the default instance
+     * @return the statistics by region name
+     */
+    public static Map<String, RegionExpirationStats> all(String igniteInstanceName) {
+        Map<String, RegionExpirationStats> stats = STATS.get(Objects.toString(igniteInstanceName, ""));
+        return null == stats ? Collections.emptyMap() : Collections.unmodifiableMap(new TreeMap<>(stats));
+    }
+
+    void recordExpiration() {
+        expired.increment();
+        lastExpiredMillis = System.currentTimeMillis();
+    }
+
+    public String getIgniteInstanceName() {
+        return igniteInstanceName;
+    }
+
+    public String getRegionName() {
+        return regionName;
+    }
+
+    /**
+     * Get the number of entries expired on the node.
+     *
+     * @return the number of expired entries
+     */
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    /**
+     * Get the time of the last expiration on the node.
+     *
+     * @return the time of the last expiration, in epoch milliseconds, or 0 if none
+     */
+    public long getLastExpiredMillis() {
+        return lastExpiredMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "RegionExpirationStats{" +
+                "igniteInstanceName='" + igniteInstanceName + '\'' +
+                ", regionName='" + regionName + '\'' +
+                ", expired=" + getExpired() +
+                ", lastExpiredMillis=" + lastExpiredMillis +
+                '}';
+    }
+
+}
@@ -0,0 +1,55 @@
+package br.com.thiaguten.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Expire the entries of the L2 cache region of an entity, or of a cached
+ * collection when placed on the collection attribute, so the entries that are
+ * rarely read do not stay in memory forever (see {@link RegionExpiryPolicy}).
+ * The times are in seconds, and 0 leaves the expiry unchanged.
+ * <p>
+ * The {@value GridRegionTopology#EXPIRY_PREFIX}&lt;region&gt;.&lt;setting&gt;
+ * persistence properties take precedence over this annotation, and both over
+ * the time to live of the {@link TopologyProfile} of the region.
+ *
+ * <pre>
+ * &#64;Entity
+ * &#64;Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+ * &#64;RegionExpiry(accessed = 3600)
+ * public class Post { ... }
+ * </pre>
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ * @see GridRegionTopology
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.FIELD, ElementType.METHOD})
+public @interface RegionExpiry {
+
+    /**
+     * The time the entries live once cached, whether read or not.
+     *
+     * @return the time to live after creation, in seconds
+     */
+    long created() default 0;
+
+    /**
+     * The time the entries live once last read.
+     *
+     * @return the time to live after access, in seconds
+     */
+    long accessed() default 0;
+
+    /**
+     * The time the entries live once last updated.
+     *
+     * @return the time to live after update, in seconds
+     */
+    long modified() default 0;
+
+}
@@ -0,0 +1,136 @@
+package br.com.thiaguten.core;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.ExpiryPolicy;
+
+/**
+ * Expiry policy of the entries of an L2 cache region, by the time they live
+ * once created, read and updated, in seconds, where 0 leaves the expiry of an
+ * entry unchanged by the operation.
+ * <p>
+ * An entry created in a region without a created time lives the updated time
+ * if any, since the creation is its first update, otherwise the accessed
+ * time, so the entries never read nor updated expire as well.
+ * <p>
+ * An accessed time makes the reads of the region update the expiry of the
+ * entries they read, so it is meant for the regions whose entries are many
+ * and read unevenly, where the memory matters more than the reads.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ * @see RegionExpiry
+ */
+public final class RegionExpiryPolicy implements ExpiryPolicy, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long created;
+    private final long accessed;
+    private final long modified;
+
+    /**
+     * Create an expiry policy.
+     *
+     * @param created  the time to live after creation, in seconds, or 0
+     * @param accessed the time to live after access, in seconds, or 0
+     * @param modified the time to live after update, in seconds, or 0
+     * @throws IllegalArgumentException if a time is negative or all of them are 0
+     */
+    public RegionExpiryPolicy(long created, long accessed, long modified) {
+        if (created < 0 || accessed < 0 || modified < 0) {
+            throw new IllegalArgumentException("created, accessed and modified parameters must not be negative");
+        }
+        if (0 == created && 0 == accessed && 0 == modified) {
+            throw new IllegalArgumentException("created, accessed or modified parameter must be positive");
+        }
+        this.created = created;
+        this.accessed = accessed;
+        this.modified = modified;
+    }
+
+    /**
+     * Create the expiry policy of a region from its annotation and its
+     * settings, which override the annotation.
+     *
+     * @param annotation the annotation of the entity or collection, or null
+     * @param settings   the {@code created}, {@code accessed} and {@code modified} settings, or null
+     * @param regionName the region name, for the error messages
+     * @return the expiry policy, or null if the region does not expire
+     * @throws IllegalArgumentException if a setting is unknown or its value is invalid
+     */
+    static RegionExpiryPolicy of(RegionExpiry annotation, Map<String, String> settings, String regionName) {
+        long created = null == annotation ? 0 : annotation.created();
+        long accessed = null == annotation ? 0 : annotation.accessed();
+        long modified = null == annotation ? 0 : annotation.modified();
+        if (null != settings) {
+            for (Map.Entry<String, String> setting : settings.entrySet()) {
+                long value = Long.parseLong(setting.getValue().trim());
+                switch (setting.getKey()) {
+                    case "created":
+                        created = value;
+                        break;
+                    case "accessed":
+                        accessed = value;
+                        break;
+                    case "modified":
+                        modified = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown expiry setting '" + setting.getKey()
+                                + "' of region '" + regionName + "'");
+                }
+            }
+        }
+        return 0 == created && 0 == accessed && 0 == modified ? null : new RegionExpiryPolicy(created, accessed, modified);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Duration getExpiryForCreation() {
+        long timeToLive = created > 0 ? created : modified > 0 ? modified : accessed;
+        return new Duration(TimeUnit.SECONDS, timeToLive);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Duration getExpiryForAccess() {
+        return accessed > 0 ? new Duration(TimeUnit.SECONDS, accessed) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Duration getExpiryForUpdate() {
+        return modified > 0 ? new Duration(TimeUnit.SECONDS, modified) : null;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getAccessed() {
+        return accessed;
+    }
+
+    public long getModified() {
+        return modified;
+    }
+
+    @Override
+    public String toString() {
+        return "RegionExpiryPolicy{" +
+                "created=" + created +
+                ", accessed=" + accessed +
+                ", modified=" + modified +
+                '}';
+    }
+
+}
@@ -0,0 +1,39 @@
+package br.com.thiaguten.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Select the {@link TopologyProfile} of the L2 cache region of an entity, or of
+ * a cached collection when placed on the collection attribute.
+ * <p>
+ * A {@value GridRegionTopology#REGION_PREFIX}&lt;region&gt; persistence property
+ * takes precedence over this annotation.
+ *
+ * <pre>
+ * &#64;Entity
+ * &#64;Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+ * &#64;RegionTopology(TopologyProfile.REPLICATED)
+ * public class Country { ... }
+ * </pre>
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ * @see GridRegionTopology
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.FIELD, ElementType.METHOD})
+public @interface RegionTopology {
+
+    /**
+     * The name of the topology profile, a built-in one or one defined by the
+     * persistence properties.
+     *
+     * @return the profile name
+     */
+    String value();
+
+}
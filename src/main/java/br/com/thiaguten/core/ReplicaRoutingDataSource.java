@@ -0,0 +1,292 @@
+package br.com.thiaguten.core;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * DataSource that routes the connections of the current thread to the primary
+ * database or to one of its read-only replicas.
+ * <p>
+ * Connections go to the primary by default. A thread is routed to the replicas
+ * with {@link #setReplicaRoute(boolean)}, which {@link PersistenceHelper} does
+ * for the read operations of the DAO that run outside of a transaction. Since
+ * Hibernate acquires the connection on demand, the route in effect when the
+ * first statement of the operation runs is the one used.
+ * <p>
+ * Replicas are usually updated asynchronously. With read-your-writes stickiness
+ * enabled, a thread that has written to the primary ({@link #markWrite()}) keeps
+ * reading from the primary for the configured period, so it always sees its own
+ * writes.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public final class ReplicaRoutingDataSource implements DataSource {
+
+    /**
+     * How a replica is selected for a read-only connection.
+     */
+    public enum ReplicaSelection {
+        /**
+         * The replicas are used in turn.
+         */
+        ROUND_ROBIN,
+        /**
+         * The replica with the fewest connections in use is used.
+         */
+        LEAST_LOADED
+    }
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final AtomicInteger[] replicaLoads;
+    private final ReplicaSelection replicaSelection;
+    private final long readYourWritesNanos;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ThreadLocal<Boolean> replicaRoute = new ThreadLocal<>();
+    private final ThreadLocal<Long> lastWriteNanos = new ThreadLocal<>();
+
+    /**
+     * Create a routing data source without read-your-writes stickiness.
+     *
+     * @param primary          the primary (read/write) data source
+     * @param replicas         the read-only data sources
+     * @param replicaSelection how a replica is selected
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, ReplicaSelection replicaSelection) {
+        this(primary, replicas, replicaSelection, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a routing data source.
+     *
+     * @param primary          the primary (read/write) data source
+     * @param replicas         the read-only data sources
+     * @param replicaSelection how a replica is selected
+     * @param readYourWrites   how long the reads of a thread stay on the primary after it writes, zero to disable
+     * @param unit             the time unit of the readYourWrites parameter
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, ReplicaSelection replicaSelection,
+            long readYourWrites, TimeUnit unit) {
+        this.primary = Objects.requireNonNull(primary, "primary parameter must not be null");
+        Objects.requireNonNull(replicas, "replicas parameter must not be null");
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.replicaSelection = Objects.requireNonNull(replicaSelection, "replicaSelection parameter must not be null");
+        this.readYourWritesNanos = Objects.requireNonNull(unit, "unit parameter must not be null").toNanos(readYourWrites);
+        this.replicaLoads = new AtomicInteger[this.replicas.size()];
+        for (int i = 0; i < replicaLoads.length; i++) {
+            replicaLoads[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Route the connections of the current thread to the replicas or to the
+     * primary.
+     *
+     * @param replica true to route to the replicas, false to route to the primary
+     */
+    public void setReplicaRoute(boolean replica) {
+        if (replica) {
+            replicaRoute.set(Boolean.TRUE);
+        } else {
+            replicaRoute.remove();
+        }
+    }
+
+    /**
+     * Record that the current thread has written to the primary, starting the
+     * read-your-writes period of the thread.
+     */
+    public void markWrite() {
+        if (readYourWritesNanos > 0) {
+            lastWriteNanos.set(System.nanoTime());
+        }
+    }
+
+    /**
+     * Checks if a connection requested now by the current thread goes to a
+     * replica.
+     *
+     * @return true if the connection goes to a replica, otherwise false
+     */
+    public boolean isReplicaRoute() {
+        if (replicas.isEmpty() || !Boolean.TRUE.equals(replicaRoute.get())) {
+            return false;
+        }
+        Long lastWrite = lastWriteNanos.get();
+        if (lastWrite != null) {
+            if (System.nanoTime() - lastWrite < readYourWritesNanos) {
+                return false;
+            }
+            lastWriteNanos.remove();
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of connections in use per replica.
+     *
+     * @return the number of connections in use, in the order of the replicas
+     */
+    public int[] getReplicaLoads() {
+        int[] loads = new int[replicaLoads.length];
+        for (int i = 0; i < loads.length; i++) {
+            loads[i] = replicaLoads[i].get();
+        }
+        return loads;
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<DataSource> getReplicas() {
+        return replicas;
+    }
+
+    public ReplicaSelection getReplicaSelection() {
+        return replicaSelection;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!isReplicaRoute()) {
+            return primary.getConnection();
+        }
+        int replica = selectReplica();
+        Connection connection = replicas.get(replica).getConnection();
+        connection.setReadOnly(true);
+        return trackLoad(connection, replicaLoads[replica]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (!isReplicaRoute()) {
+            return primary.getConnection(username, password);
+        }
+        int replica = selectReplica();
+        Connection connection = replicas.get(replica).getConnection(username, password);
+        connection.setReadOnly(true);
+        return trackLoad(connection, replicaLoads[replica]);
+    }
+
+    private int selectReplica() {
+        if (ReplicaSelection.LEAST_LOADED.equals(replicaSelection)) {
+            // starts from the next replica in turn, so equally loaded replicas are used in turn
+            int start = Math.floorMod(nextReplica.getAndIncrement(), replicaLoads.length);
+            int selected = start;
+            for (int i = 1; i < replicaLoads.length; i++) {
+                int candidate = (start + i) % replicaLoads.length;
+                if (replicaLoads[candidate].get() < replicaLoads[selected].get()) {
+                    selected = candidate;
+                }
+            }
+            return selected;
+        }
+        return Math.floorMod(nextReplica.getAndIncrement(), replicaLoads.length);
+    }
+
+    private static Connection trackLoad(Connection connection, AtomicInteger load) {
+        load.incrementAndGet();
+        AtomicBoolean closed = new AtomicBoolean(false);
+        InvocationHandler handler = (proxy, method, args) -> {
+            if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+                load.decrementAndGet();
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(ReplicaRoutingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+        for (DataSource replica : replicas) {
+            replica.setLogWriter(out);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+        for (DataSource replica : replicas) {
+            replica.setLoginTimeout(seconds);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primary.getParentLogger();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return primary.unwrap(iface);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+}
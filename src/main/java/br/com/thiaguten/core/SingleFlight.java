@@ -0,0 +1,265 @@
+package br.com.thiaguten.core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.CacheAtomicityMode;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads each identifier once at a time ("single flight"), so the concurrent
+ * finds of an entity missing from the L2 cache, e.g. a popular entity just
+ * evicted or updated, issue one database query instead of one per caller.
+ * <p>
+ * The first caller of an identifier loads it, and the concurrent callers of
+ * the same identifier wait for that load and then load it themselves, from
+ * the L2 cache entry the first load put, so each caller still gets its own
+ * instance of the entity. An entity not found by the first load, or whose
+ * load failed, is loaded again by each caller waiting for it, since it may
+ * have been saved after that load began, e.g. by the waiting caller itself.
+ * Outside of the concurrent misses, a load costs a put and a remove in a
+ * concurrent map.
+ * <p>
+ * Created with an Ignite node, the first load of an identifier on each node
+ * also holds a cluster lock on the identifier, in the {@value #LOCK_CACHE_NAME}
+ * cache, so the nodes load it once at a time too. The lock is short: a load
+ * not given the lock within the lock timeout runs without it, so a slow or
+ * gone node never stalls the others. A load within an Ignite transaction of
+ * the calling thread runs without it too, since the explicit locks cannot be
+ * acquired within a transaction.
+ *
+ * @param <ID> the type of the identifier
+ * @author Thiago Gutenberg Carvalho da Costa
+ * @see AbstractDAO#setSingleFlight(SingleFlight)
+ */
+public class SingleFlight<ID extends Serializable> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SingleFlight.class);
+
+    public static final String LOCK_CACHE_NAME = "SingleFlightLocks";
+
+    // whether the load found the entity, or null if it failed, so the waiting callers load it themselves
+    private final ConcurrentMap<ID, CompletableFuture<Boolean>> flights = new ConcurrentHashMap<>();
+    private final Ignite ignite;
+    private final IgniteCache<String, Boolean> locks;
+    private final String name;
+    private final long lockTimeoutMillis;
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong sharedLoadCount = new AtomicLong();
+    private final AtomicLong lockTimeoutCount = new AtomicLong();
+
+    /**
+     * Create a single flight of the callers of this node only.
+     */
+    public SingleFlight() {
+        this.ignite = null;
+        this.locks = null;
+        this.name = null;
+        this.lockTimeoutMillis = 0;
+    }
+
+    /**
+     * Create a single flight of the callers of all the nodes of a cluster.
+     *
+     * @param ignite      the Ignite node
+     * @param name        the name of the loaded identifiers, e.g. the entity name, unique in the cluster
+     * @param lockTimeout the maximum time to wait for the cluster lock of an identifier
+     * @param unit        the time unit of the lock timeout
+     */
+    public SingleFlight(Ignite ignite, String name, long lockTimeout, TimeUnit unit) {
+        this.ignite = Objects.requireNonNull(ignite, "ignite parameter must not be null");
+        this.name = Objects.requireNonNull(name, "name parameter must not be null");
+        if (lockTimeout <= 0) {
+            throw new IllegalArgumentException("lockTimeout parameter must be positive");
+        }
+        this.lockTimeoutMillis = unit.toMillis(lockTimeout);
+        // the explicit locks need a transactional cache, whose entries are never written
+        this.locks = ignite.getOrCreateCache(new CacheConfiguration<String, Boolean>(LOCK_CACHE_NAME)
+                .setCacheMode(CacheMode.PARTITIONED)
+                .setAtomicityMode(CacheAtomicityMode.TRANSACTIONAL));
+    }
+
+    /**
+     * Load an identifier, or wait for its load by another caller.
+     *
+     * @param id     the identifier
+     * @param loader the loader of the identifier, returning null if not found,
+     *               which puts the loaded entity in the L2 cache
+     * @param <T>    the type of the loaded entity
+     * @return the loaded entity, or null if not found
+     */
+    public <T> T load(ID id, Function<ID, T> loader) {
+        Objects.requireNonNull(id, "id parameter must not be null");
+        CompletableFuture<Boolean> flight = new CompletableFuture<>();
+        CompletableFuture<Boolean> current = flights.putIfAbsent(id, flight);
+        if (null != current) {
+            if (Boolean.TRUE.equals(current.join())) {
+                sharedLoadCount.incrementAndGet();
+            }
+            return loader.apply(id);
+        }
+        Boolean found = null;
+        Lock lock = lock(keysOf(Collections.singletonList(id)));
+        try {
+            loadCount.incrementAndGet();
+            T entity = loader.apply(id);
+            found = null != entity;
+            return entity;
+        } finally {
+            unlock(lock);
+            flights.remove(id, flight);
+            flight.complete(found);
+        }
+    }
+
+    /**
+     * Load identifiers, or wait for their loads by other callers. The
+     * identifiers not loaded by other callers are loaded at once, before
+     * waiting for the others, so two callers waiting for each other's
+     * identifiers do not wait forever, and the others are loaded by a second
+     * call of the loader once their loads end.
+     *
+     * @param ids    the identifiers
+     * @param loader the loader of identifiers, returning the entities found, in any order,
+     *               which puts the loaded entities in the L2 cache
+     * @param idOf   the identifier of a loaded entity
+     * @param <T>    the type of the loaded entities
+     * @return the loaded entities, by identifier, in the order of the identifiers, without the ones not found
+     */
+    public <T> Map<ID, T> loadAll(Collection<ID> ids, Function<List<ID>, List<T>> loader, Function<T, ID> idOf) {
+        Objects.requireNonNull(ids, "ids parameter must not be null");
+        Map<ID, CompletableFuture<Boolean>> ownFlights = new LinkedHashMap<>();
+        Map<ID, CompletableFuture<Boolean>> otherFlights = new LinkedHashMap<>();
+        for (ID id : ids) {
+            Objects.requireNonNull(id, "ids parameter must not contain null");
+            if (ownFlights.containsKey(id) || otherFlights.containsKey(id)) {
+                continue;
+            }
+            CompletableFuture<Boolean> flight = new CompletableFuture<>();
+            CompletableFuture<Boolean> current = flights.putIfAbsent(id, flight);
+            if (null == current) {
+                ownFlights.put(id, flight);
+            } else {
+                otherFlights.put(id, current);
+            }
+        }
+
+        Map<ID, T> entities = new LinkedHashMap<>();
+        if (!ownFlights.isEmpty()) {
+            Lock lock = lock(keysOf(ownFlights.keySet()));
+            boolean loaded = false;
+            try {
+                loadCount.addAndGet(ownFlights.size());
+                for (T entity : loader.apply(new ArrayList<>(ownFlights.keySet()))) {
+                    entities.put(idOf.apply(entity), entity);
+                }
+                loaded = true;
+            } finally {
+                unlock(lock);
+                for (Map.Entry<ID, CompletableFuture<Boolean>> flight : ownFlights.entrySet()) {
+                    flights.remove(flight.getKey(), flight.getValue());
+                    flight.getValue().complete(loaded ? entities.containsKey(flight.getKey()) : null);
+                }
+            }
+        }
+        if (!otherFlights.isEmpty()) {
+            for (CompletableFuture<Boolean> flight : otherFlights.values()) {
+                if (Boolean.TRUE.equals(flight.join())) {
+                    sharedLoadCount.incrementAndGet();
+                }
+            }
+            for (T entity : loader.apply(new ArrayList<>(otherFlights.keySet()))) {
+                entities.put(idOf.apply(entity), entity);
+            }
+        }
+
+        Map<ID, T> ordered = new LinkedHashMap<>();
+        for (ID id : ids) {
+            T entity = entities.get(id);
+            if (null != entity) {
+                ordered.put(id, entity);
+            }
+        }
+        return ordered;
+    }
+
+    private List<String> keysOf(Collection<ID> ids) {
+        List<String> keys = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            keys.add(name + '#' + id);
+        }
+        return keys;
+    }
+
+    private Lock lock(List<String> keys) {
+        if (null == locks || null != ignite.transactions().tx()) {
+            return null;
+        }
+        Lock lock = 1 == keys.size() ? locks.lock(keys.get(0)) : locks.lockAll(keys);
+        try {
+            if (lock.tryLock(lockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return lock;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        lockTimeoutCount.incrementAndGet();
+        logger.debug("Loading {} without the cluster lock, not given within {} ms", keys, lockTimeoutMillis);
+        return null;
+    }
+
+    private static void unlock(Lock lock) {
+        if (null != lock) {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of identifiers loaded by the first of their callers.
+     *
+     * @return the load count
+     */
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    /**
+     * Get the number of identifiers whose callers waited for the load of
+     * another caller which found them, instead of querying the database.
+     *
+     * @return the shared load count
+     */
+    public long getSharedLoadCount() {
+        return sharedLoadCount.get();
+    }
+
+    /**
+     * Get the number of loads run without the cluster lock of their
+     * identifiers, not given within the lock timeout.
+     *
+     * @return the lock timeout count
+     */
+    public long getLockTimeoutCount() {
+        return lockTimeoutCount.get();
+    }
+
+}
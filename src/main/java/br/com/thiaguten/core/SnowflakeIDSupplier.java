@@ -0,0 +1,338 @@
+package br.com.thiaguten.core;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.CacheAtomicityMode;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.cache.CacheWriteSynchronizationMode;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread-safe, coordination-free ID supplier that composes the time, a node
+ * ordinal and a per-node sequence into a 64-bit ID ("Snowflake"):
+ *
+ * <pre>
+ * | 0 | 41 bits: milliseconds since {@value #EPOCH_MILLIS} | 10 bits: node ordinal | 12 bits: sequence |
+ * </pre>
+ * <p>
+ * The IDs of a supplier are strictly increasing, and unique across the nodes
+ * as long as the ordinals are. Getting an ID is a compare-and-set of a local
+ * atomic long, without any network traffic, so it keeps working at the same
+ * speed whatever the state of the cluster, unlike the {@link AbstractIDSupplier},
+ * which increments a cluster-wide atomic long.
+ * <p>
+ * The node ordinal is leased from the cluster when the supplier is created: an
+ * ordinal is free if it was never leased, if it was released, or if the node
+ * holding it left the cluster and its lease deadline has passed. The lease is
+ * renewed in background, recording the last millisecond used and the deadline
+ * of the lease, the last millisecond the holder may use, so the next holder of
+ * the ordinal starts after it even if its clock is behind. A supplier whose
+ * lease could not be confirmed for half of the
+ * failure detection timeout of the cluster (after which the other nodes may
+ * consider it gone and reuse its ordinal), or was taken over, is fenced: it
+ * refuses to supply IDs until it is created again.
+ * <p>
+ * If the clock moves backwards, the supplier keeps counting on its last
+ * millisecond, waiting for the clock when the sequence of the millisecond is
+ * exhausted, up to the tolerated clock regression. A bigger regression fails
+ * fast with an {@link IllegalStateException}.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class SnowflakeIDSupplier implements IDSupplier, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnowflakeIDSupplier.class);
+
+    /**
+     * 2020-01-01T00:00:00Z, so the 41 bits of time last until 2089.
+     */
+    public static final long EPOCH_MILLIS = 1577836800000L;
+    public static final int NODE_ORDINAL_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ORDINAL = (1 << NODE_ORDINAL_BITS) - 1;
+    public static final String LEASE_CACHE_NAME = "SnowflakeNodeOrdinals";
+
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    private static final long DEFAULT_MAX_CLOCK_REGRESSION_MILLIS = 1000;
+    // the holder of a released lease, which supplies no more IDs
+    private static final UUID RELEASED_NODE_ID = new UUID(0, 0);
+
+    private final IgniteCache<Integer, Lease> leases;
+    private final UUID nodeId;
+    private final int nodeOrdinal;
+    private final long maxClockRegressionMillis;
+    private final long leaseTimeoutNanos;
+    private final long leaseTimeoutMillis;
+    private final ScheduledExecutorService leaseRenewal;
+    // the last millisecond (relative to the epoch) and sequence used, packed as in the IDs
+    private final AtomicLong state;
+    private volatile Lease lease;
+    private volatile long leaseExpirationNanos;
+    private volatile boolean fenced;
+
+    public SnowflakeIDSupplier(Ignite ignite) {
+        this(ignite, DEFAULT_MAX_CLOCK_REGRESSION_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a supplier, leasing a node ordinal from the cluster.
+     *
+     * @param ignite                the Ignite node
+     * @param maxClockRegression    the maximum tolerated clock regression
+     * @param unit                  the time unit of the maximum clock regression
+     * @throws IllegalStateException if all the node ordinals are leased
+     */
+    public SnowflakeIDSupplier(Ignite ignite, long maxClockRegression, TimeUnit unit) {
+        Objects.requireNonNull(ignite, "ignite parameter must not be null");
+        this.maxClockRegressionMillis = unit.toMillis(maxClockRegression);
+        this.nodeId = ignite.cluster().localNode().id();
+        this.leases = ignite.getOrCreateCache(new CacheConfiguration<Integer, Lease>(LEASE_CACHE_NAME)
+                .setCacheMode(CacheMode.REPLICATED)
+                .setAtomicityMode(CacheAtomicityMode.ATOMIC)
+                .setWriteSynchronizationMode(CacheWriteSynchronizationMode.FULL_SYNC));
+        // the other nodes consider this one gone after the failure detection timeout, so the lease must expire before
+        this.leaseTimeoutMillis = ignite.configuration().getFailureDetectionTimeout() / 2;
+        this.leaseTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(leaseTimeoutMillis);
+
+        long leasedAt = System.nanoTime();
+        this.nodeOrdinal = acquireLease(ignite);
+        this.leaseExpirationNanos = leasedAt + leaseTimeoutNanos;
+        // starts after the last millisecond the previous holder of the ordinal may have used
+        this.state = new AtomicLong(Math.max(lease.getLastMillis(), currentMillis()) << SEQUENCE_BITS | MAX_SEQUENCE);
+
+        this.leaseRenewal = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snowflake-lease-" + nodeOrdinal);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long renewalPeriodNanos = leaseTimeoutNanos / 4;
+        leaseRenewal.scheduleWithFixedDelay(this::renewLease, renewalPeriodNanos, renewalPeriodNanos,
+                TimeUnit.NANOSECONDS);
+        logger.info("Leased the node ordinal {} for the Snowflake IDs of node {}", nodeOrdinal, nodeId);
+    }
+
+    private int acquireLease(Ignite ignite) {
+        long now = currentMillis();
+        long deadlineMillis = now + leaseTimeoutMillis;
+        for (int ordinal = 0; ordinal <= MAX_NODE_ORDINAL; ordinal++) {
+            Lease current = leases.get(ordinal);
+            if (null == current) {
+                Lease acquired = new Lease(nodeId, 0, deadlineMillis);
+                if (leases.putIfAbsent(ordinal, acquired)) {
+                    this.lease = acquired;
+                    return ordinal;
+                }
+            } else if ((RELEASED_NODE_ID.equals(current.getNodeId())
+                    // the previous holder may supply IDs until its deadline, even once it left the cluster
+                    || null == ignite.cluster().node(current.getNodeId()) && current.getDeadlineMillis() < now)
+                    // the clock of the previous holder was too far ahead to follow it
+                    && current.getLastPossibleMillis() <= now + maxClockRegressionMillis) {
+                Lease acquired = new Lease(nodeId, current.getLastPossibleMillis(), deadlineMillis);
+                if (leases.replace(ordinal, current, acquired)) {
+                    this.lease = acquired;
+                    return ordinal;
+                }
+            }
+        }
+        throw new IllegalStateException("All the " + (MAX_NODE_ORDINAL + 1) + " Snowflake node ordinals are leased");
+    }
+
+    private void renewLease() {
+        if (fenced) {
+            return;
+        }
+        long renewedAt = System.nanoTime();
+        try {
+            Lease renewed = new Lease(nodeId, state.get() >>> SEQUENCE_BITS, currentMillis() + leaseTimeoutMillis);
+            if (leases.replace(nodeOrdinal, lease, renewed)) {
+                lease = renewed;
+                leaseExpirationNanos = renewedAt + leaseTimeoutNanos;
+            } else {
+                fence("the lease was taken over");
+            }
+        } catch (RuntimeException e) {
+            // retried on the next period, the lease expires meanwhile
+            logger.warn("Could not renew the lease of the Snowflake node ordinal {}", nodeOrdinal, e);
+        }
+    }
+
+    private void fence(String reason) {
+        fenced = true;
+        logger.error("Snowflake node ordinal {} fenced, {}", nodeOrdinal, reason);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if the supplier is fenced or the clock moved backwards more than tolerated
+     */
+    @Override
+    public long getNextIdAsLong() {
+        if (fenced || System.nanoTime() - leaseExpirationNanos > 0) {
+            if (!fenced) {
+                fence("the lease expired");
+            }
+            throw new IllegalStateException("Snowflake node ordinal " + nodeOrdinal
+                    + " is fenced, the supplier must be created again");
+        }
+        for (; ; ) {
+            long current = state.get();
+            long lastMillis = current >>> SEQUENCE_BITS;
+            long now = currentMillis();
+            long next;
+            if (now > lastMillis) {
+                if (now > lease.getDeadlineMillis()) {
+                    // the clock jumped forward past the deadline, after which the next holder may start
+                    fence("the clock passed the lease deadline");
+                    throw new IllegalStateException("Snowflake node ordinal " + nodeOrdinal
+                            + " is fenced, the supplier must be created again");
+                }
+                next = now << SEQUENCE_BITS;
+            } else if (lastMillis - now > maxClockRegressionMillis) {
+                throw new IllegalStateException("Clock moved backwards " + (lastMillis - now)
+                        + " ms, more than the tolerated " + maxClockRegressionMillis + " ms");
+            } else if ((current & MAX_SEQUENCE) < MAX_SEQUENCE) {
+                // same millisecond, or a clock regression: keep counting on the last millisecond
+                next = current + 1;
+            } else {
+                // the sequence of the millisecond is exhausted, wait for the next one
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+                continue;
+            }
+            if (state.compareAndSet(current, next)) {
+                return (next >>> SEQUENCE_BITS) << (NODE_ORDINAL_BITS + SEQUENCE_BITS)
+                        | (long) nodeOrdinal << SEQUENCE_BITS
+                        | (next & MAX_SEQUENCE);
+            }
+        }
+    }
+
+    /**
+     * Get the current time, in milliseconds since the {@value #EPOCH_MILLIS} epoch.
+     *
+     * @return the current time
+     */
+    protected long currentMillis() {
+        return System.currentTimeMillis() - EPOCH_MILLIS;
+    }
+
+    public int getNodeOrdinal() {
+        return nodeOrdinal;
+    }
+
+    public boolean isFenced() {
+        return fenced;
+    }
+
+    /**
+     * Get the time an ID was supplied at.
+     *
+     * @param id the ID
+     * @return the time in milliseconds since 1970-01-01T00:00:00Z
+     */
+    public static long getTimestampMillis(long id) {
+        return (id >>> (NODE_ORDINAL_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    /**
+     * Get the ordinal of the node that supplied an ID.
+     *
+     * @param id the ID
+     * @return the node ordinal
+     */
+    public static int getNodeOrdinal(long id) {
+        return (int) (id >>> SEQUENCE_BITS) & MAX_NODE_ORDINAL;
+    }
+
+    /**
+     * Stop renewing the lease and release the node ordinal. The supplier is
+     * fenced from now on.
+     */
+    @Override
+    public void close() {
+        leaseRenewal.shutdownNow();
+        fenced = true;
+        try {
+            // keeps the last millisecond used for the next holder, the fenced supplier uses no other
+            long lastMillis = state.get() >>> SEQUENCE_BITS;
+            leases.replace(nodeOrdinal, lease, new Lease(RELEASED_NODE_ID, lastMillis, lastMillis));
+        } catch (RuntimeException e) {
+            logger.warn("Could not release the Snowflake node ordinal {}, it is freed when the node leaves",
+                    nodeOrdinal, e);
+        }
+    }
+
+    /**
+     * The lease of a node ordinal.
+     *
+     * @author Thiago Gutenberg Carvalho da Costa
+     */
+    private static final class Lease implements Serializable {
+
+        private static final long serialVersionUID = -2270551916862540315L;
+
+        private final UUID nodeId;
+        private final long lastMillis;
+        // the last millisecond the holder may use, on its clock, before its lease expires
+        private final long deadlineMillis;
+
+        private Lease(UUID nodeId, long lastMillis, long deadlineMillis) {
+            this.nodeId = nodeId;
+            this.lastMillis = lastMillis;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        UUID getNodeId() {
+            return nodeId;
+        }
+
+        long getLastMillis() {
+            return lastMillis;
+        }
+
+        long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        /**
+         * Get the last millisecond the holder may have used: the last one
+         * recorded, or a later one up to the deadline of the lease.
+         *
+         * @return the last possible millisecond
+         */
+        long getLastPossibleMillis() {
+            return Math.max(lastMillis, deadlineMillis);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Lease)) {
+                return false;
+            }
+            Lease other = (Lease) o;
+            return lastMillis == other.lastMillis && deadlineMillis == other.deadlineMillis
+                    && nodeId.equals(other.nodeId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(nodeId, lastMillis, deadlineMillis);
+        }
+
+    }
+
+}
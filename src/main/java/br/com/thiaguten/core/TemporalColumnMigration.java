@@ -0,0 +1,154 @@
+package br.com.thiaguten.core;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rewrites a temporal column stored as text into a column of another type
+ * (e.g. BIGINT or TIMESTAMP), in batches.
+ * <p>
+ * Each value of the source column is parsed with the converter that wrote it
+ * and written to the target column with the converter that will read it, so
+ * the attribute value is preserved. Rows are visited in identifier order
+ * (keyset pagination), only while the target column is still null, and each
+ * batch is committed in its own transaction. An interrupted migration can
+ * therefore be resumed by calling {@link #migrate(EntityManagerFactory, int)}
+ * again.
+ * <p>
+ * A typical migration renames the legacy column, lets the schema tool add the
+ * new column, migrates the values and then drops the legacy column:
+ *
+ * <pre>
+ * ALTER TABLE POST_DETAILS ALTER COLUMN CREATED_ON RENAME TO CREATED_ON_TEXT
+ * -- add CREATED_ON BIGINT
+ * new TemporalColumnMigration&lt;&gt;("POST_DETAILS", "POST_DETAILS_ID", "CREATED_ON_TEXT", "CREATED_ON",
+ *         new LocalDateTimeConverter(), new LocalDateTimeEpochMilliConverter()).migrate(emf, 500);
+ * ALTER TABLE POST_DETAILS DROP COLUMN CREATED_ON_TEXT
+ * </pre>
+ *
+ * @param <X> the type of the entity attribute
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public final class TemporalColumnMigration<X> {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemporalColumnMigration.class);
+
+    private final String table;
+    private final String idColumn;
+    private final String sourceColumn;
+    private final String targetColumn;
+    private final AttributeConverter<X, String> sourceConverter;
+    private final AttributeConverter<X, ?> targetConverter;
+
+    public TemporalColumnMigration(String table, String idColumn, String sourceColumn, String targetColumn,
+            AttributeConverter<X, String> sourceConverter, AttributeConverter<X, ?> targetConverter) {
+        this.table = Objects.requireNonNull(table, "table parameter must not be null");
+        this.idColumn = Objects.requireNonNull(idColumn, "idColumn parameter must not be null");
+        this.sourceColumn = Objects.requireNonNull(sourceColumn, "sourceColumn parameter must not be null");
+        this.targetColumn = Objects.requireNonNull(targetColumn, "targetColumn parameter must not be null");
+        this.sourceConverter = Objects.requireNonNull(sourceConverter, "sourceConverter parameter must not be null");
+        this.targetConverter = Objects.requireNonNull(targetConverter, "targetConverter parameter must not be null");
+    }
+
+    /**
+     * Migrate all the rows whose target column is still null.
+     *
+     * @param entityManagerFactory the factory of the database to migrate
+     * @param batchSize            the number of rows read, written and committed at once
+     * @return the number of migrated rows
+     */
+    public long migrate(EntityManagerFactory entityManagerFactory, int batchSize) {
+        Objects.requireNonNull(entityManagerFactory, "entityManagerFactory parameter must not be null");
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize parameter must be greater than zero");
+        }
+
+        String pending = "select " + idColumn + ", " + sourceColumn + " from " + table
+                + " where " + targetColumn + " is null and " + sourceColumn + " is not null";
+        String firstSelect = pending + " order by " + idColumn;
+        String nextSelect = pending + " and " + idColumn + " > ? order by " + idColumn;
+        String update = "update " + table + " set " + targetColumn + " = ? where " + idColumn + " = ?";
+
+        long migrated = 0;
+        Object lastId = null;
+        while (true) {
+            List<Object[]> rows = migrateBatch(entityManagerFactory, null == lastId ? firstSelect : nextSelect,
+                    update, lastId, batchSize);
+            if (rows.isEmpty()) {
+                break;
+            }
+            migrated += rows.size();
+            lastId = rows.get(rows.size() - 1)[0];
+            logger.debug("Migrated {} rows of {}.{} to {}.{}", migrated, table, sourceColumn, table, targetColumn);
+        }
+        logger.info("Migrated {} rows of {}.{} to {}.{}", migrated, table, sourceColumn, table, targetColumn);
+        return migrated;
+    }
+
+    private List<Object[]> migrateBatch(EntityManagerFactory entityManagerFactory, String select, String update,
+            Object lastId, int batchSize) {
+        List<Object[]> rows = new ArrayList<>(batchSize);
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            entityManager.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(select)) {
+                    statement.setMaxRows(batchSize);
+                    if (lastId != null) {
+                        statement.setObject(1, lastId);
+                    }
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            rows.add(new Object[]{resultSet.getObject(1), resultSet.getString(2)});
+                        }
+                    }
+                }
+                if (rows.isEmpty()) {
+                    return;
+                }
+                try (PreparedStatement statement = connection.prepareStatement(update)) {
+                    for (Object[] row : rows) {
+                        statement.setObject(1, convert(row[0], (String) row[1]));
+                        statement.setObject(2, row[0]);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            });
+            transaction.commit();
+            return rows;
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e instanceof PersistenceException ? e
+                    : new PersistenceException("Could not migrate " + table + "." + sourceColumn, e);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private Object convert(Object id, String dbData) {
+        try {
+            return targetConverter.convertToDatabaseColumn(sourceConverter.convertToEntityAttribute(dbData));
+        } catch (RuntimeException e) {
+            throw new PersistenceException("Could not convert " + table + "." + sourceColumn + " value '" + dbData
+                    + "' of row " + id, e);
+        }
+    }
+
+}
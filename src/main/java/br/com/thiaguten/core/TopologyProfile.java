@@ -0,0 +1,386 @@
+package br.com.thiaguten.core;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+
+import org.apache.ignite.cache.CacheAtomicityMode;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.cache.CacheRebalanceMode;
+import org.apache.ignite.cache.CacheWriteSynchronizationMode;
+import org.apache.ignite.cache.affinity.rendezvous.RendezvousAffinityFunction;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.DataPageEvictionMode;
+import org.apache.ignite.configuration.DataRegionConfiguration;
+import org.apache.ignite.configuration.DataStorageConfiguration;
+
+/**
+ * Named topology of the Ignite caches backing the L2 cache regions: how the
+ * entries are distributed over the grid nodes and how the writes are
+ * acknowledged.
+ * <p>
+ * The built-in profiles are:
+ * <ul>
+ * <li>{@value #TRANSACTIONAL} - partitioned, transactional and fully
+ * synchronous, the default of the entity and collection regions;</li>
+ * <li>{@value #REPLICATED} - a full copy on every node, transactional and fully
+ * synchronous, for small read-mostly entities;</li>
+ * <li>{@value #ATOMIC} - partitioned, atomic and fully synchronous, the default
+ * of the update timestamps region;</li>
+ * <li>{@value #QUERY} - partitioned, atomic and acknowledged by the primary
+ * node only, with statistics, the default of the query result regions, which
+ * can be rebuilt from the database anytime.</li>
+ * </ul>
+ * A profile may also compress the large values of the entity entries of its
+ * regions (see {@link #getCompressionThreshold()}), expire the entries some
+ * time after they are cached (see {@link #getTimeToLive()}) and bound the
+ * memory of each of its regions (see {@link #getMaxSizeMb()}), which none of
+ * the built-in profiles does.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ * @see GridRegionTopology
+ */
+public final class TopologyProfile {
+
+    public static final String TRANSACTIONAL = "transactional";
+    public static final String REPLICATED = "replicated";
+    public static final String ATOMIC = "atomic";
+    public static final String QUERY = "query";
+
+    /**
+     * The Ignite default number of partitions.
+     */
+    public static final int DEFAULT_PARTITIONS = RendezvousAffinityFunction.DFLT_PARTITION_COUNT;
+
+    /**
+     * The Ignite minimum size of a data region, in megabytes.
+     */
+    public static final int MIN_MAX_SIZE_MB = 10;
+
+    private static final long MB = 1024L * 1024L;
+
+    private static final Map<String, TopologyProfile> BUILT_IN;
+
+    static {
+        Map<String, TopologyProfile> builtIn = new LinkedHashMap<>();
+        builtIn.put(TRANSACTIONAL, new TopologyProfile(TRANSACTIONAL, CacheMode.PARTITIONED,
+                CacheAtomicityMode.TRANSACTIONAL, 0, CacheWriteSynchronizationMode.FULL_SYNC,
+                CacheRebalanceMode.ASYNC, DEFAULT_PARTITIONS));
+        // a joining node serves the entries only once it holds all of them
+        builtIn.put(REPLICATED, new TopologyProfile(REPLICATED, CacheMode.REPLICATED,
+                CacheAtomicityMode.TRANSACTIONAL, 0, CacheWriteSynchronizationMode.FULL_SYNC,
+                CacheRebalanceMode.SYNC, DEFAULT_PARTITIONS));
+        builtIn.put(ATOMIC, new TopologyProfile(ATOMIC, CacheMode.PARTITIONED,
+                CacheAtomicityMode.ATOMIC, 0, CacheWriteSynchronizationMode.FULL_SYNC,
+                CacheRebalanceMode.ASYNC, DEFAULT_PARTITIONS));
+        builtIn.put(QUERY, new TopologyProfile(QUERY, CacheMode.PARTITIONED,
+                CacheAtomicityMode.ATOMIC, 0, CacheWriteSynchronizationMode.PRIMARY_SYNC,
+                CacheRebalanceMode.ASYNC, DEFAULT_PARTITIONS, 0, 0, 0, true));
+        BUILT_IN = Collections.unmodifiableMap(builtIn);
+    }
+
+    private final String name;
+    private final CacheMode cacheMode;
+    private final CacheAtomicityMode atomicityMode;
+    private final int backups;
+    private final CacheWriteSynchronizationMode writeSynchronizationMode;
+    private final CacheRebalanceMode rebalanceMode;
+    private final int partitions;
+    private final int compressionThreshold;
+    private final long timeToLive;
+    private final int maxSizeMb;
+    private final boolean statisticsEnabled;
+
+    /**
+     * Create a topology profile.
+     *
+     * @param name                     the profile name
+     * @param cacheMode                the cache mode
+     * @param atomicityMode            the atomicity mode
+     * @param backups                  the number of backup copies of each partition, ignored by replicated caches
+     * @param writeSynchronizationMode the write synchronization mode
+     * @param rebalanceMode            the rebalance mode
+     * @param partitions               the number of partitions
+     */
+    public TopologyProfile(String name, CacheMode cacheMode, CacheAtomicityMode atomicityMode, int backups,
+                           CacheWriteSynchronizationMode writeSynchronizationMode, CacheRebalanceMode rebalanceMode,
+                           int partitions) {
+        this(name, cacheMode, atomicityMode, backups, writeSynchronizationMode, rebalanceMode, partitions, 0);
+    }
+
+    /**
+     * Create a topology profile that compresses the large values of the entity
+     * entries.
+     *
+     * @param name                     the profile name
+     * @param cacheMode                the cache mode
+     * @param atomicityMode            the atomicity mode
+     * @param backups                  the number of backup copies of each partition, ignored by replicated caches
+     * @param writeSynchronizationMode the write synchronization mode
+     * @param rebalanceMode            the rebalance mode
+     * @param partitions               the number of partitions
+     * @param compressionThreshold     the size from which values are compressed, in bytes, or 0 to not compress
+     */
+    public TopologyProfile(String name, CacheMode cacheMode, CacheAtomicityMode atomicityMode, int backups,
+                           CacheWriteSynchronizationMode writeSynchronizationMode, CacheRebalanceMode rebalanceMode,
+                           int partitions, int compressionThreshold) {
+        this(name, cacheMode, atomicityMode, backups, writeSynchronizationMode, rebalanceMode, partitions,
+                compressionThreshold, 0, 0, false);
+    }
+
+    /**
+     * Create a topology profile whose regions expire their entries, are bounded
+     * in memory or gather statistics.
+     *
+     * @param name                     the profile name
+     * @param cacheMode                the cache mode
+     * @param atomicityMode            the atomicity mode
+     * @param backups                  the number of backup copies of each partition, ignored by replicated caches
+     * @param writeSynchronizationMode the write synchronization mode
+     * @param rebalanceMode            the rebalance mode
+     * @param partitions               the number of partitions
+     * @param compressionThreshold     the size from which values are compressed, in bytes, or 0 to not compress
+     * @param timeToLive               the time the entries live once cached, in seconds, or 0 to not expire them
+     * @param maxSizeMb                the memory of each region, in megabytes, or 0 to not bound it
+     * @param statisticsEnabled        whether the regions gather statistics
+     */
+    public TopologyProfile(String name, CacheMode cacheMode, CacheAtomicityMode atomicityMode, int backups,
+                           CacheWriteSynchronizationMode writeSynchronizationMode, CacheRebalanceMode rebalanceMode,
+                           int partitions, int compressionThreshold, long timeToLive, int maxSizeMb,
+                           boolean statisticsEnabled) {
+        this.name = Objects.requireNonNull(name, "name parameter must not be null");
+        this.cacheMode = Objects.requireNonNull(cacheMode, "cacheMode parameter must not be null");
+        this.atomicityMode = Objects.requireNonNull(atomicityMode, "atomicityMode parameter must not be null");
+        this.writeSynchronizationMode = Objects.requireNonNull(writeSynchronizationMode,
+                "writeSynchronizationMode parameter must not be null");
+        this.rebalanceMode = Objects.requireNonNull(rebalanceMode, "rebalanceMode parameter must not be null");
+        if (backups < 0) {
+            throw new IllegalArgumentException("backups parameter must not be negative");
+        }
+        if (partitions < 1 || partitions > CacheConfiguration.MAX_PARTITIONS_COUNT) {
+            throw new IllegalArgumentException("partitions parameter must be between 1 and "
+                    + CacheConfiguration.MAX_PARTITIONS_COUNT);
+        }
+        if (compressionThreshold < 0) {
+            throw new IllegalArgumentException("compressionThreshold parameter must not be negative");
+        }
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("timeToLive parameter must not be negative");
+        }
+        if (maxSizeMb != 0 && maxSizeMb < MIN_MAX_SIZE_MB) {
+            throw new IllegalArgumentException("maxSizeMb parameter must be 0 or at least " + MIN_MAX_SIZE_MB);
+        }
+        this.backups = backups;
+        this.partitions = partitions;
+        this.compressionThreshold = compressionThreshold;
+        this.timeToLive = timeToLive;
+        this.maxSizeMb = maxSizeMb;
+        this.statisticsEnabled = statisticsEnabled;
+    }
+
+    /**
+     * Get the built-in profiles.
+     *
+     * @return the built-in profiles by name
+     */
+    public static Map<String, TopologyProfile> builtIn() {
+        return BUILT_IN;
+    }
+
+    /**
+     * Create a profile from a base profile, overriding the given settings.
+     * The settings are the profile attribute names (e.g. {@code cacheMode} or
+     * {@code backups}) and the values are parsed from their string form.
+     *
+     * @param name     the name of the new profile
+     * @param settings the settings to override
+     * @return the new profile
+     * @throws IllegalArgumentException if a setting is unknown or its value is invalid
+     */
+    public TopologyProfile derive(String name, Map<String, String> settings) {
+        CacheMode cacheMode = this.cacheMode;
+        CacheAtomicityMode atomicityMode = this.atomicityMode;
+        int backups = this.backups;
+        CacheWriteSynchronizationMode writeSynchronizationMode = this.writeSynchronizationMode;
+        CacheRebalanceMode rebalanceMode = this.rebalanceMode;
+        int partitions = this.partitions;
+        int compressionThreshold = this.compressionThreshold;
+        long timeToLive = this.timeToLive;
+        int maxSizeMb = this.maxSizeMb;
+        boolean statisticsEnabled = this.statisticsEnabled;
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            String value = setting.getValue().trim();
+            switch (setting.getKey()) {
+                case "cacheMode":
+                    cacheMode = CacheMode.valueOf(value.toUpperCase());
+                    break;
+                case "atomicityMode":
+                    atomicityMode = CacheAtomicityMode.valueOf(value.toUpperCase());
+                    break;
+                case "backups":
+                    backups = Integer.parseInt(value);
+                    break;
+                case "writeSynchronizationMode":
+                    writeSynchronizationMode = CacheWriteSynchronizationMode.valueOf(value.toUpperCase());
+                    break;
+                case "rebalanceMode":
+                    rebalanceMode = CacheRebalanceMode.valueOf(value.toUpperCase());
+                    break;
+                case "partitions":
+                    partitions = Integer.parseInt(value);
+                    break;
+                case "compressionThreshold":
+                    compressionThreshold = Integer.parseInt(value);
+                    break;
+                case "timeToLive":
+                    timeToLive = Long.parseLong(value);
+                    break;
+                case "maxSizeMb":
+                    maxSizeMb = Integer.parseInt(value);
+                    break;
+                case "statisticsEnabled":
+                    statisticsEnabled = Boolean.parseBoolean(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown setting '" + setting.getKey()
+                            + "' of topology profile '" + name + "'");
+            }
+        }
+        return new TopologyProfile(name, cacheMode, atomicityMode, backups, writeSynchronizationMode,
+                rebalanceMode, partitions, compressionThreshold, timeToLive, maxSizeMb, statisticsEnabled);
+    }
+
+    /**
+     * Create the configuration of the cache of a region, stored in the data
+     * region of the same name when the profile bounds the memory of its
+     * regions (see {@link #toDataRegionConfiguration(String)}).
+     *
+     * @param regionName the region name, which is the cache name
+     * @return the cache configuration
+     */
+    public CacheConfiguration<Object, Object> toCacheConfiguration(String regionName) {
+        CacheConfiguration<Object, Object> cacheConfiguration = new CacheConfiguration<>(regionName);
+        cacheConfiguration.setCacheMode(cacheMode);
+        cacheConfiguration.setAtomicityMode(atomicityMode);
+        cacheConfiguration.setBackups(backups);
+        cacheConfiguration.setWriteSynchronizationMode(writeSynchronizationMode);
+        cacheConfiguration.setRebalanceMode(rebalanceMode);
+        cacheConfiguration.setAffinity(new RendezvousAffinityFunction(false, partitions));
+        cacheConfiguration.setStatisticsEnabled(statisticsEnabled);
+        if (timeToLive > 0) {
+            cacheConfiguration.setExpiryPolicyFactory(CreatedExpiryPolicy.factoryOf(
+                    new Duration(TimeUnit.SECONDS, timeToLive)));
+        }
+        if (maxSizeMb > 0) {
+            cacheConfiguration.setDataRegionName(regionName);
+        }
+        return cacheConfiguration;
+    }
+
+    /**
+     * Create the configuration of the data region of a region whose memory is
+     * bounded, so its entries are evicted, least recently used first, once it
+     * is almost full, without evicting the entries of the other regions.
+     *
+     * @param regionName the region name, which is the data region name
+     * @return the data region configuration, or null if the profile does not bound the memory of its regions
+     */
+    public DataRegionConfiguration toDataRegionConfiguration(String regionName) {
+        if (0 == maxSizeMb) {
+            return null;
+        }
+        long maxSize = maxSizeMb * MB;
+        return new DataRegionConfiguration()
+                .setName(regionName)
+                .setInitialSize(Math.min(maxSize, DataStorageConfiguration.DFLT_DATA_REGION_INITIAL_SIZE))
+                .setMaxSize(maxSize)
+                .setPageEvictionMode(DataPageEvictionMode.RANDOM_2_LRU)
+                .setMetricsEnabled(statisticsEnabled);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CacheMode getCacheMode() {
+        return cacheMode;
+    }
+
+    public CacheAtomicityMode getAtomicityMode() {
+        return atomicityMode;
+    }
+
+    public int getBackups() {
+        return backups;
+    }
+
+    public CacheWriteSynchronizationMode getWriteSynchronizationMode() {
+        return writeSynchronizationMode;
+    }
+
+    public CacheRebalanceMode getRebalanceMode() {
+        return rebalanceMode;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Get the size from which the strings of the entity entries are stored
+     * compressed, in UTF-8 bytes. The compression needs the compact entry
+     * format (see {@link CompactCacheEntrySerializer}).
+     *
+     * @return the compression threshold, or 0 if the entries are not compressed
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Get the time the entries live once cached, after which they expire,
+     * whether they are read or updated meanwhile or not.
+     *
+     * @return the time to live, in seconds, or 0 if the entries do not expire
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Get the memory of each region, whose least recently used entries are
+     * evicted once it is almost full.
+     *
+     * @return the region memory, in megabytes, or 0 if it is not bounded
+     */
+    public int getMaxSizeMb() {
+        return maxSizeMb;
+    }
+
+    public boolean isStatisticsEnabled() {
+        return statisticsEnabled;
+    }
+
+    @Override
+    public String toString() {
+        return "TopologyProfile{" +
+                "name='" + name + '\'' +
+                ", cacheMode=" + cacheMode +
+                ", atomicityMode=" + atomicityMode +
+                ", backups=" + backups +
+                ", writeSynchronizationMode=" + writeSynchronizationMode +
+                ", rebalanceMode=" + rebalanceMode +
+                ", partitions=" + partitions +
+                ", compressionThreshold=" + compressionThreshold +
+                ", timeToLive=" + timeToLive +
+                ", maxSizeMb=" + maxSizeMb +
+                ", statisticsEnabled=" + statisticsEnabled +
+                '}';
+    }
+
+}
@@ -0,0 +1,26 @@
+package br.com.thiaguten.dao;
+
+import br.com.thiaguten.core.GridDAO;
+import br.com.thiaguten.model.Post;
+import java.util.List;
+import org.apache.ignite.Ignite;
+
+/**
+ * Post DAO whose system of record in the hot path is the grid, see {@link GridDAO}.
+ * Title searches run on the database DAO.
+ */
+public class GridPostDAOImpl extends GridDAO<Long, Post> implements PostDAO {
+
+  private final PostDAO databaseDAO;
+
+  public GridPostDAOImpl(Ignite ignite, PostDAO databaseDAO, Backend backend) {
+    super(ignite, databaseDAO, backend);
+    this.databaseDAO = databaseDAO;
+  }
+
+  @Override
+  public List<Post> findByTitle(String title) {
+    return databaseDAO.findByTitle(title);
+  }
+
+}
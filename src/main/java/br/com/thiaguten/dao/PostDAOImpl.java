@@ -1,22 +1,130 @@
 package br.com.thiaguten.dao;
 
 import br.com.thiaguten.core.AbstractDAO;
+import br.com.thiaguten.core.GridRegionTopology;
+import br.com.thiaguten.core.QueryRegion;
 import br.com.thiaguten.model.Post;
+import br.com.thiaguten.search.PostTitleIndex;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 import javax.persistence.EntityManager;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Root;
 import org.hibernate.criterion.MatchMode;
-import org.hibernate.jpa.QueryHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class PostDAOImpl extends AbstractDAO<Long, Post> implements PostDAO {
 
+  /**
+   * The query cache region of the title searches, declared by {@link br.com.thiaguten.Env}, so the
+   * searches of many distinct titles do not evict the results of the other queries. The searches
+   * use the default region when the persistence unit does not declare it.
+   */
+  public static final QueryRegion TITLE_QUERY_REGION = QueryRegion.named(Post.class.getName() + ".byTitle");
+
+  /**
+   * The maximum number of posts a title search loads by the identifiers found in the title
+   * index, e.g. of a one letter title, above which the search falls back to the database so
+   * it does not bind an unbounded list of identifiers.
+   */
+  public static final int MAX_TITLE_INDEX_MATCHES = 500;
+
+  private static final Logger logger = LoggerFactory.getLogger(PostDAOImpl.class);
+
+  private static final int BACKFILL_BATCH_SIZE = 1_000;
+
+  private final PostTitleIndex titleIndex;
+
+  public PostDAOImpl() {
+    this(null);
+  }
+
+  /**
+   * Construct a PostDAOImpl that resolves title searches through a full-text index,
+   * filling the index from the database when it is empty, so the posts that existed
+   * before it was created are found too. The persistence unit must be bootstrapped.
+   *
+   * @param titleIndex the title index, or null to search the database
+   */
+  public PostDAOImpl(PostTitleIndex titleIndex) {
+    this.titleIndex = titleIndex;
+    if (titleIndex != null && titleIndex.isEmpty()) {
+      backfillTitleIndex();
+    }
+  }
+
+  /**
+   * Index the titles of all the posts of the database, a batch at a time, reading only
+   * their identifiers and titles.
+   *
+   * @return the number of indexed posts
+   */
+  public long backfillTitleIndex() {
+    Map<Long, String> titles = new LinkedHashMap<>();
+    long count = 0;
+    try (Stream<TitleRow> rows = streamByQuery(TitleRow.class, "select p.id, p.title from Post p")) {
+      for (Iterator<TitleRow> iterator = rows.iterator(); iterator.hasNext(); ) {
+        TitleRow row = iterator.next();
+        titles.put(row.id, row.title);
+        if (titles.size() == BACKFILL_BATCH_SIZE) {
+          titleIndex.indexTitles(titles);
+          count += titles.size();
+          titles.clear();
+        }
+      }
+    }
+    titleIndex.indexTitles(titles);
+    count += titles.size();
+    logger.info("Indexed the titles of {} post(s)", count);
+    return count;
+  }
+
+  @Override
+  public Post saveOrUpdate(Post entity) {
+    Post post = super.saveOrUpdate(entity);
+    if (titleIndex != null) {
+      titleIndex.index(post);
+    }
+    return post;
+  }
+
+  @Override
+  public List<Post> saveOrUpdateInBatch(List<Post> entities, int batchSize) {
+    List<Post> posts = super.saveOrUpdateInBatch(entities, batchSize);
+    if (titleIndex != null) {
+      titleIndex.indexAll(posts);
+    }
+    return posts;
+  }
+
+  @Override
+  public void deleteById(Long id) {
+    super.deleteById(id);
+    if (titleIndex != null) {
+      titleIndex.remove(id);
+    }
+  }
+
   @Override
   public List<Post> findByTitle(String title) {
-    boolean cacheable = true;
+    if (titleIndex != null && titleIndex.isSearchable(title)) {
+      // one more than the maximum tells a search with too many matches
+      List<Long> ids = titleIndex.search(title, MAX_TITLE_INDEX_MATCHES + 1);
+      if (ids.size() <= MAX_TITLE_INDEX_MATCHES) {
+        return findByTitleIndex(title, ids);
+      }
+      logger.debug("Title '{}' matches more than {} indexed posts, searching the database",
+          title, MAX_TITLE_INDEX_MATCHES);
+    }
+
     String likePattern = MatchMode.ANYWHERE.toMatchString(title.toLowerCase());
 
 //    // Named Parameters (:name)
@@ -26,7 +134,7 @@ public class PostDAOImpl extends AbstractDAO<Long, Post> implements PostDAO {
 //        + "join fetch p.postDetails pd "
 //        + "where lower(p.title) like :likePattern "
 //        + "order by pd.createdOn";
-//    return findByQueryAndNamedParams(cacheable, jpql, Collections.singletonMap("likePattern", likePattern));
+//    return findByQueryAndNamedParams(titleQueryRegion(), jpql, Collections.singletonMap("likePattern", likePattern));
 
 //    // Ordinal Parameters (?index)
 //    String jpql = "select distinct p "
@@ -35,10 +143,10 @@ public class PostDAOImpl extends AbstractDAO<Long, Post> implements PostDAO {
 //        + "join fetch p.postDetails pd "
 //        + "where lower(p.title) like ?1 "
 //        + "order by pd.createdOn";
-//    return findByQuery(cacheable, jpql, "'" + likePattern + "'");
+//    return findByQuery(titleQueryRegion(), jpql, "'" + likePattern + "'");
 
     // Criteria Query
-    EntityManager entityManager = getEntityManager();
+    EntityManager entityManager = getReadEntityManager();
     try {
       CriteriaBuilder cb = entityManager.getCriteriaBuilder();
       CriteriaQuery<Post> cq = cb.createQuery(getPersistenceClass());
@@ -49,12 +157,64 @@ public class PostDAOImpl extends AbstractDAO<Long, Post> implements PostDAO {
 //    cq.where(cb.like(cb.lower(post.get("title")), cb.literal(likePattern)));
       cq.where(cb.like(cb.lower(post.get("title")), likePattern));
       cq.orderBy(cb.asc(postDetails.get("createdOn")));
-      return entityManager.createQuery(cq)
-          .setHint(QueryHints.HINT_CACHEABLE, cacheable)
-          .getResultList();
+      return cacheIn(entityManager.createQuery(cq), titleQueryRegion()).getResultList();
     } finally {
       closeEntityManager();
     }
   }
 
+  // the Ignite cache of an undeclared region does not exist, so caching in it would fail the search
+  private QueryRegion titleQueryRegion() {
+    if (GridRegionTopology.getQueryRegionNames(getEntityManagerFactory().getProperties())
+        .contains(TITLE_QUERY_REGION.getName())) {
+      return TITLE_QUERY_REGION;
+    }
+    logger.debug("Region '{}' is not declared by {}, caching the title search in the default region",
+        TITLE_QUERY_REGION.getName(), GridRegionTopology.QUERY_REGIONS);
+    return QueryRegion.DEFAULT;
+  }
+
+  private List<Post> findByTitleIndex(String title, List<Long> ids) {
+    if (ids.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    String lowerCaseTitle = title.toLowerCase();
+    EntityManager entityManager = getReadEntityManager();
+    try {
+      // one query for all the matches, with the same inner fetch joins of the database search
+      CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+      CriteriaQuery<Post> cq = cb.createQuery(getPersistenceClass());
+      Root<Post> post = cq.from(getPersistenceClass());
+      post.fetch("postComments");
+      Join<Object, Object> postDetails = (Join<Object, Object>) post.fetch("postDetails");
+      cq.select(post).distinct(true);
+      cq.where(post.get("id").in(ids));
+      cq.orderBy(cb.asc(postDetails.get("createdOn")));
+      List<Post> posts = new ArrayList<>(ids.size());
+      for (Post found : entityManager.createQuery(cq).getResultList()) {
+        // the index is eventually consistent, so re-check the loaded title
+        if (found.getTitle().toLowerCase().contains(lowerCaseTitle)) {
+          posts.add(found);
+        }
+      }
+      return posts;
+    } finally {
+      closeEntityManager();
+    }
+  }
+
+  // the identifier and title of a post, for the title index backfill
+  private static final class TitleRow {
+
+    private final Long id;
+    private final String title;
+
+    private TitleRow(Long id, String title) {
+      this.id = id;
+      this.title = title;
+    }
+
+  }
+
 }
@@ -1,6 +1,6 @@
 package br.com.thiaguten.model;
 
-import br.com.thiaguten.core.AbstractEntity;
+import br.com.thiaguten.core.AbstractVersionedEntity;
 import java.util.ArrayList;
 import java.util.List;
 import javax.persistence.Cacheable;
@@ -14,12 +14,14 @@ import javax.persistence.OneToOne;
 import javax.persistence.Table;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.LazyToOne;
+import org.hibernate.annotations.LazyToOneOption;
 
 @Entity
 @Table(name = "POST")
 @Cacheable
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
-public class Post extends AbstractEntity<Long> {
+public class Post extends AbstractVersionedEntity<Long> {
 
   private static final long serialVersionUID = 8868996711999017043L;
 
@@ -30,10 +32,14 @@ public class Post extends AbstractEntity<Long> {
   @Column(name = "TITLE", nullable = false, length = 200)
   private String title;
 
+  // the inverse side can only be lazy when the entity is bytecode enhanced (see pom.xml)
   @OneToOne(mappedBy = "post", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
+  @LazyToOne(LazyToOneOption.NO_PROXY)
   private PostDetails postDetails;
 
+  // the comment IDs are cached, in a region collocated with the post, so the comments are loaded from their region
   @OneToMany(mappedBy = "post", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
+  @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
   private List<PostComment> postComments = new ArrayList<>();
 
   public Post() {
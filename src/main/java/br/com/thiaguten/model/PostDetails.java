@@ -1,7 +1,9 @@
 package br.com.thiaguten.model;
 
-import br.com.thiaguten.converter.LocalDateTimeConverter;
+import br.com.thiaguten.converter.LocalDateTimeEpochMilliConverter;
 import br.com.thiaguten.core.AbstractEntity;
+import br.com.thiaguten.core.RegionTopology;
+import br.com.thiaguten.core.TopologyProfile;
 import java.time.LocalDateTime;
 import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
@@ -10,6 +12,7 @@ import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.MapsId;
 import javax.persistence.OneToOne;
@@ -18,9 +21,11 @@ import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
-@Table(name = "POST_DETAILS")
+@Table(name = "POST_DETAILS", indexes = @Index(name = "IDX_POST_DETAILS_CREATED_ON", columnList = "CREATED_ON"))
 @Cacheable
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+// small and read-mostly, a full copy on every node saves the remote reads
+@RegionTopology(TopologyProfile.REPLICATED)
 public class PostDetails extends AbstractEntity<Long> {
 
   @Id
@@ -30,8 +35,10 @@ public class PostDetails extends AbstractEntity<Long> {
   @Column(name = "CREATED_BY", nullable = false)
   private String createdBy;
 
+  // stored as epoch milliseconds (BIGINT), so that range queries and sorts are index friendly.
+  // Legacy string columns written by LocalDateTimeConverter can be rewritten with TemporalColumnMigration
   @Column(name = "CREATED_ON", nullable = false)
-  @Convert(converter = LocalDateTimeConverter.class)
+  @Convert(converter = LocalDateTimeEpochMilliConverter.class)
   private LocalDateTime createdOn;
 
   // OneToOne shared primary key
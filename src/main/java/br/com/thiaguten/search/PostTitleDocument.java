@@ -0,0 +1,44 @@
+package br.com.thiaguten.search;
+
+import java.io.Serializable;
+import org.apache.ignite.cache.query.annotations.QueryTextField;
+
+/**
+ * Searchable document of a Post title.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class PostTitleDocument implements Serializable {
+
+  private static final long serialVersionUID = -2391548313337014627L;
+
+  private String title;
+
+  @QueryTextField
+  private String terms;
+
+  public PostTitleDocument() {
+    super();
+  }
+
+  public PostTitleDocument(String title, String terms) {
+    this.title = title;
+    this.terms = terms;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public String getTerms() {
+    return terms;
+  }
+
+  @Override
+  public String toString() {
+    return "PostTitleDocument{" +
+        "title='" + title + '\'' +
+        '}';
+  }
+
+}
@@ -0,0 +1,78 @@
+package br.com.thiaguten.search;
+
+import br.com.thiaguten.core.AbstractTextIndex;
+import br.com.thiaguten.model.Post;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+import org.apache.ignite.Ignite;
+
+/**
+ * Distributed full-text index of Post titles.
+ * <p>
+ * The Ignite Lucene query parser does not allow leading wildcards, so a
+ * "contains" search can not be expressed directly. Instead every suffix of
+ * every title word is indexed and each search word becomes a prefix query
+ * over those suffixes, e.g. "updatetest" is found by "test", "date" or "upd".
+ * Each suffix is marked with {@link #SUFFIX_MARK} so that the analyzer never
+ * drops it as a stop word.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class PostTitleIndex extends AbstractTextIndex<Long, Post, PostTitleDocument> {
+
+  private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+  private static final char SUFFIX_MARK = 'x';
+
+  public PostTitleIndex(Ignite ignite) {
+    super(ignite, Long.class, PostTitleDocument.class, "PostTitleIndex");
+  }
+
+  /**
+   * Index (or re-index) post titles, without loading the posts.
+   *
+   * @param titles the titles to be indexed, by post identifier
+   */
+  public void indexTitles(Map<Long, String> titles) {
+    Map<Long, PostTitleDocument> documents = new LinkedHashMap<>();
+    titles.forEach((id, title) -> documents.put(id, toDocument(title)));
+    putAll(documents);
+  }
+
+  @Override
+  protected PostTitleDocument toDocument(Post post) {
+    return toDocument(post.getTitle());
+  }
+
+  private static PostTitleDocument toDocument(String title) {
+    StringJoiner terms = new StringJoiner(" ");
+    for (String word : words(title)) {
+      for (int i = 0; i < word.length(); i++) {
+        terms.add(SUFFIX_MARK + word.substring(i));
+      }
+    }
+    return new PostTitleDocument(title, terms.toString());
+  }
+
+  @Override
+  protected String toQueryText(String text) {
+    StringJoiner query = new StringJoiner(" ");
+    for (String word : words(text)) {
+      // every word is required
+      query.add("+" + SUFFIX_MARK + word + "*");
+    }
+    return query.toString();
+  }
+
+  private static String[] words(String text) {
+    if (null == text) {
+      return new String[0];
+    }
+    return WORD_SEPARATOR.splitAsStream(text.toLowerCase(Locale.ROOT))
+        .filter(word -> !word.isEmpty())
+        .toArray(String[]::new);
+  }
+
+}
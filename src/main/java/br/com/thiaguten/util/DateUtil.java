@@ -46,4 +46,12 @@ public final class DateUtil {
         return localDateTimeToEpochMilli(localTime.atDate(LocalDate.now()));
     }
 
+    public static LocalTime milliOfDayToLocalTime(long milliOfDay) {
+        return LocalTime.ofNanoOfDay(milliOfDay * 1_000_000L);
+    }
+
+    public static long localTimeToMilliOfDay(LocalTime localTime) {
+        return localTime.toNanoOfDay() / 1_000_000L;
+    }
+
 }
@@ -0,0 +1,99 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.benchmark.ClusterHarness.Node;
+import br.com.thiaguten.core.AffinityExecution;
+import br.com.thiaguten.core.GridRegionTopology;
+import br.com.thiaguten.core.TopologyProfile;
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.model.Post;
+import br.com.thiaguten.model.PostComment;
+import br.com.thiaguten.model.PostDetails;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the DAO operations on aggregates run on the calling node with the
+ * same operations run on the node owning the aggregate ({@link AffinityExecution}),
+ * on a {@link ClusterHarness} of 3 nodes by default (or the first argument).
+ * <p>
+ * The operations are run from the first node on random posts, most of them
+ * owned by the other nodes: the find of a post, the find of the whole
+ * aggregate (the post with its comments) and the update of the title of a
+ * post.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class AffinityExecutionBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(AffinityExecutionBenchmark.class);
+
+  private static final int POST_COUNT = 1000;
+  private static final int COMMENTS_PER_POST = 3;
+  private static final int WARMUP_ITERATIONS = 1_000;
+  private static final int ITERATIONS = 5_000;
+
+  private static final String AGGREGATE_QUERY =
+      "select distinct p from Post p left join fetch p.postComments where p.id = ?1";
+
+  public static void main(String[] args) {
+    int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+
+    Map<String, Object> topologyProps = new HashMap<>();
+    topologyProps.put(GridRegionTopology.PROFILE_PREFIX + TopologyProfile.TRANSACTIONAL + ".backups", "1");
+    ClusterHarness cluster = new ClusterHarness(nodeCount, topologyProps);
+    for (int i = 0; i < nodeCount; i++) {
+      cluster.startNode();
+    }
+    Node node = cluster.getNodes().get(0);
+    List<Long> ids = createPosts(node);
+    PostDAOImpl postDAO = node.getPostDAO();
+
+    BenchmarkRunner.run("local find", WARMUP_ITERATIONS, ITERATIONS, () -> postDAO.findById(randomId(ids)));
+    BenchmarkRunner.run("local aggregate find", WARMUP_ITERATIONS, ITERATIONS,
+        () -> postDAO.findByQuery(AGGREGATE_QUERY, randomId(ids)));
+    BenchmarkRunner.run("local update", WARMUP_ITERATIONS, ITERATIONS, () -> update(postDAO, randomId(ids)));
+
+    for (Node clusterNode : cluster.getNodes()) {
+      clusterNode.getPostDAO().setAffinityExecution(
+          new AffinityExecution<>(clusterNode.getIgnite(), clusterNode.getPostDAO()));
+    }
+    // the affinity find returns the whole aggregate
+    BenchmarkRunner.run("affinity aggregate find", WARMUP_ITERATIONS, ITERATIONS,
+        () -> postDAO.findById(randomId(ids)));
+    BenchmarkRunner.run("affinity update", WARMUP_ITERATIONS, ITERATIONS, () -> update(postDAO, randomId(ids)));
+
+    cluster.close();
+    System.exit(0);
+  }
+
+  private static List<Long> createPosts(Node node) {
+    List<Long> ids = new ArrayList<>(POST_COUNT);
+    for (int i = 0; i < POST_COUNT; i++) {
+      Post post = new Post("affinity" + i, new PostDetails("Thiago" + i));
+      for (int c = 0; c < COMMENTS_PER_POST; c++) {
+        post.addPostComment(new PostComment("comment" + c));
+      }
+      post.setId(node.getPostIdSupplier().getNextIdAsLong());
+      ids.add(node.getPostDAO().saveOrUpdate(post).getId());
+    }
+    Collections.shuffle(ids);
+    return ids;
+  }
+
+  private static Long randomId(List<Long> ids) {
+    return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+  }
+
+  private static void update(PostDAOImpl postDAO, Long id) {
+    Post post = postDAO.findById(id);
+    post.setTitle("affinity" + ThreadLocalRandom.current().nextInt());
+    postDAO.saveOrUpdate(post);
+  }
+
+}
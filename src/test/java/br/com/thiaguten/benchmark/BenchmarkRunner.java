@@ -0,0 +1,110 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.Env;
+import br.com.thiaguten.Env.ConnectionStrategy;
+import br.com.thiaguten.core.PersistenceHelper;
+import br.com.thiaguten.core.PersistenceUnitInfoImpl;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.ignite.Ignite;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Minimal single-threaded benchmark runner, measuring throughput, latency and
+ * the bytes allocated by the calling thread.
+ * <p>
+ * Allocations made by other threads (e.g. Ignite or the connection pool) are
+ * not accounted, so the numbers are meant to compare variants of the same
+ * operation, not to be absolute.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public final class BenchmarkRunner {
+
+  private static final Logger logger = LoggerFactory.getLogger(BenchmarkRunner.class);
+
+  private BenchmarkRunner() {
+    // not instantiable
+  }
+
+  /**
+   * Start Ignite, bootstrap the persistence unit and start the pool
+   * controllers, with the connection strategy given as first argument
+   * (CONNECTION_PROVIDER by default).
+   *
+   * @param args the benchmark program arguments
+   * @return the started Ignite node
+   */
+  public static Ignite bootstrap(String[] args) {
+    ConnectionStrategy connectionStrategy = args.length > 0
+        ? ConnectionStrategy.valueOf(args[0])
+        : ConnectionStrategy.CONNECTION_PROVIDER;
+    Map<String, Object> props = Env.createPersistenceConfig(Env.igniteInstanceName, connectionStrategy);
+    Ignite ignite = Env.startIgnite(props);
+    PersistenceHelper.bootstrap(new PersistenceUnitInfoImpl("testUnit"), props);
+    // daemon threads, which end with the benchmark
+    Env.startPoolControllers(connectionStrategy);
+    return ignite;
+  }
+
+  public static Result run(String name, int warmupIterations, int iterations, Runnable operation) {
+    for (int i = 0; i < warmupIterations; i++) {
+      operation.run();
+    }
+
+    com.sun.management.ThreadMXBean threadMXBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      operation.run();
+    }
+    long elapsedNanos = System.nanoTime() - start;
+    allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBytes;
+
+    Result result = new Result(name, iterations, elapsedNanos, allocatedBytes);
+    logger.info(">>> BENCHMARK - {}", result);
+    return result;
+  }
+
+  public static final class Result {
+
+    private final String name;
+    private final int iterations;
+    private final long elapsedNanos;
+    private final long allocatedBytes;
+
+    private Result(String name, int iterations, long elapsedNanos, long allocatedBytes) {
+      this.name = name;
+      this.iterations = iterations;
+      this.elapsedNanos = elapsedNanos;
+      this.allocatedBytes = allocatedBytes;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public double getOpsPerSecond() {
+      return iterations / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public double getAverageMicros() {
+      return elapsedNanos / (double) TimeUnit.MICROSECONDS.toNanos(1) / iterations;
+    }
+
+    public long getAllocatedBytesPerOp() {
+      return allocatedBytes / iterations;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: %.1f ops/s, %.1f us/op, %d bytes/op",
+          name, getOpsPerSecond(), getAverageMicros(), getAllocatedBytesPerOp());
+    }
+  }
+
+}
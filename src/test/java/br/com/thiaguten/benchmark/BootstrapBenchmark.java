@@ -0,0 +1,95 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.Env;
+import br.com.thiaguten.Env.ConnectionStrategy;
+import br.com.thiaguten.core.BootstrapOrchestrator;
+import br.com.thiaguten.core.BootstrapOrchestrator.Stage;
+import br.com.thiaguten.core.PersistenceHelper;
+import br.com.thiaguten.core.PersistenceUnitInfoImpl;
+import br.com.thiaguten.dao.PostDAO;
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.model.Post;
+import br.com.thiaguten.model.PostDetails;
+import br.com.thiaguten.search.PostTitleIndex;
+import br.com.thiaguten.sequence.PostIDSupplier;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.ignite.Ignite;
+import org.hibernate.jpa.boot.spi.EntityManagerFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the time to the first served request of a fresh JVM, bootstrapping
+ * Ignite, the entity manager factory and the DAO one after the other
+ * (SEQUENTIAL) or as concurrent stages of a {@link BootstrapOrchestrator}
+ * (PARALLEL), and then the ID supplier.
+ * <p>
+ * Ignite and the persistence unit are started once per JVM, so each mode must
+ * be measured in its own run: the first argument is the mode and the second
+ * one the connection strategy (DATA_SOURCE by default).
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class BootstrapBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(BootstrapBenchmark.class);
+
+  public enum Mode {
+    SEQUENTIAL, PARALLEL
+  }
+
+  public static void main(String[] args) {
+    Mode mode = args.length > 0 ? Mode.valueOf(args[0]) : Mode.PARALLEL;
+    ConnectionStrategy connectionStrategy = args.length > 1
+        ? ConnectionStrategy.valueOf(args[1])
+        : ConnectionStrategy.DATA_SOURCE;
+
+    long start = System.nanoTime();
+    PostDAO postDAO;
+    PostIDSupplier postIdSupplier;
+    if (Mode.SEQUENTIAL.equals(mode)) {
+      Map<String, Object> props = Env.createPersistenceConfig(Env.igniteInstanceName, connectionStrategy);
+      Ignite ignite = Env.startIgnite(props);
+      Env.warmUpPool(props);
+      PersistenceHelper.bootstrap(new PersistenceUnitInfoImpl("testUnit"), props);
+      postDAO = new PostDAOImpl(new PostTitleIndex(ignite));
+      postIdSupplier = new PostIDSupplier(ignite, postDAO);
+    } else {
+      try (BootstrapOrchestrator orchestrator = new BootstrapOrchestrator()) {
+        Map<String, Object> props = Env.createPersistenceConfig(Env.igniteInstanceName, connectionStrategy);
+        Stage<Ignite> ignite = orchestrator.stage("ignite", () -> Env.startIgnite(props), Ignite::close);
+        Stage<Integer> pool = orchestrator.stage("pool", () -> Env.warmUpPool(props));
+        Stage<EntityManagerFactoryBuilder> metadata = orchestrator.stage("metadata",
+            () -> PersistenceHelper.prepareBootstrap(new PersistenceUnitInfoImpl("testUnit"), props));
+        Stage<Boolean> entityManagerFactory = orchestrator.stage("entity-manager-factory", () -> {
+          PersistenceHelper.bootstrap(metadata.join(), props);
+          return Boolean.TRUE;
+        }, ignored -> PersistenceHelper.getInstance().close(), ignite, pool, metadata);
+        Stage<PostTitleIndex> titleIndex = orchestrator.stage("title-index",
+            () -> new PostTitleIndex(ignite.join()), ignite);
+        Stage<PostDAO> dao = orchestrator.stage("dao", () -> new PostDAOImpl(titleIndex.join()),
+            titleIndex, entityManagerFactory);
+        orchestrator.await();
+        postDAO = dao.join();
+        // queries the database through the DAO, so it runs on this thread, which keeps its entity manager
+        postIdSupplier = new PostIDSupplier(ignite.join(), postDAO);
+      }
+    }
+    long bootstrapNanos = System.nanoTime() - start;
+
+    // the first request: an insert and a read
+    Post post = new Post("bootstrapTest", new PostDetails("Thiago"));
+    post.setId(postIdSupplier.getNextIdAsLong());
+    postDAO.findById(postDAO.saveOrUpdate(post).getId());
+    long firstRequestNanos = System.nanoTime() - start;
+
+    logger.info(">>> BENCHMARK - {} bootstrap: {} ms", mode, TimeUnit.NANOSECONDS.toMillis(bootstrapNanos));
+    logger.info(">>> BENCHMARK - {} time to first request: {} ms (JVM uptime {} ms)", mode,
+        TimeUnit.NANOSECONDS.toMillis(firstRequestNanos), ManagementFactory.getRuntimeMXBean().getUptime());
+
+    System.exit(0);
+  }
+
+}
@@ -0,0 +1,123 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.Env;
+import br.com.thiaguten.Env.ConnectionStrategy;
+import br.com.thiaguten.core.GridRegionTopology;
+import br.com.thiaguten.core.PersistenceHelper;
+import br.com.thiaguten.core.PersistenceUnitInfoImpl;
+import br.com.thiaguten.core.RegionCompressionStats;
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.model.Post;
+import br.com.thiaguten.model.PostComment;
+import br.com.thiaguten.model.PostDetails;
+import br.com.thiaguten.sequence.PostIDSupplier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.cache.Cache;
+import javax.persistence.EntityManager;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the compression of the {@code PostComment} region, whose comments
+ * are texts of about 250 chars (the length of the column): the marshalled
+ * bytes of the values, the cache puts and gets, and the compression statistics
+ * of the region.
+ * <p>
+ * The arguments are the connection strategy and the compression threshold of
+ * the region (128 bytes by default, 0 to not compress), so the region is
+ * compared with and without compression by running the benchmark once with
+ * each.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class CacheCompressionBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(CacheCompressionBenchmark.class);
+
+  private static final int POST_COUNT = 200;
+  private static final int COMMENTS_PER_POST = 5;
+  private static final int COMMENT_LENGTH = 240;
+  private static final int WARMUP_ITERATIONS = 20_000;
+  private static final int ITERATIONS = 100_000;
+
+  private static final String[] WORDS = {"the", "post", "comment", "cache", "grid", "region", "entity", "node",
+      "value", "Hibernate", "Ignite", "query", "great", "article", "thanks", "for", "sharing", "how", "does",
+      "it", "work", "with", "a", "cluster", "of", "nodes", "and", "replicas", "?", "!", "I", "think"};
+
+  public static void main(String[] args) {
+    ConnectionStrategy connectionStrategy = args.length > 0
+        ? ConnectionStrategy.valueOf(args[0])
+        : ConnectionStrategy.CONNECTION_PROVIDER;
+    String compressionThreshold = args.length > 1 ? args[1] : "128";
+    Map<String, Object> props = Env.createPersistenceConfig(Env.igniteInstanceName, connectionStrategy);
+    props.put(GridRegionTopology.PROFILE_PREFIX + "compressed.compressionThreshold", compressionThreshold);
+    props.put(GridRegionTopology.REGION_PREFIX + PostComment.class.getName(), "compressed");
+    Ignite ignite = Env.startIgnite(props);
+    PersistenceHelper.bootstrap(new PersistenceUnitInfoImpl("testUnit"), props);
+    logger.info(">>> BENCHMARK - compression threshold: {}", compressionThreshold);
+
+    PostDAOImpl postDAO = new PostDAOImpl();
+    createAndCachePosts(postDAO, new PostIDSupplier(ignite, postDAO));
+
+    IgniteCache<Object, Object> cache = ignite.cache(PostComment.class.getName());
+    List<Object> keys = new ArrayList<>();
+    List<Object> values = new ArrayList<>();
+    long valueBytes = 0;
+    for (Cache.Entry<Object, Object> entry : cache.localEntries()) {
+      keys.add(entry.getKey());
+      values.add(entry.getValue());
+      valueBytes += CacheEntryFormatBenchmark.binarySize(ignite.binary(), entry.getValue());
+    }
+    logger.info(">>> BENCHMARK - PostComment entries: {}, {} bytes per value", keys.size(),
+        valueBytes / keys.size());
+
+    BenchmarkRunner.run("PostComment cache put", WARMUP_ITERATIONS, ITERATIONS, () -> {
+      int i = ThreadLocalRandom.current().nextInt(keys.size());
+      cache.put(keys.get(i), values.get(i));
+    });
+    BenchmarkRunner.run("PostComment cache get", WARMUP_ITERATIONS, ITERATIONS,
+        () -> cache.get(keys.get(ThreadLocalRandom.current().nextInt(keys.size()))));
+    for (RegionCompressionStats stats : RegionCompressionStats.all(ignite.name()).values()) {
+      logger.info(">>> BENCHMARK - {}", stats);
+    }
+
+    System.exit(0);
+  }
+
+  private static void createAndCachePosts(PostDAOImpl postDAO, PostIDSupplier postIdSupplier) {
+    Random random = new Random(42);
+    List<Long> ids = new ArrayList<>(POST_COUNT);
+    for (int i = 0; i < POST_COUNT; i++) {
+      Post post = new Post("compression" + i, new PostDetails("Thiago" + i));
+      for (int c = 0; c < COMMENTS_PER_POST; c++) {
+        post.addPostComment(new PostComment(text(random)));
+      }
+      post.setId(postIdSupplier.getNextIdAsLong());
+      ids.add(postDAO.saveOrUpdate(post).getId());
+    }
+    // the comments are cached once loaded
+    EntityManager entityManager = postDAO.getEntityManager();
+    try {
+      for (Long id : ids) {
+        entityManager.find(Post.class, id).getPostComments().forEach(PostComment::getComment);
+      }
+    } finally {
+      postDAO.getPersistenceHelper().closeEntityManager();
+    }
+  }
+
+  private static String text(Random random) {
+    StringBuilder text = new StringBuilder(COMMENT_LENGTH + 16);
+    while (text.length() < COMMENT_LENGTH) {
+      text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+    }
+    return text.toString();
+  }
+
+}
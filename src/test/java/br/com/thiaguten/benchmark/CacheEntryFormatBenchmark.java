@@ -0,0 +1,125 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.Env;
+import br.com.thiaguten.Env.ConnectionStrategy;
+import br.com.thiaguten.core.CompactCacheEntrySerializer;
+import br.com.thiaguten.core.GridRegionTopology;
+import br.com.thiaguten.core.PersistenceHelper;
+import br.com.thiaguten.core.PersistenceUnitInfoImpl;
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.model.Post;
+import br.com.thiaguten.model.PostComment;
+import br.com.thiaguten.model.PostDetails;
+import br.com.thiaguten.sequence.PostIDSupplier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.cache.Cache;
+import javax.persistence.EntityManager;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteBinary;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.internal.binary.BinaryObjectImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the format of the L2 cache entries of the {@code Post} and
+ * {@code PostComment} regions: the marshalled bytes of the keys and values,
+ * the time to marshal and unmarshal a value, the cache puts and gets, and the
+ * finds by ID served by the L2 cache.
+ * <p>
+ * The arguments are the connection strategy and whether the entries use the
+ * {@link CompactCacheEntrySerializer} format (true by default), so the formats
+ * are compared by running the benchmark once with each.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class CacheEntryFormatBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(CacheEntryFormatBenchmark.class);
+
+  private static final int POST_COUNT = 500;
+  private static final int COMMENTS_PER_POST = 2;
+  private static final int WARMUP_ITERATIONS = 20_000;
+  private static final int ITERATIONS = 200_000;
+
+  public static void main(String[] args) {
+    ConnectionStrategy connectionStrategy = args.length > 0
+        ? ConnectionStrategy.valueOf(args[0])
+        : ConnectionStrategy.CONNECTION_PROVIDER;
+    String compactEntries = args.length > 1 ? args[1] : "true";
+    Map<String, Object> props = Env.createPersistenceConfig(Env.igniteInstanceName, connectionStrategy);
+    props.put(GridRegionTopology.COMPACT_ENTRIES, compactEntries);
+    Ignite ignite = Env.startIgnite(props);
+    PersistenceHelper.bootstrap(new PersistenceUnitInfoImpl("testUnit"), props);
+    logger.info(">>> BENCHMARK - compact entries: {}", compactEntries);
+
+    PostDAOImpl postDAO = new PostDAOImpl();
+    List<Long> ids = createAndCachePosts(postDAO, new PostIDSupplier(ignite, postDAO));
+
+    IgniteBinary binary = ignite.binary();
+    for (Class<?> entityClass : new Class<?>[]{Post.class, PostComment.class}) {
+      IgniteCache<Object, Object> cache = ignite.cache(entityClass.getName());
+      List<Object> keys = new ArrayList<>();
+      List<Object> values = new ArrayList<>();
+      long keyBytes = 0;
+      long valueBytes = 0;
+      for (Cache.Entry<Object, Object> entry : cache.localEntries()) {
+        keys.add(entry.getKey());
+        values.add(entry.getValue());
+        keyBytes += binarySize(binary, entry.getKey());
+        valueBytes += binarySize(binary, entry.getValue());
+      }
+      String name = entityClass.getSimpleName();
+      logger.info(">>> BENCHMARK - {} entries: {}, {} bytes per key, {} bytes per value", name, keys.size(),
+          keyBytes / keys.size(), valueBytes / keys.size());
+
+      BenchmarkRunner.run(name + " value marshal and unmarshal", WARMUP_ITERATIONS, ITERATIONS, () -> {
+        Object value = values.get(ThreadLocalRandom.current().nextInt(values.size()));
+        binary.<BinaryObject>toBinary(value).deserialize();
+      });
+      BenchmarkRunner.run(name + " cache put", WARMUP_ITERATIONS, ITERATIONS, () -> {
+        int i = ThreadLocalRandom.current().nextInt(keys.size());
+        cache.put(keys.get(i), values.get(i));
+      });
+      BenchmarkRunner.run(name + " cache get", WARMUP_ITERATIONS, ITERATIONS,
+          () -> cache.get(keys.get(ThreadLocalRandom.current().nextInt(keys.size()))));
+    }
+
+    BenchmarkRunner.run("Post findById from the L2 cache", WARMUP_ITERATIONS / 10, ITERATIONS / 10,
+        () -> postDAO.findById(ids.get(ThreadLocalRandom.current().nextInt(ids.size()))));
+
+    System.exit(0);
+  }
+
+  static int binarySize(IgniteBinary binary, Object object) {
+    // the bytes of the object in the binary format of the node, as the caches store it
+    return ((BinaryObjectImpl) binary.toBinary(object)).length();
+  }
+
+  private static List<Long> createAndCachePosts(PostDAOImpl postDAO, PostIDSupplier postIdSupplier) {
+    List<Long> ids = new ArrayList<>(POST_COUNT);
+    for (int i = 0; i < POST_COUNT; i++) {
+      Post post = new Post("benchmark" + i, new PostDetails("Thiago" + i));
+      for (int c = 0; c < COMMENTS_PER_POST; c++) {
+        post.addPostComment(new PostComment("comment" + c));
+      }
+      post.setId(postIdSupplier.getNextIdAsLong());
+      ids.add(postDAO.saveOrUpdate(post).getId());
+    }
+    // the posts and their comments are cached once loaded
+    EntityManager entityManager = postDAO.getEntityManager();
+    try {
+      for (Long id : ids) {
+        entityManager.find(Post.class, id).getPostComments().forEach(PostComment::getComment);
+      }
+    } finally {
+      postDAO.getPersistenceHelper().closeEntityManager();
+    }
+    return ids;
+  }
+
+}
@@ -0,0 +1,315 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.Env;
+import br.com.thiaguten.core.GridRegionTopology;
+import br.com.thiaguten.core.PersistenceHelper;
+import br.com.thiaguten.core.PersistenceUnitInfoImpl;
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.sequence.PostIDSupplier;
+import com.zaxxer.hikari.HikariDataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.spi.communication.tcp.TcpCommunicationSpi;
+import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
+import org.apache.ignite.spi.discovery.tcp.ipfinder.vm.TcpDiscoveryVmIpFinder;
+import org.hsqldb.server.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a cluster of L2 grid nodes in one JVM, so the scaling of the grid and
+ * the cost of a node join or leave can be measured without real hosts.
+ * <p>
+ * Each node has its own Ignite instance, found by the others through a static
+ * loopback IP finder, and its own entity manager factory ({@link PersistenceHelper}
+ * instance), connection pool and DAO, while all the nodes share one HSQLDB
+ * server, as the application servers of a real deployment share one database.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class ClusterHarness implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(ClusterHarness.class);
+
+  public static final String NODE_NAME_PREFIX = "hibernate-l2-grid-node-";
+  private static final String LOOPBACK = "127.0.0.1";
+  private static final int DISCOVERY_PORT = 47500;
+  private static final int POOL_SIZE = 4;
+
+  private final int maxNodes;
+  private final Map<String, Object> topologyProps;
+  private final List<String> regionNames;
+  private final Server databaseServer;
+  private final String databaseUrl;
+  private final List<Node> nodes = new CopyOnWriteArrayList<>();
+  private final AtomicInteger nodeCount = new AtomicInteger();
+
+  /**
+   * Start the database server of a cluster, without nodes.
+   *
+   * @param maxNodes      the maximum number of nodes running at the same time
+   * @param topologyProps the topology profile properties of the L2 cache regions (see {@link GridRegionTopology})
+   */
+  public ClusterHarness(int maxNodes, Map<String, Object> topologyProps) {
+    this.maxNodes = maxNodes;
+    this.topologyProps = new HashMap<>(topologyProps);
+    // the named query regions of the persistence config (see Env)
+    this.topologyProps.putIfAbsent(GridRegionTopology.QUERY_REGIONS, PostDAOImpl.TITLE_QUERY_REGION.getName());
+    this.regionNames = new ArrayList<>(GridRegionTopology.fromEntityIndex(this.topologyProps,
+        ClusterHarness.class.getClassLoader()).getRegions().keySet());
+
+    int port = freePort();
+    databaseServer = new Server();
+    databaseServer.setAddress(LOOPBACK);
+    databaseServer.setPort(port);
+    databaseServer.setDatabaseName(0, "cluster");
+    // see Env.url
+    databaseServer.setDatabasePath(0, "mem:cluster;hsqldb.tx=mvcc");
+    databaseServer.setSilent(true);
+    databaseServer.setLogWriter(null);
+    databaseServer.setErrWriter(null);
+    databaseServer.setNoSystemExit(true);
+    databaseServer.start();
+    databaseUrl = "jdbc:hsqldb:hsql://" + LOOPBACK + ":" + port + "/cluster";
+  }
+
+  private static int freePort() {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Start a node and join it to the cluster, waiting for the rebalancing of
+   * the L2 cache regions to the new node.
+   *
+   * @return the started node
+   */
+  public Node startNode() {
+    if (nodes.size() >= maxNodes) {
+      throw new IllegalStateException("The cluster already has the maximum of " + maxNodes + " nodes");
+    }
+    String name = NODE_NAME_PREFIX + nodeCount.incrementAndGet();
+
+    long start = System.nanoTime();
+    Ignite ignite = Ignition.start(createIgniteConfig(name));
+    long joined = System.nanoTime();
+
+    HikariDataSource pool = Env.hikariDataSource(name + "-pool", databaseUrl);
+    pool.setMaximumPoolSize(POOL_SIZE);
+    PersistenceHelper persistenceHelper = PersistenceHelper.newInstance();
+    persistenceHelper.initialize(new PersistenceUnitInfoImpl("testUnit"), Env.createPersistenceConfig(name, pool));
+    PostDAOImpl postDAO = new PostDAOImpl();
+    postDAO.setPersistenceHelper(persistenceHelper);
+    PostIDSupplier postIdSupplier = new PostIDSupplier(ignite, postDAO);
+    long initialized = System.nanoTime();
+
+    for (String regionName : regionNames) {
+      IgniteCache<Object, Object> cache = ignite.cache(regionName);
+      if (cache != null) {
+        cache.rebalance().get();
+      }
+    }
+    long rebalanced = System.nanoTime();
+
+    Node node = new Node(name, ignite, pool, persistenceHelper, postDAO, postIdSupplier,
+        joined - start, initialized - joined, rebalanced - initialized);
+    nodes.add(node);
+    logger.info("Node {} joined the cluster of {} nodes - {}", name, ignite.cluster().nodes().size(), node);
+    return node;
+  }
+
+  private IgniteConfiguration createIgniteConfig(String name) {
+    IgniteConfiguration cfg = Env.createIgniteConfig(topologyProps);
+    cfg.setIgniteInstanceName(name);
+    cfg.setConsistentId(name);
+    cfg.setLocalHost(LOOPBACK);
+
+    TcpDiscoveryVmIpFinder ipFinder = new TcpDiscoveryVmIpFinder();
+    ipFinder.setAddresses(Collections.singletonList(LOOPBACK + ":" + DISCOVERY_PORT + ".." + (DISCOVERY_PORT + maxNodes - 1)));
+    TcpDiscoverySpi discoverySpi = new TcpDiscoverySpi();
+    discoverySpi.setLocalPort(DISCOVERY_PORT);
+    discoverySpi.setLocalPortRange(maxNodes);
+    discoverySpi.setIpFinder(ipFinder);
+    cfg.setDiscoverySpi(discoverySpi);
+    cfg.setCommunicationSpi(new TcpCommunicationSpi());
+    return cfg;
+  }
+
+  /**
+   * Stop a node, once its running operations are finished. The node leaves
+   * the cluster and the others rebalance the L2 cache regions.
+   *
+   * @param node the node to stop
+   * @return the time the node took to stop, in nanoseconds
+   */
+  public long stopNode(Node node) {
+    nodes.remove(node);
+    long start = System.nanoTime();
+    node.close();
+    long elapsedNanos = System.nanoTime() - start;
+    logger.info("Node {} left the cluster in {} ms", node.getName(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+    return elapsedNanos;
+  }
+
+  public List<Node> getNodes() {
+    return Collections.unmodifiableList(nodes);
+  }
+
+  /**
+   * Get a random running node.
+   *
+   * @return a running node
+   * @throws IllegalStateException if no node is running
+   */
+  public Node randomNode() {
+    List<Node> snapshot = new ArrayList<>(nodes);
+    if (snapshot.isEmpty()) {
+      throw new IllegalStateException("No node is running");
+    }
+    return snapshot.get(ThreadLocalRandom.current().nextInt(snapshot.size()));
+  }
+
+  public String getDatabaseUrl() {
+    return databaseUrl;
+  }
+
+  /**
+   * Stop all the nodes and the database server.
+   */
+  @Override
+  public void close() {
+    for (Node node : new ArrayList<>(nodes)) {
+      stopNode(node);
+    }
+    databaseServer.stop();
+  }
+
+  /**
+   * A node of the cluster.
+   *
+   * @author Thiago Gutenberg Carvalho da Costa
+   */
+  public static final class Node {
+
+    private final String name;
+    private final Ignite ignite;
+    private final HikariDataSource pool;
+    private final PersistenceHelper persistenceHelper;
+    private final PostDAOImpl postDAO;
+    private final PostIDSupplier postIdSupplier;
+    private final long joinNanos;
+    private final long initializationNanos;
+    private final long rebalanceNanos;
+    // the operations hold the read lock, so the node stops once they are finished
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean stopped;
+
+    private Node(String name, Ignite ignite, HikariDataSource pool, PersistenceHelper persistenceHelper,
+        PostDAOImpl postDAO, PostIDSupplier postIdSupplier, long joinNanos, long initializationNanos,
+        long rebalanceNanos) {
+      this.name = name;
+      this.ignite = ignite;
+      this.pool = pool;
+      this.persistenceHelper = persistenceHelper;
+      this.postDAO = postDAO;
+      this.postIdSupplier = postIdSupplier;
+      this.joinNanos = joinNanos;
+      this.initializationNanos = initializationNanos;
+      this.rebalanceNanos = rebalanceNanos;
+    }
+
+    /**
+     * Run an operation on this node, unless it is stopping.
+     *
+     * @param operation the operation
+     * @return true if the operation ran, false if the node is stopping
+     */
+    public boolean execute(Consumer<Node> operation) {
+      if (stopped || !lock.readLock().tryLock()) {
+        return false;
+      }
+      try {
+        if (stopped) {
+          return false;
+        }
+        operation.accept(this);
+        return true;
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    private void close() {
+      // no operation starts from now on, so the write lock is not starved
+      stopped = true;
+      lock.writeLock().lock();
+      try {
+        persistenceHelper.close();
+        pool.close();
+        ignite.close();
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public Ignite getIgnite() {
+      return ignite;
+    }
+
+    public PostDAOImpl getPostDAO() {
+      return postDAO;
+    }
+
+    public PostIDSupplier getPostIdSupplier() {
+      return postIdSupplier;
+    }
+
+    public long getJoinNanos() {
+      return joinNanos;
+    }
+
+    public long getInitializationNanos() {
+      return initializationNanos;
+    }
+
+    public long getRebalanceNanos() {
+      return rebalanceNanos;
+    }
+
+    @Override
+    public String toString() {
+      return "Node{" +
+          "name='" + name + '\'' +
+          ", join=" + TimeUnit.NANOSECONDS.toMillis(joinNanos) + "ms" +
+          ", initialization=" + TimeUnit.NANOSECONDS.toMillis(initializationNanos) + "ms" +
+          ", rebalance=" + TimeUnit.NANOSECONDS.toMillis(rebalanceNanos) + "ms" +
+          '}';
+    }
+
+  }
+
+}
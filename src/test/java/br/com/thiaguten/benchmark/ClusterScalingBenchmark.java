@@ -0,0 +1,185 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.benchmark.ClusterHarness.Node;
+import br.com.thiaguten.core.ConflictResolver;
+import br.com.thiaguten.core.GridRegionTopology;
+import br.com.thiaguten.core.LatencyHistogram;
+import br.com.thiaguten.core.TopologyProfile;
+import br.com.thiaguten.model.Post;
+import br.com.thiaguten.model.PostDetails;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a read-mostly DAO workload (90% finds, 10% optimistic updates of random
+ * posts) across the nodes of a {@link ClusterHarness}, while nodes join the
+ * cluster one at a time up to the maximum and then leave it, back to the
+ * initial size.
+ * <p>
+ * The throughput and the latency percentiles are logged every second, and
+ * summarized for each phase: each join, each leave and the steady state after
+ * them. The time of each join (node start, persistence unit initialization and
+ * rebalancing of the L2 cache regions) and leave is logged too.
+ * <p>
+ * The arguments are the initial and the maximum number of nodes (2 and 4 by
+ * default), the number of worker threads (8) and the seconds of each phase
+ * (5). The entity regions keep one backup, so a leaving node does not take
+ * cached entries away.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class ClusterScalingBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(ClusterScalingBenchmark.class);
+
+  private static final int POST_COUNT = 1000;
+  private static final int UPDATE_PERCENT = 10;
+
+  private static final ConflictResolver<Post> KEEP_REJECTED_TITLE = (current, rejected) -> {
+    current.setTitle(rejected.getTitle());
+    return current;
+  };
+
+  private static volatile boolean running = true;
+  private static volatile String phase;
+
+  public static void main(String[] args) throws InterruptedException {
+    int initialNodes = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+    int maxNodes = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    int threadCount = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+    long phaseMillis = TimeUnit.SECONDS.toMillis(args.length > 3 ? Integer.parseInt(args[3]) : 5);
+
+    Map<String, Object> topologyProps = new HashMap<>();
+    topologyProps.put(GridRegionTopology.PROFILE_PREFIX + TopologyProfile.TRANSACTIONAL + ".backups", "1");
+    ClusterHarness cluster = new ClusterHarness(maxNodes, topologyProps);
+    for (int i = 0; i < initialNodes; i++) {
+      cluster.startNode();
+    }
+    List<Long> ids = createPosts(cluster.getNodes().get(0));
+
+    LatencyHistogram latencies = new LatencyHistogram();
+    AtomicLong failures = new AtomicLong();
+    List<Thread> workers = new ArrayList<>(threadCount);
+    for (int t = 0; t < threadCount; t++) {
+      Thread worker = new Thread(() -> {
+        while (running) {
+          Long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+          boolean update = ThreadLocalRandom.current().nextInt(100) < UPDATE_PERCENT;
+          long start = System.nanoTime();
+          try {
+            if (cluster.randomNode().execute(node -> operate(node, id, update))) {
+              latencies.record(System.nanoTime() - start);
+            }
+          } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            logger.debug("Operation failed", e);
+          }
+        }
+      }, "cluster-worker-" + t);
+      worker.start();
+      workers.add(worker);
+    }
+
+    Map<String, List<LatencyHistogram.Snapshot>> phases = new LinkedHashMap<>();
+    phase = initialNodes + " nodes (initial)";
+    Thread sampler = new Thread(() -> sample(phases, latencies, failures), "cluster-sampler");
+    sampler.setDaemon(true);
+    sampler.start();
+
+    Thread.sleep(phaseMillis);
+    for (int size = initialNodes + 1; size <= maxNodes; size++) {
+      // the workload keeps running on the other nodes during the join
+      phase = "join of node " + size;
+      Node node = cluster.startNode();
+      logger.info(">>> BENCHMARK - {} joined: node start {} ms, persistence unit {} ms, rebalance {} ms",
+          node.getName(), TimeUnit.NANOSECONDS.toMillis(node.getJoinNanos()),
+          TimeUnit.NANOSECONDS.toMillis(node.getInitializationNanos()),
+          TimeUnit.NANOSECONDS.toMillis(node.getRebalanceNanos()));
+      phase = size + " nodes (after join)";
+      Thread.sleep(phaseMillis);
+    }
+    for (int size = maxNodes - 1; size >= initialNodes; size--) {
+      Node node = cluster.getNodes().get(cluster.getNodes().size() - 1);
+      phase = "leave of node " + (size + 1);
+      long stopNanos = cluster.stopNode(node);
+      logger.info(">>> BENCHMARK - {} left: node stop {} ms", node.getName(), TimeUnit.NANOSECONDS.toMillis(stopNanos));
+      phase = size + " nodes (after leave)";
+      Thread.sleep(phaseMillis);
+    }
+
+    running = false;
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    sampler.join();
+    synchronized (phases) {
+      for (Map.Entry<String, List<LatencyHistogram.Snapshot>> entry : phases.entrySet()) {
+        long count = 0;
+        long worstP99 = 0;
+        for (LatencyHistogram.Snapshot snapshot : entry.getValue()) {
+          count += snapshot.getCount();
+          worstP99 = Math.max(worstP99, snapshot.getPercentileNanos(99));
+        }
+        logger.info(">>> BENCHMARK - {}: {} ops/s over {} s, worst p99 of a second {} us", entry.getKey(),
+            count / entry.getValue().size(), entry.getValue().size(), TimeUnit.NANOSECONDS.toMicros(worstP99));
+      }
+    }
+    logger.info(">>> BENCHMARK - failed operations: {}", failures.get());
+
+    cluster.close();
+    System.exit(0);
+  }
+
+  private static List<Long> createPosts(Node node) {
+    List<Long> ids = new ArrayList<>(POST_COUNT);
+    for (int i = 0; i < POST_COUNT; i++) {
+      Post post = new Post("cluster" + i, new PostDetails("Thiago" + i));
+      post.setId(node.getPostIdSupplier().getNextIdAsLong());
+      ids.add(node.getPostDAO().saveOrUpdate(post).getId());
+    }
+    return ids;
+  }
+
+  private static void operate(Node node, Long id, boolean update) {
+    Post post = node.getPostDAO().findById(id);
+    if (update) {
+      post.setTitle("cluster" + ThreadLocalRandom.current().nextInt());
+      node.getPostDAO().saveOrUpdate(post, KEEP_REJECTED_TITLE);
+    }
+  }
+
+  private static void sample(Map<String, List<LatencyHistogram.Snapshot>> phases, LatencyHistogram latencies,
+      AtomicLong failures) {
+    long start = System.nanoTime();
+    while (running) {
+      try {
+        Thread.sleep(1000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      if (!running) {
+        // the last second is cut short by the end of the workload
+        return;
+      }
+      // a second spanning two phases is counted in the second one
+      String currentPhase = phase;
+      LatencyHistogram.Snapshot snapshot = latencies.snapshotAndReset();
+      synchronized (phases) {
+        phases.computeIfAbsent(currentPhase, key -> new ArrayList<>()).add(snapshot);
+      }
+      logger.info(">>> BENCHMARK - t={}s {}: {} ops/s, {}, failed {}",
+          TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), currentPhase, snapshot.getCount(), snapshot,
+          failures.get());
+    }
+  }
+
+}
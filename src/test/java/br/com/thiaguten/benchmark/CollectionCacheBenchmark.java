@@ -0,0 +1,91 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.model.Post;
+import br.com.thiaguten.model.PostComment;
+import br.com.thiaguten.model.PostDetails;
+import br.com.thiaguten.sequence.PostIDSupplier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.persistence.EntityManager;
+import org.apache.ignite.Ignite;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures loading a post with its comments, served from the
+ * {@code Post.postComments} region, against loading it after the region is
+ * evicted, when the comment IDs are queried from the database (the comments
+ * themselves still come from their region), along with the statements run
+ * per load.
+ * <p>
+ * The argument is the connection strategy.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class CollectionCacheBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(CollectionCacheBenchmark.class);
+
+  private static final String POST_COMMENTS_ROLE = Post.class.getName() + ".postComments";
+  private static final int POST_COUNT = 200;
+  private static final int COMMENTS_PER_POST = 5;
+  private static final int WARMUP_ITERATIONS = 5_000;
+  private static final int ITERATIONS = 20_000;
+
+  public static void main(String[] args) {
+    Ignite ignite = BenchmarkRunner.bootstrap(args);
+
+    PostDAOImpl postDAO = new PostDAOImpl();
+    PostIDSupplier postIdSupplier = new PostIDSupplier(ignite, postDAO);
+    List<Long> ids = new ArrayList<>(POST_COUNT);
+    for (int i = 0; i < POST_COUNT; i++) {
+      Post post = new Post("collection" + i, new PostDetails("Thiago" + i));
+      for (int c = 0; c < COMMENTS_PER_POST; c++) {
+        post.addPostComment(new PostComment("comment" + c));
+      }
+      post.setId(postIdSupplier.getNextIdAsLong());
+      ids.add(postDAO.saveOrUpdate(post).getId());
+    }
+
+    SessionFactory sessionFactory = postDAO.getPersistenceHelper().getEntityManagerFactory()
+        .unwrap(SessionFactory.class);
+    Statistics statistics = sessionFactory.getStatistics();
+    statistics.setStatisticsEnabled(true);
+
+    statistics.clear();
+    BenchmarkRunner.run("Post with comments from the collection region", WARMUP_ITERATIONS, ITERATIONS,
+        () -> loadPostWithComments(postDAO, randomId(ids)));
+    logger.info(">>> BENCHMARK - statements per load from the collection region: {}",
+        (double) statistics.getPrepareStatementCount() / (WARMUP_ITERATIONS + ITERATIONS));
+
+    statistics.clear();
+    BenchmarkRunner.run("Post with comments, collection region evicted", WARMUP_ITERATIONS, ITERATIONS, () -> {
+      Long id = randomId(ids);
+      sessionFactory.getCache().evictCollection(POST_COMMENTS_ROLE, id);
+      loadPostWithComments(postDAO, id);
+    });
+    logger.info(">>> BENCHMARK - statements per load with the collection region evicted: {}",
+        (double) statistics.getPrepareStatementCount() / (WARMUP_ITERATIONS + ITERATIONS));
+
+    System.exit(0);
+  }
+
+  private static Long randomId(List<Long> ids) {
+    return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+  }
+
+  private static void loadPostWithComments(PostDAOImpl postDAO, Long id) {
+    EntityManager entityManager = postDAO.getEntityManager();
+    try {
+      Post post = entityManager.find(Post.class, id);
+      post.getPostComments().forEach(PostComment::getComment);
+    } finally {
+      postDAO.getPersistenceHelper().closeEntityManager();
+    }
+  }
+
+}
@@ -0,0 +1,119 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.converter.LocalDateConverter;
+import br.com.thiaguten.converter.LocalDateTimeConverter;
+import br.com.thiaguten.converter.LocalTimeConverter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the temporal converters against their previous
+ * {@code DateTimeFormatter}/exception based implementation, for the read
+ * layout, the write (fallback) layout and formatting.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class ConverterBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(ConverterBenchmark.class);
+
+  private static final LocalDateTimeConverter localDateTimeConverter = new LocalDateTimeConverter();
+  private static final LocalDateConverter localDateConverter = new LocalDateConverter();
+  private static final LocalTimeConverter localTimeConverter = new LocalTimeConverter();
+
+  private static final int ROWS = 10_000;
+
+  // volatile write to keep the JIT from eliminating the benchmarked calls
+  private static volatile Object sink;
+
+  public static void main(String[] args) {
+    LocalDateTime now = LocalDateTime.of(2020, 11, 23, 14, 5, 9, 123_456_000);
+    String[] dateTimeReadLayout = {"2020-11-23 14:05:09.123456", "2020-11-23 14:05:09.1", "2020-11-23 14:05:09"};
+    String dateTimeWriteLayout = localDateTimeConverter.convertToDatabaseColumn(now);
+    String dateReadLayout = "2020-11-23";
+    String dateWriteLayout = "23.11.2020";
+    String timeReadLayout = "14:05:09";
+    String timeWriteLayout = "14.05.09";
+
+    for (String text : dateTimeReadLayout) {
+      verify(text, ConverterBenchmark::legacyLocalDateTime, localDateTimeConverter::convertToEntityAttribute);
+    }
+    verify(dateTimeWriteLayout, ConverterBenchmark::legacyLocalDateTime, localDateTimeConverter::convertToEntityAttribute);
+    verify(now, LocalDateTimeConverter.WRITE_FORMATTER::format, localDateTimeConverter::convertToDatabaseColumn);
+    verify(dateReadLayout, ConverterBenchmark::legacyLocalDate, localDateConverter::convertToEntityAttribute);
+    verify(dateWriteLayout, ConverterBenchmark::legacyLocalDate, localDateConverter::convertToEntityAttribute);
+    verify(timeReadLayout, ConverterBenchmark::legacyLocalTime, localTimeConverter::convertToEntityAttribute);
+    verify(timeWriteLayout, ConverterBenchmark::legacyLocalTime, localTimeConverter::convertToEntityAttribute);
+
+    int warmupIterations = 50;
+    int iterations = 200;
+
+    compare("LocalDateTime read layout", warmupIterations, iterations, dateTimeReadLayout[0],
+        ConverterBenchmark::legacyLocalDateTime, localDateTimeConverter::convertToEntityAttribute);
+    compare("LocalDateTime write layout", warmupIterations, iterations, dateTimeWriteLayout,
+        ConverterBenchmark::legacyLocalDateTime, localDateTimeConverter::convertToEntityAttribute);
+    compare("LocalDateTime format", warmupIterations, iterations, now,
+        LocalDateTimeConverter.WRITE_FORMATTER::format, localDateTimeConverter::convertToDatabaseColumn);
+    compare("LocalDate write layout", warmupIterations, iterations, dateWriteLayout,
+        ConverterBenchmark::legacyLocalDate, localDateConverter::convertToEntityAttribute);
+    compare("LocalTime write layout", warmupIterations, iterations, timeWriteLayout,
+        ConverterBenchmark::legacyLocalTime, localTimeConverter::convertToEntityAttribute);
+  }
+
+  private static <I, O> void verify(I input, Function<I, O> legacy, Function<I, O> current) {
+    O expected = legacy.apply(input);
+    O actual = current.apply(input);
+    if (!Objects.equals(expected, actual)) {
+      throw new IllegalStateException("Conversion of '" + input + "' differs: " + expected + " != " + actual);
+    }
+  }
+
+  private static <I, O> void compare(String name, int warmupIterations, int iterations, I input,
+      Function<I, O> legacy, Function<I, O> current) {
+    BenchmarkRunner.run(name + " (legacy, " + ROWS + " rows)", warmupIterations, iterations, () -> {
+      for (int i = 0; i < ROWS; i++) {
+        sink = legacy.apply(input);
+      }
+    });
+    BenchmarkRunner.run(name + " (current, " + ROWS + " rows)", warmupIterations, iterations, () -> {
+      for (int i = 0; i < ROWS; i++) {
+        sink = current.apply(input);
+      }
+    });
+  }
+
+  // PREVIOUS IMPLEMENTATIONS
+
+  private static LocalDateTime legacyLocalDateTime(String dbData) {
+    try {
+      String timestampFormatado = String.format("%-26s", dbData.replace(' ', '@')).replace(' ', '0')
+          .replace('@', ' ').replace("0000000", ".000000");
+      return LocalDateTime.parse(timestampFormatado, LocalDateTimeConverter.READ_FORMATTER);
+    } catch (DateTimeParseException e) {
+      return LocalDateTime.parse(dbData, LocalDateTimeConverter.WRITE_FORMATTER);
+    }
+  }
+
+  private static LocalDate legacyLocalDate(String dbData) {
+    try {
+      return LocalDate.parse(dbData, LocalDateConverter.READ_FORMATTER);
+    } catch (DateTimeParseException e) {
+      return LocalDate.parse(dbData, LocalDateConverter.WRITE_FORMATTER);
+    }
+  }
+
+  private static LocalTime legacyLocalTime(String dbData) {
+    try {
+      return LocalTime.parse(dbData, LocalTimeConverter.READ_FORMATTER);
+    } catch (DateTimeParseException e) {
+      return LocalTime.parse(dbData, LocalTimeConverter.WRITE_FORMATTER);
+    }
+  }
+
+}
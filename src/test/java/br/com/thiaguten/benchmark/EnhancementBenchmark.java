@@ -0,0 +1,83 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.Env;
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.model.Post;
+import br.com.thiaguten.model.PostComment;
+import br.com.thiaguten.model.PostDetails;
+import br.com.thiaguten.sequence.PostIDSupplier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.ignite.Ignite;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the flush cost and the number of statements of
+ * {@code saveOrUpdateInBatch} and {@code findByTitle}.
+ * <p>
+ * Run it once with the default build (bytecode enhanced entities) and once
+ * with the {@code no-enhancement} Maven profile to compare both.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class EnhancementBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(EnhancementBenchmark.class);
+
+  public static void main(String[] args) {
+    Ignite ignite = BenchmarkRunner.bootstrap(args);
+    PostDAOImpl postDAO = new PostDAOImpl();
+    PostIDSupplier postIdSupplier = new PostIDSupplier(ignite, postDAO);
+    Statistics statistics = postDAO.getSessionFactory().getStatistics();
+    statistics.setStatisticsEnabled(true);
+
+    logger.info(">>> BENCHMARK - entities enhanced: {}", SelfDirtinessTracker.class.isAssignableFrom(Post.class));
+
+    int entityCount = 500;
+    List<Post> posts = new ArrayList<>(entityCount);
+    for (int i = 0; i < entityCount; i++) {
+      Post post = new Post("benchmark" + i, new PostDetails("Thiago" + i));
+      post.setId(postIdSupplier.getNextIdAsLong());
+      for (int j = 1; j <= 4; j++) {
+        post.addPostComment(new PostComment("Nice post!" + i + j));
+      }
+      posts.add(post);
+    }
+    List<Post> postsSaved = postDAO.saveOrUpdateInBatch(posts, Env.batchSize);
+
+    int warmupIterations = 2;
+    int iterations = 10;
+    AtomicInteger round = new AtomicInteger();
+    statistics.clear();
+    BenchmarkRunner.run("saveOrUpdateInBatch", warmupIterations, iterations, () -> {
+      int currentRound = round.incrementAndGet();
+      for (Post post : postsSaved) {
+        post.setTitle("benchmark" + post.getId() + "-" + currentRound);
+      }
+      postDAO.saveOrUpdateInBatch(postsSaved, Env.batchSize);
+    });
+    logStatistics("saveOrUpdateInBatch", statistics, warmupIterations + iterations);
+
+    warmupIterations = 5;
+    iterations = 50;
+    statistics.clear();
+    BenchmarkRunner.run("findByTitle", warmupIterations, iterations, () -> postDAO.findByTitle("benchmark"));
+    logStatistics("findByTitle", statistics, warmupIterations + iterations);
+
+    System.exit(0);
+  }
+
+  private static void logStatistics(String name, Statistics statistics, int operations) {
+    logger.info(">>> BENCHMARK - {}: {} statements/op, {} flushes/op, {} entity loads/op, {} entity updates/op",
+        name,
+        statistics.getPrepareStatementCount() / operations,
+        statistics.getFlushCount() / operations,
+        statistics.getEntityLoadCount() / operations,
+        statistics.getEntityUpdateCount() / operations);
+  }
+
+}
@@ -0,0 +1,72 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.Env;
+import br.com.thiaguten.benchmark.BenchmarkRunner.Result;
+import br.com.thiaguten.core.PersistenceHelper;
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.model.Post;
+import br.com.thiaguten.model.PostDetails;
+import br.com.thiaguten.sequence.PostIDSupplier;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.ignite.Ignite;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares creating and closing an entity manager per DAO call against
+ * recycling the entity manager of the thread, running short DAO calls.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class EntityManagerRecyclingBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(EntityManagerRecyclingBenchmark.class);
+
+  public static void main(String[] args) {
+    Ignite ignite = BenchmarkRunner.bootstrap(args);
+    PersistenceHelper persistenceHelper = PersistenceHelper.getInstance();
+    PostDAOImpl postDAO = new PostDAOImpl();
+    PostIDSupplier postIdSupplier = new PostIDSupplier(ignite, postDAO);
+
+    int entityCount = 100;
+    List<Post> posts = new ArrayList<>(entityCount);
+    for (int i = 0; i < entityCount; i++) {
+      Post post = new Post("benchmark" + i, new PostDetails("Thiago" + i));
+      post.setId(postIdSupplier.getNextIdAsLong());
+      posts.add(post);
+    }
+    posts = postDAO.saveOrUpdateInBatch(posts, Env.batchSize);
+    List<Long> ids = new ArrayList<>(entityCount);
+    for (Post post : posts) {
+      ids.add(post.getId());
+    }
+
+    // one DAO call (one entity manager release) per loaded post, served by the L2 cache
+    Runnable operation = () -> {
+      for (Long id : ids) {
+        postDAO.findById(id);
+      }
+      postDAO.countAll();
+    };
+    int warmupIterations = 50;
+    int iterations = 500;
+
+    persistenceHelper.setRecycleEntityManager(false);
+    Result createClose = BenchmarkRunner.run("create/close entity manager", warmupIterations, iterations, operation);
+
+    persistenceHelper.setRecycleEntityManager(true);
+    Result recycle = BenchmarkRunner.run("recycled entity manager", warmupIterations, iterations, operation);
+
+    int callsPerOp = entityCount + 1;
+    logger.info(">>> BENCHMARK - DAO calls per op: {}", callsPerOp);
+    logger.info(">>> BENCHMARK - create/close bytes per DAO call: {}", createClose.getAllocatedBytesPerOp() / callsPerOp);
+    logger.info(">>> BENCHMARK - recycled bytes per DAO call: {}", recycle.getAllocatedBytesPerOp() / callsPerOp);
+    logger.info(">>> BENCHMARK - allocation reduction: {}%",
+        Math.round((1 - (double) recycle.getAllocatedBytesPerOp() / createClose.getAllocatedBytesPerOp()) * 100));
+    logger.info(">>> BENCHMARK - leaked transactions: {}", persistenceHelper.getLeakedTransactionCount());
+
+    System.exit(0);
+  }
+
+}
@@ -0,0 +1,75 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.Env;
+import br.com.thiaguten.core.GridDAO.Backend;
+import br.com.thiaguten.dao.GridPostDAOImpl;
+import br.com.thiaguten.dao.PostDAO;
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.model.Post;
+import br.com.thiaguten.model.PostDetails;
+import br.com.thiaguten.sequence.PostIDSupplier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.ignite.Ignite;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the post DAO on the database backend (with the L2 cache) against
+ * the grid-first backends, write-through and write-behind: finds by ID and
+ * updates of random posts, each backend with its own posts.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class GridDAOBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(GridDAOBenchmark.class);
+
+  private static final int POST_COUNT = 200;
+
+  public static void main(String[] args) throws InterruptedException {
+    Ignite ignite = BenchmarkRunner.bootstrap(args);
+    PostDAOImpl databaseDAO = new PostDAOImpl();
+    PostIDSupplier postIdSupplier = new PostIDSupplier(ignite, databaseDAO);
+
+    for (Backend backend : Backend.values()) {
+      PostDAO postDAO = Backend.DATABASE == backend
+          ? databaseDAO
+          : new GridPostDAOImpl(ignite, databaseDAO, backend);
+      List<Long> ids = createPosts(postDAO, postIdSupplier);
+
+      BenchmarkRunner.run(backend + " findById", 2_000, 20_000,
+          () -> postDAO.findById(randomId(ids)));
+      BenchmarkRunner.run(backend + " update", 200, 2_000, () -> {
+        Post post = postDAO.findById(randomId(ids));
+        post.setTitle("benchmark" + ThreadLocalRandom.current().nextInt());
+        postDAO.saveOrUpdate(post);
+      });
+    }
+    // the last write-behind batch
+    Thread.sleep(2 * 1000);
+    logger.info(">>> BENCHMARK - posts in the database: {}", databaseDAO.countAll());
+
+    System.exit(0);
+  }
+
+  private static List<Long> createPosts(PostDAO postDAO, PostIDSupplier postIdSupplier) {
+    List<Post> posts = new ArrayList<>(POST_COUNT);
+    for (int i = 0; i < POST_COUNT; i++) {
+      Post post = new Post("benchmark" + i, new PostDetails("Thiago" + i));
+      post.setId(postIdSupplier.getNextIdAsLong());
+      posts.add(post);
+    }
+    List<Long> ids = new ArrayList<>(POST_COUNT);
+    for (Post post : postDAO.saveOrUpdateInBatch(posts, Env.batchSize)) {
+      ids.add(post.getId());
+    }
+    return ids;
+  }
+
+  private static Long randomId(List<Long> ids) {
+    return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+  }
+
+}
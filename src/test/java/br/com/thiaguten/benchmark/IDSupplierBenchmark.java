@@ -0,0 +1,100 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.core.IDSupplier;
+import br.com.thiaguten.core.SnowflakeIDSupplier;
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.sequence.PostIDSupplier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.ignite.Ignite;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the cluster-wide atomic long ID supplier ({@link PostIDSupplier})
+ * with the node-local {@link SnowflakeIDSupplier}, single-threaded and with
+ * concurrent threads (8 by default, or the second argument).
+ * <p>
+ * The IDs supplied by the concurrent threads are checked to be unique, and
+ * the IDs of each thread to be increasing.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class IDSupplierBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(IDSupplierBenchmark.class);
+
+  private static final int WARMUP_ITERATIONS = 20_000;
+  private static final int ITERATIONS = 200_000;
+  private static final int IDS_PER_THREAD = 50_000;
+
+  public static void main(String[] args) throws InterruptedException {
+    Ignite ignite = BenchmarkRunner.bootstrap(args);
+    int threadCount = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+    PostIDSupplier atomicLongSupplier = new PostIDSupplier(ignite, new PostDAOImpl());
+    SnowflakeIDSupplier snowflakeSupplier = new SnowflakeIDSupplier(ignite);
+    logger.info(">>> BENCHMARK - snowflake node ordinal: {}", snowflakeSupplier.getNodeOrdinal());
+
+    BenchmarkRunner.run("atomic long", WARMUP_ITERATIONS, ITERATIONS, atomicLongSupplier::getNextIdAsLong);
+    BenchmarkRunner.run("snowflake", WARMUP_ITERATIONS, ITERATIONS, snowflakeSupplier::getNextIdAsLong);
+
+    runConcurrently("atomic long", atomicLongSupplier, threadCount);
+    runConcurrently("snowflake", snowflakeSupplier, threadCount);
+
+    snowflakeSupplier.close();
+    System.exit(0);
+  }
+
+  private static void runConcurrently(String name, IDSupplier supplier, int threadCount)
+      throws InterruptedException {
+    List<long[]> idsByThread = new ArrayList<>(threadCount);
+    List<Thread> threads = new ArrayList<>(threadCount);
+    CountDownLatch startSignal = new CountDownLatch(1);
+    for (int t = 0; t < threadCount; t++) {
+      long[] ids = new long[IDS_PER_THREAD];
+      idsByThread.add(ids);
+      Thread thread = new Thread(() -> {
+        try {
+          startSignal.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        for (int i = 0; i < ids.length; i++) {
+          ids[i] = supplier.getNextIdAsLong();
+        }
+      }, name + "-" + t);
+      thread.start();
+      threads.add(thread);
+    }
+
+    long start = System.nanoTime();
+    startSignal.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long elapsedNanos = System.nanoTime() - start;
+
+    Set<Long> unique = new HashSet<>(threadCount * IDS_PER_THREAD * 2);
+    long duplicates = 0;
+    long outOfOrder = 0;
+    for (long[] ids : idsByThread) {
+      for (int i = 0; i < ids.length; i++) {
+        if (!unique.add(ids[i])) {
+          duplicates++;
+        }
+        if (i > 0 && ids[i] <= ids[i - 1]) {
+          outOfOrder++;
+        }
+      }
+    }
+    long total = (long) threadCount * IDS_PER_THREAD;
+    logger.info(">>> BENCHMARK - {} with {} threads: {} ops/s, {} duplicates, {} out of order", name, threadCount,
+        total * TimeUnit.SECONDS.toNanos(1) / elapsedNanos, duplicates, outOfOrder);
+  }
+
+}
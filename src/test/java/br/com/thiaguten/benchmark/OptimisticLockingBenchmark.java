@@ -0,0 +1,155 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.core.ConflictResolver;
+import br.com.thiaguten.core.OptimisticRetryPolicy;
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.model.Post;
+import br.com.thiaguten.model.PostDetails;
+import br.com.thiaguten.sequence.PostIDSupplier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import org.apache.ignite.Ignite;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the throughput of concurrent read-modify-write updates of a few hot
+ * posts, holding a grid lock of the post for the whole update against the
+ * optimistic save, which detects the conflicts by the version-checked UPDATE
+ * and retries them with backoff.
+ * <p>
+ * Each update increments a counter kept in the post title, and the post to
+ * update is skewed towards the first posts by the exponent given as second
+ * argument (3 by default, so 40% of the updates hit the first post, while 1
+ * spreads them uniformly). The sum of the counters must match the number of
+ * successful updates, otherwise an update was lost.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class OptimisticLockingBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(OptimisticLockingBenchmark.class);
+
+  private static final int POST_COUNT = 16;
+  private static final int THREAD_COUNT = 8;
+  private static final int UPDATES_PER_THREAD = 150;
+
+  public static void main(String[] args) {
+    Ignite ignite = BenchmarkRunner.bootstrap(args);
+    int skew = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+    PostDAOImpl postDAO = new PostDAOImpl();
+    PostIDSupplier postIdSupplier = new PostIDSupplier(ignite, postDAO);
+    postDAO.setOptimisticRetryPolicy(new OptimisticRetryPolicy(20, 1, 20, TimeUnit.MILLISECONDS));
+
+    List<Long> lockIds = createPosts(postDAO, postIdSupplier);
+    List<Long> optimisticIds = createPosts(postDAO, postIdSupplier);
+
+    ConflictResolver<Post> reapplyIncrement = (current, rejected) -> {
+      current.setTitle(increment(current.getTitle()));
+      return current;
+    };
+
+    long lockNanos = runConcurrently(id -> {
+      // the post is locked in the grid for the whole read-modify-write
+      Lock lock = ignite.reentrantLock("PostUpdateLock" + id, true, false, true);
+      lock.lock();
+      try {
+        Post post = postDAO.findById(id);
+        post.setTitle(increment(post.getTitle()));
+        postDAO.saveOrUpdate(post);
+      } finally {
+        lock.unlock();
+      }
+    }, lockIds, skew);
+    long lockCount = sumCounters(postDAO, lockIds);
+
+    long optimisticNanos = runConcurrently(id -> {
+      Post post = postDAO.findById(id);
+      post.setTitle(increment(post.getTitle()));
+      postDAO.saveOrUpdate(post, reapplyIncrement);
+    }, optimisticIds, skew);
+    long optimisticCount = sumCounters(postDAO, optimisticIds);
+
+    report("lock-based", lockCount, lockNanos);
+    report("optimistic", optimisticCount, optimisticNanos);
+    logger.info(">>> BENCHMARK - optimistic conflicts (retried or failed): {}", postDAO.getOptimisticConflictCount());
+    logger.info(">>> BENCHMARK - throughput change: {}%",
+        Math.round(((double) optimisticCount / optimisticNanos / ((double) lockCount / lockNanos) - 1) * 100));
+
+    System.exit(0);
+  }
+
+  private static List<Long> createPosts(PostDAOImpl postDAO, PostIDSupplier postIdSupplier) {
+    List<Long> ids = new ArrayList<>(POST_COUNT);
+    for (int i = 0; i < POST_COUNT; i++) {
+      Post post = new Post("0", new PostDetails("Thiago" + i));
+      post.setId(postIdSupplier.getNextIdAsLong());
+      ids.add(postDAO.saveOrUpdate(post).getId());
+    }
+    return ids;
+  }
+
+  private static String increment(String counter) {
+    return Long.toString(Long.parseLong(counter) + 1);
+  }
+
+  private static long sumCounters(PostDAOImpl postDAO, List<Long> ids) {
+    long sum = 0;
+    for (Long id : ids) {
+      sum += Long.parseLong(postDAO.findById(id).getTitle());
+    }
+    return sum;
+  }
+
+  private static void report(String name, long count, long elapsedNanos) {
+    long expected = (long) THREAD_COUNT * UPDATES_PER_THREAD;
+    logger.info(">>> BENCHMARK - {}: {} of {} updates in {} ms, {} updates/s", name, count, expected,
+        TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+        Math.round(count / (elapsedNanos / 1_000_000_000.0)));
+  }
+
+  private static long runConcurrently(Update update, List<Long> ids, int skew) {
+    AtomicLong failures = new AtomicLong();
+    CountDownLatch done = new CountDownLatch(THREAD_COUNT);
+    long start = System.nanoTime();
+    for (int t = 0; t < THREAD_COUNT; t++) {
+      new Thread(() -> {
+        try {
+          for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+            double random = Math.pow(ThreadLocalRandom.current().nextDouble(), skew);
+            Long id = ids.get((int) (ids.size() * random));
+            try {
+              update.apply(id);
+            } catch (RuntimeException e) {
+              failures.incrementAndGet();
+              logger.debug("Update failed", e);
+            }
+          }
+        } finally {
+          done.countDown();
+        }
+      }).start();
+    }
+    try {
+      done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    long elapsedNanos = System.nanoTime() - start;
+    if (failures.get() > 0) {
+      logger.warn(">>> BENCHMARK - failed updates: {}", failures.get());
+    }
+    return elapsedNanos;
+  }
+
+  @FunctionalInterface
+  private interface Update {
+    void apply(Long id);
+  }
+
+}
@@ -0,0 +1,108 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.Env;
+import br.com.thiaguten.Env.ConnectionStrategy;
+import br.com.thiaguten.core.GridRegionTopology;
+import br.com.thiaguten.core.PersistenceHelper;
+import br.com.thiaguten.core.PersistenceUnitInfoImpl;
+import br.com.thiaguten.core.QueryRegion;
+import br.com.thiaguten.core.TopologyProfile;
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.model.Post;
+import br.com.thiaguten.model.PostDetails;
+import br.com.thiaguten.sequence.PostIDSupplier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.cache.CacheMetrics;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures a hot set of cheap count queries run along with noisy queries,
+ * whose results are large and never run twice, with the results of both
+ * cached in the same bounded query cache region, where the noisy results
+ * evict the hot ones, or in their own regions, only the noisy one bounded.
+ * <p>
+ * The arguments are the connection strategy and whether the regions are
+ * isolated (true by default), so the layouts are compared by running the
+ * benchmark once with each.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class QueryRegionBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(QueryRegionBenchmark.class);
+
+  private static final String HOT_REGION = "benchmark.hot";
+  private static final String NOISY_REGION = "benchmark.noisy";
+  private static final String HOT_QUERY = "select count(p) from Post p where p.id > ?1";
+  private static final String NOISY_QUERY = "select p.id from Post p where p.id > ?1 order by p.id";
+  private static final int POST_COUNT = 2_000;
+  private static final int HOT_KEYS = 1_000;
+  private static final int NOISY_ROWS = 500;
+  private static final int NOISY_QUERIES_PER_OPERATION = 2;
+  private static final int WARMUP_ITERATIONS = 3_000;
+  private static final int ITERATIONS = 10_000;
+
+  public static void main(String[] args) {
+    ConnectionStrategy connectionStrategy = args.length > 0
+        ? ConnectionStrategy.valueOf(args[0])
+        : ConnectionStrategy.CONNECTION_PROVIDER;
+    boolean isolated = args.length <= 1 || Boolean.parseBoolean(args[1]);
+    Map<String, Object> props = Env.createPersistenceConfig(Env.igniteInstanceName, connectionStrategy);
+    props.put(GridRegionTopology.QUERY_REGIONS, HOT_REGION + "," + NOISY_REGION);
+    props.put(GridRegionTopology.PROFILE_PREFIX + "bounded.base", TopologyProfile.QUERY);
+    props.put(GridRegionTopology.PROFILE_PREFIX + "bounded.maxSizeMb", Integer.toString(TopologyProfile.MIN_MAX_SIZE_MB));
+    props.put(GridRegionTopology.REGION_PREFIX + NOISY_REGION, "bounded");
+    Ignite ignite = Env.startIgnite(props);
+    PersistenceHelper.bootstrap(new PersistenceUnitInfoImpl("testUnit"), props);
+    logger.info(">>> BENCHMARK - isolated query regions: {}", isolated);
+
+    PostDAOImpl postDAO = new PostDAOImpl();
+    PostIDSupplier postIdSupplier = new PostIDSupplier(ignite, postDAO);
+    List<Post> posts = new ArrayList<>(POST_COUNT);
+    for (int i = 0; i < POST_COUNT; i++) {
+      Post post = new Post("query" + i, new PostDetails("Thiago" + i));
+      post.setId(postIdSupplier.getNextIdAsLong());
+      posts.add(post);
+    }
+    postDAO.saveOrUpdateInBatch(posts, 100);
+    long firstId = posts.get(0).getId();
+
+    QueryRegion hotRegion = QueryRegion.named(isolated ? HOT_REGION : NOISY_REGION);
+    QueryRegion noisyRegion = QueryRegion.named(NOISY_REGION);
+    long[] noisyKey = {firstId - 1_000_000_000L};
+    Statistics statistics = postDAO.getPersistenceHelper().getEntityManagerFactory()
+        .unwrap(SessionFactory.class).getStatistics();
+    statistics.setStatisticsEnabled(true);
+
+    BenchmarkRunner.run("hot count along with noisy queries", WARMUP_ITERATIONS, ITERATIONS, () -> {
+      for (int i = 0; i < NOISY_QUERIES_PER_OPERATION; i++) {
+        // a parameter never used before, matching the first posts all the same
+        postDAO.findByQuery(Long.class, noisyRegion, -1, NOISY_ROWS, NOISY_QUERY, noisyKey[0]--);
+      }
+      long hotKey = firstId + ThreadLocalRandom.current().nextInt(HOT_KEYS);
+      postDAO.countByQuery(Long.class, hotRegion, HOT_QUERY, hotKey);
+    });
+
+    QueryStatistics hotStatistics = statistics.getQueryStatistics(HOT_QUERY);
+    long hits = hotStatistics.getCacheHitCount();
+    long misses = hotStatistics.getCacheMissCount();
+    logger.info(">>> BENCHMARK - hot count cache hits: {}, misses: {}, hit ratio: {}", hits, misses,
+        String.format("%.3f", (double) hits / Math.max(1, hits + misses)));
+    for (String regionName : new String[]{HOT_REGION, NOISY_REGION}) {
+      CacheMetrics metrics = ignite.cache(regionName).metrics();
+      logger.info(">>> BENCHMARK - {} entries: {}, hits: {}, misses: {}, puts: {}", regionName,
+          ignite.cache(regionName).size(), metrics.getCacheHits(), metrics.getCacheMisses(), metrics.getCachePuts());
+    }
+
+    System.exit(0);
+  }
+
+}
@@ -0,0 +1,63 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.Env;
+import br.com.thiaguten.benchmark.BenchmarkRunner.Result;
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.model.Post;
+import br.com.thiaguten.model.PostDetails;
+import br.com.thiaguten.sequence.PostIDSupplier;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.ignite.Ignite;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the default read/write persistence context against the read-only
+ * mode of the DAO, loading the same posts.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class ReadOnlyQueryBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReadOnlyQueryBenchmark.class);
+
+  public static void main(String[] args) {
+    Ignite ignite = BenchmarkRunner.bootstrap(args);
+    PostDAOImpl postDAO = new PostDAOImpl();
+    PostIDSupplier postIdSupplier = new PostIDSupplier(ignite, postDAO);
+
+    int entityCount = 1000;
+    List<Post> posts = new ArrayList<>(entityCount);
+    for (int i = 0; i < entityCount; i++) {
+      Post post = new Post("benchmark" + i, new PostDetails("Thiago" + i));
+      post.setId(postIdSupplier.getNextIdAsLong());
+      posts.add(post);
+    }
+    postDAO.saveOrUpdateInBatch(posts, Env.batchSize);
+
+    String jpql = "select p from Post p join fetch p.postDetails";
+    int warmupIterations = 20;
+    int iterations = 100;
+
+    postDAO.setReadOnly(false);
+    Result readWrite = BenchmarkRunner.run("read/write findByQuery", warmupIterations, iterations,
+        () -> postDAO.findByQuery(jpql));
+
+    postDAO.setReadOnly(true);
+    Result readOnly = BenchmarkRunner.run("read-only findByQuery", warmupIterations, iterations,
+        () -> postDAO.findByQuery(jpql));
+
+    logger.info(">>> BENCHMARK - loaded entities per op: {}", entityCount * 2);
+    // bytes allocated while loading, e.g. the loaded state snapshots, not retained: the persistence context is closed
+    logger.info(">>> BENCHMARK - read/write allocated bytes per loaded entity: {}",
+        readWrite.getAllocatedBytesPerOp() / (entityCount * 2));
+    logger.info(">>> BENCHMARK - read-only allocated bytes per loaded entity: {}",
+        readOnly.getAllocatedBytesPerOp() / (entityCount * 2));
+    logger.info(">>> BENCHMARK - read-only throughput gain: {}%",
+        Math.round((readOnly.getOpsPerSecond() / readWrite.getOpsPerSecond() - 1) * 100));
+
+    System.exit(0);
+  }
+
+}
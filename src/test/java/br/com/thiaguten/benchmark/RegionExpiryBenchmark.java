@@ -0,0 +1,83 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.Env;
+import br.com.thiaguten.Env.ConnectionStrategy;
+import br.com.thiaguten.core.GridRegionTopology;
+import br.com.thiaguten.core.PersistenceHelper;
+import br.com.thiaguten.core.PersistenceUnitInfoImpl;
+import br.com.thiaguten.core.RegionExpirationStats;
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.model.Post;
+import br.com.thiaguten.model.PostDetails;
+import br.com.thiaguten.sequence.PostIDSupplier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.ignite.Ignite;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the reads by ID of a hot set of posts, out of many posts cached
+ * once and never read again, with the post region never expiring or
+ * expiring the posts not read for a while, so the cost of the expiry on the
+ * reads and the memory it saves are compared by running the benchmark once
+ * with each.
+ * <p>
+ * The arguments are the connection strategy and the seconds the posts live
+ * once last read (30 by default), or 0 for no expiry.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class RegionExpiryBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(RegionExpiryBenchmark.class);
+
+  private static final int POST_COUNT = 5_000;
+  private static final int HOT_POSTS = 200;
+  private static final int WARMUP_ITERATIONS = 10_000;
+  private static final int ITERATIONS = 50_000;
+
+  public static void main(String[] args) throws InterruptedException {
+    ConnectionStrategy connectionStrategy = args.length > 0
+        ? ConnectionStrategy.valueOf(args[0])
+        : ConnectionStrategy.CONNECTION_PROVIDER;
+    long accessed = args.length > 1 ? Long.parseLong(args[1]) : 30;
+    Map<String, Object> props = Env.createPersistenceConfig(Env.igniteInstanceName, connectionStrategy);
+    if (accessed > 0) {
+      props.put(GridRegionTopology.EXPIRY_PREFIX + Post.class.getName() + ".accessed", Long.toString(accessed));
+    }
+    Ignite ignite = Env.startIgnite(props);
+    PersistenceHelper.bootstrap(new PersistenceUnitInfoImpl("testUnit"), props);
+    logger.info(">>> BENCHMARK - post region expiry after access: {}s", accessed);
+
+    PostDAOImpl postDAO = new PostDAOImpl();
+    PostIDSupplier postIdSupplier = new PostIDSupplier(ignite, postDAO);
+    List<Post> posts = new ArrayList<>(POST_COUNT);
+    for (int i = 0; i < POST_COUNT; i++) {
+      Post post = new Post("expiry" + i, new PostDetails("Thiago" + i));
+      post.setId(postIdSupplier.getNextIdAsLong());
+      posts.add(post);
+    }
+    postDAO.saveOrUpdateInBatch(posts, 100);
+    for (Post post : posts) {
+      postDAO.findById(post.getId());
+    }
+
+    BenchmarkRunner.run("find hot post by id", WARMUP_ITERATIONS, ITERATIONS, () -> {
+      Post post = posts.get(ThreadLocalRandom.current().nextInt(HOT_POSTS));
+      postDAO.findById(post.getId());
+    });
+    if (accessed > 0) {
+      // long enough for the cold posts to expire
+      Thread.sleep((accessed + 2) * 1_000);
+    }
+
+    logger.info(">>> BENCHMARK - post region entries: {}, expired: {}", ignite.cache(Post.class.getName()).size(),
+        RegionExpirationStats.forRegion(ignite.name(), Post.class.getName()).getExpired());
+
+    System.exit(0);
+  }
+
+}
@@ -0,0 +1,98 @@
+package br.com.thiaguten.benchmark;
+
+import br.com.thiaguten.Env;
+import br.com.thiaguten.Env.ConnectionStrategy;
+import br.com.thiaguten.core.PersistenceHelper;
+import br.com.thiaguten.core.PersistenceUnitInfoImpl;
+import br.com.thiaguten.core.SingleFlight;
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.model.Post;
+import br.com.thiaguten.model.PostDetails;
+import br.com.thiaguten.sequence.PostIDSupplier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.ignite.Ignite;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the finds of a popular post by as many concurrent callers as the
+ * threads of {@code MultiThreadTest}, right after the post is evicted from
+ * the L2 cache, with every caller querying the database or only the first
+ * one (see {@link SingleFlight}), of the node or of the cluster.
+ * <p>
+ * The arguments are the connection strategy and the single flight of the
+ * finds, {@code none}, {@code node} or {@code cluster} (the default), so the
+ * variants are compared by running the benchmark once with each.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class SingleFlightBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(SingleFlightBenchmark.class);
+
+  private static final int CALLERS = 50;
+  private static final int WARMUP_ITERATIONS = 50;
+  private static final int ITERATIONS = 300;
+
+  public static void main(String[] args) {
+    ConnectionStrategy connectionStrategy = args.length > 0
+        ? ConnectionStrategy.valueOf(args[0])
+        : ConnectionStrategy.CONNECTION_PROVIDER;
+    String singleFlight = args.length > 1 ? args[1] : "cluster";
+    Map<String, Object> props = Env.createPersistenceConfig(Env.igniteInstanceName, connectionStrategy);
+    Ignite ignite = Env.startIgnite(props);
+    PersistenceHelper.bootstrap(new PersistenceUnitInfoImpl("testUnit"), props);
+    logger.info(">>> BENCHMARK - single flight: {}", singleFlight);
+
+    PostDAOImpl postDAO = new PostDAOImpl();
+    if ("node".equals(singleFlight)) {
+      postDAO.setSingleFlight(new SingleFlight<>());
+    } else if ("cluster".equals(singleFlight)) {
+      postDAO.setSingleFlight(new SingleFlight<>(ignite, Post.class.getName(), 100, TimeUnit.MILLISECONDS));
+    }
+    Post post = new Post("single flight", new PostDetails("Thiago"));
+    post.setId(new PostIDSupplier(ignite, postDAO).getNextIdAsLong());
+    long id = postDAO.saveOrUpdate(post).getId();
+    Statistics statistics = postDAO.getPersistenceHelper().getEntityManagerFactory()
+        .unwrap(SessionFactory.class).getStatistics();
+    statistics.setStatisticsEnabled(true);
+
+    ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+    BenchmarkRunner.run(CALLERS + " concurrent finds of an evicted post", WARMUP_ITERATIONS, ITERATIONS, () -> {
+      postDAO.getEntityManagerFactory().getCache().evict(Post.class, id);
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<Post>> finds = new ArrayList<>(CALLERS);
+      for (int i = 0; i < CALLERS; i++) {
+        finds.add(callers.submit(() -> {
+          start.await();
+          return postDAO.findById(id);
+        }));
+      }
+      start.countDown();
+      try {
+        for (Future<Post> find : finds) {
+          find.get();
+        }
+      } catch (InterruptedException | ExecutionException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    callers.shutdown();
+
+    logger.info(">>> BENCHMARK - post loads from the database per eviction: {}",
+        String.format("%.2f", (double) statistics.getEntityLoadCount() / (WARMUP_ITERATIONS + ITERATIONS)));
+
+    System.exit(0);
+  }
+
+}
@@ -0,0 +1,97 @@
+package br.com.thiaguten.benchmark;
+
+import static org.hibernate.cfg.AvailableSettings.DATASOURCE;
+import static org.hibernate.cfg.AvailableSettings.DIALECT;
+import static org.hibernate.cfg.AvailableSettings.HBM2DDL_AUTO;
+import static org.hibernate.cfg.AvailableSettings.USE_QUERY_CACHE;
+import static org.hibernate.cfg.AvailableSettings.USE_SECOND_LEVEL_CACHE;
+
+import br.com.thiaguten.Env;
+import br.com.thiaguten.benchmark.BenchmarkRunner.Result;
+import br.com.thiaguten.core.PersistenceUnitInfoImpl;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.jpa.boot.spi.Bootstrap;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the time to build the entity manager factory when the managed
+ * classes are listed by the build-time entity index against scanning the
+ * classpath for them.
+ * <p>
+ * The L2 cache is disabled, so only the persistence unit bootstrap is measured.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class StartupBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(StartupBenchmark.class);
+
+  public static void main(String[] args) {
+    JDBCDataSource dataSource = new JDBCDataSource();
+    dataSource.setUrl(Env.url);
+    dataSource.setUser(Env.user);
+    dataSource.setPassword(Env.password);
+
+    Map<String, Object> props = new HashMap<>();
+    props.put(DATASOURCE, dataSource);
+    props.put(DIALECT, "org.hibernate.dialect.HSQLDialect");
+    props.put(HBM2DDL_AUTO, "none");
+    props.put(USE_SECOND_LEVEL_CACHE, "false");
+    props.put(USE_QUERY_CACHE, "false");
+
+    PersistenceUnitInfoImpl indexed = new PersistenceUnitInfoImpl("testUnit");
+    PersistenceUnitInfoImpl scanned = new PersistenceUnitInfoImpl("testUnit",
+        Collections.singletonMap(PersistenceUnitInfoImpl.ENTITY_INDEX, "false"));
+    if (null == indexed.getEntityIndex()) {
+      logger.warn("No {} resource found, compile with the entity index annotation processor",
+          br.com.thiaguten.core.EntityIndex.RESOURCE_NAME);
+    } else {
+      logger.info(">>> BENCHMARK - managed classes listed by the index: {}",
+          indexed.getEntityIndex().getManagedClassNames().size());
+    }
+
+    int warmupIterations = 10;
+    int rounds = 4;
+    int iterations = 5;
+
+    // both variants warm up before any is measured, and then alternate which one runs first
+    for (int i = 0; i < warmupIterations; i++) {
+      build(scanned, props);
+      build(indexed, props);
+    }
+    double scanningMicros = 0;
+    double indexMicros = 0;
+    for (int round = 0; round < rounds; round++) {
+      Result scanning;
+      Result index;
+      if (0 == round % 2) {
+        scanning = BenchmarkRunner.run("scanning bootstrap", 0, iterations, () -> build(scanned, props));
+        index = BenchmarkRunner.run("entity index bootstrap", 0, iterations, () -> build(indexed, props));
+      } else {
+        index = BenchmarkRunner.run("entity index bootstrap", 0, iterations, () -> build(indexed, props));
+        scanning = BenchmarkRunner.run("scanning bootstrap", 0, iterations, () -> build(scanned, props));
+      }
+      scanningMicros += scanning.getAverageMicros() / rounds;
+      indexMicros += index.getAverageMicros() / rounds;
+    }
+
+    logger.info(">>> BENCHMARK - scanning bootstrap: {} ms", Math.round(scanningMicros / 1000));
+    logger.info(">>> BENCHMARK - entity index bootstrap: {} ms", Math.round(indexMicros / 1000));
+    logger.info(">>> BENCHMARK - startup time reduction: {}%", Math.round((1 - indexMicros / scanningMicros) * 100));
+
+    System.exit(0);
+  }
+
+  private static void build(PersistenceUnitInfoImpl info, Map<String, Object> props) {
+    EntityManagerFactory entityManagerFactory = Bootstrap
+        .getEntityManagerFactoryBuilder(info, props, StartupBenchmark.class.getClassLoader())
+        .build();
+    entityManagerFactory.close();
+  }
+
+}
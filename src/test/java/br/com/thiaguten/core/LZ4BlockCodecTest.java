@@ -0,0 +1,210 @@
+package br.com.thiaguten.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Round trips of the {@link LZ4BlockCodec} over the lengths and shapes of
+ * input that reach every branch of the block format (literal and match length
+ * extensions, overlapping matches, the maximum offset, the end of block
+ * rules), and decompression of blocks written by hand after the format.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class LZ4BlockCodecTest {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void roundTripsEveryShortLength() {
+        for (int length = 0; length <= 1024; length++) {
+            assertRoundTrip(repeated(length, 1));
+            assertRoundTrip(repeated(length, 3));
+            assertRoundTrip(text(length, 4));
+            assertRoundTrip(randomBytes(length));
+        }
+    }
+
+    @Test
+    public void roundTripsOverlappingMatchesOfEveryPeriod() {
+        for (int period = 1; period <= 64; period++) {
+            for (int length : new int[]{MATCH_FIND_LIMIT + 1, 100, 270, 4096}) {
+                assertRoundTrip(repeated(length, period));
+            }
+        }
+    }
+
+    @Test
+    public void roundTripsLongLiteralAndMatchRuns() {
+        for (int run : new int[]{14, 15, 16, 269, 270, 271, 524, 525, 526, 10_000}) {
+            // a literal run, then a match run of the same length, then literals again
+            byte[] literals = randomBytes(run);
+            byte[] src = new byte[3 * run + 16];
+            System.arraycopy(literals, 0, src, 0, run);
+            System.arraycopy(literals, 0, src, run, run);
+            System.arraycopy(randomBytes(run + 16), 0, src, 2 * run, run + 16);
+            assertRoundTrip(src);
+            assertRoundTrip(repeated(run + MATCH_FIND_LIMIT, 1));
+        }
+    }
+
+    @Test
+    public void roundTripsMatchesAroundTheMaximumOffset() {
+        for (int gap : new int[]{65_530, 65_535, 65_536, 70_000}) {
+            byte[] head = randomBytes(64);
+            byte[] src = new byte[gap + 64 + 64];
+            System.arraycopy(head, 0, src, 0, 64);
+            System.arraycopy(randomBytes(gap - 64), 0, src, 64, gap - 64);
+            System.arraycopy(head, 0, src, gap, 64);
+            System.arraycopy(randomBytes(64 + 64), 0, src, gap + 64, 64);
+            assertRoundTrip(src);
+        }
+    }
+
+    @Test
+    public void roundTripsRandomTexts() {
+        for (int i = 0; i < 2_000; i++) {
+            assertRoundTrip(text(random.nextInt(5_000), 2 + random.nextInt(30)));
+        }
+        assertRoundTrip("comentário com acentuação, 日本語 e emoji 😀 repetidos, repetidos, repetidos, repetidos"
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void compressesOnlyWhenTheValueShrinks() {
+        assertNull(LZ4BlockCodec.compress(new byte[0]));
+        assertNull(LZ4BlockCodec.compress(randomBytes(MATCH_FIND_LIMIT)));
+        assertNull(LZ4BlockCodec.compress(randomBytes(4096)));
+        byte[] compressed = LZ4BlockCodec.compress(repeated(4096, 1));
+        assertTrue(compressed.length < 64);
+    }
+
+    @Test
+    public void decompressesBlocksWrittenAfterTheFormat() {
+        // "abc", then a match of 9 bytes at offset 3 overlapping itself, then 5 last literals
+        byte[] block = {0x35, 'a', 'b', 'c', 3, 0, 0x50, 'x', 'y', 'z', 'w', '0'};
+        assertArrayEquals("abcabcabcabcxyzw0".getBytes(StandardCharsets.US_ASCII),
+                LZ4BlockCodec.decompress(block, 17));
+        // literals only, with a length extension: 15 + 5 = 20 literals
+        byte[] literals = new byte[20];
+        Arrays.fill(literals, (byte) 'q');
+        byte[] literalBlock = new byte[22];
+        literalBlock[0] = (byte) 0xF0;
+        literalBlock[1] = 5;
+        System.arraycopy(literals, 0, literalBlock, 2, 20);
+        assertArrayEquals(literals, LZ4BlockCodec.decompress(literalBlock, 20));
+    }
+
+    @Test
+    public void rejectsMalformedBlocks() {
+        byte[] block = {0x35, 'a', 'b', 'c', 3, 0, 0x50, 'x', 'y', 'z', 'w', '0'};
+        assertMalformed(Arrays.copyOf(block, 5), 17);
+        assertMalformed(block, 16);
+        assertMalformed(block, 18);
+        // a zero offset, and an offset before the start of the value
+        assertMalformed(new byte[]{0x35, 'a', 'b', 'c', 0, 0, 0x50, 'x', 'y', 'z', 'w', '0'}, 17);
+        assertMalformed(new byte[]{0x35, 'a', 'b', 'c', 4, 0, 0x50, 'x', 'y', 'z', 'w', '0'}, 17);
+    }
+
+    private static void assertRoundTrip(byte[] src) {
+        byte[] compressed = LZ4BlockCodec.compress(src);
+        if (null == compressed) {
+            return;
+        }
+        assertTrue("not smaller: " + src.length, compressed.length < src.length);
+        assertConforms(compressed, src.length);
+        assertArrayEquals("length " + src.length, src, LZ4BlockCodec.decompress(compressed, src.length));
+    }
+
+    /**
+     * Check the end of block rules of the format, which the reference
+     * decompressors rely on: the last sequence is literals only, the last 5
+     * bytes are literals, and the last match starts 12 bytes before the end.
+     */
+    private static void assertConforms(byte[] block, int length) {
+        int ip = 0;
+        int op = 0;
+        int lastMatchStart = -1;
+        int lastMatchEnd = 0;
+        while (true) {
+            int token = block[ip++] & 0xFF;
+            int literalLength = token >>> 4;
+            if (15 == literalLength) {
+                int b;
+                do {
+                    b = block[ip++] & 0xFF;
+                    literalLength += b;
+                } while (255 == b);
+            }
+            ip += literalLength;
+            op += literalLength;
+            if (ip == block.length) {
+                assertEquals("the last sequence must be literals only", 0, token & 15);
+                break;
+            }
+            ip += 2;
+            int matchLength = token & 15;
+            if (15 == matchLength) {
+                int b;
+                do {
+                    b = block[ip++] & 0xFF;
+                    matchLength += b;
+                } while (255 == b);
+            }
+            lastMatchStart = op;
+            op += matchLength + MIN_MATCH;
+            lastMatchEnd = op;
+        }
+        assertEquals(length, op);
+        if (lastMatchStart >= 0) {
+            assertTrue("the last match must start 12 bytes before the end", lastMatchStart <= length - MATCH_FIND_LIMIT);
+            assertTrue("the last 5 bytes must be literals", lastMatchEnd <= length - LAST_LITERALS);
+        }
+    }
+
+    private static void assertMalformed(byte[] block, int length) {
+        try {
+            LZ4BlockCodec.decompress(block, length);
+            fail("decompressed a malformed block of " + length + " bytes");
+        } catch (IllegalArgumentException expected) {
+            // the corrupted entry is reported, instead of a partial value
+        }
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private byte[] repeated(int length, int period) {
+        byte[] pattern = randomBytes(period);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = pattern[i % period];
+        }
+        return bytes;
+    }
+
+    private byte[] text(int length, int alphabet) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) ('a' + random.nextInt(alphabet));
+        }
+        return bytes;
+    }
+
+}
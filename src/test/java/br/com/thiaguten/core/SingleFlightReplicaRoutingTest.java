@@ -0,0 +1,159 @@
+package br.com.thiaguten.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.persistence.EntityManager;
+
+import org.apache.ignite.Ignite;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import br.com.thiaguten.Env;
+import br.com.thiaguten.dao.PostDAOImpl;
+import br.com.thiaguten.model.Post;
+import br.com.thiaguten.model.PostComment;
+import br.com.thiaguten.model.PostDetails;
+import br.com.thiaguten.sequence.PostIDSupplier;
+
+/**
+ * Concurrent finds of the {@link SingleFlight} of a DAO whose reads are routed
+ * to a replica: the replica reads are never put in the L2 cache, so the first
+ * find of an identifier must load it from the primary for the waiting finds
+ * to read it from the L2 cache instead of the database.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class SingleFlightReplicaRoutingTest {
+
+    private static final long TIMEOUT_MILLIS = 60_000;
+
+    private final CountDownLatch firstLoadStarted = new CountDownLatch(1);
+    private final CountDownLatch firstLoadReleased = new CountDownLatch(1);
+    // blocks the next read of the finds, i.e. the first load of the single flight
+    private final AtomicBoolean blockNextRead = new AtomicBoolean();
+    private static Ignite ignite;
+    private static PersistenceHelper persistenceHelper;
+    private static PostDAOImpl postDAO;
+    private static Statistics statistics;
+    private BlockingPostDAO blockingPostDAO;
+
+    @BeforeClass
+    public static void setUpClass() {
+        Map<String, Object> props = Env.createPersistenceConfig(Env.igniteInstanceName, Env.ConnectionStrategy.READ_REPLICA);
+        props.put("hibernate.generate_statistics", "true");
+        ignite = Env.startIgnite(props);
+        persistenceHelper = PersistenceHelper.newInstance();
+        persistenceHelper.initialize(new PersistenceUnitInfoImpl("testUnit"), props);
+        postDAO = new PostDAOImpl();
+        postDAO.setPersistenceHelper(persistenceHelper);
+        statistics = persistenceHelper.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        if (null != persistenceHelper) {
+            persistenceHelper.close();
+        }
+        if (null != ignite) {
+            ignite.close();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        blockingPostDAO = new BlockingPostDAO();
+        blockingPostDAO.setPersistenceHelper(persistenceHelper);
+        blockingPostDAO.setSingleFlight(new SingleFlight<>());
+    }
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void sharesTheLoadOfAnEntityReadFromAReplica() throws Exception {
+        Long id = savePosts(1).get(0);
+
+        blockNextRead.set(true);
+        SingleFlightTest.Caller<Post> first = new SingleFlightTest.Caller<>(() -> blockingPostDAO.findById(id));
+        firstLoadStarted.await();
+        SingleFlightTest.Caller<Post> waiter = new SingleFlightTest.Caller<>(() -> blockingPostDAO.findById(id));
+        waiter.awaitWaiting();
+
+        firstLoadReleased.countDown();
+        assertEquals("title-0", first.get().getTitle());
+        assertEquals("title-0", waiter.get().getTitle());
+        assertEquals(1, blockingPostDAO.getSingleFlight().getSharedLoadCount());
+        // the waiting find read the post from the L2 cache
+        assertEquals(1, statistics.getEntityStatistics(Post.class.getName()).getLoadCount());
+    }
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void sharesTheLoadOfEntitiesReadFromAReplica() throws Exception {
+        List<Long> ids = savePosts(3);
+
+        blockNextRead.set(true);
+        SingleFlightTest.Caller<List<Post>> first = new SingleFlightTest.Caller<>(() -> blockingPostDAO.findByIds(ids));
+        firstLoadStarted.await();
+        SingleFlightTest.Caller<List<Post>> waiter = new SingleFlightTest.Caller<>(() -> blockingPostDAO.findByIds(ids));
+        waiter.awaitWaiting();
+
+        firstLoadReleased.countDown();
+        assertEquals(Arrays.asList("title-0", "title-1", "title-2"), titlesOf(first.get()));
+        assertEquals(Arrays.asList("title-0", "title-1", "title-2"), titlesOf(waiter.get()));
+        assertEquals(3, blockingPostDAO.getSingleFlight().getSharedLoadCount());
+        // the waiting find read the posts from the L2 cache
+        assertEquals(3, statistics.getEntityStatistics(Post.class.getName()).getLoadCount());
+    }
+
+    // saves the posts, copies them to the replica and leaves them out of the L2 cache
+    private static List<Long> savePosts(int count) {
+        PostIDSupplier postIdSupplier = new PostIDSupplier(ignite, postDAO);
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Post post = new Post("title-" + i, new PostDetails("test"));
+            post.addPostComment(new PostComment("comment"));
+            post.setId(postIdSupplier.getNextIdAsLong());
+            ids.add(postDAO.saveOrUpdate(post).getId());
+        }
+        Env.replicate();
+        persistenceHelper.getEntityManagerFactory().getCache().evictAll();
+        statistics.clear();
+        return ids;
+    }
+
+    private static List<String> titlesOf(List<Post> posts) {
+        List<String> titles = new ArrayList<>(posts.size());
+        for (Post post : posts) {
+            titles.add(post.getTitle());
+        }
+        return titles;
+    }
+
+    // the finds of the posts, whose next read waits for the release of the first load
+    private final class BlockingPostDAO extends AbstractDAO<Long, Post> {
+
+        @Override
+        protected EntityManager getReadEntityManager(boolean replica) {
+            if (blockNextRead.compareAndSet(true, false)) {
+                firstLoadStarted.countDown();
+                try {
+                    firstLoadReleased.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+            return super.getReadEntityManager(replica);
+        }
+
+    }
+
+}
@@ -0,0 +1,227 @@
+package br.com.thiaguten.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+/**
+ * Concurrent loads of the {@link SingleFlight} of a single node: the waiting
+ * callers of a found identifier share its load, while the ones of an
+ * identifier not found or whose load failed load it themselves, and the loads
+ * of overlapping identifiers neither wait forever nor lose an identifier.
+ *
+ * @author Thiago Gutenberg Carvalho da Costa
+ */
+public class SingleFlightTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    // the entities of the database, by identifier
+    private final Map<Long, String> database = new ConcurrentHashMap<>();
+    // the identifiers of each call of the loaders
+    private final List<List<Long>> loads = new CopyOnWriteArrayList<>();
+    private final CountDownLatch firstLoadStarted = new CountDownLatch(1);
+    private final CountDownLatch firstLoadReleased = new CountDownLatch(1);
+    private final SingleFlight<Long> singleFlight = new SingleFlight<>();
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void sharesTheLoadOfAFoundEntity() throws Exception {
+        database.put(1L, "post-1");
+        Caller<String> first = new Caller<>(() -> singleFlight.load(1L, blockingLoader()));
+        firstLoadStarted.await();
+        Caller<String> waiter = new Caller<>(() -> singleFlight.load(1L, loader()));
+        waiter.awaitWaiting();
+
+        firstLoadReleased.countDown();
+        assertEquals("post-1", first.get());
+        assertEquals("post-1", waiter.get());
+        assertEquals(1, singleFlight.getLoadCount());
+        assertEquals(1, singleFlight.getSharedLoadCount());
+    }
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void loadsAgainAnEntityNotFoundByTheFirstLoad() throws Exception {
+        Caller<String> first = new Caller<>(() -> singleFlight.load(1L, blockingLoader()));
+        firstLoadStarted.await();
+        // saved after the first load began, then found by the same caller
+        Caller<String> waiter = new Caller<>(() -> {
+            database.put(1L, "post-1");
+            return singleFlight.load(1L, loader());
+        });
+        waiter.awaitWaiting();
+
+        firstLoadReleased.countDown();
+        assertNull(first.get());
+        assertEquals("post-1", waiter.get());
+        assertEquals(Arrays.asList(Collections.singletonList(1L), Collections.singletonList(1L)), loads);
+        assertEquals(0, singleFlight.getSharedLoadCount());
+    }
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void propagatesTheFailureOfTheFirstLoadToItsCallerOnly() throws Exception {
+        database.put(1L, "post-1");
+        IllegalStateException failure = new IllegalStateException("database down");
+        Caller<String> first = new Caller<>(() -> singleFlight.load(1L, id -> {
+            blockingLoader().apply(id);
+            throw failure;
+        }));
+        firstLoadStarted.await();
+        Caller<String> waiter = new Caller<>(() -> singleFlight.load(1L, loader()));
+        waiter.awaitWaiting();
+
+        firstLoadReleased.countDown();
+        try {
+            first.get();
+            fail("the failure of the first load was not propagated");
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+        assertEquals("post-1", waiter.get());
+        assertEquals(0, singleFlight.getSharedLoadCount());
+        // the failed flight is over, so the next caller loads the identifier
+        assertEquals("post-1", singleFlight.load(1L, loader()));
+        assertEquals(2, singleFlight.getLoadCount());
+    }
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void loadsOverlappingIdentifiersOnce() throws Exception {
+        for (long id = 1; id <= 4; id++) {
+            database.put(id, "post-" + id);
+        }
+        Caller<Map<Long, String>> first = new Caller<>(() ->
+                singleFlight.loadAll(Arrays.asList(1L, 2L, 3L), blockingAllLoader(), SingleFlightTest::idOf));
+        firstLoadStarted.await();
+        Caller<Map<Long, String>> second = new Caller<>(() ->
+                singleFlight.loadAll(Arrays.asList(4L, 3L, 2L, 4L), allLoader(), SingleFlightTest::idOf));
+        second.awaitWaiting();
+
+        firstLoadReleased.countDown();
+        assertEquals(Arrays.asList("post-1", "post-2", "post-3"), new ArrayList<>(first.get().values()));
+        assertEquals(Arrays.asList("post-4", "post-3", "post-2"), new ArrayList<>(second.get().values()));
+        // the identifiers of the first load are loaded again by the second caller, from the L2 cache
+        assertEquals(Arrays.asList(Arrays.asList(1L, 2L, 3L), Collections.singletonList(4L), Arrays.asList(3L, 2L)),
+                loads);
+        assertEquals(4, singleFlight.getLoadCount());
+        assertEquals(2, singleFlight.getSharedLoadCount());
+    }
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void loadsAgainOverlappingIdentifiersNotFound() throws Exception {
+        database.put(1L, "post-1");
+        Caller<Map<Long, String>> first = new Caller<>(() ->
+                singleFlight.loadAll(Arrays.asList(1L, 2L), blockingAllLoader(), SingleFlightTest::idOf));
+        firstLoadStarted.await();
+        Caller<Map<Long, String>> second = new Caller<>(() -> {
+            database.put(2L, "post-2");
+            return singleFlight.loadAll(Arrays.asList(1L, 2L), allLoader(), SingleFlightTest::idOf);
+        });
+        second.awaitWaiting();
+
+        firstLoadReleased.countDown();
+        assertEquals(Collections.singleton(1L), first.get().keySet());
+        assertEquals(Arrays.asList(1L, 2L), new ArrayList<>(second.get().keySet()));
+        assertEquals(1, singleFlight.getSharedLoadCount());
+    }
+
+    private Function<Long, String> loader() {
+        return id -> {
+            loads.add(Collections.singletonList(id));
+            return database.get(id);
+        };
+    }
+
+    private Function<Long, String> blockingLoader() {
+        return id -> {
+            String entity = loader().apply(id);
+            awaitRelease();
+            return entity;
+        };
+    }
+
+    private Function<List<Long>, List<String>> allLoader() {
+        return ids -> {
+            loads.add(new ArrayList<>(ids));
+            List<String> entities = new ArrayList<>();
+            for (Long id : ids) {
+                if (database.containsKey(id)) {
+                    entities.add(database.get(id));
+                }
+            }
+            return entities;
+        };
+    }
+
+    private Function<List<Long>, List<String>> blockingAllLoader() {
+        return ids -> {
+            List<String> entities = allLoader().apply(ids);
+            awaitRelease();
+            return entities;
+        };
+    }
+
+    private void awaitRelease() {
+        firstLoadStarted.countDown();
+        try {
+            firstLoadReleased.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Long idOf(String entity) {
+        return Long.valueOf(entity.substring("post-".length()));
+    }
+
+    // a caller of the single flight, in its own thread
+    static final class Caller<R> {
+
+        private final CompletableFuture<R> result = new CompletableFuture<>();
+        private final Thread thread;
+
+        Caller(Supplier<R> call) {
+            this.thread = new Thread(() -> {
+                try {
+                    result.complete(call.get());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            });
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        // the caller parks on the flight of the first load
+        void awaitWaiting() throws InterruptedException {
+            while (Thread.State.WAITING != thread.getState()) {
+                if (result.isDone()) {
+                    fail("the caller ended before the first load");
+                }
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+        }
+
+        R get() throws InterruptedException, ExecutionException {
+            return result.get();
+        }
+
+    }
+
+}